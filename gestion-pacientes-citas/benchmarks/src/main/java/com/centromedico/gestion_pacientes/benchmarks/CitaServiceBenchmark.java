@@ -0,0 +1,100 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.service.CitaService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de CitaService: reservar citas y leer la agenda diaria de un médico
+ * Cada método se mide en rendimiento (ops/ms) y en tiempo por operación con
+ * percentiles (SampleTime: p50, p90, p99...)
+ *
+ * validarDisponibilidadMedico es privado; se mide a través de agendarCita:
+ * - agendarCita: hueco libre (índice en memoria, bloqueo del médico, consulta en BD e INSERT)
+ * - agendarCitaConConflicto: hueco ocupado, rechazado por el índice sin tocar la BD
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Threads(4)
+public class CitaServiceBenchmark {
+
+    private CitaService citaService;
+
+    @Setup(Level.Trial)
+    public void preparar(EntornoBenchmark entorno) {
+        citaService = entorno.contexto.getBean(CitaService.class);
+    }
+
+    @Benchmark
+    public Cita agendarCita(EntornoBenchmark entorno, SesionAdmin sesion) {
+        // Cada reserva ocupa el siguiente hueco libre, repartiendo entre los médicos
+        long reserva = entorno.reservas.getAndIncrement();
+        int medico = (int) (reserva % entorno.medicos);
+        long hueco = entorno.primerHuecoLibre + reserva / entorno.medicos;
+        return citaService.agendarCita(nuevaCita(entorno, medico, entorno.fechaHoraDeHueco(hueco)));
+    }
+
+    @Benchmark
+    public Object agendarCitaConConflicto(EntornoBenchmark entorno, SesionAdmin sesion) {
+        // Hueco sembrado con una cita PENDIENTE (estado = hueco % 5 == 0)
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        int medico = aleatorio.nextInt(entorno.medicos);
+        long hueco = aleatorio.nextLong(entorno.primerHuecoLibre);
+        hueco -= hueco % 5;
+        if (hueco * entorno.medicos + medico >= entorno.citas) {
+            hueco = 0;
+        }
+
+        try {
+            return citaService.agendarCita(nuevaCita(entorno, medico, entorno.fechaHoraDeHueco(hueco)));
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public List<Cita> obtenerAgendaMedicoPorDia(EntornoBenchmark entorno, SesionAdmin sesion) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        Long medicoId = entorno.listaMedicos.get(aleatorio.nextInt(entorno.medicos)).getId();
+        LocalDate dia = LocalDate.now().plusDays(1 + aleatorio.nextInt(entorno.diasSembrados));
+        return citaService.obtenerAgendaMedicoPorDia(medicoId, dia);
+    }
+
+    private static Cita nuevaCita(EntornoBenchmark entorno, int medico, LocalDateTime fechaHora) {
+        Paciente paciente = new Paciente();
+        paciente.setId(entorno.pacienteIds.get(ThreadLocalRandom.current().nextInt(entorno.pacientes)));
+        Usuario medicoSoloId = new Usuario();
+        medicoSoloId.setId(entorno.listaMedicos.get(medico).getId());
+
+        Cita cita = new Cita();
+        cita.setPaciente(paciente);
+        cita.setMedico(medicoSoloId);
+        cita.setFechaHora(fechaHora);
+        cita.setDuracionMinutos(30);
+        cita.setMotivo("Reserva de benchmark");
+        return cita;
+    }
+}
@@ -0,0 +1,50 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.controller.DashboardController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.ui.Model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del dashboard de ADMIN (estadísticas y últimas citas)
+ * Mide el método del controlador con su modelo, sin la vista Thymeleaf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Threads(4)
+public class DashboardBenchmark {
+
+    private DashboardController dashboardController;
+    private CustomUserDetails admin;
+
+    @Setup(Level.Trial)
+    public void preparar(EntornoBenchmark entorno) {
+        dashboardController = entorno.contexto.getBean(DashboardController.class);
+        admin = new CustomUserDetails(entorno.admin);
+    }
+
+    @Benchmark
+    public Model dashboardAdmin(SesionAdmin sesion) {
+        Model model = new ExtendedModelMap();
+        dashboardController.dashboard(admin, model);
+        return model;
+    }
+}
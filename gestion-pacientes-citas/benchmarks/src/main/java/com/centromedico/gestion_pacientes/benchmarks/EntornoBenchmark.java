@@ -0,0 +1,187 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import com.centromedico.gestion_pacientes.GestionPacientesApplication;
+import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import com.centromedico.gestion_pacientes.service.DisponibilidadMedicoIndex;
+import com.centromedico.gestion_pacientes.service.EstadisticasCitasCache;
+import com.centromedico.gestion_pacientes.service.UltimasCitasBuffer;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entorno compartido por los benchmarks: arranca la aplicación con H2 en memoria
+ * (modo MySQL) y la llena con el volumen de citas indicado
+ *
+ * Las citas se reparten entre los médicos en huecos de 30 minutos (8:00 a 18:00),
+ * sin solapes, a partir de mañana; así las agendas diarias tienen la misma forma
+ * con cualquier volumen. El estado de cada cita depende de su hueco
+ * (PENDIENTE, CONFIRMADA, CONFIRMADA, COMPLETADA, CANCELADA, y se repite).
+ *
+ * Volumen: -p citas=10000 (por defecto) hasta -p citas=5000000 (necesita -Xmx8g o más)
+ */
+@State(Scope.Benchmark)
+public class EntornoBenchmark {
+
+    /** Huecos de 30 minutos por día y médico (8:00 a 18:00) */
+    public static final int HUECOS_POR_DIA = 20;
+
+    private static final int TAMANO_LOTE = 10_000;
+
+    private static final String INSERT_CITA =
+            "INSERT INTO citas (paciente_id, medico_id, fecha_hora, duracion_minutos, fecha_fin, " +
+            "motivo, estado, fecha_creacion, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String[] ESTADOS = {"PENDIENTE", "CONFIRMADA", "CONFIRMADA", "COMPLETADA", "CANCELADA"};
+
+    @Param({"10000"})
+    public int citas;
+
+    @Param({"50"})
+    public int medicos;
+
+    @Param({"2000"})
+    public int pacientes;
+
+    ConfigurableApplicationContext contexto;
+    List<Usuario> listaMedicos;
+    List<Long> pacienteIds;
+    Usuario admin;
+
+    /** Días que ocupan las citas sembradas en cada agenda */
+    int diasSembrados;
+
+    /** Primer hueco libre de cada agenda (detrás de las citas sembradas) */
+    long primerHuecoLibre;
+
+    /** Número de reservas nuevas hechas por los benchmarks */
+    final AtomicLong reservas = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = new SpringApplicationBuilder(GestionPacientesApplication.class)
+                .profiles("benchmark")
+                .run();
+
+        crearUsuariosYPacientes();
+        sembrarCitas();
+
+        // Cachés en memoria cargadas con los datos sembrados (igual que tras una importación)
+        contexto.getBean(DisponibilidadMedicoIndex.class).cargar();
+        contexto.getBean(EstadisticasCitasCache.class).reconciliar();
+        contexto.getBean(UltimasCitasBuffer.class).cargar();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    /**
+     * Autenticación del administrador, para los métodos protegidos con @PreAuthorize
+     * @return Authentication lista para el SecurityContext
+     */
+    Authentication autenticacionAdmin() {
+        CustomUserDetails userDetails = new CustomUserDetails(admin);
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+
+    /**
+     * Calcula la fecha/hora de un hueco de la agenda (numerados desde mañana a las 8:00)
+     * @param hueco Número de hueco dentro de la agenda de un médico
+     * @return Fecha/hora de inicio del hueco
+     */
+    LocalDateTime fechaHoraDeHueco(long hueco) {
+        LocalDate dia = LocalDate.now().plusDays(1 + hueco / HUECOS_POR_DIA);
+        return LocalDateTime.of(dia, LocalTime.of(8, 0)).plusMinutes(30 * (hueco % HUECOS_POR_DIA));
+    }
+
+    private void crearUsuariosYPacientes() {
+        UsuarioRepository usuarioRepository = contexto.getBean(UsuarioRepository.class);
+        PacienteRepository pacienteRepository = contexto.getBean(PacienteRepository.class);
+
+        admin = usuarioRepository.save(nuevoUsuario("bench-admin", Rol.ADMIN));
+
+        List<Usuario> nuevosMedicos = new ArrayList<>();
+        for (int i = 0; i < medicos; i++) {
+            nuevosMedicos.add(nuevoUsuario("bench-medico-" + i, Rol.MEDICO));
+        }
+        listaMedicos = usuarioRepository.saveAll(nuevosMedicos);
+
+        List<Paciente> nuevosPacientes = new ArrayList<>();
+        for (int i = 0; i < pacientes; i++) {
+            Paciente paciente = new Paciente();
+            paciente.setNombre("Paciente");
+            paciente.setApellidos("Benchmark " + i);
+            paciente.setDni(String.format("B%08d", i));
+            paciente.setMedico(listaMedicos.get(i % medicos));
+            nuevosPacientes.add(paciente);
+        }
+        pacienteIds = pacienteRepository.saveAll(nuevosPacientes).stream().map(Paciente::getId).toList();
+    }
+
+    private void sembrarCitas() {
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> lote = new ArrayList<>(TAMANO_LOTE);
+        for (int i = 0; i < citas; i++) {
+            // Cita i: médico i % medicos, hueco i / medicos dentro de su agenda
+            long hueco = i / medicos;
+            LocalDateTime inicio = fechaHoraDeHueco(hueco);
+            lote.add(new Object[]{
+                    pacienteIds.get(i % pacientes),
+                    listaMedicos.get(i % medicos).getId(),
+                    Timestamp.valueOf(inicio),
+                    30,
+                    Timestamp.valueOf(inicio.plusMinutes(30)),
+                    "Cita de benchmark",
+                    ESTADOS[(int) (hueco % ESTADOS.length)],
+                    ahora
+            });
+            if (lote.size() == TAMANO_LOTE) {
+                jdbcTemplate.batchUpdate(INSERT_CITA, lote);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CITA, lote);
+        }
+
+        long huecosSembrados = (citas + medicos - 1) / medicos;
+        diasSembrados = (int) Math.max(1, (huecosSembrados + HUECOS_POR_DIA - 1) / HUECOS_POR_DIA);
+        primerHuecoLibre = (long) diasSembrados * HUECOS_POR_DIA;
+    }
+
+    private static Usuario nuevoUsuario(String username, Rol rol) {
+        Usuario usuario = new Usuario();
+        usuario.setUsername(username);
+        usuario.setEmail(username + "@centromedico.com");
+        usuario.setPasswordHash("benchmark");
+        usuario.setNombre(username);
+        usuario.setRol(rol);
+        usuario.setActivo(true);
+        return usuario;
+    }
+}
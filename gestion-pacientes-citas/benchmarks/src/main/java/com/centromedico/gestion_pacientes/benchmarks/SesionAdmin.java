@@ -0,0 +1,26 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Sesión de administrador en cada hilo del benchmark
+ * El SecurityContext es por hilo, así que se abre en el propio hilo que mide
+ */
+@State(Scope.Thread)
+public class SesionAdmin {
+
+    @Setup(Level.Trial)
+    public void entrar(EntornoBenchmark entorno) {
+        SecurityContextHolder.getContext().setAuthentication(entorno.autenticacionAdmin());
+    }
+
+    @TearDown(Level.Trial)
+    public void salir() {
+        SecurityContextHolder.clearContext();
+    }
+}
@@ -0,0 +1,102 @@
+-- ============================================
+-- BENCHMARK: DATE(fecha_hora) = ? frente a rango [dia, dia+1)
+-- MySQL 8.0.18+ (usa EXPLAIN ANALYZE, que muestra plan y tiempos reales)
+--
+-- Crea una copia de la tabla citas en una BD aparte, la llena con 1.000.000
+-- de filas y compara el plan y la latencia de la consulta de agenda diaria:
+--   1) Forma antigua: DATE(c.fecha_hora) = ?        (no puede usar índices)
+--   2) Forma nueva:   fecha_hora >= ? AND < ?+1    (usa (medico_id, fecha_hora))
+--
+-- Ejecutar:
+--   mysql -u root -p < sql/benchmark_rango_fechas.sql
+-- ============================================
+
+DROP DATABASE IF EXISTS centro_medico_bench;
+CREATE DATABASE centro_medico_bench;
+USE centro_medico_bench;
+
+-- Copia de la estructura sin índices secundarios (para medir el "antes")
+CREATE TABLE citas (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    paciente_id BIGINT NOT NULL,
+    medico_id BIGINT NOT NULL,
+    fecha_hora DATETIME(6) NOT NULL,
+    duracion_minutos INT NOT NULL,
+    motivo VARCHAR(500) NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    observaciones TEXT,
+    fecha_creacion DATETIME(6) NOT NULL
+);
+
+-- ============================================
+-- DATOS: 1.000.000 de citas, 50 médicos, 20.000 pacientes, ~3 años
+-- ============================================
+SET SESSION cte_max_recursion_depth = 1000000;
+
+INSERT INTO citas (paciente_id, medico_id, fecha_hora, duracion_minutos, motivo, estado, fecha_creacion)
+WITH RECURSIVE serie (n) AS (
+    SELECT 1
+    UNION ALL
+    SELECT n + 1 FROM serie WHERE n < 1000000
+)
+SELECT
+    1 + (n * 7919) % 20000,
+    1 + n % 50,
+    TIMESTAMP('2024-01-01 08:00:00') + INTERVAL (n DIV 50) * 30 MINUTE,
+    30,
+    'Consulta de benchmark',
+    ELT(1 + n % 4, 'PENDIENTE', 'CONFIRMADA', 'CANCELADA', 'COMPLETADA'),
+    TIMESTAMP('2023-12-01 00:00:00') + INTERVAL n SECOND
+FROM serie;
+
+ANALYZE TABLE citas;
+
+-- ============================================
+-- ANTES: sin índice compuesto
+-- ============================================
+SELECT 'ANTES - DATE(fecha_hora) sin indice' AS caso;
+EXPLAIN ANALYZE
+SELECT * FROM citas
+WHERE medico_id = 7 AND DATE(fecha_hora) = '2025-06-10'
+ORDER BY fecha_hora;
+
+SELECT 'ANTES - rango sin indice' AS caso;
+EXPLAIN ANALYZE
+SELECT * FROM citas
+WHERE medico_id = 7 AND fecha_hora >= '2025-06-10' AND fecha_hora < '2025-06-11'
+ORDER BY fecha_hora;
+
+-- ============================================
+-- ÍNDICES compuestos (prefijos de los declarados en la entidad Cita)
+-- ============================================
+CREATE INDEX idx_citas_medico_fecha ON citas (medico_id, fecha_hora);
+CREATE INDEX idx_citas_paciente_fecha ON citas (paciente_id, fecha_hora);
+ANALYZE TABLE citas;
+
+-- ============================================
+-- DESPUÉS: con índice compuesto
+-- La forma DATE(...) sigue sin poder usar el rango del índice;
+-- la forma semiabierta hace un range scan de unas pocas filas
+-- ============================================
+SELECT 'DESPUES - DATE(fecha_hora) con indice' AS caso;
+EXPLAIN ANALYZE
+SELECT * FROM citas
+WHERE medico_id = 7 AND DATE(fecha_hora) = '2025-06-10'
+ORDER BY fecha_hora;
+
+SELECT 'DESPUES - rango con indice' AS caso;
+EXPLAIN ANALYZE
+SELECT * FROM citas
+WHERE medico_id = 7 AND fecha_hora >= '2025-06-10' AND fecha_hora < '2025-06-11'
+ORDER BY fecha_hora;
+
+SELECT 'DESPUES - paciente, rango con indice' AS caso;
+EXPLAIN ANALYZE
+SELECT * FROM citas
+WHERE paciente_id = 1234 AND fecha_hora >= '2025-06-10' AND fecha_hora < '2025-06-11'
+ORDER BY fecha_hora;
+
+SELECT 'DESPUES - conteo diario, rango con indice' AS caso;
+EXPLAIN ANALYZE
+SELECT COUNT(*) FROM citas
+WHERE medico_id = 7 AND fecha_hora >= '2025-06-10' AND fecha_hora < '2025-06-11';
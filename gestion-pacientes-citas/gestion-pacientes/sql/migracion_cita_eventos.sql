@@ -0,0 +1,50 @@
+-- ============================================
+-- MIGRACIÓN: historial de citas en cita_eventos (MySQL)
+-- Antes, cancelar o completar una cita concatenaba "[CANCELACIÓN] ..." o
+-- "[COMPLETADA] ..." al final de citas.observaciones. Ahora cada cambio de
+-- estado es una fila de cita_eventos y observaciones solo guarda la nota
+-- inicial de la cita.
+--
+-- La aplicación ya crea la tabla (ddl-auto=update). Este script la crea a
+-- mano y mueve a cita_eventos el texto acumulado de las citas antiguas,
+-- dejando en observaciones solo lo que había antes de la primera marca.
+-- ============================================
+USE centro_medico;
+
+CREATE TABLE IF NOT EXISTS cita_eventos (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    cita_id BIGINT NOT NULL,
+    estado_anterior VARCHAR(20) NULL,
+    estado_nuevo VARCHAR(20) NOT NULL,
+    nota TEXT NULL,
+    autor VARCHAR(50) NULL,
+    fecha DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    KEY idx_cita_eventos_cita_fecha (cita_id, fecha),
+    CONSTRAINT fk_cita_eventos_cita FOREIGN KEY (cita_id) REFERENCES citas (id) ON DELETE CASCADE
+);
+
+-- Posición de la primera marca añadida por la versión anterior
+-- (LOCATE devuelve 0 si no aparece; se usa NULLIF para ignorarla en LEAST)
+CREATE TEMPORARY TABLE citas_marca AS
+SELECT id,
+       LEAST(
+           COALESCE(NULLIF(LOCATE('[CANCELACIÓN]', observaciones), 0), 2147483647),
+           COALESCE(NULLIF(LOCATE('[COMPLETADA]', observaciones), 0), 2147483647)
+       ) AS pos
+FROM citas
+WHERE observaciones LIKE '%[CANCELACIÓN]%' OR observaciones LIKE '%[COMPLETADA]%';
+
+-- Un evento por cita con el texto histórico completo
+-- (el estado anterior no se conoce: se registra como modificación en el estado actual)
+INSERT INTO cita_eventos (cita_id, estado_anterior, estado_nuevo, nota, autor, fecha)
+SELECT c.id, c.estado, c.estado, SUBSTRING(c.observaciones, m.pos), NULL, c.fecha_creacion
+FROM citas c
+JOIN citas_marca m ON m.id = c.id;
+
+-- Observaciones recortadas a la nota inicial
+UPDATE citas c
+JOIN citas_marca m ON m.id = c.id
+SET c.observaciones = NULLIF(TRIM(TRAILING '\n' FROM LEFT(c.observaciones, m.pos - 1)), '');
+
+DROP TEMPORARY TABLE citas_marca;
@@ -0,0 +1,30 @@
+-- ============================================
+-- MIGRACIÓN: columna fecha_fin en citas (MySQL)
+-- fecha_fin = fecha_hora + duracion_minutos, mantenida por la entidad Cita
+-- (@PrePersist / @PreUpdate). Permite buscar solapamientos con un rango
+-- indexable en lugar de calcular DATE_ADD fila a fila.
+--
+-- La columna y el índice idx_citas_medico_rango los crea la aplicación
+-- (ddl-auto=update, @Table(indexes) de Cita), y FechaFinBackfill rellena las
+-- citas existentes al arrancar. Este script hace el relleno a mano, por
+-- ejemplo para preparar la BD antes de desplegar; se puede ejecutar
+-- cuantas veces haga falta.
+-- Mientras quede alguna fila sin rellenar, las consultas de solapamiento
+-- calculan su fin a partir de duracion_minutos.
+-- ============================================
+USE centro_medico;
+
+-- Relleno de todas las filas pendientes (solo toca las que siguen en NULL)
+UPDATE citas
+SET fecha_fin = DATE_ADD(fecha_hora, INTERVAL duracion_minutos MINUTE)
+WHERE fecha_fin IS NULL;
+
+-- El índice (medico_id, fecha_hora) queda cubierto por idx_citas_medico_rango.
+-- Solo se borra si aún existe
+SET @existe := (SELECT COUNT(*) FROM information_schema.statistics
+                WHERE table_schema = DATABASE() AND table_name = 'citas'
+                  AND index_name = 'idx_citas_medico_fecha');
+SET @sentencia := IF(@existe > 0, 'DROP INDEX idx_citas_medico_fecha ON citas', 'DO 0');
+PREPARE quitar_indice FROM @sentencia;
+EXECUTE quitar_indice;
+DEALLOCATE PREPARE quitar_indice;
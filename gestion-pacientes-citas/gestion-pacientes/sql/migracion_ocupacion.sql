@@ -0,0 +1,37 @@
+-- ============================================
+-- MIGRACIÓN: ocupación diaria de los médicos (MySQL)
+-- - ocupacion_diaria: una fila por médico y día con citas; la mantiene
+--   OcupacionDiariaService y los informes de ocupación solo leen esta tabla
+-- - La carga inicial recorre citas una vez; después cada cambio de cita
+--   recalcula solo su día y la tarea nocturna revisa los días recientes
+--
+-- La aplicación ya crea la tabla (ddl-auto=update), pero no la rellena
+-- con las citas anteriores: la carga inicial se hace con este script.
+-- ============================================
+USE centro_medico;
+
+CREATE TABLE IF NOT EXISTS ocupacion_diaria (
+    medico_id BIGINT NOT NULL,
+    fecha DATE NOT NULL,
+    citas_totales INT NOT NULL,
+    citas_atendidas INT NOT NULL,
+    citas_canceladas INT NOT NULL,
+    citas_no_presentadas INT NOT NULL,
+    minutos_reservados INT NOT NULL,
+    actualizado DATETIME(6) NOT NULL,
+    PRIMARY KEY (medico_id, fecha),
+    INDEX idx_ocupacion_fecha (fecha)
+);
+
+-- Carga inicial (misma agregación que OcupacionDiariaRepository.calcularDeMedico)
+DELETE FROM ocupacion_diaria;
+INSERT INTO ocupacion_diaria (medico_id, fecha, citas_totales, citas_atendidas, citas_canceladas,
+                              citas_no_presentadas, minutos_reservados, actualizado)
+SELECT c.medico_id, CAST(c.fecha_hora AS DATE), COUNT(*),
+       SUM(CASE WHEN c.estado = 'COMPLETADA' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN c.estado = 'CANCELADA' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN c.estado IN ('PENDIENTE', 'CONFIRMADA') AND c.fecha_fin < NOW() THEN 1 ELSE 0 END),
+       SUM(CASE WHEN c.estado <> 'CANCELADA' THEN c.duracion_minutos ELSE 0 END),
+       NOW()
+FROM citas c
+GROUP BY c.medico_id, CAST(c.fecha_hora AS DATE);
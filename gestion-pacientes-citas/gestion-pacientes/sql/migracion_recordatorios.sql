@@ -0,0 +1,17 @@
+-- ============================================
+-- MIGRACIÓN: recordatorios y caducidad de citas (MySQL)
+-- - idx_citas_estado_fecha: la tarea programada busca las citas por estado
+--   y rango de fecha_hora (ventana de recordatorios, pendientes vencidas)
+--   sin recorrer toda la tabla
+-- - citas.recordatorio_enviado: momento en que se envió el recordatorio de
+--   cada cita (NULL si aún no), para que un reinicio no repita recordatorios
+--   y no se pierdan los de citas reservadas con menos de 24 h de antelación
+--
+-- La aplicación ya crea ambos (ddl-auto=update); este script hace lo
+-- mismo a mano, por ejemplo para preparar la BD antes de desplegar.
+-- ============================================
+USE centro_medico;
+
+CREATE INDEX idx_citas_estado_fecha ON citas (estado, fecha_hora);
+
+ALTER TABLE citas ADD COLUMN recordatorio_enviado DATETIME(6) NULL;
@@ -0,0 +1,13 @@
+-- ============================================
+-- MIGRACIÓN: columna version en citas (MySQL)
+-- Bloqueo optimista de la entidad Cita (@Version): cada UPDATE incrementa
+-- la versión y lleva "WHERE version = ?", así que una escritura basada en
+-- una copia desactualizada no sobrescribe el cambio de otro usuario.
+--
+-- La aplicación ya crea la columna (ddl-auto=update); al añadir una columna
+-- NOT NULL, MySQL rellena las filas existentes con 0. Este script hace lo
+-- mismo a mano, por ejemplo para preparar la BD antes de desplegar.
+-- ============================================
+USE centro_medico;
+
+ALTER TABLE citas ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
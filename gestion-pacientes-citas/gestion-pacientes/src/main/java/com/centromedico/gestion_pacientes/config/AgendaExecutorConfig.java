@@ -0,0 +1,67 @@
+package com.centromedico.gestion_pacientes.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuración de los pools de hilos de agenda:
+ * consultas de agendas en paralelo (p. ej. huecos libres en varios médicos a la vez),
+ * envío de cambios a las agendas abiertas en el navegador y envío de recordatorios
+ */
+@Configuration
+public class AgendaExecutorConfig {
+
+    /**
+     * Pool acotado para lecturas de agenda en paralelo
+     * Si el pool y la cola están llenos, la tarea se ejecuta en el hilo que la envía
+     */
+    @Bean(name = "agendaExecutor")
+    public ThreadPoolTaskExecutor agendaExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("agenda-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool que vacía las colas de las agendas suscritas (SSE)
+     * Cada tarea envía los mensajes pendientes de una sola conexión, así que un navegador lento
+     * no retrasa a los demás. Hay como mucho una tarea por conexión; si aun así no caben,
+     * se rechazan y AgendaEnVivoService cierra esa conexión para que el navegador recargue
+     */
+    @Bean(name = "agendaEnVivoExecutor")
+    public ThreadPoolTaskExecutor agendaEnVivoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix("agenda-en-vivo-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool acotado que procesa los lotes de recordatorios de citas
+     * Si el pool y la cola están llenos, el lote se procesa en el hilo de la tarea programada,
+     * que así deja de leer lotes nuevos hasta que haya sitio
+     */
+    @Bean(name = "recordatoriosExecutor")
+    public ThreadPoolTaskExecutor recordatoriosExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("recordatorios-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
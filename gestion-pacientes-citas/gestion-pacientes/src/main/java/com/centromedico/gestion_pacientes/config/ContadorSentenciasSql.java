@@ -0,0 +1,39 @@
+package com.centromedico.gestion_pacientes.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Cuenta las sentencias SQL que Hibernate prepara durante una petición
+ * Hibernate llama a inspect() al preparar cada sentencia (un lote JDBC cuenta una vez);
+ * el contador es del hilo y solo existe entre iniciar() y terminar()
+ */
+public class ContadorSentenciasSql implements StatementInspector {
+
+    private static final ThreadLocal<int[]> ACTUAL = new ThreadLocal<>();
+
+    /**
+     * Empieza a contar en el hilo actual
+     */
+    public static void iniciar() {
+        ACTUAL.set(new int[1]);
+    }
+
+    /**
+     * Deja de contar en el hilo actual
+     * @return Sentencias preparadas desde iniciar()
+     */
+    public static int terminar() {
+        int[] contador = ACTUAL.get();
+        ACTUAL.remove();
+        return contador != null ? contador[0] : 0;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] contador = ACTUAL.get();
+        if (contador != null) {
+            contador[0]++;
+        }
+        return sql;
+    }
+}
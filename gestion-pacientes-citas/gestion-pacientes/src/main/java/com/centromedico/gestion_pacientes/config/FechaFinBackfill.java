@@ -0,0 +1,67 @@
+package com.centromedico.gestion_pacientes.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Migración de datos: rellena la columna fecha_fin de las citas creadas
+ * antes de que existiera, por lotes, al arrancar la aplicación
+ * El fin se calcula en Java (fecha_hora + duracion_minutos) para no depender de
+ * funciones de fecha de MySQL; así funciona igual con H2 en las pruebas
+ * Es idempotente: solo toca filas con fecha_fin NULL y, si no hay, no hace nada
+ * Se ejecuta antes que DataInitializer
+ */
+@Component
+@Order(0)
+@RequiredArgsConstructor
+public class FechaFinBackfill implements ApplicationRunner {
+
+    private static final int TAMANO_LOTE = 5000;
+
+    private static final String SELECT_PENDIENTES =
+            "SELECT id, fecha_hora, duracion_minutos FROM citas " +
+            "WHERE fecha_fin IS NULL AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_FECHA_FIN =
+            "UPDATE citas SET fecha_fin = ? WHERE id = ? AND fecha_fin IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long total = 0;
+        long ultimoId = 0;
+        List<Object[]> lote;
+        do {
+            lote = jdbcTemplate.query(SELECT_PENDIENTES, (rs, fila) -> new Object[] {
+                    Timestamp.valueOf(rs.getTimestamp("fecha_hora").toLocalDateTime()
+                            .plusMinutes(rs.getInt("duracion_minutos"))),
+                    rs.getLong("id")
+            }, ultimoId, TAMANO_LOTE);
+            if (lote.isEmpty()) {
+                break;
+            }
+
+            // Una transacción por lote: no se bloquea la tabla durante toda la migración
+            List<Object[]> actualizar = lote;
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPDATE_FECHA_FIN, actualizar));
+
+            total += lote.size();
+            ultimoId = (Long) lote.get(lote.size() - 1)[1];
+        } while (lote.size() == TAMANO_LOTE);
+
+        if (total > 0) {
+            System.out.println("Migración fecha_fin: " + total + " citas actualizadas");
+        }
+    }
+}
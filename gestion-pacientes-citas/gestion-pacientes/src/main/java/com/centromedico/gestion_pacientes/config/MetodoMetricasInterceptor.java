@@ -0,0 +1,113 @@
+package com.centromedico.gestion_pacientes.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide cada llamada a los métodos de un servicio o repositorio:
+ * tiempo (con o sin error) y, en repositorios, filas devueltas
+ * Las series de cada método se buscan una vez y quedan en caché
+ */
+class MetodoMetricasInterceptor implements MethodInterceptor {
+
+    private final MetricasRegistro registro;
+    private final String capa;
+    private final String clase;
+    private final boolean contarFilas;
+
+    // Método -> series ya registradas
+    private final Map<Method, Series> porMetodo = new ConcurrentHashMap<>();
+
+    /**
+     * @param registro Registro de métricas
+     * @param capa Etiqueta de capa (servicio, repositorio)
+     * @param clase Nombre fijo de la clase (p. ej. la interfaz del repositorio), o null para usar la del método
+     * @param contarFilas Si se registran las filas devueltas
+     */
+    MetodoMetricasInterceptor(MetricasRegistro registro, String capa, String clase, boolean contarFilas) {
+        this.registro = registro;
+        this.capa = capa;
+        this.clase = clase;
+        this.contarFilas = contarFilas;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method metodo = invocation.getMethod();
+        if (metodo.getDeclaringClass() == Object.class) {
+            return invocation.proceed();
+        }
+
+        Series series = porMetodo.computeIfAbsent(metodo, this::registrar);
+        long inicio = System.nanoTime();
+        try {
+            Object resultado = invocation.proceed();
+            series.tiempo.registrarNanos(System.nanoTime() - inicio);
+            if (series.filas != null) {
+                long filas = contarFilas(resultado);
+                if (filas >= 0) {
+                    series.filas.registrar(filas);
+                }
+            }
+            return resultado;
+        } catch (Throwable e) {
+            series.tiempo.registrarNanos(System.nanoTime() - inicio);
+            series.errores.increment();
+            throw e;
+        }
+    }
+
+    private Series registrar(Method metodo) {
+        String nombreClase = clase != null ? clase : metodo.getDeclaringClass().getSimpleName();
+        String[] etiquetas = {"capa", capa, "clase", nombreClase, "metodo", metodo.getName()};
+
+        MetricasRegistro.Histograma tiempo = registro.histograma("gestion_metodo_segundos",
+                "Tiempo de los métodos de servicios y repositorios", MetricasRegistro.LIMITES_SEGUNDOS, etiquetas);
+        LongAdder errores = registro.contador("gestion_metodo_errores_total",
+                "Llamadas que terminaron con excepción", etiquetas);
+        MetricasRegistro.Histograma filas = null;
+        if (contarFilas && metodo.getReturnType() != void.class) {
+            filas = registro.histograma("gestion_repositorio_filas",
+                    "Filas devueltas por los métodos de repositorio", MetricasRegistro.LIMITES_CANTIDAD, etiquetas);
+        }
+        return new Series(tiempo, errores, filas);
+    }
+
+    /**
+     * Filas de un resultado de repositorio
+     * @return Número de filas, o -1 si el resultado no son filas (recuentos, UPDATE, streams)
+     */
+    static long contarFilas(Object resultado) {
+        if (resultado == null) {
+            return 0;
+        }
+        if (resultado instanceof Collection<?> coleccion) {
+            return coleccion.size();
+        }
+        if (resultado instanceof Slice<?> pagina) {
+            return pagina.getNumberOfElements();
+        }
+        if (resultado instanceof Optional<?> opcional) {
+            return opcional.isPresent() ? 1 : 0;
+        }
+        if (resultado.getClass().isArray()) {
+            return Array.getLength(resultado);
+        }
+        if (resultado instanceof Number || resultado instanceof Boolean || resultado instanceof AutoCloseable) {
+            return -1;
+        }
+        return 1;
+    }
+
+    private record Series(MetricasRegistro.Histograma tiempo, LongAdder errores, MetricasRegistro.Histograma filas) {
+    }
+}
@@ -0,0 +1,137 @@
+package com.centromedico.gestion_pacientes.config;
+
+import com.centromedico.gestion_pacientes.service.AgendaEnVivoService;
+import com.centromedico.gestion_pacientes.service.EstadisticasCitasCache;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Configuración de las métricas (siempre activas), expuestas en /metricas en formato Prometheus:
+ * - Tiempo de cada método de servicio y de repositorio, y filas devueltas por los repositorios
+ * - Tiempo de cada endpoint y sentencias SQL por petición
+ * - Espera y uso de conexiones del pool Hikari
+ * - Estado de la aplicación: agendas en vivo, caché del dashboard y colas de tareas
+ */
+@Configuration
+public class MetricasConfig {
+
+    /**
+     * Registro único de métricas
+     * Es estático e infraestructura porque lo usan los post-procesadores de beans de esta clase
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static MetricasRegistro metricasRegistro() {
+        return new MetricasRegistro();
+    }
+
+    /**
+     * Mide los métodos públicos de las clases @Service
+     * Se aplica en el mismo proxy que @Transactional y @PreAuthorize, por fuera de ambos,
+     * así que el tiempo incluye el commit y la comprobación de permisos
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor metricasServiciosAdvisor(MetricasRegistro metricasRegistro) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                new AnnotationMatchingPointcut(Service.class, true),
+                new MetodoMetricasInterceptor(metricasRegistro, "servicio", null, false));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    /**
+     * Añade las métricas a los repositorios de Spring Data y al pool de conexiones
+     * - Repositorios: interceptor en el proxy de cada repositorio, etiquetado con su interfaz
+     * - Hikari: se instala antes de que el pool arranque (arranca con la primera conexión)
+     */
+    @Bean
+    public static BeanPostProcessor metricasRepositoriosYPool(ObjectProvider<MetricasRegistro> metricasRegistro) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositorio) {
+                    repositorio.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, informacion) -> proxyFactory.addAdvice(new MetodoMetricasInterceptor(
+                                    metricasRegistro.getObject(), "repositorio",
+                                    informacion.getRepositoryInterface().getSimpleName(), true))));
+                } else if (bean instanceof HikariDataSource dataSource) {
+                    dataSource.setMetricsTrackerFactory(new MetricasHikari(metricasRegistro.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Cuenta las sentencias SQL que prepara Hibernate (por petición, ver MetricasPeticionFilter)
+     */
+    @Bean
+    public HibernatePropertiesCustomizer contadorSentenciasSql() {
+        return propiedades -> propiedades.put(AvailableSettings.STATEMENT_INSPECTOR, new ContadorSentenciasSql());
+    }
+
+    /**
+     * Filtro de métricas por endpoint, por delante de todos los demás (incluida la seguridad)
+     */
+    @Bean
+    public FilterRegistrationBean<MetricasPeticionFilter> metricasPeticionFilter(MetricasRegistro metricasRegistro) {
+        FilterRegistrationBean<MetricasPeticionFilter> registro =
+                new FilterRegistrationBean<>(new MetricasPeticionFilter(metricasRegistro));
+        registro.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registro;
+    }
+
+    /**
+     * Indicadores de estado de la aplicación, leídos en cada exportación
+     */
+    @Bean
+    public ApplicationRunner indicadoresAplicacion(MetricasRegistro metricasRegistro,
+                                                   AgendaEnVivoService agendaEnVivoService,
+                                                   EstadisticasCitasCache estadisticasCache,
+                                                   ThreadPoolTaskExecutor agendaExecutor,
+                                                   ThreadPoolTaskExecutor agendaEnVivoExecutor,
+                                                   ThreadPoolTaskExecutor recordatoriosExecutor) {
+        return args -> {
+            metricasRegistro.indicador("gestion_agenda_en_vivo_suscripciones",
+                    "Agendas abiertas recibiendo cambios (SSE)", agendaEnVivoService::contarSuscripciones);
+
+            metricasRegistro.contadorDe("gestion_cache_estadisticas_total",
+                    "Lecturas de la caché de estadísticas del dashboard",
+                    () -> estadisticasCache.obtenerMetricas().aciertos(), "resultado", "acierto");
+            metricasRegistro.contadorDe("gestion_cache_estadisticas_total",
+                    "Lecturas de la caché de estadísticas del dashboard",
+                    () -> estadisticasCache.obtenerMetricas().fallos(), "resultado", "fallo");
+            metricasRegistro.indicador("gestion_cache_estadisticas_antiguedad_segundos",
+                    "Segundos desde la última reconciliación de la caché con la BD",
+                    () -> estadisticasCache.obtenerMetricas().antiguedadSegundos());
+
+            registrarCola(metricasRegistro, "agenda", agendaExecutor);
+            registrarCola(metricasRegistro, "agenda-en-vivo", agendaEnVivoExecutor);
+            registrarCola(metricasRegistro, "recordatorios", recordatoriosExecutor);
+        };
+    }
+
+    private static void registrarCola(MetricasRegistro metricasRegistro, String nombre, ThreadPoolTaskExecutor executor) {
+        metricasRegistro.indicador("gestion_tareas_en_cola", "Tareas esperando en la cola de cada pool de hilos",
+                executor::getQueueSize, "pool", nombre);
+        metricasRegistro.indicador("gestion_tareas_activas", "Hilos ejecutando tareas en cada pool",
+                executor::getActiveCount, "pool", nombre);
+    }
+}
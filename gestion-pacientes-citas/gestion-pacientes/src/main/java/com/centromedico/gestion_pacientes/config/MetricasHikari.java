@@ -0,0 +1,56 @@
+package com.centromedico.gestion_pacientes.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del pool de conexiones Hikari: espera para obtener conexión,
+ * tiempo de uso, conexiones agotadas y estado del pool
+ */
+class MetricasHikari implements MetricsTrackerFactory {
+
+    private final MetricasRegistro registro;
+
+    MetricasHikari(MetricasRegistro registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public IMetricsTracker create(String pool, PoolStats estado) {
+        registro.indicador("gestion_bd_conexiones", "Conexiones del pool por estado",
+                estado::getActiveConnections, "pool", pool, "estado", "activas");
+        registro.indicador("gestion_bd_conexiones", "Conexiones del pool por estado",
+                estado::getIdleConnections, "pool", pool, "estado", "libres");
+        registro.indicador("gestion_bd_conexiones_maximas", "Tamaño máximo del pool",
+                estado::getMaxConnections, "pool", pool);
+        registro.indicador("gestion_bd_hilos_esperando", "Hilos esperando una conexión",
+                estado::getPendingThreads, "pool", pool);
+
+        MetricasRegistro.Histograma espera = registro.histograma("gestion_bd_espera_conexion_segundos",
+                "Tiempo de espera para obtener una conexión del pool", MetricasRegistro.LIMITES_SEGUNDOS, "pool", pool);
+        MetricasRegistro.Histograma uso = registro.histograma("gestion_bd_uso_conexion_segundos",
+                "Tiempo que se retiene cada conexión", MetricasRegistro.LIMITES_SEGUNDOS, "pool", pool);
+        LongAdder agotadas = registro.contador("gestion_bd_conexiones_agotadas_total",
+                "Peticiones de conexión que superaron el tiempo de espera", "pool", pool);
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long nanos) {
+                espera.registrarNanos(nanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long millis) {
+                uso.registrar(millis / 1000.0);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                agotadas.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.centromedico.gestion_pacientes.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Mide cada petición HTTP: tiempo por endpoint y sentencias SQL ejecutadas
+ * El endpoint es el patrón de la ruta (/citas/ver/{id}), no la URL, para no crear una serie por ID
+ */
+public class MetricasPeticionFilter extends OncePerRequestFilter {
+
+    private static final String SIN_RUTA = "sin-ruta";
+
+    private final MetricasRegistro registro;
+
+    public MetricasPeticionFilter(MetricasRegistro registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long inicio = System.nanoTime();
+        ContadorSentenciasSql.iniciar();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long duracion = System.nanoTime() - inicio;
+            int sentencias = ContadorSentenciasSql.terminar();
+
+            Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String ruta = patron != null ? patron.toString() : SIN_RUTA;
+
+            registro.histograma("gestion_peticion_segundos", "Tiempo de las peticiones HTTP por endpoint",
+                            MetricasRegistro.LIMITES_SEGUNDOS,
+                            "metodo", request.getMethod(), "ruta", ruta, "estado", String.valueOf(response.getStatus()))
+                    .registrarNanos(duracion);
+            registro.histograma("gestion_peticion_sentencias_sql", "Sentencias SQL preparadas por petición",
+                            MetricasRegistro.LIMITES_CANTIDAD,
+                            "metodo", request.getMethod(), "ruta", ruta)
+                    .registrar(sentencias);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.centromedico.gestion_pacientes.config;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registro de métricas de la aplicación, exportadas en formato texto de Prometheus (/metricas)
+ * Guarda histogramas (tiempos, filas, sentencias SQL), contadores e indicadores.
+ *
+ * Está siempre activo: cada medida son unos pocos LongAdder sin bloqueos, y cada serie
+ * (combinación de nombre y etiquetas) se crea una sola vez. Los percentiles se calculan
+ * en Prometheus a partir de los histogramas (histogram_quantile).
+ */
+public class MetricasRegistro {
+
+    /** Límites de los histogramas de tiempo, en segundos */
+    public static final double[] LIMITES_SEGUNDOS =
+            {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /** Límites de los histogramas de cantidades (filas devueltas, sentencias SQL) */
+    public static final double[] LIMITES_CANTIDAD =
+            {0, 1, 2, 5, 10, 25, 50, 100, 250, 1000, 10000};
+
+    /** Content-Type del formato texto de Prometheus */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Nombre de la métrica -> familia (ordenadas para que la exportación sea estable)
+    private final Map<String, Familia> familias = new ConcurrentSkipListMap<>();
+
+    // ============================================
+    // ALTA DE SERIES
+    // ============================================
+
+    /**
+     * Obtiene (o crea) un histograma
+     * @param nombre Nombre de la métrica
+     * @param ayuda Descripción de la métrica
+     * @param limites Límites superiores de las cubetas, en orden creciente
+     * @param etiquetas Pares nombre, valor de etiquetas
+     * @return Histograma de la serie
+     */
+    public Histograma histograma(String nombre, String ayuda, double[] limites, String... etiquetas) {
+        return (Histograma) familia(nombre, ayuda, "histogram")
+                .series.computeIfAbsent(etiquetas(etiquetas), clave -> new Histograma(limites));
+    }
+
+    /**
+     * Obtiene (o crea) un contador que se incrementa desde el código
+     * @param nombre Nombre de la métrica (terminado en _total)
+     * @param ayuda Descripción de la métrica
+     * @param etiquetas Pares nombre, valor de etiquetas
+     * @return Contador de la serie
+     */
+    public LongAdder contador(String nombre, String ayuda, String... etiquetas) {
+        return (LongAdder) familia(nombre, ayuda, "counter")
+                .series.computeIfAbsent(etiquetas(etiquetas), clave -> new LongAdder());
+    }
+
+    /**
+     * Registra un contador cuyo valor se lee al exportar (p. ej. los aciertos de una caché)
+     * @param nombre Nombre de la métrica (terminado en _total)
+     * @param ayuda Descripción de la métrica
+     * @param valor Función que devuelve el valor acumulado
+     * @param etiquetas Pares nombre, valor de etiquetas
+     */
+    public void contadorDe(String nombre, String ayuda, DoubleSupplier valor, String... etiquetas) {
+        familia(nombre, ayuda, "counter").series.put(etiquetas(etiquetas), valor);
+    }
+
+    /**
+     * Registra un indicador cuyo valor se lee al exportar (conexiones abiertas, tamaño de una cola...)
+     * @param nombre Nombre de la métrica
+     * @param ayuda Descripción de la métrica
+     * @param valor Función que devuelve el valor actual
+     * @param etiquetas Pares nombre, valor de etiquetas
+     */
+    public void indicador(String nombre, String ayuda, DoubleSupplier valor, String... etiquetas) {
+        familia(nombre, ayuda, "gauge").series.put(etiquetas(etiquetas), valor);
+    }
+
+    private Familia familia(String nombre, String ayuda, String tipo) {
+        Familia familia = familias.computeIfAbsent(nombre, clave -> new Familia(ayuda, tipo));
+        if (!familia.tipo.equals(tipo)) {
+            throw new IllegalArgumentException("La métrica " + nombre + " ya existe con tipo " + familia.tipo);
+        }
+        return familia;
+    }
+
+    private static String etiquetas(String... pares) {
+        if (pares.length % 2 != 0) {
+            throw new IllegalArgumentException("Las etiquetas deben ir en pares nombre, valor");
+        }
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < pares.length; i += 2) {
+            if (i > 0) {
+                texto.append(',');
+            }
+            texto.append(pares[i]).append("=\"").append(escapar(pares[i + 1])).append('"');
+        }
+        return texto.toString();
+    }
+
+    private static String escapar(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        return valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // ============================================
+    // EXPORTACIÓN
+    // ============================================
+
+    /**
+     * Exporta todas las métricas en formato texto de Prometheus
+     * @return Texto con una línea por valor
+     */
+    public String exportar() {
+        StringBuilder salida = new StringBuilder(16 * 1024);
+        familias.forEach((nombre, familia) -> {
+            salida.append("# HELP ").append(nombre).append(' ').append(familia.ayuda).append('\n');
+            salida.append("# TYPE ").append(nombre).append(' ').append(familia.tipo).append('\n');
+            familia.series.forEach((etiquetas, serie) -> {
+                if (serie instanceof Histograma histograma) {
+                    histograma.exportar(salida, nombre, etiquetas);
+                } else if (serie instanceof LongAdder contador) {
+                    linea(salida, nombre, etiquetas, contador.sum());
+                } else if (serie instanceof DoubleSupplier funcion) {
+                    linea(salida, nombre, etiquetas, funcion.getAsDouble());
+                }
+            });
+        });
+        return salida.toString();
+    }
+
+    private static void linea(StringBuilder salida, String nombre, String etiquetas, double valor) {
+        salida.append(nombre);
+        if (!etiquetas.isEmpty()) {
+            salida.append('{').append(etiquetas).append('}');
+        }
+        salida.append(' ');
+        if (valor == Math.rint(valor) && !Double.isInfinite(valor)) {
+            salida.append((long) valor);
+        } else {
+            salida.append(valor);
+        }
+        salida.append('\n');
+    }
+
+    /**
+     * Métrica con sus series, una por combinación de etiquetas
+     */
+    private static final class Familia {
+
+        private final String ayuda;
+        private final String tipo;
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Familia(String ayuda, String tipo) {
+            this.ayuda = ayuda;
+            this.tipo = tipo;
+        }
+    }
+
+    // ============================================
+    // HISTOGRAMA
+    // ============================================
+
+    /**
+     * Histograma de cubetas fijas
+     * Registrar un valor es una búsqueda binaria y dos incrementos, sin bloqueos
+     */
+    public static final class Histograma {
+
+        private final double[] limites;
+        private final LongAdder[] cubetas;
+        private final LongAdder cuenta = new LongAdder();
+        private final DoubleAdder suma = new DoubleAdder();
+
+        private Histograma(double[] limites) {
+            this.limites = limites;
+            this.cubetas = new LongAdder[limites.length];
+            for (int i = 0; i < cubetas.length; i++) {
+                cubetas[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Registra un valor
+         * @param valor Valor medido (segundos, filas...)
+         */
+        public void registrar(double valor) {
+            int cubeta = Arrays.binarySearch(limites, valor);
+            if (cubeta < 0) {
+                cubeta = -cubeta - 1;
+            }
+            // Por encima del último límite solo cuenta en +Inf
+            if (cubeta < cubetas.length) {
+                cubetas[cubeta].increment();
+            }
+            cuenta.increment();
+            suma.add(valor);
+        }
+
+        /**
+         * Registra una duración medida con System.nanoTime()
+         * @param nanos Duración en nanosegundos
+         */
+        public void registrarNanos(long nanos) {
+            registrar(nanos / 1_000_000_000.0);
+        }
+
+        /**
+         * Número de valores registrados
+         * @return Total de valores
+         */
+        public long getCuenta() {
+            return cuenta.sum();
+        }
+
+        private void exportar(StringBuilder salida, String nombre, String etiquetas) {
+            String prefijo = etiquetas.isEmpty() ? "" : etiquetas + ",";
+            long acumulado = 0;
+            for (int i = 0; i < limites.length; i++) {
+                acumulado += cubetas[i].sum();
+                linea(salida, nombre + "_bucket", prefijo + "le=\"" + limites[i] + "\"", acumulado);
+            }
+            long total = cuenta.sum();
+            linea(salida, nombre + "_bucket", prefijo + "le=\"+Inf\"", Math.max(total, acumulado));
+            linea(salida, nombre + "_sum", etiquetas, suma.sum());
+            linea(salida, nombre + "_count", etiquetas, Math.max(total, acumulado));
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package com.centromedico.gestion_pacientes.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationManagers;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 /**
  * Configuración de Spring Security
@@ -20,14 +30,18 @@ import org.springframework.security.web.SecurityFilterChain;
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private static final String PREFIJO_BEARER = "Bearer ";
+
     private final CustomUserDetailsService customUserDetailsService;
 
     /**
      * Configuración del filtro de seguridad
      * Define qué rutas están protegidas y quién puede acceder
+     * @param tokenMetricas Token del recolector de métricas (metricas.token); vacío si no hay recolector
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${metricas.token:}") String tokenMetricas) throws Exception {
         http
                 .authorizeHttpRequests(auth -> auth
                         // ============================================
@@ -62,6 +76,11 @@ public class SecurityConfig {
                         // Gestión de usuarios: Solo ADMIN
                         .requestMatchers("/usuarios/**").hasRole("ADMIN")
 
+                        // --- MÉTRICAS ---
+                        // Formato Prometheus: ADMIN o el recolector con su token
+                        .requestMatchers("/metricas").access(AuthorizationManagers.anyOf(
+                                AuthorityAuthorizationManager.hasRole("ADMIN"), tokenRecolector(tokenMetricas)))
+
                         // --- DASHBOARD ---
                         .requestMatchers("/", "/home", "/dashboard").authenticated()
 
@@ -108,6 +127,24 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Autoriza las peticiones que traen "Authorization: Bearer" con el token configurado
+     * Sin token configurado no autoriza ninguna: solo entra ADMIN
+     * La comparación es de tiempo constante para no revelar el token por tiempos de respuesta
+     */
+    private static AuthorizationManager<RequestAuthorizationContext> tokenRecolector(String token) {
+        byte[] esperado = token.getBytes(StandardCharsets.UTF_8);
+        return (autenticacion, contexto) -> {
+            String cabecera = contexto.getRequest().getHeader(HttpHeaders.AUTHORIZATION);
+            boolean valido = esperado.length > 0
+                    && cabecera != null
+                    && cabecera.startsWith(PREFIJO_BEARER)
+                    && MessageDigest.isEqual(esperado,
+                            cabecera.substring(PREFIJO_BEARER.length()).getBytes(StandardCharsets.UTF_8));
+            return new AuthorizationDecision(valido);
+        };
+    }
+
     /**
      * Bean para encriptar contraseñas con BCrypt
      */
@@ -1,27 +1,51 @@
 package com.centromedico.gestion_pacientes.controller;
 
 import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.dto.AgrupacionOcupacion;
+import com.centromedico.gestion_pacientes.dto.FrecuenciaRecurrencia;
+import com.centromedico.gestion_pacientes.dto.HuecoLibre;
+import com.centromedico.gestion_pacientes.dto.PaginaCitas;
+import com.centromedico.gestion_pacientes.dto.ReglaRecurrencia;
+import com.centromedico.gestion_pacientes.dto.ResultadoImportacion;
+import com.centromedico.gestion_pacientes.dto.ResultadoSerieCitas;
 import com.centromedico.gestion_pacientes.entity.Cita;
 import com.centromedico.gestion_pacientes.entity.EstadoCita;
 import com.centromedico.gestion_pacientes.entity.Paciente;
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.service.AgendaEnVivoService;
 import com.centromedico.gestion_pacientes.service.CitaService;
+import com.centromedico.gestion_pacientes.service.ExportacionCitasService;
+import com.centromedico.gestion_pacientes.service.ImportacionCitasService;
+import com.centromedico.gestion_pacientes.service.OcupacionDiariaService;
 import com.centromedico.gestion_pacientes.service.PacienteService;
 import com.centromedico.gestion_pacientes.service.UsuarioService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controlador para la gestión de citas médicas
@@ -35,6 +59,10 @@ public class CitaController {
     private final CitaService citaService;
     private final PacienteService pacienteService;
     private final UsuarioService usuarioService;
+    private final ImportacionCitasService importacionCitasService;
+    private final ExportacionCitasService exportacionCitasService;
+    private final AgendaEnVivoService agendaEnVivoService;
+    private final OcupacionDiariaService ocupacionDiariaService;
 
     // ============================================
     // LISTAR CITAS
@@ -47,6 +75,9 @@ public class CitaController {
      */
     @GetMapping({"", "/", "/lista"})
     public String listarCitas(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime despuesFecha,
+            @RequestParam(required = false) Long despuesId,
+            @RequestParam(defaultValue = "20") int tamano,
             @AuthenticationPrincipal CustomUserDetails userDetails,
             Model model
     ) {
@@ -57,9 +88,9 @@ public class CitaController {
             // Redirigir a su agenda de hoy
             return "redirect:/citas/mi-agenda";
         } else {
-            // ADMIN y RECEPCION ven citas pendientes
-            List<Cita> citasPendientes = citaService.obtenerCitasPendientes();
-            model.addAttribute("citas", citasPendientes);
+            // ADMIN y RECEPCION ven citas pendientes (paginadas)
+            PaginaCitas pagina = citaService.obtenerCitasPendientes(despuesFecha, despuesId, tamano);
+            agregarPagina(model, pagina, "/citas", tamano);
             model.addAttribute("titulo", "Citas Pendientes de Confirmación");
             return "citas/lista";
         }
@@ -128,6 +159,44 @@ public class CitaController {
         }
     }
 
+    // ============================================
+    // BUSCAR HUECOS LIBRES
+    // ============================================
+
+    /**
+     * Devuelve en JSON los próximos huecos libres para una cita
+     * Permite a recepción encontrar hora sin probar a agendar repetidamente
+     * Ejemplo: /citas/huecos?duracion=30&desde=2026-03-02T08:00&hasta=2026-03-06T20:00&medicoIds=2,3&cantidad=10
+     */
+    @GetMapping(value = "/huecos", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'RECEPCION')")
+    public List<HuecoLibre> buscarHuecosLibres(
+            @RequestParam(defaultValue = "30") Integer duracion,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) List<Long> medicoIds,
+            @RequestParam(defaultValue = "10") int cantidad
+    ) {
+        return citaService.buscarHuecosLibres(duracion, desde, hasta, medicoIds, cantidad);
+    }
+
+    // ============================================
+    // AGENDA EN VIVO
+    // ============================================
+
+    /**
+     * Flujo de cambios de citas (Server-Sent Events) para las agendas abiertas
+     * MEDICO recibe los de su agenda; ADMIN y RECEPCION los de un médico o los de todos
+     * Ejemplo: /citas/eventos?medicoId=2
+     */
+    @GetMapping(value = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'RECEPCION')")
+    public SseEmitter suscribirAgenda(@RequestParam(required = false) Long medicoId) {
+        return agendaEnVivoService.suscribir(medicoId);
+    }
+
     // ============================================
     // VER CITAS DE UN PACIENTE
     // ============================================
@@ -138,6 +207,9 @@ public class CitaController {
     @GetMapping("/paciente/{pacienteId}")
     public String verCitasPaciente(
             @PathVariable Long pacienteId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime despuesFecha,
+            @RequestParam(required = false) Long despuesId,
+            @RequestParam(defaultValue = "20") int tamano,
             @AuthenticationPrincipal CustomUserDetails userDetails,
             Model model,
             RedirectAttributes redirectAttributes
@@ -146,11 +218,15 @@ public class CitaController {
             Paciente paciente = pacienteService.obtenerPorId(pacienteId)
                     .orElseThrow(() -> new IllegalArgumentException("Paciente no encontrado"));
 
-            List<Cita> citas = citaService.obtenerCitasPorPaciente(pacienteId);
+            // Historial paginado (más recientes primero) y totales por estado
+            PaginaCitas pagina = citaService.obtenerCitasPorPaciente(pacienteId, despuesFecha, despuesId, tamano);
+            Map<String, Long> conteoEstados = citaService.contarCitasPorEstadoDePaciente(pacienteId);
 
             model.addAttribute("usuario", userDetails.getUsuario());
             model.addAttribute("paciente", paciente);
-            model.addAttribute("citas", citas);
+            agregarPagina(model, pagina, "/citas/paciente/" + pacienteId, tamano);
+            model.addAttribute("conteoEstados", conteoEstados);
+            model.addAttribute("totalCitas", conteoEstados.values().stream().mapToLong(Long::longValue).sum());
             model.addAttribute("titulo", "Citas de " + paciente.getNombreCompleto());
 
             return "citas/paciente";
@@ -195,6 +271,7 @@ public class CitaController {
         model.addAttribute("cita", cita);
         model.addAttribute("medicos", medicos);
         model.addAttribute("pacientes", pacientes);
+        model.addAttribute("frecuencias", FrecuenciaRecurrencia.values());
         model.addAttribute("esNueva", true);
 
         return "citas/formulario";
@@ -202,6 +279,8 @@ public class CitaController {
 
     /**
      * Procesa el formulario de creación de cita
+     * Si se indica una frecuencia, agenda una serie de citas periódicas
+     * (hasta un número de repeticiones o una fecha final)
      */
     @PostMapping("/crear")
     @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'RECEPCION')")
@@ -211,6 +290,10 @@ public class CitaController {
             @RequestParam Long medicoId,
             @RequestParam String fecha,
             @RequestParam String hora,
+            @RequestParam(required = false) FrecuenciaRecurrencia frecuencia,
+            @RequestParam(defaultValue = "1") int intervalo,
+            @RequestParam(required = false) Integer repeticiones,
+            @RequestParam(required = false) String hastaFecha,
             @AuthenticationPrincipal CustomUserDetails userDetails,
             RedirectAttributes redirectAttributes
     ) {
@@ -232,6 +315,21 @@ public class CitaController {
             cita.setMedico(medico);
             cita.setFechaHora(fechaHora);
 
+            // Serie de citas periódicas
+            if (frecuencia != null) {
+                LocalDate hasta = (hastaFecha == null || hastaFecha.isBlank()) ? null : LocalDate.parse(hastaFecha);
+                ResultadoSerieCitas resultado = citaService.agendarSerie(
+                        cita, new ReglaRecurrencia(frecuencia, intervalo, repeticiones, hasta));
+
+                redirectAttributes.addFlashAttribute("success",
+                        "Serie agendada: " + resultado.creadas().size() + " citas, desde el " +
+                        resultado.creadas().get(0).getFechaHoraFormateada());
+                if (resultado.hayConflictos()) {
+                    redirectAttributes.addFlashAttribute("conflictosSerie", resultado.conflictos());
+                }
+                return "redirect:/citas/paciente/" + pacienteId;
+            }
+
             // Guardar
             Cita citaCreada = citaService.agendarCita(cita);
 
@@ -266,6 +364,7 @@ public class CitaController {
 
             model.addAttribute("usuario", userDetails.getUsuario());
             model.addAttribute("cita", cita);
+            model.addAttribute("historial", citaService.obtenerHistorial(id));
             model.addAttribute("titulo", "Detalle de Cita #" + id);
 
             return "citas/detalle";
@@ -443,6 +542,130 @@ public class CitaController {
         }
     }
 
+    // ============================================
+    // IMPORTACIÓN MASIVA
+    // ============================================
+
+    /**
+     * Muestra el formulario de importación de citas (solo ADMIN)
+     */
+    @GetMapping("/importar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public String mostrarImportacion(
+            @AuthenticationPrincipal CustomUserDetails userDetails,
+            Model model
+    ) {
+        model.addAttribute("usuario", userDetails.getUsuario());
+        agregarDatosExportacion(model);
+        return "citas/importar";
+    }
+
+    /**
+     * Importa un fichero CSV o JSON de citas (solo ADMIN)
+     * Las filas con errores se rechazan y se listan en el resultado
+     */
+    @PostMapping("/importar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public String importarCitas(
+            @RequestParam("fichero") MultipartFile fichero,
+            @AuthenticationPrincipal CustomUserDetails userDetails,
+            Model model
+    ) {
+        model.addAttribute("usuario", userDetails.getUsuario());
+        try {
+            if (fichero.isEmpty()) {
+                throw new IllegalArgumentException("Debe seleccionar un fichero");
+            }
+            try (InputStream entrada = fichero.getInputStream()) {
+                ResultadoImportacion resultado = importacionCitasService.importar(entrada, fichero.getOriginalFilename());
+                model.addAttribute("resultado", resultado);
+            }
+        } catch (Exception e) {
+            model.addAttribute("error", e.getMessage());
+        }
+        agregarDatosExportacion(model);
+        return "citas/importar";
+    }
+
+    /**
+     * Descarga en CSV las citas de un rango de días, opcionalmente de un médico (solo ADMIN)
+     * Las filas se escriben en la respuesta según se leen de la base de datos
+     * Por defecto, el mes en curso hasta hoy
+     * Ejemplo: /citas/exportar?desde=2026-01-01&hasta=2026-03-31&medicoId=2
+     */
+    @GetMapping("/exportar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public String exportarCitas(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long medicoId,
+            HttpServletResponse response,
+            RedirectAttributes redirectAttributes
+    ) throws IOException {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.withDayOfMonth(1);
+
+        // Una vez empezada la descarga ya no se puede redirigir: se valida antes
+        try {
+            exportacionCitasService.validarRango(inicio, fin);
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+            return "redirect:/citas/importar";
+        }
+
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("citas_" + inicio + "_" + fin + ".csv")
+                .build()
+                .toString());
+
+        Writer salida = new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+        exportacionCitasService.exportarCsv(inicio, fin, medicoId, salida);
+        return null;
+    }
+
+    private void agregarDatosExportacion(Model model) {
+        LocalDate hoy = LocalDate.now();
+        model.addAttribute("medicos", usuarioService.obtenerMedicos());
+        model.addAttribute("exportarDesde", hoy.withDayOfMonth(1));
+        model.addAttribute("exportarHasta", hoy);
+    }
+
+    // ============================================
+    // OCUPACIÓN DE LOS MÉDICOS
+    // ============================================
+
+    /**
+     * Informe de ocupación por médico, por día o por semana (solo ADMIN)
+     * Por defecto, las últimas cuatro semanas agrupadas por semana
+     * Ejemplo: /citas/ocupacion?desde=2026-01-01&hasta=2026-03-31&agrupacion=SEMANA
+     */
+    @GetMapping("/ocupacion")
+    @PreAuthorize("hasRole('ADMIN')")
+    public String verOcupacion(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "SEMANA") AgrupacionOcupacion agrupacion,
+            @AuthenticationPrincipal CustomUserDetails userDetails,
+            Model model
+    ) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusWeeks(4).plusDays(1);
+
+        model.addAttribute("usuario", userDetails.getUsuario());
+        model.addAttribute("desde", inicio);
+        model.addAttribute("hasta", fin);
+        model.addAttribute("agrupacion", agrupacion);
+        model.addAttribute("agrupaciones", AgrupacionOcupacion.values());
+        try {
+            model.addAttribute("informe", ocupacionDiariaService.obtenerInforme(inicio, fin, agrupacion));
+        } catch (Exception e) {
+            model.addAttribute("error", e.getMessage());
+        }
+        return "citas/ocupacion";
+    }
+
     // ============================================
     // VISTAS ADICIONALES
     // ============================================
@@ -454,19 +677,43 @@ public class CitaController {
     @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
     public String verCitasPorEstado(
             @PathVariable EstadoCita estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime despuesFecha,
+            @RequestParam(required = false) Long despuesId,
+            @RequestParam(defaultValue = "20") int tamano,
             @AuthenticationPrincipal CustomUserDetails userDetails,
             Model model
     ) {
-        List<Cita> citas = citaService.obtenerCitasPorEstado(estado);
+        PaginaCitas pagina = citaService.obtenerCitasPorEstado(estado, despuesFecha, despuesId, tamano);
 
         model.addAttribute("usuario", userDetails.getUsuario());
-        model.addAttribute("citas", citas);
+        agregarPagina(model, pagina, "/citas/estado/" + estado.name(), tamano);
         model.addAttribute("estado", estado);
         model.addAttribute("titulo", "Citas " + estado.getDescripcion());
 
         return "citas/lista";
     }
 
+    /**
+     * Muestra todas las citas paginadas (solo ADMIN)
+     */
+    @GetMapping("/todas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public String verTodasLasCitas(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime despuesFecha,
+            @RequestParam(required = false) Long despuesId,
+            @RequestParam(defaultValue = "20") int tamano,
+            @AuthenticationPrincipal CustomUserDetails userDetails,
+            Model model
+    ) {
+        PaginaCitas pagina = citaService.obtenerTodasLasCitas(despuesFecha, despuesId, tamano);
+
+        model.addAttribute("usuario", userDetails.getUsuario());
+        agregarPagina(model, pagina, "/citas/todas", tamano);
+        model.addAttribute("titulo", "Todas las Citas");
+
+        return "citas/lista";
+    }
+
     /**
      * Lista todos los médicos para seleccionar agenda (ADMIN y RECEPCION)
      */
@@ -484,4 +731,22 @@ public class CitaController {
 
         return "citas/seleccionar-medico";
     }
-}
\ No newline at end of file
+
+    // ============================================
+    // MÉTODOS AUXILIARES
+    // ============================================
+
+    /**
+     * Añade al modelo una página de citas y los datos para el enlace "Cargar más"
+     * @param model Modelo de la vista
+     * @param pagina Página de citas
+     * @param urlBase URL del listado (sin parámetros de cursor)
+     * @param tamano Tamaño de página solicitado
+     */
+    private void agregarPagina(Model model, PaginaCitas pagina, String urlBase, int tamano) {
+        model.addAttribute("citas", pagina.citas());
+        model.addAttribute("pagina", pagina);
+        model.addAttribute("urlBase", urlBase);
+        model.addAttribute("tamano", tamano);
+    }
+}
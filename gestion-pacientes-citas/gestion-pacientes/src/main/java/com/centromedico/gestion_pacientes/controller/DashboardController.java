@@ -6,8 +6,8 @@ import com.centromedico.gestion_pacientes.entity.EstadoCita;
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
 import com.centromedico.gestion_pacientes.service.CitaService;
+import com.centromedico.gestion_pacientes.service.EstadisticasDashboardService;
 import com.centromedico.gestion_pacientes.service.PacienteService;
-import com.centromedico.gestion_pacientes.service.UsuarioService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -15,6 +15,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controlador del Dashboard principal
@@ -25,8 +26,8 @@ import java.util.List;
 public class DashboardController {
 
     private final PacienteService pacienteService;
-    private final UsuarioService usuarioService;
     private final CitaService citaService;
+    private final EstadisticasDashboardService estadisticasService;
 
     /**
      * Pagina principal - Redirige al dashboard
@@ -50,27 +51,20 @@ public class DashboardController {
 
         // Estadisticas segun el rol
         if (usuario.getRol() == Rol.ADMIN) {
-            // ADMIN: Estadisticas generales
-            long totalPacientes = pacienteService.obtenerTodos().size();
-            long totalMedicos = usuarioService.obtenerMedicos().size();
+            // ADMIN: Estadisticas generales (consultas de agregacion)
+            Map<EstadoCita, Long> citasPorEstado = estadisticasService.contarCitasPorEstado();
 
-            // Contar citas por estado
-            long citasPendientes = citaService.obtenerCitasPorEstado(EstadoCita.PENDIENTE).size();
-            long citasConfirmadas = citaService.obtenerCitasPorEstado(EstadoCita.CONFIRMADA).size();
-            long citasCompletadas = citaService.obtenerCitasPorEstado(EstadoCita.COMPLETADA).size();
-
-            model.addAttribute("totalPacientes", totalPacientes);
-            model.addAttribute("totalMedicos", totalMedicos);
-            model.addAttribute("citasPendientes", citasPendientes);
-            model.addAttribute("citasConfirmadas", citasConfirmadas);
-            model.addAttribute("citasCompletadas", citasCompletadas);
+            model.addAttribute("totalPacientes", estadisticasService.contarPacientes());
+            model.addAttribute("totalMedicos", estadisticasService.contarMedicos());
+            model.addAttribute("citasPendientes", citasPorEstado.get(EstadoCita.PENDIENTE));
+            model.addAttribute("citasConfirmadas", citasPorEstado.get(EstadoCita.CONFIRMADA));
+            model.addAttribute("citasCompletadas", citasPorEstado.get(EstadoCita.COMPLETADA));
 
             // Ultimas citas pendientes
-            List<Cita> ultimasCitasPendientes = citaService.obtenerCitasPendientes();
-            if (ultimasCitasPendientes.size() > 5) {
-                ultimasCitasPendientes = ultimasCitasPendientes.subList(0, 5);
-            }
-            model.addAttribute("ultimasCitas", ultimasCitasPendientes);
+            model.addAttribute("ultimasCitas", estadisticasService.obtenerCitasPendientes(5));
+
+            // Ultimas citas creadas (desde el buffer en memoria)
+            model.addAttribute("ultimasCitasCreadas", estadisticasService.obtenerUltimasCitasCreadas(5));
 
         } else if (usuario.getRol() == Rol.MEDICO) {
             // MEDICO: Su agenda de hoy y proximas citas
@@ -85,28 +79,15 @@ public class DashboardController {
             model.addAttribute("miAgendaHoy", miAgendaHoy);
 
             // Proximas citas activas
-            List<Cita> proximasCitas = citaService.obtenerCitasActivasPorMedico(usuario.getId());
-            if (proximasCitas.size() > 5) {
-                proximasCitas = proximasCitas.subList(0, 5);
-            }
-            model.addAttribute("proximasCitas", proximasCitas);
+            model.addAttribute("proximasCitas", estadisticasService.obtenerCitasActivasMedico(usuario.getId(), 5));
 
         } else if (usuario.getRol() == Rol.RECEPCION) {
             // RECEPCION: Citas pendientes de confirmacion
-            long citasPendientes = citaService.obtenerCitasPendientes().size();
-            long citasConfirmadasHoy = citaService.obtenerCitasPorEstado(EstadoCita.CONFIRMADA).stream()
-                    .filter(Cita::esHoy)
-                    .count();
-
-            model.addAttribute("citasPendientes", citasPendientes);
-            model.addAttribute("citasConfirmadasHoy", citasConfirmadasHoy);
+            model.addAttribute("citasPendientes", estadisticasService.contarCitasPorEstado(EstadoCita.PENDIENTE));
+            model.addAttribute("citasConfirmadasHoy", estadisticasService.contarCitasConfirmadasHoy());
 
             // Citas pendientes
-            List<Cita> listaCitasPendientes = citaService.obtenerCitasPendientes();
-            if (listaCitasPendientes.size() > 10) {
-                listaCitasPendientes = listaCitasPendientes.subList(0, 10);
-            }
-            model.addAttribute("listaCitasPendientes", listaCitasPendientes);
+            model.addAttribute("listaCitasPendientes", estadisticasService.obtenerCitasPendientes(10));
         }
 
         return "dashboard";
@@ -0,0 +1,27 @@
+package com.centromedico.gestion_pacientes.controller;
+
+import com.centromedico.gestion_pacientes.config.MetricasRegistro;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Controlador de métricas en formato Prometheus
+ * Acceso: ADMIN o el recolector de Prometheus con "Authorization: Bearer <metricas.token>", ver SecurityConfig
+ */
+@Controller
+@RequiredArgsConstructor
+public class MetricasController {
+
+    private final MetricasRegistro metricasRegistro;
+
+    /**
+     * Exporta todas las métricas en formato texto de Prometheus
+     */
+    @GetMapping(value = "/metricas", produces = MetricasRegistro.CONTENT_TYPE)
+    @ResponseBody
+    public String metricas() {
+        return metricasRegistro.exportar();
+    }
+}
@@ -0,0 +1,42 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Periodo en el que se agrupa el informe de ocupación
+ */
+public enum AgrupacionOcupacion {
+
+    DIA,
+    SEMANA;
+
+    /**
+     * Obtiene el primer día del periodo que contiene una fecha
+     * @param fecha Día cualquiera
+     * @return El mismo día (DIA) o el lunes de su semana (SEMANA)
+     */
+    public LocalDate inicioPeriodo(LocalDate fecha) {
+        return this == SEMANA ? fecha.with(DayOfWeek.MONDAY) : fecha;
+    }
+
+    /**
+     * Obtiene el primer día del periodo siguiente
+     * @param inicio Primer día de un periodo
+     * @return Primer día del periodo siguiente
+     */
+    public LocalDate siguientePeriodo(LocalDate inicio) {
+        return this == SEMANA ? inicio.plusWeeks(1) : inicio.plusDays(1);
+    }
+
+    /**
+     * Obtiene una descripción legible de la agrupación
+     * @return Descripción de la agrupación
+     */
+    public String getDescripcion() {
+        return switch (this) {
+            case DIA -> "Por día";
+            case SEMANA -> "Por semana";
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cambio incremental de una cita enviado a las agendas abiertas (Server-Sent Events)
+ * @param tipo Tipo de cambio: creada, confirmada, cancelada, completada, modificada o eliminada
+ * @param citaId ID de la cita
+ * @param medicoId ID del médico de la cita
+ * @param estado Estado actual (null si la cita se eliminó)
+ * @param estadoDescripcion Descripción legible del estado actual
+ * @param fechaHora Fecha/hora actual de la cita
+ * @param fechaHoraAnterior Fecha/hora antes del cambio (null si la cita es nueva)
+ */
+public record CambioAgenda(
+        String tipo,
+        Long citaId,
+        Long medicoId,
+        EstadoCita estado,
+        String estadoDescripcion,
+        LocalDateTime fechaHora,
+        LocalDateTime fechaHoraAnterior
+) {
+
+    /**
+     * Construye el cambio a partir del evento publicado por CitaService
+     * @param evento Evento de cambio de la cita
+     * @return Cambio listo para enviar
+     */
+    public static CambioAgenda desde(CitaEstadoCambiadoEvent evento) {
+        EstadoCita estado = evento.estadoNuevo();
+        return new CambioAgenda(
+                tipo(evento),
+                evento.citaId(),
+                evento.medicoId(),
+                estado,
+                estado != null ? estado.getDescripcion() : null,
+                evento.fechaHora(),
+                evento.fechaHoraAnterior()
+        );
+    }
+
+    private static String tipo(CitaEstadoCambiadoEvent evento) {
+        if (evento.estadoAnterior() == null) {
+            return "creada";
+        }
+        if (evento.estadoNuevo() == null) {
+            return "eliminada";
+        }
+        if (evento.estadoNuevo() == evento.estadoAnterior()) {
+            return "modificada";
+        }
+        return switch (evento.estadoNuevo()) {
+            case CONFIRMADA -> "confirmada";
+            case CANCELADA -> "cancelada";
+            case COMPLETADA -> "completada";
+            case PENDIENTE -> "modificada";
+        };
+    }
+}
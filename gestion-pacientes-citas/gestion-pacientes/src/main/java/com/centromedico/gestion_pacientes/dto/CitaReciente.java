@@ -0,0 +1,33 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Resumen de una cita recién creada para el feed del administrador
+ * Contiene ya los nombres del paciente y del médico, así que no requiere
+ * cargar relaciones al pintarse
+ * @param id ID de la cita
+ * @param fechaCreacion Momento en que se creó la cita
+ * @param fechaHora Fecha/hora de la cita
+ * @param nombrePaciente Nombre completo del paciente
+ * @param nombreMedico Nombre del médico
+ * @param motivo Motivo de la cita
+ */
+public record CitaReciente(
+        Long id,
+        LocalDateTime fechaCreacion,
+        LocalDateTime fechaHora,
+        String nombrePaciente,
+        String nombreMedico,
+        String motivo
+) {
+
+    /**
+     * Formatea la fecha/hora de la cita
+     * @return String con formato legible
+     */
+    public String getFechaHoraFormateada() {
+        return fechaHora.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"));
+    }
+}
@@ -0,0 +1,11 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+
+/**
+ * Resultado de contar citas agrupadas por estado
+ * @param estado Estado de la cita
+ * @param total Número de citas en ese estado
+ */
+public record ConteoPorEstado(EstadoCita estado, Long total) {
+}
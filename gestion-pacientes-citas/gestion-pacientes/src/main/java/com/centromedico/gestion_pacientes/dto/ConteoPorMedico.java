@@ -0,0 +1,9 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Resultado de contar citas agrupadas por médico
+ * @param medicoId ID del médico
+ * @param total Número de citas del médico
+ */
+public record ConteoPorMedico(Long medicoId, Long total) {
+}
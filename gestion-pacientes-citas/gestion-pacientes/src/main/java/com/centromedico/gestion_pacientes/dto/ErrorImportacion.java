@@ -0,0 +1,9 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Error de una fila concreta durante la importación de citas
+ * @param linea Número de línea en el fichero
+ * @param mensaje Motivo del rechazo
+ */
+public record ErrorImportacion(int linea, String mensaje) {
+}
@@ -0,0 +1,32 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de la exportación de citas (proyección: no carga entidades en el contexto de persistencia)
+ * @param id ID de la cita
+ * @param dniPaciente DNI del paciente
+ * @param nombrePaciente Nombre del paciente
+ * @param apellidosPaciente Apellidos del paciente
+ * @param medico Username del médico
+ * @param nombreMedico Nombre del médico
+ * @param fechaHora Fecha/hora de la cita
+ * @param duracionMinutos Duración en minutos
+ * @param estado Estado de la cita
+ * @param motivo Motivo de la cita
+ */
+public record FilaExportacionCita(
+        Long id,
+        String dniPaciente,
+        String nombrePaciente,
+        String apellidosPaciente,
+        String medico,
+        String nombreMedico,
+        LocalDateTime fechaHora,
+        Integer duracionMinutos,
+        EstadoCita estado,
+        String motivo
+) {
+}
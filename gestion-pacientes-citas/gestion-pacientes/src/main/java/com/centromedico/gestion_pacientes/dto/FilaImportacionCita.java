@@ -0,0 +1,32 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Fila leída de un fichero de importación de citas, tal y como viene en el fichero
+ * Los valores se validan y convierten al procesar el lote
+ * @param linea Número de línea (CSV) o posición (JSON) en el fichero
+ * @param dniPaciente DNI del paciente
+ * @param medico Username del médico
+ * @param fechaHora Fecha/hora en formato ISO (yyyy-MM-ddTHH:mm)
+ * @param duracionMinutos Duración en minutos (opcional, 30 por defecto)
+ * @param motivo Motivo de la cita
+ * @param estado Estado de la cita (opcional, PENDIENTE por defecto)
+ * @param error Error de formato al leer la fila (null si se leyó bien)
+ */
+public record FilaImportacionCita(
+        int linea,
+        String dniPaciente,
+        String medico,
+        String fechaHora,
+        String duracionMinutos,
+        String motivo,
+        String estado,
+        String error
+) {
+
+    /**
+     * Fila que no se ha podido leer; se rechaza con el mensaje indicado
+     */
+    public static FilaImportacionCita malFormada(int linea, String error) {
+        return new FilaImportacionCita(linea, null, null, null, null, null, null, error);
+    }
+}
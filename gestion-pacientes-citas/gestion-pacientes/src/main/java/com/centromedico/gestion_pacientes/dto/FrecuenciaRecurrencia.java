@@ -0,0 +1,41 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Frecuencia con la que se repite una serie de citas
+ */
+public enum FrecuenciaRecurrencia {
+
+    DIARIA,
+    SEMANAL,
+    MENSUAL;
+
+    /**
+     * Calcula la fecha/hora de una repetición a partir de la primera
+     * Se suma siempre desde la primera, así que una serie mensual que empieza
+     * el día 31 vuelve al 31 en los meses que lo tienen
+     * @param inicio Fecha/hora de la primera cita
+     * @param periodos Número de periodos a sumar
+     * @return Fecha/hora de la repetición
+     */
+    public LocalDateTime sumar(LocalDateTime inicio, long periodos) {
+        return switch (this) {
+            case DIARIA -> inicio.plusDays(periodos);
+            case SEMANAL -> inicio.plusWeeks(periodos);
+            case MENSUAL -> inicio.plusMonths(periodos);
+        };
+    }
+
+    /**
+     * Obtiene una descripción legible de la frecuencia
+     * @return Descripción de la frecuencia
+     */
+    public String getDescripcion() {
+        return switch (this) {
+            case DIARIA -> "Cada día";
+            case SEMANAL -> "Cada semana";
+            case MENSUAL -> "Cada mes";
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hueco libre en la agenda de un médico donde se puede agendar una cita
+ * @param medicoId ID del médico
+ * @param nombreMedico Nombre del médico
+ * @param inicio Fecha/hora de inicio del hueco
+ * @param fin Fecha/hora de fin del hueco
+ */
+public record HuecoLibre(Long medicoId, String nombreMedico, LocalDateTime inicio, LocalDateTime fin) {
+}
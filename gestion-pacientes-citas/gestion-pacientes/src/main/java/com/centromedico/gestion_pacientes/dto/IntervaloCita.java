@@ -0,0 +1,32 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección ligera de una cita: solo el rango horario que ocupa en la agenda del médico
+ * Se usa para calcular disponibilidad sin cargar la entidad Cita completa
+ * @param citaId ID de la cita
+ * @param medicoId ID del médico
+ * @param inicio Fecha/hora de inicio
+ * @param duracionMinutos Duración en minutos
+ */
+public record IntervaloCita(Long citaId, Long medicoId, LocalDateTime inicio, Integer duracionMinutos) {
+
+    /**
+     * Calcula la hora de finalización del intervalo
+     * @return LocalDateTime de finalización
+     */
+    public LocalDateTime fin() {
+        return inicio.plusMinutes(duracionMinutos);
+    }
+
+    /**
+     * Verifica si el intervalo se solapa con el rango [inicio, fin)
+     * @param otroInicio Inicio del rango
+     * @param otroFin Fin del rango
+     * @return true si se solapan
+     */
+    public boolean seSolapaCon(LocalDateTime otroInicio, LocalDateTime otroFin) {
+        return inicio.isBefore(otroFin) && fin().isAfter(otroInicio);
+    }
+}
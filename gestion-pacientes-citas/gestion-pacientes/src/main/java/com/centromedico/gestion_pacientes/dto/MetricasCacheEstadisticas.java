@@ -0,0 +1,22 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Métricas de uso de la caché de estadísticas del dashboard
+ * @param aciertos Lecturas servidas desde la caché
+ * @param fallos Lecturas que tuvieron que ir a la BD
+ * @param eventosAplicados Cambios de cita aplicados incrementalmente
+ * @param correcciones Contadores corregidos en la última reconciliación
+ * @param ultimaReconciliacion Momento de la última reconciliación con la BD
+ * @param antiguedadSegundos Segundos transcurridos desde la última reconciliación
+ */
+public record MetricasCacheEstadisticas(
+        long aciertos,
+        long fallos,
+        long eventosAplicados,
+        long correcciones,
+        LocalDateTime ultimaReconciliacion,
+        long antiguedadSegundos
+) {
+}
@@ -0,0 +1,49 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Ocupación de un médico en un periodo (un día o una semana) del informe
+ * @param medicoId ID del médico
+ * @param medicoNombre Nombre del médico
+ * @param inicio Primer día del periodo dentro del rango pedido
+ * @param fin Último día del periodo dentro del rango pedido
+ * @param minutosReservados Minutos de citas no canceladas
+ * @param minutosLaborables Minutos de horario de atención del periodo
+ * @param citasTotales Citas en cualquier estado
+ * @param citasAtendidas Citas completadas
+ * @param citasCanceladas Citas canceladas
+ * @param citasNoPresentadas Citas que pasaron sin completarse ni cancelarse
+ */
+public record OcupacionMedico(
+        Long medicoId,
+        String medicoNombre,
+        LocalDate inicio,
+        LocalDate fin,
+        long minutosReservados,
+        long minutosLaborables,
+        long citasTotales,
+        long citasAtendidas,
+        long citasCanceladas,
+        long citasNoPresentadas
+) {
+
+    private static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    /**
+     * Porcentaje de ocupación: minutos reservados / minutos laborables
+     * @return Porcentaje (puede pasar de 100 si hay citas fuera de horario)
+     */
+    public double getPorcentajeOcupacion() {
+        return minutosLaborables > 0 ? 100.0 * minutosReservados / minutosLaborables : 0;
+    }
+
+    /**
+     * Periodo formateado para mostrar en la vista
+     * @return "dd/MM/yyyy" o "dd/MM/yyyy - dd/MM/yyyy"
+     */
+    public String getPeriodoFormateado() {
+        return inicio.equals(fin) ? inicio.format(FORMATO) : inicio.format(FORMATO) + " - " + fin.format(FORMATO);
+    }
+}
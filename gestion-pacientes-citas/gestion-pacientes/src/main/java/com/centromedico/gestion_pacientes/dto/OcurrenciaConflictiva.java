@@ -0,0 +1,20 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Cita de una serie que no se pudo agendar porque el médico ya tenía ese hueco ocupado
+ * @param fechaHora Fecha/hora de la cita de la serie
+ * @param mensaje Descripción del conflicto
+ */
+public record OcurrenciaConflictiva(LocalDateTime fechaHora, String mensaje) {
+
+    /**
+     * Formatea la fecha/hora de la cita
+     * @return String con formato legible
+     */
+    public String getFechaHoraFormateada() {
+        return fechaHora.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.Cita;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Página de citas obtenida con paginación por clave (keyset) sobre (fechaHora, id)
+ * El cursor de la página siguiente es la pareja (siguienteFecha, siguienteId):
+ * la fecha/hora e ID de la última cita de esta página
+ * @param citas Citas de la página
+ * @param siguienteFecha Fecha/hora del cursor para pedir la página siguiente (null si no hay más)
+ * @param siguienteId ID del cursor para pedir la página siguiente (null si no hay más)
+ */
+public record PaginaCitas(List<Cita> citas, LocalDateTime siguienteFecha, Long siguienteId) {
+
+    /**
+     * Indica si hay más citas después de esta página
+     * @return true si se puede cargar otra página
+     */
+    public boolean hayMas() {
+        return siguienteId != null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regla de repetición de una serie de citas (al estilo de RRULE):
+ * frecuencia, intervalo y un número de repeticiones o una fecha final
+ * Ejemplo: SEMANAL, intervalo 2, 6 repeticiones = 6 citas, una cada dos semanas
+ * @param frecuencia Frecuencia de la serie
+ * @param intervalo Cada cuántos periodos se repite (1 = todos)
+ * @param repeticiones Número total de citas (null si se indica fecha final)
+ * @param hasta Última fecha en la que puede caer una cita (null si se indican repeticiones)
+ */
+public record ReglaRecurrencia(
+        FrecuenciaRecurrencia frecuencia,
+        int intervalo,
+        Integer repeticiones,
+        LocalDate hasta
+) {
+
+    /** Número máximo de citas de una serie */
+    public static final int MAX_OCURRENCIAS = 52;
+
+    /**
+     * Calcula las fechas/horas de todas las citas de la serie
+     * @param inicio Fecha/hora de la primera cita
+     * @return Fechas/horas en orden, empezando por la primera
+     * @throws IllegalArgumentException si la regla no es válida o supera MAX_OCURRENCIAS
+     */
+    public List<LocalDateTime> expandir(LocalDateTime inicio) {
+        if (frecuencia == null) {
+            throw new IllegalArgumentException("Debe indicar la frecuencia de la serie");
+        }
+        if (intervalo < 1) {
+            throw new IllegalArgumentException("El intervalo de la serie debe ser 1 o mayor");
+        }
+        if (repeticiones == null && hasta == null) {
+            throw new IllegalArgumentException("Debe indicar el número de citas o la fecha final de la serie");
+        }
+        if (repeticiones != null && (repeticiones < 1 || repeticiones > MAX_OCURRENCIAS)) {
+            throw new IllegalArgumentException("El número de citas de la serie debe estar entre 1 y " + MAX_OCURRENCIAS);
+        }
+        if (hasta != null && hasta.isBefore(inicio.toLocalDate())) {
+            throw new IllegalArgumentException("La fecha final de la serie es anterior a la primera cita");
+        }
+
+        List<LocalDateTime> ocurrencias = new ArrayList<>();
+        for (long i = 0; repeticiones == null || i < repeticiones; i++) {
+            LocalDateTime fechaHora = frecuencia.sumar(inicio, i * intervalo);
+            if (hasta != null && fechaHora.toLocalDate().isAfter(hasta)) {
+                break;
+            }
+            if (ocurrencias.size() == MAX_OCURRENCIAS) {
+                throw new IllegalArgumentException("Una serie no puede tener más de " + MAX_OCURRENCIAS + " citas");
+            }
+            ocurrencias.add(fechaHora);
+        }
+        return ocurrencias;
+    }
+}
@@ -0,0 +1,28 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.util.List;
+
+/**
+ * Resumen de una importación masiva de citas
+ * @param filasLeidas Filas de datos leídas del fichero
+ * @param importadas Citas insertadas
+ * @param rechazadas Filas descartadas por error
+ * @param errores Detalle de los primeros errores (acotado)
+ * @param milisegundos Duración total de la importación
+ */
+public record ResultadoImportacion(
+        int filasLeidas,
+        int importadas,
+        int rechazadas,
+        List<ErrorImportacion> errores,
+        long milisegundos
+) {
+
+    /**
+     * Indica si hay más errores de los que se muestran en detalle
+     * @return true si la lista de errores está truncada
+     */
+    public boolean erroresTruncados() {
+        return rechazadas > errores.size();
+    }
+}
@@ -0,0 +1,21 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.Cita;
+
+import java.util.List;
+
+/**
+ * Resultado de agendar una serie de citas
+ * @param creadas Citas agendadas, en orden
+ * @param conflictos Citas de la serie que chocaban con la agenda del médico y no se agendaron
+ */
+public record ResultadoSerieCitas(List<Cita> creadas, List<OcurrenciaConflictiva> conflictos) {
+
+    /**
+     * Indica si alguna cita de la serie no se pudo agendar
+     * @return true si hubo conflictos
+     */
+    public boolean hayConflictos() {
+        return !conflictos.isEmpty();
+    }
+}
@@ -13,7 +13,12 @@ import java.time.format.DateTimeFormatter;
  * Relaciona un paciente con un médico en una fecha/hora específica
  */
 @Entity
-@Table(name = "citas")
+@Table(name = "citas", indexes = {
+        @Index(name = "idx_citas_fecha_creacion", columnList = "fecha_creacion"),
+        @Index(name = "idx_citas_medico_rango", columnList = "medico_id, fecha_hora, fecha_fin"),
+        @Index(name = "idx_citas_paciente_fecha", columnList = "paciente_id, fecha_hora"),
+        @Index(name = "idx_citas_estado_fecha", columnList = "estado, fecha_hora")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -43,6 +48,11 @@ public class Cita {
     @Column(name = "duracion_minutos", nullable = false)
     private Integer duracionMinutos = 30;
 
+    // Fecha/hora de fin derivada (fechaHora + duracionMinutos)
+    // Se persiste para poder buscar solapamientos con un predicado indexable
+    @Column(name = "fecha_fin")
+    private LocalDateTime fechaFin;
+
     @Column(nullable = false, length = 500)
     private String motivo;
 
@@ -56,6 +66,18 @@ public class Cita {
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
+    // Momento en que se envió el recordatorio (null si aún no se ha enviado)
+    // Solo lo escriben las consultas en bloque de CitaRepository: un guardado de la entidad
+    // cargada antes del envío no lo borra
+    @Column(name = "recordatorio_enviado", insertable = false, updatable = false)
+    private LocalDateTime recordatorioEnviado;
+
+    // Bloqueo optimista: Hibernate incrementa la versión en cada UPDATE
+    // y rechaza la escritura si otra transacción la cambió antes
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     // ========================================
     // MÉTODO PRE-PERSIST
     // ========================================
@@ -68,6 +90,24 @@ public class Cita {
         if (this.duracionMinutos == null) {
             this.duracionMinutos = 30;
         }
+        calcularFechaFin();
+    }
+
+    // ========================================
+    // MÉTODO PRE-UPDATE
+    // ========================================
+    @PreUpdate
+    protected void onUpdate() {
+        calcularFechaFin();
+    }
+
+    /**
+     * Recalcula la fecha de fin persistida a partir de la fecha/hora y la duración
+     */
+    private void calcularFechaFin() {
+        if (this.fechaHora != null && this.duracionMinutos != null) {
+            this.fechaFin = this.fechaHora.plusMinutes(this.duracionMinutos);
+        }
     }
 
     // ========================================
@@ -0,0 +1,99 @@
+package com.centromedico.gestion_pacientes.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Entidad que representa un evento del historial de una cita
+ * (creación, confirmación, cancelación, finalización o reprogramación)
+ * Es de solo inserción: cada cambio añade una fila y nunca se modifica,
+ * en lugar de ir concatenando texto en las observaciones de la cita.
+ */
+@Entity
+@Immutable
+@Table(name = "cita_eventos", indexes = {
+        @Index(name = "idx_cita_eventos_cita_fecha", columnList = "cita_id, fecha")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CitaEvento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ========================================
+    // RELACIÓN: Muchos Eventos pertenecen a una Cita
+    // Al borrar la cita, la BD borra su historial (ON DELETE CASCADE)
+    // ========================================
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "cita_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Cita cita;
+
+    // Estado antes del cambio (null en la creación)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_anterior", length = 20, updatable = false)
+    private EstadoCita estadoAnterior;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_nuevo", nullable = false, length = 20, updatable = false)
+    private EstadoCita estadoNuevo;
+
+    // Motivo de cancelación, observaciones de la consulta, etc.
+    @Column(columnDefinition = "TEXT", updatable = false)
+    private String nota;
+
+    // Username de quien hizo el cambio (texto, para que el historial sobreviva al usuario)
+    @Column(length = 50, updatable = false)
+    private String autor;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime fecha;
+
+    // ========================================
+    // MÉTODO PRE-PERSIST
+    // ========================================
+    @PrePersist
+    protected void onCreate() {
+        if (this.fecha == null) {
+            this.fecha = LocalDateTime.now();
+        }
+    }
+
+    // ========================================
+    // MÉTODOS DE UTILIDAD
+    // ========================================
+
+    /**
+     * Formatea la fecha del evento
+     * @return String con formato legible
+     */
+    public String getFechaFormateada() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+        return this.fecha.format(formatter);
+    }
+
+    /**
+     * Describe el cambio de estado
+     * @return "Creada", "Pendiente → Confirmada"...
+     */
+    public String getDescripcion() {
+        if (estadoAnterior == null) {
+            return "Creada";
+        }
+        if (estadoAnterior == estadoNuevo) {
+            return "Modificada";
+        }
+        return estadoAnterior.getDescripcion() + " → " + estadoNuevo.getDescripcion();
+    }
+}
@@ -0,0 +1,65 @@
+package com.centromedico.gestion_pacientes.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Resumen diario de la agenda de un médico (una fila por médico y día con citas)
+ * Lo mantiene OcupacionDiariaService: se recalcula el día afectado en cada cambio de cita
+ * y una tarea nocturna reconcilia los días recientes y próximos.
+ * Los informes de ocupación leen solo esta tabla, nunca la de citas.
+ */
+@Entity
+@Table(name = "ocupacion_diaria", indexes = {
+        @Index(name = "idx_ocupacion_fecha", columnList = "fecha")
+})
+@IdClass(OcupacionDiaria.Clave.class)
+@Data
+@NoArgsConstructor
+public class OcupacionDiaria {
+
+    @Id
+    @Column(name = "medico_id")
+    private Long medicoId;
+
+    @Id
+    private LocalDate fecha;
+
+    // Todas las citas del día, en cualquier estado
+    @Column(name = "citas_totales", nullable = false)
+    private int citasTotales;
+
+    @Column(name = "citas_atendidas", nullable = false)
+    private int citasAtendidas;
+
+    @Column(name = "citas_canceladas", nullable = false)
+    private int citasCanceladas;
+
+    // Citas pendientes o confirmadas cuya hora de fin ya había pasado al calcular la fila
+    @Column(name = "citas_no_presentadas", nullable = false)
+    private int citasNoPresentadas;
+
+    // Minutos de las citas no canceladas
+    @Column(name = "minutos_reservados", nullable = false)
+    private int minutosReservados;
+
+    @Column(nullable = false)
+    private LocalDateTime actualizado;
+
+    /**
+     * Clave primaria compuesta (médico, día)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private Long medicoId;
+        private LocalDate fecha;
+    }
+}
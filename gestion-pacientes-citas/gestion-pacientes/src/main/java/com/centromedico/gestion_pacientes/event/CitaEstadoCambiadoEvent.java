@@ -0,0 +1,26 @@
+package com.centromedico.gestion_pacientes.event;
+
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento publicado por CitaService cada vez que una cita se crea, cambia de estado,
+ * se reprograma o se elimina
+ * Los listeners lo reciben después del commit de la transacción
+ * @param citaId ID de la cita
+ * @param medicoId ID del médico de la cita
+ * @param estadoAnterior Estado antes del cambio (null si la cita es nueva)
+ * @param estadoNuevo Estado después del cambio (null si la cita se eliminó)
+ * @param fechaHoraAnterior Fecha/hora antes del cambio (null si la cita es nueva)
+ * @param fechaHora Fecha/hora después del cambio
+ */
+public record CitaEstadoCambiadoEvent(
+        Long citaId,
+        Long medicoId,
+        EstadoCita estadoAnterior,
+        EstadoCita estadoNuevo,
+        LocalDateTime fechaHoraAnterior,
+        LocalDateTime fechaHora
+) {
+}
@@ -0,0 +1,24 @@
+package com.centromedico.gestion_pacientes.event;
+
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento publicado por RecordatoriosCitasService para cada cita que entra
+ * en el plazo de recordatorio (una sola vez por cita)
+ * Los canales de aviso al paciente (correo, SMS...) lo reciben con @EventListener
+ * @param citaId ID de la cita
+ * @param pacienteId ID del paciente
+ * @param medicoId ID del médico
+ * @param estado Estado de la cita (PENDIENTE o CONFIRMADA)
+ * @param fechaHora Fecha/hora de la cita
+ */
+public record RecordatorioCitaEvent(
+        Long citaId,
+        Long pacienteId,
+        Long medicoId,
+        EstadoCita estado,
+        LocalDateTime fechaHora
+) {
+}
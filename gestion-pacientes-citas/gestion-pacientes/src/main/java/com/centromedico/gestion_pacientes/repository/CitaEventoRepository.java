@@ -0,0 +1,72 @@
+package com.centromedico.gestion_pacientes.repository;
+
+import com.centromedico.gestion_pacientes.entity.CitaEvento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio para el historial de eventos de las citas
+ * Solo se insertan filas; el historial se lee únicamente en el detalle de una cita
+ */
+@Repository
+public interface CitaEventoRepository extends JpaRepository<CitaEvento, Long> {
+
+    /**
+     * Obtiene el historial de una cita en orden cronológico
+     * @param citaId ID de la cita
+     * @return Lista de eventos de la cita
+     */
+    List<CitaEvento> findByCitaIdOrderByFechaAscIdAsc(Long citaId);
+
+    /**
+     * Añade el mismo evento al historial de varias citas con un único INSERT ... SELECT
+     * Se usa en los cambios de estado en bloque (p. ej. caducidad de citas pendientes)
+     * @param citaIds IDs de las citas
+     * @param estadoAnterior Nombre del estado anterior
+     * @param estadoNuevo Nombre del estado nuevo
+     * @param nota Nota del evento
+     * @param autor Autor del cambio
+     * @param fecha Fecha del evento
+     * @return Número de eventos insertados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cita_eventos (cita_id, estado_anterior, estado_nuevo, nota, autor, fecha) " +
+            "SELECT id, :estadoAnterior, :estadoNuevo, :nota, :autor, :fecha FROM citas WHERE id IN :citaIds",
+            nativeQuery = true)
+    int registrarEnBloque(
+            @Param("citaIds") Collection<Long> citaIds,
+            @Param("estadoAnterior") String estadoAnterior,
+            @Param("estadoNuevo") String estadoNuevo,
+            @Param("nota") String nota,
+            @Param("autor") String autor,
+            @Param("fecha") LocalDateTime fecha
+    );
+
+    /**
+     * Añade el evento de creación al historial de varias citas con un único INSERT ... SELECT
+     * El estado nuevo de cada evento es el estado con el que se creó su cita
+     * Se usa en la importación masiva, que inserta las citas por JDBC
+     * @param citaIds IDs de las citas
+     * @param nota Nota del evento
+     * @param autor Autor del cambio
+     * @param fecha Fecha del evento
+     * @return Número de eventos insertados
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cita_eventos (cita_id, estado_anterior, estado_nuevo, nota, autor, fecha) " +
+            "SELECT id, NULL, estado, :nota, :autor, :fecha FROM citas WHERE id IN :citaIds",
+            nativeQuery = true)
+    int registrarCreacionEnBloque(
+            @Param("citaIds") Collection<Long> citaIds,
+            @Param("nota") String nota,
+            @Param("autor") String autor,
+            @Param("fecha") LocalDateTime fecha
+    );
+}
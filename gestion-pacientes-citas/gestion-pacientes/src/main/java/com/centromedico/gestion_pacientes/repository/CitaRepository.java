@@ -1,17 +1,39 @@
 package com.centromedico.gestion_pacientes.repository;
 
+import com.centromedico.gestion_pacientes.dto.CitaReciente;
+import com.centromedico.gestion_pacientes.dto.ConteoPorEstado;
+import com.centromedico.gestion_pacientes.dto.ConteoPorMedico;
+import com.centromedico.gestion_pacientes.dto.FilaExportacionCita;
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
 import com.centromedico.gestion_pacientes.entity.Cita;
 import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.event.RecordatorioCitaEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 
+/**
+ * Repositorio para la entidad Cita
+ * Los métodos que alimentan listados (marcados con @EntityGraph) cargan el
+ * paciente y el médico en la misma consulta, para que las vistas no disparen
+ * una SELECT extra por cada fila
+ */
 @Repository
 public interface CitaRepository extends JpaRepository<Cita, Long> {
 
@@ -78,15 +100,66 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
     List<Cita> findByEstadoOrderByFechaHoraAsc(EstadoCita estado);
 
     /**
-     * Busca citas pendientes antes de una fecha límite
-     * Útil para recordatorios o alertas
+     * Busca las primeras citas con un estado específico (top-N)
      * @param estado Estado de la cita
-     * @param fecha Fecha límite
-     * @return Lista de citas pendientes próximas
+     * @param pageable Tamaño de página (número máximo de citas)
+     * @return Lista con como mucho pageable.getPageSize() citas
      */
-    List<Cita> findByEstadoAndFechaHoraBeforeOrderByFechaHoraAsc(
-            EstadoCita estado,
-            LocalDateTime fecha
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    List<Cita> findByEstadoOrderByFechaHoraAsc(EstadoCita estado, Pageable pageable);
+
+    /**
+     * Cuenta las citas con un estado específico
+     * @param estado Estado de la cita
+     * @return Número de citas
+     */
+    long countByEstado(EstadoCita estado);
+
+    /**
+     * Obtiene un lote de citas a recordar: las que tienen alguno de los estados indicados,
+     * aún no tienen recordatorio y empiezan después del cursor y hasta el fin de la ventana,
+     * en orden (paginación por cursor)
+     * Usa el índice (estado, fecha_hora): solo lee las filas de la ventana
+     * @param estados Estados a considerar (generalmente PENDIENTE y CONFIRMADA)
+     * @param despuesFecha Fecha/hora de la última cita del lote anterior (o inicio de la ventana)
+     * @param despuesId ID de la última cita del lote anterior (0 en el primer lote: incluye el inicio)
+     * @param hasta Fin de la ventana (incluido)
+     * @param pageable Tamaño del lote
+     * @return Lote de recordatorios (cita, paciente, médico, estado, fecha/hora)
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.event.RecordatorioCitaEvent(" +
+            "c.id, c.paciente.id, c.medico.id, c.estado, c.fechaHora) " +
+            "FROM Cita c WHERE c.estado IN :estados " +
+            "AND c.recordatorioEnviado IS NULL " +
+            "AND c.fechaHora <= :hasta " +
+            "AND (c.fechaHora > :despuesFecha OR (c.fechaHora = :despuesFecha AND c.id > :despuesId)) " +
+            "ORDER BY c.fechaHora ASC, c.id ASC")
+    List<RecordatorioCitaEvent> findRecordatoriosEnVentana(
+            @Param("estados") List<EstadoCita> estados,
+            @Param("despuesFecha") LocalDateTime despuesFecha,
+            @Param("despuesId") Long despuesId,
+            @Param("hasta") LocalDateTime hasta,
+            Pageable pageable
+    );
+
+    /**
+     * Obtiene y bloquea (SELECT ... FOR UPDATE) un lote de citas en un estado que empezaron
+     * antes de una fecha límite
+     * El bloqueo impide que otro usuario las confirme mientras se cancelan en bloque
+     * @param estado Estado de las citas (PENDIENTE)
+     * @param limite Fecha/hora límite (excluida)
+     * @param pageable Tamaño del lote
+     * @return Lote de intervalos (cita, médico, inicio, duración)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.IntervaloCita(" +
+            "c.id, c.medico.id, c.fechaHora, c.duracionMinutos) " +
+            "FROM Cita c WHERE c.estado = :estado AND c.fechaHora < :limite " +
+            "ORDER BY c.fechaHora ASC, c.id ASC")
+    List<IntervaloCita> findVencidasParaActualizar(
+            @Param("estado") EstadoCita estado,
+            @Param("limite") LocalDateTime limite,
+            Pageable pageable
     );
 
     /**
@@ -107,36 +180,181 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
      */
     List<Cita> findByFechaHoraAfterOrderByFechaHoraAsc(LocalDateTime fecha);
 
+    // ========================================
+    // PAGINACIÓN POR CLAVE (KEYSET) SOBRE (fechaHora, id)
+    // La primera página usa el método sin cursor; las siguientes, el método
+    // "DespuesDe"/"AntesDe" con la fecha/hora e ID de la última cita recibida
+    // ========================================
+
+    /**
+     * Primera página de todas las citas, por fecha ascendente
+     * @param pageable Tamaño de página
+     * @return Citas de la primera página
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    List<Cita> findAllByOrderByFechaHoraAscIdAsc(Pageable pageable);
+
+    /**
+     * Página siguiente de todas las citas, por fecha ascendente
+     * @param fecha Fecha/hora de la última cita de la página anterior
+     * @param id ID de la última cita de la página anterior
+     * @param pageable Tamaño de página
+     * @return Citas posteriores al cursor
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    @Query("SELECT c FROM Cita c " +
+            "WHERE c.fechaHora > :fecha OR (c.fechaHora = :fecha AND c.id > :id) " +
+            "ORDER BY c.fechaHora ASC, c.id ASC")
+    List<Cita> findTodasDespuesDe(
+            @Param("fecha") LocalDateTime fecha,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    /**
+     * Primera página de las citas de un médico, por fecha ascendente
+     * @param medicoId ID del médico
+     * @param pageable Tamaño de página
+     * @return Citas de la primera página
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    List<Cita> findByMedicoIdOrderByFechaHoraAscIdAsc(Long medicoId, Pageable pageable);
+
+    /**
+     * Página siguiente de las citas de un médico, por fecha ascendente
+     * @param medicoId ID del médico
+     * @param fecha Fecha/hora de la última cita de la página anterior
+     * @param id ID de la última cita de la página anterior
+     * @param pageable Tamaño de página
+     * @return Citas posteriores al cursor
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    @Query("SELECT c FROM Cita c WHERE c.medico.id = :medicoId " +
+            "AND (c.fechaHora > :fecha OR (c.fechaHora = :fecha AND c.id > :id)) " +
+            "ORDER BY c.fechaHora ASC, c.id ASC")
+    List<Cita> findByMedicoIdDespuesDe(
+            @Param("medicoId") Long medicoId,
+            @Param("fecha") LocalDateTime fecha,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    /**
+     * Primera página de las citas de un paciente, más recientes primero
+     * @param pacienteId ID del paciente
+     * @param pageable Tamaño de página
+     * @return Citas de la primera página
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    List<Cita> findByPacienteIdOrderByFechaHoraDescIdDesc(Long pacienteId, Pageable pageable);
+
+    /**
+     * Página siguiente de las citas de un paciente, más recientes primero
+     * @param pacienteId ID del paciente
+     * @param fecha Fecha/hora de la última cita de la página anterior
+     * @param id ID de la última cita de la página anterior
+     * @param pageable Tamaño de página
+     * @return Citas anteriores al cursor
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    @Query("SELECT c FROM Cita c WHERE c.paciente.id = :pacienteId " +
+            "AND (c.fechaHora < :fecha OR (c.fechaHora = :fecha AND c.id < :id)) " +
+            "ORDER BY c.fechaHora DESC, c.id DESC")
+    List<Cita> findByPacienteIdAntesDe(
+            @Param("pacienteId") Long pacienteId,
+            @Param("fecha") LocalDateTime fecha,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    /**
+     * Primera página de las citas con un estado, por fecha ascendente
+     * @param estado Estado de la cita
+     * @param pageable Tamaño de página
+     * @return Citas de la primera página
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    List<Cita> findByEstadoOrderByFechaHoraAscIdAsc(EstadoCita estado, Pageable pageable);
+
+    /**
+     * Página siguiente de las citas con un estado, por fecha ascendente
+     * @param estado Estado de la cita
+     * @param fecha Fecha/hora de la última cita de la página anterior
+     * @param id ID de la última cita de la página anterior
+     * @param pageable Tamaño de página
+     * @return Citas posteriores al cursor
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    @Query("SELECT c FROM Cita c WHERE c.estado = :estado " +
+            "AND (c.fechaHora > :fecha OR (c.fechaHora = :fecha AND c.id > :id)) " +
+            "ORDER BY c.fechaHora ASC, c.id ASC")
+    List<Cita> findByEstadoDespuesDe(
+            @Param("estado") EstadoCita estado,
+            @Param("fecha") LocalDateTime fecha,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
     // ========================================
     // QUERIES PERSONALIZADAS CON @Query
     // ========================================
 
     /**
      * Busca citas de un médico en una fecha específica (solo el día, sin hora)
+     * Se resuelve como el rango [fecha 00:00, fecha+1 00:00) para que la BD
+     * pueda usar el índice (medico_id, fecha_hora)
      * @param medicoId ID del médico
      * @param fecha Fecha a consultar
      * @return Lista de citas del médico en esa fecha
      */
+    default List<Cita> findByMedicoIdAndFecha(Long medicoId, LocalDate fecha) {
+        return findByMedicoIdEnRango(medicoId, fecha.atStartOfDay(), fecha.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Busca citas de un médico en el rango semiabierto [inicio, fin)
+     * @param medicoId ID del médico
+     * @param inicio Inicio del rango (incluido)
+     * @param fin Fin del rango (excluido)
+     * @return Lista de citas del médico en ese rango
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
     @Query("SELECT c FROM Cita c WHERE c.medico.id = :medicoId " +
-            "AND DATE(c.fechaHora) = :fecha " +
+            "AND c.fechaHora >= :inicio AND c.fechaHora < :fin " +
             "ORDER BY c.fechaHora ASC")
-    List<Cita> findByMedicoIdAndFecha(
+    List<Cita> findByMedicoIdEnRango(
             @Param("medicoId") Long medicoId,
-            @Param("fecha") LocalDate fecha
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin
     );
 
     /**
      * Busca citas de un paciente en una fecha específica
+     * Se resuelve como el rango [fecha 00:00, fecha+1 00:00) para que la BD
+     * pueda usar el índice (paciente_id, fecha_hora)
      * @param pacienteId ID del paciente
      * @param fecha Fecha a consultar
      * @return Lista de citas del paciente en esa fecha
      */
+    default List<Cita> findByPacienteIdAndFecha(Long pacienteId, LocalDate fecha) {
+        return findByPacienteIdEnRango(pacienteId, fecha.atStartOfDay(), fecha.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Busca citas de un paciente en el rango semiabierto [inicio, fin)
+     * @param pacienteId ID del paciente
+     * @param inicio Inicio del rango (incluido)
+     * @param fin Fin del rango (excluido)
+     * @return Lista de citas del paciente en ese rango
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
     @Query("SELECT c FROM Cita c WHERE c.paciente.id = :pacienteId " +
-            "AND DATE(c.fechaHora) = :fecha " +
+            "AND c.fechaHora >= :inicio AND c.fechaHora < :fin " +
             "ORDER BY c.fechaHora ASC")
-    List<Cita> findByPacienteIdAndFecha(
+    List<Cita> findByPacienteIdEnRango(
             @Param("pacienteId") Long pacienteId,
-            @Param("fecha") LocalDate fecha
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin
     );
 
     /**
@@ -145,26 +363,45 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
      * @param fecha Fecha a consultar
      * @return Número de citas
      */
+    default long countByMedicoIdAndFecha(Long medicoId, LocalDate fecha) {
+        return countByMedicoIdEnRango(medicoId, fecha.atStartOfDay(), fecha.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Cuenta las citas de un médico en el rango semiabierto [inicio, fin)
+     * @param medicoId ID del médico
+     * @param inicio Inicio del rango (incluido)
+     * @param fin Fin del rango (excluido)
+     * @return Número de citas
+     */
     @Query("SELECT COUNT(c) FROM Cita c WHERE c.medico.id = :medicoId " +
-            "AND DATE(c.fechaHora) = :fecha")
-    long countByMedicoIdAndFecha(
+            "AND c.fechaHora >= :inicio AND c.fechaHora < :fin")
+    long countByMedicoIdEnRango(
             @Param("medicoId") Long medicoId,
-            @Param("fecha") LocalDate fecha
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin
     );
 
     /**
      * Busca citas que se solapen con un horario específico
      * Para validar disponibilidad del médico
+     * Usa la columna persistida fecha_fin, de modo que el predicado es un rango
+     * puro servible por el índice (medico_id, fecha_hora, fecha_fin)
+     * Las citas antiguas con fecha_fin aún NULL (FechaFinBackfill no ha terminado)
+     * calculan el fin a partir de la duración, para que no queden fuera del solapamiento
      * @param medicoId ID del médico
      * @param inicio Hora de inicio de la nueva cita
      * @param fin Hora de fin de la nueva cita
      * @param estados Estados a considerar (generalmente PENDIENTE y CONFIRMADA)
+     * Es una lectura con bloqueo (FOR SHARE): ve siempre la última versión confirmada,
+     * aunque la transacción ya tenga una instantánea anterior
      * @return Lista de citas que se solapan
      */
+    @Lock(LockModeType.PESSIMISTIC_READ)
     @Query("SELECT c FROM Cita c WHERE c.medico.id = :medicoId " +
-            "AND c.estado IN :estados " +
             "AND c.fechaHora < :fin " +
-            "AND FUNCTION('DATE_ADD', c.fechaHora, c.duracionMinutos, 'MINUTE') > :inicio")
+            "AND COALESCE(c.fechaFin, c.fechaHora + c.duracionMinutos minute) > :inicio " +
+            "AND c.estado IN :estados")
     List<Cita> findCitasConflictivas(
             @Param("medicoId") Long medicoId,
             @Param("inicio") LocalDateTime inicio,
@@ -172,13 +409,139 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
             @Param("estados") List<EstadoCita> estados
     );
 
+    /**
+     * Cambia el estado de una cita solo si sigue en alguno de los estados esperados
+     * Es un único UPDATE condicional: de dos peticiones concurrentes sobre la misma
+     * transición solo una actualiza la fila; la otra recibe 0
+     * @param citaId ID de la cita
+     * @param esperados Estados desde los que se permite la transición
+     * @param nuevo Estado destino
+     * @return Número de filas actualizadas (0 o 1)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cita c SET c.estado = :nuevo, c.version = c.version + 1 " +
+            "WHERE c.id = :citaId AND c.estado IN :esperados")
+    int cambiarEstado(
+            @Param("citaId") Long citaId,
+            @Param("esperados") List<EstadoCita> esperados,
+            @Param("nuevo") EstadoCita nuevo
+    );
+
+    /**
+     * Marca como recordado un bloque de citas con un único UPDATE
+     * No cambia la versión: no es una modificación de la cita y no debe invalidar
+     * los formularios abiertos
+     * @param citaIds IDs de las citas
+     * @param enviado Momento del envío
+     * @return Número de filas actualizadas
+     */
+    @Modifying
+    @Query("UPDATE Cita c SET c.recordatorioEnviado = :enviado WHERE c.id IN :citaIds")
+    int marcarRecordatorioEnviado(
+            @Param("citaIds") Collection<Long> citaIds,
+            @Param("enviado") LocalDateTime enviado
+    );
+
+    /**
+     * Borra la marca de recordatorio de una cita reprogramada, para que se recuerde la nueva hora
+     * @param citaId ID de la cita
+     * @return Número de filas actualizadas
+     */
+    @Modifying
+    @Query("UPDATE Cita c SET c.recordatorioEnviado = NULL WHERE c.id = :citaId")
+    int olvidarRecordatorio(@Param("citaId") Long citaId);
+
+    /**
+     * Cambia el estado de un bloque de citas con un único UPDATE
+     * Solo se actualizan las que siguen en el estado esperado
+     * @param citaIds IDs de las citas
+     * @param esperado Estado desde el que se permite la transición
+     * @param nuevo Estado destino
+     * @return Número de filas actualizadas
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cita c SET c.estado = :nuevo, c.version = c.version + 1 " +
+            "WHERE c.id IN :citaIds AND c.estado = :esperado")
+    int cambiarEstadoEnBloque(
+            @Param("citaIds") Collection<Long> citaIds,
+            @Param("esperado") EstadoCita esperado,
+            @Param("nuevo") EstadoCita nuevo
+    );
+
+    /**
+     * Obtiene los intervalos horarios de las citas con alguno de los estados indicados
+     * a partir de una fecha. Solo lee las columnas necesarias para calcular disponibilidad
+     * @param estados Estados a considerar (generalmente PENDIENTE y CONFIRMADA)
+     * @param desde Fecha/hora a partir de la cual cargar
+     * @return Lista de intervalos (cita, médico, inicio, duración)
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.IntervaloCita(" +
+            "c.id, c.medico.id, c.fechaHora, c.duracionMinutos) " +
+            "FROM Cita c WHERE c.estado IN :estados " +
+            "AND c.fechaHora >= :desde")
+    List<IntervaloCita> findIntervalosActivosDesde(
+            @Param("estados") List<EstadoCita> estados,
+            @Param("desde") LocalDateTime desde
+    );
+
+    /**
+     * Obtiene los intervalos de varios médicos que se solapan con el rango [desde, hasta)
+     * Se usa en la importación masiva para comprobar conflictos de un lote entero en memoria
+     * y en la búsqueda de huecos libres, con un solo médico por consulta
+     * @param medicoIds IDs de los médicos
+     * @param estados Estados a considerar (generalmente PENDIENTE y CONFIRMADA)
+     * @param desde Inicio del rango
+     * @param hasta Fin del rango (excluido)
+     * @return Lista de intervalos (cita, médico, inicio, duración)
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.IntervaloCita(" +
+            "c.id, c.medico.id, c.fechaHora, c.duracionMinutos) " +
+            "FROM Cita c WHERE c.medico.id IN :medicoIds " +
+            "AND c.estado IN :estados " +
+            "AND c.fechaHora < :hasta " +
+            "AND COALESCE(c.fechaFin, c.fechaHora + c.duracionMinutos minute) > :desde")
+    List<IntervaloCita> findIntervalosDeMedicosEnRango(
+            @Param("medicoIds") Collection<Long> medicoIds,
+            @Param("estados") List<EstadoCita> estados,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
+    /**
+     * Obtiene, con bloqueo compartido, los intervalos activos de un médico que se solapan
+     * con el rango [desde, hasta)
+     * Se usa al agendar una serie: una sola consulta comprueba todas sus citas
+     * @param medicoId ID del médico
+     * @param estados Estados a considerar (generalmente PENDIENTE y CONFIRMADA)
+     * @param desde Inicio del rango
+     * @param hasta Fin del rango (excluido)
+     * @return Lista de intervalos (cita, médico, inicio, duración)
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.IntervaloCita(" +
+            "c.id, c.medico.id, c.fechaHora, c.duracionMinutos) " +
+            "FROM Cita c WHERE c.medico.id = :medicoId " +
+            "AND c.estado IN :estados " +
+            "AND c.fechaHora < :hasta " +
+            "AND COALESCE(c.fechaFin, c.fechaHora + c.duracionMinutos minute) > :desde")
+    List<IntervaloCita> findIntervalosDeMedicoParaReservar(
+            @Param("medicoId") Long medicoId,
+            @Param("estados") List<EstadoCita> estados,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
     /**
      * Obtiene las últimas N citas creadas (para dashboard de administrador)
-     * @param limite Número máximo de citas a retornar
-     * @return Lista de citas recientes
+     * Devuelve un resumen con los nombres ya resueltos; usa el índice sobre fecha_creacion
+     * @param pageable Tamaño de página (número máximo de citas a retornar)
+     * @return Lista de citas recientes (las más nuevas primero)
      */
-    @Query("SELECT c FROM Cita c ORDER BY c.fechaCreacion DESC")
-    List<Cita> findUltimasCitasCreadas(@Param("limite") int limite);
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.CitaReciente(" +
+            "c.id, c.fechaCreacion, c.fechaHora, CONCAT(p.nombre, ' ', p.apellidos), m.nombre, c.motivo) " +
+            "FROM Cita c JOIN c.paciente p JOIN c.medico m " +
+            "ORDER BY c.fechaCreacion DESC, c.id DESC")
+    List<CitaReciente> findUltimasCitasCreadas(Pageable pageable);
 
     /**
      * Busca citas activas (PENDIENTE o CONFIRMADA) de un médico
@@ -200,6 +563,105 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
             "ORDER BY c.fechaHora ASC")
     List<Cita> findCitasActivasByPacienteId(@Param("pacienteId") Long pacienteId);
 
+    /**
+     * Busca las primeras citas activas (PENDIENTE o CONFIRMADA) de un médico (top-N)
+     * @param medicoId ID del médico
+     * @param pageable Tamaño de página (número máximo de citas)
+     * @return Lista de citas activas
+     */
+    @EntityGraph(attributePaths = {"paciente", "medico"})
+    @Query("SELECT c FROM Cita c WHERE c.medico.id = :medicoId " +
+            "AND c.estado IN ('PENDIENTE', 'CONFIRMADA') " +
+            "ORDER BY c.fechaHora ASC")
+    List<Cita> findCitasActivasByMedicoId(@Param("medicoId") Long medicoId, Pageable pageable);
+
+    // ========================================
+    // CONSULTAS DE ESTADÍSTICAS
+    // ========================================
+
+    /**
+     * Cuenta las citas agrupadas por estado en una sola consulta
+     * @return Lista con el total de citas de cada estado presente
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.ConteoPorEstado(c.estado, COUNT(c)) " +
+            "FROM Cita c GROUP BY c.estado")
+    List<ConteoPorEstado> contarAgrupadasPorEstado();
+
+    /**
+     * Cuenta las citas de un paciente agrupadas por estado
+     * @param pacienteId ID del paciente
+     * @return Lista con el total de citas del paciente en cada estado presente
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.ConteoPorEstado(c.estado, COUNT(c)) " +
+            "FROM Cita c WHERE c.paciente.id = :pacienteId GROUP BY c.estado")
+    List<ConteoPorEstado> contarPorEstadoDePaciente(@Param("pacienteId") Long pacienteId);
+
+    /**
+     * Cuenta las citas activas (PENDIENTE o CONFIRMADA) agrupadas por médico
+     * @return Lista con el total de citas activas de cada médico que tenga alguna
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.ConteoPorMedico(c.medico.id, COUNT(c)) " +
+            "FROM Cita c WHERE c.estado IN ('PENDIENTE', 'CONFIRMADA') " +
+            "GROUP BY c.medico.id")
+    List<ConteoPorMedico> contarActivasAgrupadasPorMedico();
+
+    /**
+     * Cuenta las citas con un estado cuya fecha/hora cae en el rango [inicio, fin)
+     * @param estado Estado de la cita
+     * @param inicio Inicio del rango (incluido)
+     * @param fin Fin del rango (excluido)
+     * @return Número de citas
+     */
+    @Query("SELECT COUNT(c) FROM Cita c WHERE c.estado = :estado " +
+            "AND c.fechaHora >= :inicio AND c.fechaHora < :fin")
+    long countByEstadoEnRango(
+            @Param("estado") EstadoCita estado,
+            @Param("inicio") LocalDateTime inicio,
+            @Param("fin") LocalDateTime fin
+    );
+
+    // ========================================
+    // EXPORTACIÓN
+    // ========================================
+
+    /**
+     * Recorre las citas de un rango de fechas para exportarlas, sin cargarlas todas en memoria
+     * Devuelve proyecciones (no entidades) leídas con un cursor de solo avance de 1000 filas por viaje;
+     * el Stream debe cerrarse y consumirse dentro de una transacción
+     * @param desde Inicio del rango (incluido)
+     * @param hasta Fin del rango (excluido)
+     * @return Filas ordenadas por fecha/hora
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.FilaExportacionCita(" +
+            "c.id, p.dni, p.nombre, p.apellidos, m.username, m.nombre, c.fechaHora, c.duracionMinutos, c.estado, c.motivo) " +
+            "FROM Cita c JOIN c.paciente p JOIN c.medico m " +
+            "WHERE c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "ORDER BY c.fechaHora, c.id")
+    Stream<FilaExportacionCita> streamParaExportar(
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
+    /**
+     * Igual que streamParaExportar pero de un solo médico (recorre el índice medico_id, fecha_hora)
+     * @param medicoId ID del médico
+     * @param desde Inicio del rango (incluido)
+     * @param hasta Fin del rango (excluido)
+     * @return Filas ordenadas por fecha/hora
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.FilaExportacionCita(" +
+            "c.id, p.dni, p.nombre, p.apellidos, m.username, m.nombre, c.fechaHora, c.duracionMinutos, c.estado, c.motivo) " +
+            "FROM Cita c JOIN c.paciente p JOIN c.medico m " +
+            "WHERE m.id = :medicoId AND c.fechaHora >= :desde AND c.fechaHora < :hasta " +
+            "ORDER BY c.fechaHora, c.id")
+    Stream<FilaExportacionCita> streamDeMedicoParaExportar(
+            @Param("medicoId") Long medicoId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta
+    );
+
     // ========================================
     // MÉTODOS DE VERIFICACIÓN
     // ========================================
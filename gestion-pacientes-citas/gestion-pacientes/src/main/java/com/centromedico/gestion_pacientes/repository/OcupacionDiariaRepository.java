@@ -0,0 +1,76 @@
+package com.centromedico.gestion_pacientes.repository;
+
+import com.centromedico.gestion_pacientes.entity.OcupacionDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio del resumen diario de ocupación de los médicos
+ * Las filas se recalculan desde citas con DELETE + INSERT ... SELECT por médico y rango de días,
+ * que recorre el índice (medico_id, fecha_hora) de citas
+ */
+@Repository
+public interface OcupacionDiariaRepository extends JpaRepository<OcupacionDiaria, OcupacionDiaria.Clave> {
+
+    /**
+     * Obtiene las filas de un rango de días (lectura de los informes)
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     * @return Filas ordenadas por médico y día
+     */
+    @Query("SELECT o FROM OcupacionDiaria o WHERE o.fecha >= :desde AND o.fecha <= :hasta " +
+            "ORDER BY o.medicoId, o.fecha")
+    List<OcupacionDiaria> findEnRango(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Borra las filas de un médico en un rango de días, antes de recalcularlas
+     * @param medicoId ID del médico
+     * @param desde Primer día (incluido)
+     * @param hasta Día siguiente al último (excluido)
+     * @return Filas borradas
+     */
+    @Modifying
+    @Query(value = "DELETE FROM ocupacion_diaria WHERE medico_id = :medicoId AND fecha >= :desde AND fecha < :hasta",
+            nativeQuery = true)
+    int borrarDeMedico(
+            @Param("medicoId") Long medicoId,
+            @Param("desde") LocalDate desde,
+            @Param("hasta") LocalDate hasta
+    );
+
+    /**
+     * Calcula desde citas las filas de un médico en un rango de fechas (una por día con citas)
+     * @param medicoId ID del médico
+     * @param desde Inicio del rango (incluido, a las 00:00)
+     * @param hasta Fin del rango (excluido, a las 00:00)
+     * @param ahora Momento del cálculo: las citas activas que terminaron antes cuentan como no presentadas
+     * @return Filas insertadas
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ocupacion_diaria (medico_id, fecha, citas_totales, citas_atendidas, " +
+            "citas_canceladas, citas_no_presentadas, minutos_reservados, actualizado) " +
+            "SELECT c.medico_id, CAST(c.fecha_hora AS DATE), COUNT(*), " +
+            "SUM(CASE WHEN c.estado = 'COMPLETADA' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN c.estado = 'CANCELADA' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN c.estado IN ('PENDIENTE', 'CONFIRMADA') " +
+            "AND COALESCE(c.fecha_fin, TIMESTAMPADD(MINUTE, c.duracion_minutos, c.fecha_hora)) < :ahora " +
+            "THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN c.estado <> 'CANCELADA' THEN c.duracion_minutos ELSE 0 END), " +
+            ":ahora " +
+            "FROM citas c WHERE c.medico_id = :medicoId AND c.fecha_hora >= :desde AND c.fecha_hora < :hasta " +
+            "GROUP BY c.medico_id, CAST(c.fecha_hora AS DATE)",
+            nativeQuery = true)
+    int calcularDeMedico(
+            @Param("medicoId") Long medicoId,
+            @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta,
+            @Param("ahora") LocalDateTime ahora
+    );
+}
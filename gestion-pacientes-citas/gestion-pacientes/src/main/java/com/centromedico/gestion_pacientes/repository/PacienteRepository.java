@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,6 +34,13 @@ public interface PacienteRepository extends JpaRepository<Paciente, Long> {
      */
     Optional<Paciente> findByDni(String dni);
 
+    /**
+     * Busca varios pacientes por DNI en una sola consulta
+     * @param dnis documentos de identidad
+     * @return lista de pacientes encontrados
+     */
+    List<Paciente> findByDniIn(Collection<String> dnis);
+
     /**
      * Busca todos los pacientes activos
      * @return lista de pacientes activos
@@ -73,4 +81,13 @@ public interface PacienteRepository extends JpaRepository<Paciente, Long> {
      * @return número de pacientes
      */
     long countByMedicoId(Long medicoId);
+
+    /**
+     * Obtiene solo el ID del médico asignado a un paciente
+     * Se usa en las comprobaciones de permisos sin cargar el paciente completo
+     * @param pacienteId ID del paciente
+     * @return Optional con el ID del médico (vacío si no existe o no tiene médico)
+     */
+    @Query("SELECT p.medico.id FROM Paciente p WHERE p.id = :pacienteId")
+    Optional<Long> findMedicoIdById(@Param("pacienteId") Long pacienteId);
 }
\ No newline at end of file
@@ -3,9 +3,14 @@ package com.centromedico.gestion_pacientes.repository;
 
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,6 +43,31 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
      */
     List<Usuario> findByRol(Rol rol);
 
+    /**
+     * Busca un usuario bloqueando su fila hasta el fin de la transacción (SELECT ... FOR UPDATE)
+     * Serializa las reservas de un mismo médico sin bloquear las de los demás
+     * @param id ID del usuario (médico)
+     * @return Optional con el usuario si existe
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM Usuario u WHERE u.id = :id")
+    Optional<Usuario> findByIdParaReservar(@Param("id") Long id);
+
+    /**
+     * Busca varios usuarios de un rol por username en una sola consulta
+     * @param usernames nombres de usuario
+     * @param rol tipo de rol
+     * @return lista de usuarios encontrados
+     */
+    List<Usuario> findByUsernameInAndRol(Collection<String> usernames, Rol rol);
+
+    /**
+     * Cuenta usuarios por rol
+     * @param rol tipo de rol (ADMIN, MEDICO, RECEPCION)
+     * @return número de usuarios con ese rol
+     */
+    long countByRol(Rol rol);
+
     /**
      * Busca usuarios activos
      * @param activo estado del usuario
@@ -0,0 +1,222 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.CambioAgenda;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Agenda en vivo: envía los cambios de citas a las agendas abiertas (Server-Sent Events)
+ * Sustituye el refresco periódico de la agenda del médico y de la lista de recepción.
+ *
+ * Cada conexión es un SseEmitter asíncrono: mientras no hay cambios no ocupa ningún hilo
+ * del servidor, solo una entrada en el registro. Después del commit el cambio se deja
+ * en la cola acotada de cada conexión, sin esperar a ningún navegador; un hilo de
+ * agendaEnVivoExecutor vacía cada cola por orden, y nunca hay dos vaciando la misma.
+ * Un navegador lento solo retrasa su propia cola. Si su cola se llena, la conexión
+ * se cierra: el navegador reconecta y pide recargar la agenda en lugar de perder
+ * cambios sin enterarse.
+ */
+@Service
+@RequiredArgsConstructor
+public class AgendaEnVivoService {
+
+    /** Tiempo máximo de una conexión; el navegador reconecta solo al expirar */
+    private static final long TIMEOUT_MS = 30 * 60 * 1000L;
+
+    /** Tiempo que espera el navegador antes de reconectar tras un corte */
+    private static final long RECONEXION_MS = 5_000L;
+
+    /** Mensajes pendientes que admite cada conexión antes de cerrarla */
+    private static final int CAPACIDAD_COLA = 100;
+
+    private static final String NOMBRE_EVENTO = "cita";
+
+    private final ContextoAcceso contextoAcceso;
+    private final Executor agendaEnVivoExecutor;
+
+    // ID de médico -> agendas abiertas de ese médico
+    private final Map<Long, Set<Conexion>> porMedico = new ConcurrentHashMap<>();
+
+    // Agendas que reciben los cambios de todos los médicos (recepción y administración)
+    private final Set<Conexion> todos = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Una agenda abierta con sus mensajes pendientes de enviar
+     */
+    private static final class Conexion {
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> pendientes = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+        private final AtomicBoolean vaciando = new AtomicBoolean();
+
+        private Conexion(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    // ============================================
+    // SUSCRIPCIÓN
+    // ============================================
+
+    /**
+     * Abre una suscripción a los cambios de citas
+     * - MEDICO: solo recibe los cambios de su propia agenda
+     * - ADMIN y RECEPCION: los de un médico concreto o, sin médico, los de todos
+     * @param medicoId ID del médico a seguir (opcional)
+     * @return Emisor SSE asociado a la conexión
+     * @throws AccessDeniedException si un médico intenta seguir una agenda ajena
+     */
+    public SseEmitter suscribir(Long medicoId) {
+        if (contextoAcceso.esMedico()) {
+            if (medicoId != null && !contextoAcceso.esUsuarioActual(medicoId)) {
+                throw new AccessDeniedException("No tiene permiso para ver la agenda de otro médico");
+            }
+            medicoId = contextoAcceso.getUsuario().getId();
+        }
+
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MS);
+        Conexion conexion = new Conexion(emitter);
+        Long clave = medicoId;
+        if (clave == null) {
+            todos.add(conexion);
+        } else {
+            porMedico.compute(clave, (id, conexiones) -> {
+                Set<Conexion> destino = conexiones != null ? conexiones : ConcurrentHashMap.newKeySet();
+                destino.add(conexion);
+                return destino;
+            });
+        }
+
+        Runnable quitar = () -> quitar(clave, conexion);
+        emitter.onCompletion(quitar);
+        emitter.onTimeout(quitar);
+        emitter.onError(e -> quitar.run());
+
+        // Primer mensaje: abre el flujo en el navegador y fija el tiempo de reconexión
+        try {
+            emitter.send(SseEmitter.event().reconnectTime(RECONEXION_MS).comment("conectado"));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Número de conexiones abiertas
+     * @return Total de agendas suscritas
+     */
+    public int contarSuscripciones() {
+        return todos.size() + porMedico.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void quitar(Long medicoId, Conexion conexion) {
+        if (medicoId == null) {
+            todos.remove(conexion);
+        } else {
+            porMedico.computeIfPresent(medicoId, (id, conexiones) -> {
+                conexiones.remove(conexion);
+                return conexiones.isEmpty() ? null : conexiones;
+            });
+        }
+    }
+
+    // ============================================
+    // DIFUSIÓN
+    // ============================================
+
+    /**
+     * Encola el cambio en las agendas del médico y en las generales cuando la transacción hace commit
+     * La petición que cambió la cita no espera a los navegadores
+     * @param evento Cambio de la cita
+     */
+    @TransactionalEventListener
+    public void alCambiarCita(CitaEstadoCambiadoEvent evento) {
+        if (todos.isEmpty() && !porMedico.containsKey(evento.medicoId())) {
+            return;
+        }
+        CambioAgenda cambio = CambioAgenda.desde(evento);
+        encolar(porMedico.get(cambio.medicoId()), cambio);
+        encolar(todos, cambio);
+    }
+
+    /**
+     * Envía un comentario vacío a todas las conexiones cada 25 segundos
+     * Evita que proxies cierren conexiones inactivas y detecta navegadores que ya se fueron
+     */
+    @Scheduled(fixedRate = 25_000)
+    public void latido() {
+        porMedico.values().forEach(conexiones -> encolar(conexiones, null));
+        encolar(todos, null);
+    }
+
+    /**
+     * Encola un cambio (o un latido si es null) en un grupo de conexiones
+     * La conexión cuya cola está llena se cierra: el navegador reconecta y avisa de recargar
+     */
+    private void encolar(Set<Conexion> conexiones, CambioAgenda cambio) {
+        if (conexiones == null) {
+            return;
+        }
+        for (Conexion conexion : conexiones) {
+            SseEmitter.SseEventBuilder mensaje = cambio == null
+                    ? SseEmitter.event().comment("latido")
+                    : SseEmitter.event().name(NOMBRE_EVENTO).data(cambio, MediaType.APPLICATION_JSON);
+            if (conexion.pendientes.offer(mensaje)) {
+                programarVaciado(conexion);
+            } else {
+                conexion.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Programa el vaciado de la cola si no hay ya un hilo vaciándola
+     */
+    private void programarVaciado(Conexion conexion) {
+        if (!conexion.vaciando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            agendaEnVivoExecutor.execute(() -> vaciar(conexion));
+        } catch (RejectedExecutionException e) {
+            conexion.vaciando.set(false);
+            conexion.emitter.complete();
+        }
+    }
+
+    /**
+     * Envía por orden los mensajes pendientes de una conexión
+     * Al terminar vuelve a mirar la cola: un mensaje encolado mientras se soltaba la marca
+     * no se queda sin enviar
+     * Las conexiones que fallan se cierran y salen del registro por onError/onCompletion
+     */
+    private void vaciar(Conexion conexion) {
+        do {
+            SseEmitter.SseEventBuilder mensaje;
+            while ((mensaje = conexion.pendientes.poll()) != null) {
+                try {
+                    conexion.emitter.send(mensaje);
+                } catch (IOException | IllegalStateException e) {
+                    conexion.pendientes.clear();
+                    conexion.emitter.completeWithError(e);
+                }
+            }
+            conexion.vaciando.set(false);
+        } while (!conexion.pendientes.isEmpty() && conexion.vaciando.compareAndSet(false, true));
+    }
+}
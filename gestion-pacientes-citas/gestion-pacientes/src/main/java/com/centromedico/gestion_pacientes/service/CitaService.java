@@ -1,28 +1,50 @@
 package com.centromedico.gestion_pacientes.service;
 
-import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.dto.ConteoPorEstado;
+import com.centromedico.gestion_pacientes.dto.HuecoLibre;
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
+import com.centromedico.gestion_pacientes.dto.OcurrenciaConflictiva;
+import com.centromedico.gestion_pacientes.dto.PaginaCitas;
+import com.centromedico.gestion_pacientes.dto.ReglaRecurrencia;
+import com.centromedico.gestion_pacientes.dto.ResultadoSerieCitas;
 import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.CitaEvento;
 import com.centromedico.gestion_pacientes.entity.EstadoCita;
 import com.centromedico.gestion_pacientes.entity.Paciente;
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import com.centromedico.gestion_pacientes.repository.CitaEventoRepository;
 import com.centromedico.gestion_pacientes.repository.CitaRepository;
 import com.centromedico.gestion_pacientes.repository.PacienteRepository;
 import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.Arrays;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 
 @Service
@@ -30,59 +52,76 @@ import java.util.Optional;
 @Transactional
 public class CitaService {
 
+    /** Horario de atención en el que se ofrecen huecos */
+    public static final LocalTime HORA_APERTURA = LocalTime.of(8, 0);
+    public static final LocalTime HORA_CIERRE = LocalTime.of(20, 0);
+
+    /** Duración máxima de una cita; también acota cuánto antes de un rango puede empezar una cita que lo ocupa */
+    public static final int DURACION_MAXIMA_MINUTOS = 240;
+
+    /** Los huecos se ofrecen alineados a múltiplos de 15 minutos */
+    private static final int PASO_MINUTOS = 15;
+
+    /** Tamaño de página de los listados de citas */
+    public static final int TAMANO_PAGINA_DEFECTO = 20;
+    public static final int TAMANO_PAGINA_MAXIMO = 100;
+
+    /** Límites para que una búsqueda no recorra agendas enteras */
+    private static final int MAX_HUECOS = 50;
+    private static final int MAX_DIAS_BUSQUEDA = 31;
+
     private final CitaRepository citaRepository;
     private final PacienteRepository pacienteRepository;
     private final UsuarioRepository usuarioRepository;
+    private final DisponibilidadMedicoIndex disponibilidadIndex;
+    private final Executor agendaExecutor;
+    private final EstadisticasCitasCache estadisticasCache;
+    private final UltimasCitasBuffer ultimasCitasBuffer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ContextoAcceso contextoAcceso;
+    private final CitaEventoRepository citaEventoRepository;
 
     /**
-     * Obtiene el usuario autenticado actualmente
-     * @return Usuario autenticado
-     */
-    private Usuario getUsuarioAutenticado() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails) {
-            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
-            return userDetails.getUsuario();
-        }
-        throw new AccessDeniedException("No hay usuario autenticado");
-    }
-
-    /**
-     * Verifica si el usuario actual es ADMIN
-     * @return true si es ADMIN
-     */
-    private boolean esAdmin() {
-        Usuario usuario = getUsuarioAutenticado();
-        return usuario.getRol() == Rol.ADMIN;
-    }
-
-    /**
-     * Verifica si el usuario actual es MEDICO
-     * @return true si es MEDICO
+     * Verifica si la cita pertenece al médico actual
+     * @param cita Cita a verificar
+     * @return true si la cita es del médico actual
      */
-    private boolean esMedico() {
-        Usuario usuario = getUsuarioAutenticado();
-        return usuario.getRol() == Rol.MEDICO;
+    private boolean esSuCita(Cita cita) {
+        return cita.getMedico() != null && contextoAcceso.esUsuarioActual(cita.getMedico().getId());
     }
 
     /**
-     * Verifica si el usuario actual es RECEPCION
-     * @return true si es RECEPCION
+     * Publica el cambio de una cita para que lo reciban los listeners tras el commit
+     * @param cita Cita ya guardada
+     * @param estadoAnterior Estado antes del cambio (null si es nueva)
+     * @param fechaHoraAnterior Fecha/hora antes del cambio (null si es nueva)
      */
-    private boolean esRecepcion() {
-        Usuario usuario = getUsuarioAutenticado();
-        return usuario.getRol() == Rol.RECEPCION;
+    private void publicarCambio(Cita cita, EstadoCita estadoAnterior, LocalDateTime fechaHoraAnterior) {
+        eventPublisher.publishEvent(new CitaEstadoCambiadoEvent(
+                cita.getId(),
+                cita.getMedico().getId(),
+                estadoAnterior,
+                cita.getEstado(),
+                fechaHoraAnterior,
+                cita.getFechaHora()
+        ));
     }
 
     /**
-     * Verifica si la cita pertenece al médico actual
-     * @param cita Cita a verificar
-     * @return true si la cita es del médico actual
+     * Añade un evento al historial de la cita (una inserción, sin leer la cita)
+     * @param citaId ID de la cita
+     * @param estadoAnterior Estado antes del cambio (null si es nueva)
+     * @param estadoNuevo Estado después del cambio
+     * @param nota Nota asociada (motivo, observaciones...), puede ser null
      */
-    private boolean esSuCita(Cita cita) {
-        Usuario usuario = getUsuarioAutenticado();
-        return cita.getMedico() != null &&
-                cita.getMedico().getId().equals(usuario.getId());
+    private void registrarEvento(Long citaId, EstadoCita estadoAnterior, EstadoCita estadoNuevo, String nota) {
+        CitaEvento evento = new CitaEvento();
+        evento.setCita(citaRepository.getReferenceById(citaId));
+        evento.setEstadoAnterior(estadoAnterior);
+        evento.setEstadoNuevo(estadoNuevo);
+        evento.setNota(nota);
+        evento.setAutor(contextoAcceso.getUsuario().getUsername());
+        citaEventoRepository.save(evento);
     }
 
     // ============================================
@@ -91,6 +130,10 @@ public class CitaService {
 
     /**
      * Valida que no existan conflictos de horario para el médico
+     * Descarta primero contra el índice en memoria (sin tocar la BD) y, si no hay
+     * conflicto, bloquea la fila del médico y comprueba contra la BD.
+     * El bloqueo se mantiene hasta el commit, así que dos reservas concurrentes del
+     * mismo médico no pueden pasar ambas la comprobación; las de otros médicos no esperan.
      * @param cita Cita a validar
      * @throws IllegalStateException si hay conflicto
      */
@@ -98,31 +141,61 @@ public class CitaService {
         LocalDateTime inicio = cita.getFechaHora();
         LocalDateTime fin = inicio.plusMinutes(cita.getDuracionMinutos());
 
-        // Buscar citas que puedan causar conflicto (PENDIENTE y CONFIRMADA)
-        List<EstadoCita> estadosActivos = Arrays.asList(EstadoCita.PENDIENTE, EstadoCita.CONFIRMADA);
+        // Comprobación rápida contra el índice (sin tocar la BD)
+        disponibilidadIndex.buscarConflicto(cita.getMedico().getId(), inicio, fin, cita.getId())
+                .ifPresent(conflicto -> {
+                    throw conflictoDeHorario(conflicto.inicio(), conflicto.fin());
+                });
+
+        // Comprobación definitiva en BD con el médico bloqueado
+        usuarioRepository.findByIdParaReservar(cita.getMedico().getId())
+                .orElseThrow(() -> new IllegalArgumentException("Médico no encontrado"));
+        validarDisponibilidadEnBD(cita);
+    }
+
+    /**
+     * Valida contra la BD que no existan citas activas del médico que se solapen
+     * @param cita Cita a validar
+     * @throws IllegalStateException si hay conflicto
+     */
+    private void validarDisponibilidadEnBD(Cita cita) {
+        LocalDateTime inicio = cita.getFechaHora();
+        LocalDateTime fin = inicio.plusMinutes(cita.getDuracionMinutos());
 
         List<Cita> citasConflictivas = citaRepository.findCitasConflictivas(
                 cita.getMedico().getId(),
                 inicio,
                 fin,
-                estadosActivos
+                DisponibilidadMedicoIndex.ESTADOS_ACTIVOS
         );
 
-        // Si estamos editando una cita, excluirla de la validación
+        // Excluir la propia cita (ya insertada o en edición)
         if (cita.getId() != null) {
             citasConflictivas.removeIf(c -> c.getId().equals(cita.getId()));
         }
 
         if (!citasConflictivas.isEmpty()) {
             Cita conflicto = citasConflictivas.get(0);
-            throw new IllegalStateException(
-                    String.format("El médico ya tiene una cita en ese horario: %s - %s",
-                            conflicto.getFechaHoraFormateada(),
-                            conflicto.getRangoHorario())
-            );
+            throw conflictoDeHorario(conflicto.getFechaHora(), conflicto.getFechaHoraFin());
         }
     }
 
+    /**
+     * Construye la excepción de conflicto de horario
+     * @param inicio Inicio de la cita que ocupa el hueco
+     * @param fin Fin de la cita que ocupa el hueco
+     * @return Excepción con mensaje legible
+     */
+    private IllegalStateException conflictoDeHorario(LocalDateTime inicio, LocalDateTime fin) {
+        DateTimeFormatter fecha = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+        DateTimeFormatter hora = DateTimeFormatter.ofPattern("HH:mm");
+        return new IllegalStateException(
+                String.format("El médico ya tiene una cita en ese horario: %s - %s",
+                        inicio.format(fecha),
+                        inicio.format(hora) + " - " + fin.format(hora))
+        );
+    }
+
     /**
      * Valida que la fecha de la cita sea futura
      * @param fechaHora Fecha/hora a validar
@@ -143,8 +216,8 @@ public class CitaService {
         if (duracionMinutos == null || duracionMinutos <= 0) {
             throw new IllegalArgumentException("La duración debe ser mayor a 0 minutos");
         }
-        if (duracionMinutos > 240) {
-            throw new IllegalArgumentException("La duración no puede ser mayor a 240 minutos (4 horas)");
+        if (duracionMinutos > DURACION_MAXIMA_MINUTOS) {
+            throw new IllegalArgumentException("La duración no puede ser mayor a " + DURACION_MAXIMA_MINUTOS + " minutos (4 horas)");
         }
     }
 
@@ -161,8 +234,109 @@ public class CitaService {
      */
     @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'RECEPCION')")
     public Cita agendarCita(Cita cita) {
-        Usuario usuarioActual = getUsuarioAutenticado();
+        prepararNuevaCita(cita);
+
+        // Validar que no haya conflictos de horario
+        validarDisponibilidadMedico(cita);
+
+        // Establecer estado inicial
+        cita.setEstado(EstadoCita.PENDIENTE);
+
+        Cita citaGuardada = citaRepository.save(cita);
+        registrarEvento(citaGuardada.getId(), null, EstadoCita.PENDIENTE, null);
+        disponibilidadIndex.sincronizarAlConfirmar(citaGuardada);
+        ultimasCitasBuffer.registrarAlConfirmar(citaGuardada);
+        publicarCambio(citaGuardada, null, null);
+        return citaGuardada;
+    }
+
+    /**
+     * Agenda una serie de citas periódicas (pacientes crónicos, revisiones...)
+     * La cita plantilla es la primera de la serie; la regla indica cómo se repite.
+     * Todas las citas se comprueban contra la agenda del médico con una sola consulta
+     * y se guardan en la misma transacción. Las que chocan con otra cita no se
+     * agendan y se devuelven como conflictos
+     * @param plantilla Primera cita de la serie (paciente, médico, fecha/hora, duración, motivo)
+     * @param regla Regla de repetición
+     * @return Citas creadas y citas de la serie que no se pudieron agendar
+     * @throws IllegalStateException si ninguna cita de la serie está libre
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'RECEPCION')")
+    public ResultadoSerieCitas agendarSerie(Cita plantilla, ReglaRecurrencia regla) {
+        prepararNuevaCita(plantilla);
+        List<LocalDateTime> ocurrencias = regla.expandir(plantilla.getFechaHora());
+
+        Long medicoId = plantilla.getMedico().getId();
+        int duracion = plantilla.getDuracionMinutos();
+        LocalDateTime primera = ocurrencias.get(0);
+        LocalDateTime finUltima = ocurrencias.get(ocurrencias.size() - 1).plusMinutes(duracion);
+
+        // Médico bloqueado hasta el commit y una sola consulta para toda la serie
+        usuarioRepository.findByIdParaReservar(medicoId)
+                .orElseThrow(() -> new IllegalArgumentException("Médico no encontrado"));
+        NavigableSet<IntervaloCita> agenda = new TreeSet<>(
+                Comparator.comparing(IntervaloCita::inicio).thenComparing(IntervaloCita::citaId));
+        agenda.addAll(citaRepository.findIntervalosDeMedicoParaReservar(
+                medicoId, DisponibilidadMedicoIndex.ESTADOS_ACTIVOS, primera, finUltima));
+        int duracionMaxima = agenda.stream().mapToInt(IntervaloCita::duracionMinutos).max().orElse(0);
+        duracionMaxima = Math.max(duracionMaxima, duracion);
+
+        List<Cita> nuevas = new ArrayList<>();
+        List<OcurrenciaConflictiva> conflictos = new ArrayList<>();
+        for (LocalDateTime inicio : ocurrencias) {
+            LocalDateTime fin = inicio.plusMinutes(duracion);
+
+            // Solo pueden solaparse las citas que empiezan antes de 'fin' y, como mucho,
+            // 'duracionMaxima' minutos antes de 'inicio'
+            Optional<IntervaloCita> conflicto = agenda.subSet(
+                            new IntervaloCita(Long.MIN_VALUE, medicoId, inicio.minusMinutes(duracionMaxima), 0), true,
+                            new IntervaloCita(Long.MIN_VALUE, medicoId, fin, 0), false)
+                    .stream()
+                    .filter(intervalo -> intervalo.seSolapaCon(inicio, fin))
+                    .findFirst();
+
+            if (conflicto.isPresent()) {
+                conflictos.add(new OcurrenciaConflictiva(inicio,
+                        conflictoDeHorario(conflicto.get().inicio(), conflicto.get().fin()).getMessage()));
+                continue;
+            }
 
+            // Las citas ya aceptadas de la serie también ocupan hueco (ID provisional negativo)
+            agenda.add(new IntervaloCita((long) -(nuevas.size() + 1), medicoId, inicio, duracion));
+            nuevas.add(copiarParaSerie(plantilla, inicio));
+        }
+
+        if (nuevas.isEmpty()) {
+            throw new IllegalStateException("Ninguna cita de la serie está libre: " + conflictos.get(0).mensaje());
+        }
+
+        List<Cita> creadas = citaRepository.saveAll(nuevas);
+
+        List<CitaEvento> eventos = new ArrayList<>(creadas.size());
+        String autor = contextoAcceso.getUsuario().getUsername();
+        for (Cita cita : creadas) {
+            CitaEvento evento = new CitaEvento();
+            evento.setCita(cita);
+            evento.setEstadoNuevo(EstadoCita.PENDIENTE);
+            evento.setAutor(autor);
+            eventos.add(evento);
+
+            disponibilidadIndex.sincronizarAlConfirmar(cita);
+            ultimasCitasBuffer.registrarAlConfirmar(cita);
+            publicarCambio(cita, null, null);
+        }
+        citaEventoRepository.saveAll(eventos);
+
+        return new ResultadoSerieCitas(creadas, conflictos);
+    }
+
+    /**
+     * Valida los datos de una cita nueva y carga su paciente y médico completos
+     * @param cita Cita a agendar (paciente y médico con solo el ID)
+     * @throws IllegalArgumentException si faltan datos o no son válidos
+     * @throws AccessDeniedException si un médico agenda para otro médico
+     */
+    private void prepararNuevaCita(Cita cita) {
         // Validaciones básicas
         if (cita.getPaciente() == null || cita.getPaciente().getId() == null) {
             throw new IllegalArgumentException("Debe seleccionar un paciente");
@@ -179,7 +353,7 @@ public class CitaService {
         validarDuracion(cita.getDuracionMinutos());
 
         // Si es MEDICO, solo puede agendar citas para sí mismo
-        if (esMedico() && !cita.getMedico().getId().equals(usuarioActual.getId())) {
+        if (contextoAcceso.esMedico() && !contextoAcceso.esUsuarioActual(cita.getMedico().getId())) {
             throw new AccessDeniedException("Un médico solo puede agendar citas para sí mismo");
         }
 
@@ -195,15 +369,25 @@ public class CitaService {
             throw new IllegalArgumentException("El usuario seleccionado no es un médico");
         }
 
-        // Validar que no haya conflictos de horario
         cita.setPaciente(paciente);
         cita.setMedico(medico);
-        validarDisponibilidadMedico(cita);
+    }
 
-        // Establecer estado inicial
+    /**
+     * Crea una cita de una serie a partir de la plantilla
+     * @param plantilla Primera cita de la serie (ya validada)
+     * @param fechaHora Fecha/hora de esta cita
+     * @return Cita nueva en estado PENDIENTE
+     */
+    private Cita copiarParaSerie(Cita plantilla, LocalDateTime fechaHora) {
+        Cita cita = new Cita();
+        cita.setPaciente(plantilla.getPaciente());
+        cita.setMedico(plantilla.getMedico());
+        cita.setFechaHora(fechaHora);
+        cita.setDuracionMinutos(plantilla.getDuracionMinutos());
+        cita.setMotivo(plantilla.getMotivo());
         cita.setEstado(EstadoCita.PENDIENTE);
-
-        return citaRepository.save(cita);
+        return cita;
     }
 
     // ============================================
@@ -211,12 +395,17 @@ public class CitaService {
     // ============================================
 
     /**
-     * Obtiene todas las citas (solo ADMIN)
-     * @return Lista de todas las citas
+     * Obtiene una página de todas las citas (solo ADMIN)
+     * @param despuesFecha Fecha/hora del cursor (null para la primera página)
+     * @param despuesId ID del cursor (null para la primera página)
+     * @param tamano Tamaño de página
+     * @return Página de citas ordenadas por fecha ascendente
      */
     @PreAuthorize("hasRole('ADMIN')")
-    public List<Cita> obtenerTodasLasCitas() {
-        return citaRepository.findAll();
+    public PaginaCitas obtenerTodasLasCitas(LocalDateTime despuesFecha, Long despuesId, int tamano) {
+        return paginar(despuesFecha, despuesId, tamano,
+                pagina -> citaRepository.findAllByOrderByFechaHoraAscIdAsc(pagina),
+                pagina -> citaRepository.findTodasDespuesDe(despuesFecha, despuesId, pagina));
     }
 
     /**
@@ -228,6 +417,16 @@ public class CitaService {
         return citaRepository.findById(id);
     }
 
+    /**
+     * Obtiene el historial de cambios de una cita (solo se carga en el detalle)
+     * @param citaId ID de la cita
+     * @return Eventos en orden cronológico
+     */
+    @Transactional(readOnly = true)
+    public List<CitaEvento> obtenerHistorial(Long citaId) {
+        return citaEventoRepository.findByCitaIdOrderByFechaAscIdAsc(citaId);
+    }
+
     /**
      * Obtiene la agenda de un médico en un día específico
      * ADMIN y RECEPCION pueden ver cualquier agenda
@@ -237,10 +436,8 @@ public class CitaService {
      * @return Lista de citas del médico en esa fecha
      */
     public List<Cita> obtenerAgendaMedicoPorDia(Long medicoId, LocalDate fecha) {
-        Usuario usuarioActual = getUsuarioAutenticado();
-
         // Si es MEDICO, solo puede ver su propia agenda
-        if (esMedico() && !usuarioActual.getId().equals(medicoId)) {
+        if (contextoAcceso.esMedico() && !contextoAcceso.esUsuarioActual(medicoId)) {
             throw new AccessDeniedException("Un médico solo puede ver su propia agenda");
         }
 
@@ -248,19 +445,22 @@ public class CitaService {
     }
 
     /**
-     * Obtiene todas las citas de un médico
+     * Obtiene una página de las citas de un médico
      * @param medicoId ID del médico
-     * @return Lista de citas del médico
+     * @param despuesFecha Fecha/hora del cursor (null para la primera página)
+     * @param despuesId ID del cursor (null para la primera página)
+     * @param tamano Tamaño de página
+     * @return Página de citas del médico ordenadas por fecha ascendente
      */
-    public List<Cita> obtenerCitasPorMedico(Long medicoId) {
-        Usuario usuarioActual = getUsuarioAutenticado();
-
+    public PaginaCitas obtenerCitasPorMedico(Long medicoId, LocalDateTime despuesFecha, Long despuesId, int tamano) {
         // Si es MEDICO, solo puede ver sus propias citas
-        if (esMedico() && !usuarioActual.getId().equals(medicoId)) {
+        if (contextoAcceso.esMedico() && !contextoAcceso.esUsuarioActual(medicoId)) {
             throw new AccessDeniedException("Un médico solo puede ver sus propias citas");
         }
 
-        return citaRepository.findByMedicoIdOrderByFechaHoraAsc(medicoId);
+        return paginar(despuesFecha, despuesId, tamano,
+                pagina -> citaRepository.findByMedicoIdOrderByFechaHoraAscIdAsc(medicoId, pagina),
+                pagina -> citaRepository.findByMedicoIdDespuesDe(medicoId, despuesFecha, despuesId, pagina));
     }
 
     /**
@@ -269,9 +469,7 @@ public class CitaService {
      * @return Lista de citas activas (PENDIENTE o CONFIRMADA)
      */
     public List<Cita> obtenerCitasActivasPorMedico(Long medicoId) {
-        Usuario usuarioActual = getUsuarioAutenticado();
-
-        if (esMedico() && !usuarioActual.getId().equals(medicoId)) {
+        if (contextoAcceso.esMedico() && !contextoAcceso.esUsuarioActual(medicoId)) {
             throw new AccessDeniedException("Un médico solo puede ver sus propias citas");
         }
 
@@ -279,27 +477,52 @@ public class CitaService {
     }
 
     /**
-     * Obtiene todas las citas de un paciente
+     * Obtiene una página de las citas de un paciente
      * ADMIN y RECEPCION pueden ver citas de cualquier paciente
      * MEDICO solo puede ver citas de sus propios pacientes
      * @param pacienteId ID del paciente
-     * @return Lista de citas del paciente
+     * @param antesFecha Fecha/hora del cursor (null para la primera página)
+     * @param antesId ID del cursor (null para la primera página)
+     * @param tamano Tamaño de página
+     * @return Página de citas del paciente (más recientes primero)
      */
-    public List<Cita> obtenerCitasPorPaciente(Long pacienteId) {
-        Usuario usuarioActual = getUsuarioAutenticado();
+    public PaginaCitas obtenerCitasPorPaciente(Long pacienteId, LocalDateTime antesFecha, Long antesId, int tamano) {
+        validarAccesoCitasPaciente(pacienteId);
 
-        // Si es MEDICO, validar que el paciente sea suyo
-        if (esMedico()) {
-            Paciente paciente = pacienteRepository.findById(pacienteId)
-                    .orElseThrow(() -> new IllegalArgumentException("Paciente no encontrado"));
+        return paginar(antesFecha, antesId, tamano,
+                pagina -> citaRepository.findByPacienteIdOrderByFechaHoraDescIdDesc(pacienteId, pagina),
+                pagina -> citaRepository.findByPacienteIdAntesDe(pacienteId, antesFecha, antesId, pagina));
+    }
 
-            if (paciente.getMedico() == null ||
-                    !paciente.getMedico().getId().equals(usuarioActual.getId())) {
-                throw new AccessDeniedException("Un médico solo puede ver citas de sus propios pacientes");
-            }
+    /**
+     * Cuenta las citas de un paciente por estado
+     * @param pacienteId ID del paciente
+     * @return Mapa nombre del estado -> número de citas (todos los estados presentes)
+     */
+    public Map<String, Long> contarCitasPorEstadoDePaciente(Long pacienteId) {
+        validarAccesoCitasPaciente(pacienteId);
+
+        Map<String, Long> conteo = new LinkedHashMap<>();
+        for (EstadoCita estado : EstadoCita.values()) {
+            conteo.put(estado.name(), 0L);
         }
+        for (ConteoPorEstado fila : citaRepository.contarPorEstadoDePaciente(pacienteId)) {
+            conteo.put(fila.estado().name(), fila.total());
+        }
+        return conteo;
+    }
 
-        return citaRepository.findByPacienteIdOrderByFechaHoraDesc(pacienteId);
+    /**
+     * Verifica que el usuario actual pueda ver las citas de un paciente
+     * MEDICO solo puede ver citas de sus propios pacientes
+     * @param pacienteId ID del paciente
+     * @throws AccessDeniedException si no tiene permiso
+     */
+    private void validarAccesoCitasPaciente(Long pacienteId) {
+        // Si es MEDICO, validar que el paciente sea suyo (decisión cacheada para la petición)
+        if (contextoAcceso.esMedico() && !contextoAcceso.esSuPaciente(pacienteId)) {
+            throw new AccessDeniedException("Un médico solo puede ver citas de sus propios pacientes");
+        }
     }
 
     /**
@@ -308,36 +531,95 @@ public class CitaService {
      * @return Lista de citas activas
      */
     public List<Cita> obtenerCitasActivasPorPaciente(Long pacienteId) {
-        // Reutiliza la validación de permisos
-        obtenerCitasPorPaciente(pacienteId); // Solo para validar permisos
+        validarAccesoCitasPaciente(pacienteId);
 
         return citaRepository.findCitasActivasByPacienteId(pacienteId);
     }
 
     /**
-     * Obtiene todas las citas con un estado específico
+     * Obtiene una página de las citas con un estado específico
      * Solo ADMIN y RECEPCION
      * @param estado Estado a filtrar
-     * @return Lista de citas con ese estado
+     * @param despuesFecha Fecha/hora del cursor (null para la primera página)
+     * @param despuesId ID del cursor (null para la primera página)
+     * @param tamano Tamaño de página
+     * @return Página de citas con ese estado ordenadas por fecha ascendente
      */
     @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
-    public List<Cita> obtenerCitasPorEstado(EstadoCita estado) {
-        return citaRepository.findByEstadoOrderByFechaHoraAsc(estado);
+    public PaginaCitas obtenerCitasPorEstado(EstadoCita estado, LocalDateTime despuesFecha, Long despuesId, int tamano) {
+        return paginar(despuesFecha, despuesId, tamano,
+                pagina -> citaRepository.findByEstadoOrderByFechaHoraAscIdAsc(estado, pagina),
+                pagina -> citaRepository.findByEstadoDespuesDe(estado, despuesFecha, despuesId, pagina));
     }
 
     /**
-     * Obtiene las citas pendientes (para recepción)
-     * @return Lista de citas pendientes
+     * Obtiene una página de las citas pendientes (para recepción)
+     * @param despuesFecha Fecha/hora del cursor (null para la primera página)
+     * @param despuesId ID del cursor (null para la primera página)
+     * @param tamano Tamaño de página
+     * @return Página de citas pendientes
      */
     @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
-    public List<Cita> obtenerCitasPendientes() {
-        return citaRepository.findByEstadoOrderByFechaHoraAsc(EstadoCita.PENDIENTE);
+    public PaginaCitas obtenerCitasPendientes(LocalDateTime despuesFecha, Long despuesId, int tamano) {
+        return obtenerCitasPorEstado(EstadoCita.PENDIENTE, despuesFecha, despuesId, tamano);
+    }
+
+    /**
+     * Ejecuta una consulta paginada por clave sobre (fechaHora, id)
+     * Pide una cita de más para saber si existe una página siguiente
+     * @param cursorFecha Fecha/hora del cursor (null para la primera página)
+     * @param cursorId ID del cursor (null para la primera página)
+     * @param tamano Tamaño de página solicitado (se acota a TAMANO_PAGINA_MAXIMO)
+     * @param primeraPagina Consulta sin cursor
+     * @param siguientePagina Consulta a partir del cursor
+     * @return Página de citas con el cursor de la siguiente
+     */
+    private PaginaCitas paginar(LocalDateTime cursorFecha, Long cursorId, int tamano,
+                                Function<Pageable, List<Cita>> primeraPagina,
+                                Function<Pageable, List<Cita>> siguientePagina) {
+        int limite = tamano <= 0 ? TAMANO_PAGINA_DEFECTO : Math.min(tamano, TAMANO_PAGINA_MAXIMO);
+        Pageable pagina = PageRequest.of(0, limite + 1);
+
+        List<Cita> citas = (cursorFecha == null || cursorId == null)
+                ? primeraPagina.apply(pagina)
+                : siguientePagina.apply(pagina);
+
+        if (citas.size() <= limite) {
+            return new PaginaCitas(citas, null, null);
+        }
+        List<Cita> contenido = citas.subList(0, limite);
+        Cita ultima = contenido.get(limite - 1);
+        return new PaginaCitas(contenido, ultima.getFechaHora(), ultima.getId());
     }
 
     // ============================================
     // UPDATE - Cambios de estado
     // ============================================
 
+    /**
+     * Aplica una transición de estado con un único UPDATE condicional
+     * Si otra petición cambió la cita entre la lectura y la escritura no se actualiza
+     * ninguna fila y la transición se rechaza, en lugar de sobrescribir el cambio
+     * La transición queda registrada en el historial de la cita
+     * @param citaId ID de la cita
+     * @param esperado Estado desde el que se permite la transición
+     * @param nuevo Estado destino
+     * @param nota Nota para el historial (null si no hay)
+     * @return Cita recargada con el nuevo estado
+     * @throws IllegalStateException si la cita ya no está en el estado esperado
+     */
+    private Cita aplicarTransicion(Long citaId, EstadoCita esperado, EstadoCita nuevo, String nota) {
+        int actualizadas = citaRepository.cambiarEstado(citaId, List.of(esperado), nuevo);
+
+        if (actualizadas == 0) {
+            throw new IllegalStateException("La cita ha sido modificada por otro usuario. Recargue e inténtelo de nuevo");
+        }
+
+        registrarEvento(citaId, esperado, nuevo, nota);
+        return citaRepository.findById(citaId)
+                .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
+    }
+
     /**
      * Confirma una cita (cambia estado a CONFIRMADA)
      * Solo ADMIN y RECEPCION pueden confirmar citas
@@ -353,8 +635,9 @@ public class CitaService {
             throw new IllegalStateException("Solo se pueden confirmar citas pendientes");
         }
 
-        cita.setEstado(EstadoCita.CONFIRMADA);
-        return citaRepository.save(cita);
+        Cita citaGuardada = aplicarTransicion(citaId, EstadoCita.PENDIENTE, EstadoCita.CONFIRMADA, null);
+        publicarCambio(citaGuardada, EstadoCita.PENDIENTE, citaGuardada.getFechaHora());
+        return citaGuardada;
     }
 
     /**
@@ -370,7 +653,7 @@ public class CitaService {
                 .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
 
         // Si es MEDICO, verificar que sea su cita
-        if (esMedico() && !esSuCita(cita)) {
+        if (contextoAcceso.esMedico() && !esSuCita(cita)) {
             throw new AccessDeniedException("Un médico solo puede cancelar sus propias citas");
         }
 
@@ -382,14 +665,12 @@ public class CitaService {
             throw new IllegalStateException("La cita ya está cancelada");
         }
 
-        cita.setEstado(EstadoCita.CANCELADA);
-
-        // Agregar motivo a las observaciones
-        String observaciones = cita.getObservaciones() != null ? cita.getObservaciones() : "";
-        observaciones += "\n[CANCELACIÓN] " + motivo;
-        cita.setObservaciones(observaciones.trim());
-
-        return citaRepository.save(cita);
+        // Solo se aplica si la cita sigue en el estado leído; el motivo queda en el historial
+        EstadoCita estadoAnterior = cita.getEstado();
+        Cita citaGuardada = aplicarTransicion(citaId, estadoAnterior, EstadoCita.CANCELADA, motivo);
+        disponibilidadIndex.sincronizarAlConfirmar(citaGuardada);
+        publicarCambio(citaGuardada, estadoAnterior, citaGuardada.getFechaHora());
+        return citaGuardada;
     }
 
     /**
@@ -404,7 +685,7 @@ public class CitaService {
                 .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
 
         // Si es MEDICO, verificar que sea su cita
-        if (esMedico() && !esSuCita(cita)) {
+        if (contextoAcceso.esMedico() && !esSuCita(cita)) {
             throw new AccessDeniedException("Un médico solo puede completar sus propias citas");
         }
 
@@ -412,15 +693,11 @@ public class CitaService {
             throw new IllegalStateException("Solo se pueden completar citas confirmadas");
         }
 
-        cita.setEstado(EstadoCita.COMPLETADA);
-
-        if (observaciones != null && !observaciones.trim().isEmpty()) {
-            String obs = cita.getObservaciones() != null ? cita.getObservaciones() : "";
-            obs += "\n[COMPLETADA] " + observaciones;
-            cita.setObservaciones(obs.trim());
-        }
-
-        return citaRepository.save(cita);
+        String nota = observaciones != null && !observaciones.trim().isEmpty() ? observaciones.trim() : null;
+        Cita citaGuardada = aplicarTransicion(citaId, EstadoCita.CONFIRMADA, EstadoCita.COMPLETADA, nota);
+        disponibilidadIndex.sincronizarAlConfirmar(citaGuardada);
+        publicarCambio(citaGuardada, EstadoCita.CONFIRMADA, citaGuardada.getFechaHora());
+        return citaGuardada;
     }
 
     /**
@@ -435,7 +712,7 @@ public class CitaService {
                 .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
 
         // Validar permisos
-        if (esMedico() && !esSuCita(cita)) {
+        if (contextoAcceso.esMedico() && !esSuCita(cita)) {
             throw new AccessDeniedException("Un médico solo puede modificar sus propias citas");
         }
 
@@ -443,6 +720,13 @@ public class CitaService {
             throw new IllegalStateException("Solo se pueden modificar citas pendientes o confirmadas");
         }
 
+        // Bloqueo optimista: la versión con la que se abrió el formulario debe seguir vigente
+        if (citaActualizada.getVersion() != null && !citaActualizada.getVersion().equals(cita.getVersion())) {
+            throw new IllegalStateException("La cita ha sido modificada por otro usuario. Recargue e inténtelo de nuevo");
+        }
+
+        LocalDateTime fechaHoraAnterior = cita.getFechaHora();
+
         // Validar nuevos datos
         if (citaActualizada.getFechaHora() != null) {
             validarFechaFutura(citaActualizada.getFechaHora());
@@ -463,7 +747,152 @@ public class CitaService {
             cita.setMotivo(citaActualizada.getMotivo());
         }
 
-        return citaRepository.save(cita);
+        Cita citaGuardada;
+        try {
+            // El UPDATE lleva "WHERE version = ?": si otra transacción escribió antes, falla aquí
+            citaGuardada = citaRepository.saveAndFlush(cita);
+        } catch (OptimisticLockingFailureException e) {
+            throw new IllegalStateException("La cita ha sido modificada por otro usuario. Recargue e inténtelo de nuevo");
+        }
+        if (!fechaHoraAnterior.equals(citaGuardada.getFechaHora())) {
+            citaRepository.olvidarRecordatorio(citaId);
+            DateTimeFormatter formato = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+            registrarEvento(citaId, citaGuardada.getEstado(), citaGuardada.getEstado(),
+                    "Reprogramada del " + fechaHoraAnterior.format(formato) + " al " + citaGuardada.getFechaHoraFormateada());
+        }
+        disponibilidadIndex.sincronizarAlConfirmar(citaGuardada);
+        publicarCambio(citaGuardada, citaGuardada.getEstado(), fechaHoraAnterior);
+        return citaGuardada;
+    }
+
+    // ============================================
+    // BÚSQUEDA DE HUECOS LIBRES
+    // ============================================
+
+    /**
+     * Busca los próximos huecos libres en las agendas de uno o varios médicos
+     * Lee la agenda de cada médico con una única consulta por rango y calcula
+     * los huecos en memoria; las agendas de distintos médicos se leen en paralelo
+     * No abre transacción: cada lectura (en este hilo o en agendaExecutor) usa la suya
+     * y devuelve la conexión al terminar, en lugar de retener una más durante toda la búsqueda
+     * ADMIN y RECEPCION pueden buscar en cualquier médico
+     * MEDICO solo puede buscar en su propia agenda
+     * @param duracionMinutos Duración de la cita a agendar
+     * @param desde Inicio de la ventana de búsqueda
+     * @param hasta Fin de la ventana de búsqueda
+     * @param medicoIds Médicos en los que buscar (vacío o null: todos los médicos)
+     * @param cantidad Número máximo de huecos a devolver
+     * @return Lista de huecos libres ordenados por fecha
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'RECEPCION')")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<HuecoLibre> buscarHuecosLibres(Integer duracionMinutos, LocalDateTime desde,
+                                               LocalDateTime hasta, List<Long> medicoIds, int cantidad) {
+        validarDuracion(duracionMinutos);
+        if (desde == null || hasta == null || !desde.isBefore(hasta)) {
+            throw new IllegalArgumentException("El rango de búsqueda no es válido");
+        }
+
+        // No se ofrecen huecos en el pasado ni más allá del límite de días
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime inicioBusqueda = desde.isBefore(ahora) ? ahora : desde;
+        LocalDateTime finBusqueda = hasta.isAfter(inicioBusqueda.plusDays(MAX_DIAS_BUSQUEDA))
+                ? inicioBusqueda.plusDays(MAX_DIAS_BUSQUEDA)
+                : hasta;
+        int limite = Math.max(1, Math.min(cantidad, MAX_HUECOS));
+
+        // Resolver los médicos en los que buscar
+        List<Usuario> medicos;
+        if (contextoAcceso.esMedico()) {
+            Usuario usuarioActual = contextoAcceso.getUsuario();
+            if (medicoIds != null && !medicoIds.isEmpty() && medicoIds.stream().anyMatch(id -> !id.equals(usuarioActual.getId()))) {
+                throw new AccessDeniedException("Un médico solo puede buscar huecos en su propia agenda");
+            }
+            medicos = List.of(usuarioActual);
+        } else if (medicoIds == null || medicoIds.isEmpty()) {
+            medicos = usuarioRepository.findByRol(Rol.MEDICO);
+        } else {
+            medicos = usuarioRepository.findAllById(medicoIds).stream()
+                    .filter(u -> u.getRol() == Rol.MEDICO)
+                    .toList();
+        }
+
+        // Una lectura por rango por médico, en paralelo
+        List<CompletableFuture<List<HuecoLibre>>> busquedas = medicos.stream()
+                .map(medico -> CompletableFuture.supplyAsync(
+                        () -> calcularHuecosMedico(medico, duracionMinutos, inicioBusqueda, finBusqueda, limite),
+                        agendaExecutor))
+                .toList();
+
+        return busquedas.stream()
+                .flatMap(busqueda -> busqueda.join().stream())
+                .sorted(Comparator.comparing(HuecoLibre::inicio).thenComparing(HuecoLibre::medicoId))
+                .limit(limite)
+                .toList();
+    }
+
+    /**
+     * Calcula los primeros huecos libres de un médico dentro del horario de atención
+     * @param medico Médico
+     * @param duracionMinutos Duración del hueco buscado
+     * @param desde Inicio de la ventana
+     * @param hasta Fin de la ventana
+     * @param limite Número máximo de huecos
+     * @return Huecos libres del médico en orden cronológico
+     */
+    private List<HuecoLibre> calcularHuecosMedico(Usuario medico, int duracionMinutos,
+                                                  LocalDateTime desde, LocalDateTime hasta, int limite) {
+        // Solo el rango horario de las citas activas que se solapan con la ventana (proyección, sin entidades)
+        List<IntervaloCita> ocupadas = citaRepository.findIntervalosDeMedicosEnRango(
+                        List.of(medico.getId()), DisponibilidadMedicoIndex.ESTADOS_ACTIVOS, desde, hasta).stream()
+                .sorted(Comparator.comparing(IntervaloCita::inicio))
+                .toList();
+
+        List<HuecoLibre> huecos = new ArrayList<>();
+        int siguiente = 0;
+
+        for (LocalDate dia = desde.toLocalDate(); !dia.isAfter(hasta.toLocalDate()); dia = dia.plusDays(1)) {
+            LocalDateTime apertura = LocalDateTime.of(dia, HORA_APERTURA);
+            LocalDateTime cierre = LocalDateTime.of(dia, HORA_CIERRE);
+            LocalDateTime cursor = alinearAlPaso(apertura.isBefore(desde) ? desde : apertura);
+            LocalDateTime finDia = cierre.isAfter(hasta) ? hasta : cierre;
+
+            while (!cursor.plusMinutes(duracionMinutos).isAfter(finDia)) {
+                // Saltar las citas que ya terminaron antes del cursor
+                while (siguiente < ocupadas.size() && !ocupadas.get(siguiente).fin().isAfter(cursor)) {
+                    siguiente++;
+                }
+
+                LocalDateTime finHueco = cursor.plusMinutes(duracionMinutos);
+                IntervaloCita proxima = siguiente < ocupadas.size() ? ocupadas.get(siguiente) : null;
+
+                if (proxima == null || !proxima.inicio().isBefore(finHueco)) {
+                    huecos.add(new HuecoLibre(medico.getId(), medico.getNombre(), cursor, finHueco));
+                    if (huecos.size() >= limite) {
+                        return huecos;
+                    }
+                    cursor = finHueco;
+                } else {
+                    // Hay solapamiento: continuar tras el fin de la cita ocupada
+                    cursor = alinearAlPaso(proxima.fin());
+                }
+            }
+        }
+        return huecos;
+    }
+
+    /**
+     * Redondea hacia arriba una fecha/hora al siguiente múltiplo de PASO_MINUTOS
+     * @param fechaHora Fecha/hora a alinear
+     * @return Fecha/hora alineada
+     */
+    private LocalDateTime alinearAlPaso(LocalDateTime fechaHora) {
+        LocalDateTime truncada = fechaHora.truncatedTo(ChronoUnit.MINUTES);
+        if (truncada.isBefore(fechaHora)) {
+            truncada = truncada.plusMinutes(1);
+        }
+        int resto = truncada.getMinute() % PASO_MINUTOS;
+        return resto == 0 ? truncada : truncada.plusMinutes(PASO_MINUTOS - resto);
     }
 
     // ============================================
@@ -476,10 +905,12 @@ public class CitaService {
      */
     @PreAuthorize("hasRole('ADMIN')")
     public void eliminarCita(Long citaId) {
-        if (!citaRepository.existsById(citaId)) {
-            throw new IllegalArgumentException("Cita no encontrada");
-        }
-        citaRepository.deleteById(citaId);
+        Cita cita = citaRepository.findById(citaId)
+                .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
+        citaRepository.delete(cita);
+        disponibilidadIndex.eliminarAlConfirmar(citaId);
+        eventPublisher.publishEvent(new CitaEstadoCambiadoEvent(
+                citaId, cita.getMedico().getId(), cita.getEstado(), null, cita.getFechaHora(), null));
     }
 
     // ============================================
@@ -492,7 +923,7 @@ public class CitaService {
      * @return Número de citas activas
      */
     public long contarCitasActivasPorMedico(Long medicoId) {
-        return citaRepository.countCitasActivasByMedicoId(medicoId);
+        return estadisticasCache.contarActivasPorMedico(medicoId);
     }
 
     /**
@@ -509,7 +940,7 @@ public class CitaService {
      * @return Lista de citas de hoy
      */
     public List<Cita> obtenerMiAgendaHoy() {
-        Usuario usuarioActual = getUsuarioAutenticado();
+        Usuario usuarioActual = contextoAcceso.getUsuario();
 
         if (usuarioActual.getRol() != Rol.MEDICO) {
             throw new AccessDeniedException("Solo los médicos pueden usar esta función");
@@ -0,0 +1,179 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Contexto de acceso del usuario autenticado, resuelto una sola vez por petición
+ * Centraliza las comprobaciones de rol de CitaService y PacienteService y guarda,
+ * durante la petición, qué pacientes pertenecen al médico actual, para que varias
+ * comprobaciones de permisos sobre el mismo paciente no repitan la consulta.
+ *
+ * Fuera de una petición HTTP (tareas programadas, tests) no hay caché:
+ * cada llamada se resuelve de nuevo.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContextoAcceso {
+
+    private static final String ATRIBUTO = ContextoAcceso.class.getName();
+
+    private final PacienteRepository pacienteRepository;
+
+    // ============================================
+    // USUARIO Y ROL
+    // ============================================
+
+    /**
+     * Obtiene el usuario autenticado actualmente
+     * @return Usuario autenticado
+     * @throws AccessDeniedException si no hay usuario autenticado
+     */
+    public Usuario getUsuario() {
+        return acceso().usuario;
+    }
+
+    /**
+     * Verifica si el usuario actual es ADMIN
+     * @return true si es ADMIN
+     */
+    public boolean esAdmin() {
+        return acceso().usuario.getRol() == Rol.ADMIN;
+    }
+
+    /**
+     * Verifica si el usuario actual es MEDICO
+     * @return true si es MEDICO
+     */
+    public boolean esMedico() {
+        return acceso().usuario.getRol() == Rol.MEDICO;
+    }
+
+    /**
+     * Verifica si el usuario actual es RECEPCION
+     * @return true si es RECEPCION
+     */
+    public boolean esRecepcion() {
+        return acceso().usuario.getRol() == Rol.RECEPCION;
+    }
+
+    /**
+     * Verifica si un ID corresponde al usuario actual
+     * @param usuarioId ID a comparar
+     * @return true si es el usuario actual
+     */
+    public boolean esUsuarioActual(Long usuarioId) {
+        return acceso().usuario.getId().equals(usuarioId);
+    }
+
+    // ============================================
+    // PROPIEDAD DE PACIENTES
+    // ============================================
+
+    /**
+     * Verifica si un paciente ya cargado pertenece al médico actual
+     * La decisión queda guardada para el resto de la petición
+     * @param paciente Paciente a verificar
+     * @return true si el paciente es del médico actual
+     */
+    public boolean esSuPaciente(Paciente paciente) {
+        Acceso acceso = acceso();
+        boolean propio = paciente.getMedico() != null &&
+                paciente.getMedico().getId().equals(acceso.usuario.getId());
+        acceso.pacientesPropios.put(paciente.getId(), propio);
+        return propio;
+    }
+
+    /**
+     * Verifica si un paciente pertenece al médico actual a partir de su ID
+     * Solo consulta el médico asignado la primera vez en la petición
+     * @param pacienteId ID del paciente
+     * @return true si el paciente es del médico actual
+     * @throws IllegalArgumentException si el paciente no existe
+     */
+    public boolean esSuPaciente(Long pacienteId) {
+        Acceso acceso = acceso();
+        Boolean propio = acceso.pacientesPropios.get(pacienteId);
+        if (propio == null) {
+            Optional<Long> medicoId = pacienteRepository.findMedicoIdById(pacienteId);
+            if (medicoId.isEmpty() && !pacienteRepository.existsById(pacienteId)) {
+                throw new IllegalArgumentException("Paciente no encontrado");
+            }
+            propio = medicoId.map(id -> id.equals(acceso.usuario.getId())).orElse(false);
+            acceso.pacientesPropios.put(pacienteId, propio);
+        }
+        return propio;
+    }
+
+    /**
+     * Descarta la decisión guardada sobre un paciente (p. ej. al cambiar su médico)
+     * @param pacienteId ID del paciente
+     */
+    public void olvidarPaciente(Long pacienteId) {
+        acceso().pacientesPropios.remove(pacienteId);
+    }
+
+    // ============================================
+    // RESOLUCIÓN POR PETICIÓN
+    // ============================================
+
+    /**
+     * Devuelve el acceso de la petición actual, resolviéndolo si es la primera vez
+     * Si la autenticación cambia dentro de la petición (login), se vuelve a resolver
+     */
+    private Acceso acceso() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        RequestAttributes peticion = RequestContextHolder.getRequestAttributes();
+
+        if (peticion != null) {
+            Object guardado = peticion.getAttribute(ATRIBUTO, RequestAttributes.SCOPE_REQUEST);
+            if (guardado instanceof Acceso acceso && acceso.authentication == authentication) {
+                return acceso;
+            }
+        }
+
+        Acceso acceso = new Acceso(authentication, resolverUsuario(authentication));
+        if (peticion != null) {
+            peticion.setAttribute(ATRIBUTO, acceso, RequestAttributes.SCOPE_REQUEST);
+        }
+        return acceso;
+    }
+
+    private static Usuario resolverUsuario(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            return userDetails.getUsuario();
+        }
+        throw new AccessDeniedException("No hay usuario autenticado");
+    }
+
+    /**
+     * Datos de acceso resueltos para una petición
+     */
+    private static class Acceso {
+
+        private final Authentication authentication;
+        private final Usuario usuario;
+
+        // ID de paciente -> pertenece al médico actual
+        private final Map<Long, Boolean> pacientesPropios = new HashMap<>();
+
+        private Acceso(Authentication authentication, Usuario usuario) {
+            this.authentication = authentication;
+            this.usuario = usuario;
+        }
+    }
+}
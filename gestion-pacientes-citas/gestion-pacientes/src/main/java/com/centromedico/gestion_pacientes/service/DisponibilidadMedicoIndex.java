@@ -0,0 +1,196 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Índice en memoria de la disponibilidad de los médicos
+ * Guarda, por médico, los intervalos de sus citas activas (PENDIENTE y CONFIRMADA)
+ * ordenados por hora de inicio, para comprobar solapamientos en O(log n)
+ * sin consultar la base de datos.
+ *
+ * El índice se carga al arrancar la aplicación y se actualiza solo cuando
+ * la transacción que modifica la cita hace commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class DisponibilidadMedicoIndex {
+
+    /** Estados que ocupan hueco en la agenda del médico */
+    public static final List<EstadoCita> ESTADOS_ACTIVOS = List.of(EstadoCita.PENDIENTE, EstadoCita.CONFIRMADA);
+
+    private static final Comparator<IntervaloCita> POR_INICIO =
+            Comparator.comparing(IntervaloCita::inicio).thenComparing(IntervaloCita::citaId);
+
+    private final CitaRepository citaRepository;
+
+    // Intervalos de cada médico ordenados por hora de inicio
+    private final Map<Long, NavigableSet<IntervaloCita>> agendas = new ConcurrentHashMap<>();
+
+    // Intervalo indexado de cada cita, para poder moverlo o quitarlo
+    private final Map<Long, IntervaloCita> porCita = new ConcurrentHashMap<>();
+
+    // Duración máxima indexada por médico: acota la búsqueda hacia atrás
+    private final Map<Long, Integer> duracionMaxima = new ConcurrentHashMap<>();
+
+    // ============================================
+    // CARGA INICIAL
+    // ============================================
+
+    /**
+     * Carga en memoria las citas activas que aún no han terminado
+     * Se ejecuta una vez que la aplicación está lista
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        agendas.clear();
+        porCita.clear();
+        duracionMaxima.clear();
+
+        List<IntervaloCita> intervalos = citaRepository.findIntervalosActivosDesde(
+                ESTADOS_ACTIVOS,
+                LocalDateTime.now().minusDays(1)
+        );
+        intervalos.forEach(this::indexar);
+    }
+
+    /**
+     * Elimina del índice las citas que ya terminaron
+     * Se ejecuta cada noche; las citas pasadas no pueden entrar en conflicto con citas nuevas
+     */
+    @Scheduled(cron = "0 0 3 * * *")
+    public void purgarPasadas() {
+        LocalDateTime limite = LocalDateTime.now().minusDays(1);
+        porCita.values().stream()
+                .filter(intervalo -> intervalo.fin().isBefore(limite))
+                .toList()
+                .forEach(intervalo -> desindexar(intervalo.citaId()));
+    }
+
+    // ============================================
+    // CONSULTA DE SOLAPAMIENTOS
+    // ============================================
+
+    /**
+     * Busca una cita activa del médico que se solape con el rango [inicio, fin)
+     * @param medicoId ID del médico
+     * @param inicio Inicio del rango
+     * @param fin Fin del rango
+     * @param citaExcluida ID de la cita a ignorar (la que se está editando), puede ser null
+     * @return Optional con el primer intervalo que se solapa
+     */
+    public Optional<IntervaloCita> buscarConflicto(Long medicoId, LocalDateTime inicio,
+                                                   LocalDateTime fin, Long citaExcluida) {
+        NavigableSet<IntervaloCita> agenda = agendas.get(medicoId);
+        if (agenda == null || agenda.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Solo pueden solaparse las citas que empiezan antes de 'fin'
+        // y, como mucho, 'duracionMaxima' minutos antes de 'inicio'
+        int maxDuracion = duracionMaxima.getOrDefault(medicoId, 0);
+        IntervaloCita desde = new IntervaloCita(Long.MIN_VALUE, medicoId, inicio.minusMinutes(maxDuracion), 0);
+        IntervaloCita hasta = new IntervaloCita(Long.MIN_VALUE, medicoId, fin, 0);
+
+        for (IntervaloCita intervalo : agenda.subSet(desde, true, hasta, false)) {
+            if (!intervalo.citaId().equals(citaExcluida) && intervalo.seSolapaCon(inicio, fin)) {
+                return Optional.of(intervalo);
+            }
+        }
+        return Optional.empty();
+    }
+
+    // ============================================
+    // MANTENIMIENTO DEL ÍNDICE
+    // ============================================
+
+    /**
+     * Refleja en el índice el estado actual de una cita cuando la transacción haga commit
+     * Si la cita está activa se (re)indexa con su horario actual; si no, se quita
+     * @param cita Cita creada o modificada
+     */
+    public void sincronizarAlConfirmar(Cita cita) {
+        IntervaloCita intervalo = new IntervaloCita(
+                cita.getId(),
+                cita.getMedico().getId(),
+                cita.getFechaHora(),
+                cita.getDuracionMinutos()
+        );
+        boolean activa = cita.getEstado().esActiva();
+
+        alConfirmar(() -> {
+            desindexar(intervalo.citaId());
+            if (activa) {
+                indexar(intervalo);
+            }
+        });
+    }
+
+    /**
+     * Añade al índice citas nuevas cuando la transacción haga commit
+     * Se usa en la importación masiva: solo se indexan las citas insertadas, sin recargar el índice
+     * @param intervalos Intervalos de las citas activas creadas
+     */
+    public void indexarAlConfirmar(Collection<IntervaloCita> intervalos) {
+        if (!intervalos.isEmpty()) {
+            alConfirmar(() -> intervalos.forEach(this::indexar));
+        }
+    }
+
+    /**
+     * Quita una cita del índice cuando la transacción haga commit
+     * @param citaId ID de la cita eliminada
+     */
+    public void eliminarAlConfirmar(Long citaId) {
+        alConfirmar(() -> desindexar(citaId));
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private void indexar(IntervaloCita intervalo) {
+        agendas.computeIfAbsent(intervalo.medicoId(), id -> new ConcurrentSkipListSet<>(POR_INICIO))
+                .add(intervalo);
+        porCita.put(intervalo.citaId(), intervalo);
+        duracionMaxima.merge(intervalo.medicoId(), intervalo.duracionMinutos(), Math::max);
+    }
+
+    private void desindexar(Long citaId) {
+        IntervaloCita anterior = porCita.remove(citaId);
+        if (anterior != null) {
+            NavigableSet<IntervaloCita> agenda = agendas.get(anterior.medicoId());
+            if (agenda != null) {
+                agenda.remove(anterior);
+            }
+        }
+    }
+}
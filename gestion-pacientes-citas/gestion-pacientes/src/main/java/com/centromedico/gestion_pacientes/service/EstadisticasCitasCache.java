@@ -0,0 +1,362 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.ConteoPorEstado;
+import com.centromedico.gestion_pacientes.dto.ConteoPorMedico;
+import com.centromedico.gestion_pacientes.dto.MetricasCacheEstadisticas;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Caché en memoria de los contadores del dashboard
+ * - Citas por estado
+ * - Citas activas por médico
+ * - Citas confirmadas para hoy
+ *
+ * Los contadores se actualizan de forma incremental con los eventos que publica
+ * CitaService al cambiar una cita, y se reconcilian periódicamente con la BD
+ * para corregir cualquier desviación (por ejemplo, cambios hechos fuera del servicio).
+ *
+ * Las lecturas no bloquean. Las consultas a la BD (reconciliación y recargas tras un fallo)
+ * se hacen fuera del monitor de la caché, así que no retienen a los eventos; su resultado se
+ * aplica después, bajo el monitor, solo si mientras tanto no se ha confirmado ningún cambio:
+ * - 'secuencia' cuenta los eventos aplicados; si cambió durante la consulta, no se sabe
+ *   si la consulta ya los veía
+ * - 'enVuelo' cuenta los cambios publicados cuya transacción aún no ha terminado de aplicarse;
+ *   uno confirmado antes de la consulta pero aplicado después se contaría dos veces
+ * Si no se cumple, la consulta se repite (INTENTOS veces); si sigue habiendo cambios, los
+ * contadores se quedan como están hasta la siguiente reconciliación.
+ */
+@Component
+@RequiredArgsConstructor
+public class EstadisticasCitasCache {
+
+    /** Veces que se repite una consulta a la BD si se cruza con cambios de citas */
+    private static final int INTENTOS = 3;
+
+    private final CitaRepository citaRepository;
+
+    private final Map<EstadoCita, AtomicLong> porEstado = crearContadoresPorEstado();
+    private final Map<Long, AtomicLong> activasPorMedico = new ConcurrentHashMap<>();
+    private final AtomicLong confirmadasHoy = new AtomicLong();
+
+    // Día al que corresponde 'confirmadasHoy'; si cambia, el contador se recalcula
+    private volatile LocalDate diaConfirmadasHoy;
+    private volatile LocalDateTime ultimaReconciliacion;
+
+    // Eventos aplicados y cambios publicados aún sin aplicar (ver recargar)
+    private final AtomicLong secuencia = new AtomicLong();
+    private final AtomicInteger enVuelo = new AtomicInteger();
+
+    // Métricas
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder eventosAplicados = new LongAdder();
+    private final AtomicLong correcciones = new AtomicLong();
+
+    // ============================================
+    // LECTURA
+    // ============================================
+
+    /**
+     * Obtiene el número de citas de cada estado
+     * @return Mapa estado -> número de citas
+     */
+    public Map<EstadoCita, Long> contarPorEstado() {
+        asegurarCargada();
+        Map<EstadoCita, Long> copia = new EnumMap<>(EstadoCita.class);
+        porEstado.forEach((estado, total) -> copia.put(estado, total.get()));
+        return copia;
+    }
+
+    /**
+     * Obtiene el número de citas con un estado
+     * @param estado Estado de la cita
+     * @return Número de citas
+     */
+    public long contarPorEstado(EstadoCita estado) {
+        asegurarCargada();
+        return porEstado.get(estado).get();
+    }
+
+    /**
+     * Obtiene el número de citas activas de un médico
+     * Si el médico aún no está en caché, se consulta la BD y se guarda
+     * @param medicoId ID del médico
+     * @return Número de citas activas
+     */
+    public long contarActivasPorMedico(Long medicoId) {
+        AtomicLong total = activasPorMedico.get(medicoId);
+        if (total != null) {
+            aciertos.increment();
+            return total.get();
+        }
+        fallos.increment();
+        return cargarActivasPorMedico(medicoId);
+    }
+
+    /**
+     * Obtiene el número de citas confirmadas para hoy
+     * @return Número de citas confirmadas hoy
+     */
+    public long contarConfirmadasHoy() {
+        if (LocalDate.now().equals(diaConfirmadasHoy)) {
+            aciertos.increment();
+            return confirmadasHoy.get();
+        }
+        fallos.increment();
+        return recargarConfirmadasHoy();
+    }
+
+    /**
+     * Obtiene las métricas de uso de la caché
+     * @return Aciertos, fallos, eventos aplicados y antigüedad de los datos
+     */
+    public MetricasCacheEstadisticas obtenerMetricas() {
+        LocalDateTime ultima = ultimaReconciliacion;
+        long antiguedad = ultima != null ? Duration.between(ultima, LocalDateTime.now()).toSeconds() : -1;
+        return new MetricasCacheEstadisticas(
+                aciertos.sum(),
+                fallos.sum(),
+                eventosAplicados.sum(),
+                correcciones.get(),
+                ultima,
+                antiguedad
+        );
+    }
+
+    // ============================================
+    // ACTUALIZACIÓN INCREMENTAL
+    // ============================================
+
+    /**
+     * Anota un cambio de cita en cuanto se publica, dentro de su transacción
+     * Hasta que la transacción termina (y alCambiarCita lo ha aplicado) cuenta como en vuelo
+     * @param evento Cambio de la cita
+     */
+    @EventListener
+    public void alPublicarCambio(CitaEstadoCambiadoEvent evento) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Sin transacción no se ejecuta alCambiarCita: no hay nada pendiente de aplicar
+            return;
+        }
+        enVuelo.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                enVuelo.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Aplica a los contadores el cambio de una cita, una vez confirmada la transacción
+     * @param evento Cambio de la cita
+     */
+    @TransactionalEventListener
+    public synchronized void alCambiarCita(CitaEstadoCambiadoEvent evento) {
+        secuencia.incrementAndGet();
+        if (ultimaReconciliacion == null) {
+            // Aún no hay datos cargados: la primera lectura los traerá ya actualizados
+            return;
+        }
+        EstadoCita anterior = evento.estadoAnterior();
+        EstadoCita nuevo = evento.estadoNuevo();
+
+        // Citas por estado
+        if (anterior != nuevo) {
+            if (anterior != null) {
+                porEstado.get(anterior).decrementAndGet();
+            }
+            if (nuevo != null) {
+                porEstado.get(nuevo).incrementAndGet();
+            }
+        }
+
+        // Citas activas por médico (solo si el médico ya está en caché)
+        int deltaActivas = (esActiva(nuevo) ? 1 : 0) - (esActiva(anterior) ? 1 : 0);
+        if (deltaActivas != 0) {
+            AtomicLong total = activasPorMedico.get(evento.medicoId());
+            if (total != null) {
+                total.addAndGet(deltaActivas);
+            }
+        }
+
+        // Confirmadas hoy
+        LocalDate hoy = LocalDate.now();
+        if (hoy.equals(diaConfirmadasHoy)) {
+            int deltaHoy = (cuentaHoy(nuevo, evento.fechaHora(), hoy) ? 1 : 0)
+                    - (cuentaHoy(anterior, evento.fechaHoraAnterior(), hoy) ? 1 : 0);
+            confirmadasHoy.addAndGet(deltaHoy);
+        }
+
+        eventosAplicados.increment();
+    }
+
+    private boolean esActiva(EstadoCita estado) {
+        return estado != null && estado.esActiva();
+    }
+
+    private boolean cuentaHoy(EstadoCita estado, LocalDateTime fechaHora, LocalDate hoy) {
+        return estado == EstadoCita.CONFIRMADA && fechaHora != null && fechaHora.toLocalDate().equals(hoy);
+    }
+
+    // ============================================
+    // RECONCILIACIÓN CON LA BD
+    // ============================================
+
+    /**
+     * Recalcula todos los contadores desde la BD
+     * Se ejecuta cada 5 minutos y corrige cualquier desviación acumulada
+     */
+    @Scheduled(fixedDelayString = "${estadisticas.cache.reconciliacion-ms:300000}")
+    public void reconciliar() {
+        LocalDate hoy = LocalDate.now();
+        Contadores leidos = recargar(() -> leerContadores(hoy), this::aplicarContadores);
+        if (ultimaReconciliacion == null) {
+            // Primera carga sin aplicar: no hay contadores que conservar; se usa la última
+            // lectura y la siguiente reconciliación corrige lo que se haya cruzado
+            aplicarContadores(leidos);
+        }
+    }
+
+    /**
+     * Resultado de las consultas de la reconciliación
+     */
+    private record Contadores(Map<EstadoCita, Long> porEstado, Map<Long, Long> activasPorMedico,
+                              LocalDate dia, long confirmadasHoy) {
+    }
+
+    private Contadores leerContadores(LocalDate hoy) {
+        Map<EstadoCita, Long> reales = new EnumMap<>(EstadoCita.class);
+        for (EstadoCita estado : EstadoCita.values()) {
+            reales.put(estado, 0L);
+        }
+        for (ConteoPorEstado fila : citaRepository.contarAgrupadasPorEstado()) {
+            reales.put(fila.estado(), fila.total());
+        }
+
+        Map<Long, Long> activasReales = new HashMap<>();
+        for (ConteoPorMedico fila : citaRepository.contarActivasAgrupadasPorMedico()) {
+            activasReales.put(fila.medicoId(), fila.total());
+        }
+
+        return new Contadores(reales, activasReales, hoy, contarConfirmadasEn(hoy));
+    }
+
+    /**
+     * Sustituye los contadores por los leídos de la BD (bajo el monitor)
+     */
+    private synchronized void aplicarContadores(Contadores reales) {
+        long corregidos = 0;
+        for (Map.Entry<EstadoCita, Long> real : reales.porEstado().entrySet()) {
+            if (porEstado.get(real.getKey()).getAndSet(real.getValue()) != real.getValue()) {
+                corregidos++;
+            }
+        }
+
+        for (Map.Entry<Long, AtomicLong> actual : activasPorMedico.entrySet()) {
+            long real = reales.activasPorMedico().getOrDefault(actual.getKey(), 0L);
+            if (actual.getValue().getAndSet(real) != real) {
+                corregidos++;
+            }
+        }
+        reales.activasPorMedico().forEach((medicoId, total) -> activasPorMedico.putIfAbsent(medicoId, new AtomicLong(total)));
+
+        if (reales.dia().equals(diaConfirmadasHoy) && confirmadasHoy.get() != reales.confirmadasHoy()) {
+            corregidos++;
+        }
+        confirmadasHoy.set(reales.confirmadasHoy());
+        diaConfirmadasHoy = reales.dia();
+
+        correcciones.set(corregidos);
+        ultimaReconciliacion = LocalDateTime.now();
+    }
+
+    /**
+     * Ejecuta una consulta a la BD fuera del monitor y aplica su resultado bajo el monitor,
+     * solo si durante la consulta no se ha aplicado ningún evento ni queda ningún cambio en vuelo
+     * Si se cruza con cambios, la repite hasta INTENTOS veces
+     * @param consulta Lectura de la BD
+     * @param aplicar Actualización de los contadores con el resultado
+     * @return Resultado de la última lectura, se haya aplicado o no
+     */
+    private <T> T recargar(Supplier<T> consulta, Consumer<T> aplicar) {
+        T resultado = null;
+        for (int intento = 0; intento < INTENTOS; intento++) {
+            long inicio = secuencia.get();
+            resultado = consulta.get();
+            synchronized (this) {
+                if (secuencia.get() == inicio && enVuelo.get() == 0) {
+                    aplicar.accept(resultado);
+                    break;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    private static Map<EstadoCita, AtomicLong> crearContadoresPorEstado() {
+        Map<EstadoCita, AtomicLong> contadores = new EnumMap<>(EstadoCita.class);
+        for (EstadoCita estado : EstadoCita.values()) {
+            contadores.put(estado, new AtomicLong());
+        }
+        return contadores;
+    }
+
+    private void asegurarCargada() {
+        if (ultimaReconciliacion != null) {
+            aciertos.increment();
+            return;
+        }
+        fallos.increment();
+        reconciliar();
+    }
+
+    /**
+     * Lee de la BD las citas activas de un médico y las guarda en caché si nada se ha cruzado
+     */
+    private long cargarActivasPorMedico(Long medicoId) {
+        return recargar(() -> citaRepository.countCitasActivasByMedicoId(medicoId),
+                total -> activasPorMedico.putIfAbsent(medicoId, new AtomicLong(total)));
+    }
+
+    /**
+     * Lee de la BD las citas confirmadas de hoy y las guarda en caché si nada se ha cruzado
+     */
+    private long recargarConfirmadasHoy() {
+        LocalDate hoy = LocalDate.now();
+        return recargar(() -> contarConfirmadasEn(hoy), total -> {
+            confirmadasHoy.set(total);
+            diaConfirmadasHoy = hoy;
+        });
+    }
+
+    private long contarConfirmadasEn(LocalDate dia) {
+        return citaRepository.countByEstadoEnRango(
+                EstadoCita.CONFIRMADA,
+                dia.atStartOfDay(),
+                dia.plusDays(1).atStartOfDay()
+        );
+    }
+}
@@ -0,0 +1,122 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.CitaReciente;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servicio de estadísticas para el dashboard
+ * Los contadores de citas se sirven desde EstadisticasCitasCache, el resto de cifras
+ * con consultas COUNT y los listados con consultas top-N, de modo que el coste de
+ * pintar el dashboard no crece con el tamaño de la tabla de citas
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class EstadisticasDashboardService {
+
+    private final CitaRepository citaRepository;
+    private final PacienteRepository pacienteRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final EstadisticasCitasCache estadisticasCache;
+    private final UltimasCitasBuffer ultimasCitasBuffer;
+
+    // ============================================
+    // CONTADORES GLOBALES - ADMIN y RECEPCION
+    // ============================================
+
+    /**
+     * Cuenta las citas de cada estado
+     * Se sirve desde la caché de estadísticas, que se reconcilia con una
+     * única consulta agrupada (COUNT ... GROUP BY estado)
+     * @return Mapa estado -> número de citas
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
+    public Map<EstadoCita, Long> contarCitasPorEstado() {
+        return estadisticasCache.contarPorEstado();
+    }
+
+    /**
+     * Cuenta las citas con un estado concreto
+     * @param estado Estado de la cita
+     * @return Número de citas
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
+    public long contarCitasPorEstado(EstadoCita estado) {
+        return estadisticasCache.contarPorEstado(estado);
+    }
+
+    /**
+     * Cuenta las citas confirmadas para hoy
+     * @return Número de citas confirmadas con fecha de hoy
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
+    public long contarCitasConfirmadasHoy() {
+        return estadisticasCache.contarConfirmadasHoy();
+    }
+
+    /**
+     * Cuenta el total de pacientes registrados
+     * @return Número de pacientes
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public long contarPacientes() {
+        return pacienteRepository.count();
+    }
+
+    /**
+     * Cuenta el total de médicos registrados
+     * @return Número de médicos
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public long contarMedicos() {
+        return usuarioRepository.countByRol(Rol.MEDICO);
+    }
+
+    // ============================================
+    // LISTADOS TOP-N
+    // ============================================
+
+    /**
+     * Obtiene las próximas citas pendientes de confirmación
+     * @param limite Número máximo de citas
+     * @return Lista con como mucho 'limite' citas
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'RECEPCION')")
+    public List<Cita> obtenerCitasPendientes(int limite) {
+        return citaRepository.findByEstadoOrderByFechaHoraAsc(EstadoCita.PENDIENTE, PageRequest.of(0, limite));
+    }
+
+    /**
+     * Obtiene las últimas citas creadas (feed de ADMIN)
+     * Se sirven desde el buffer en memoria, sin consultar la tabla de citas
+     * @param limite Número máximo de citas
+     * @return Lista con las citas más recientes primero
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<CitaReciente> obtenerUltimasCitasCreadas(int limite) {
+        return ultimasCitasBuffer.obtenerUltimas(limite);
+    }
+
+    /**
+     * Obtiene las próximas citas activas de un médico
+     * @param medicoId ID del médico
+     * @param limite Número máximo de citas
+     * @return Lista con como mucho 'limite' citas
+     */
+    public List<Cita> obtenerCitasActivasMedico(Long medicoId, int limite) {
+        return citaRepository.findCitasActivasByMedicoId(medicoId, PageRequest.of(0, limite));
+    }
+}
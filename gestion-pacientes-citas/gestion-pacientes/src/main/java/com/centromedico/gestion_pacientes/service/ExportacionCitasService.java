@@ -0,0 +1,154 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.FilaExportacionCita;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exportación de citas a CSV para auditoría
+ * Las filas se leen con un cursor y se escriben según llegan: la memoria usada no depende
+ * del número de citas, así que admite exportaciones de millones de filas.
+ *
+ * Formato compatible con la importación (mismas columnas y fecha ISO), más el ID de la cita
+ * y los nombres del paciente y del médico. Empieza con BOM UTF-8 para que Excel lo abra bien.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportacionCitasService {
+
+    public static final String CABECERA =
+            "dni_paciente,medico,fecha_hora,duracion_minutos,motivo,estado,id,paciente,medico_nombre";
+
+    private static final char BOM = '\uFEFF';
+
+    // Caracteres con los que una hoja de cálculo interpreta la celda como fórmula
+    private static final String INICIO_FORMULA = "=+-@\t";
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    private final CitaRepository citaRepository;
+
+    /**
+     * Valida el rango de fechas de una exportación
+     * Se llama antes de empezar a escribir la respuesta, para poder informar del error
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     * @throws IllegalArgumentException si el rango no es válido
+     */
+    public void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde == null || hasta == null) {
+            throw new IllegalArgumentException("Debe indicar el rango de fechas");
+        }
+        if (hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("La fecha final no puede ser anterior a la inicial");
+        }
+    }
+
+    /**
+     * Escribe en CSV las citas de un rango de días, opcionalmente de un solo médico (solo ADMIN)
+     * La transacción (y la conexión) se mantiene abierta mientras se escribe
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     * @param medicoId ID del médico (opcional)
+     * @param destino Donde se escribe el CSV; no se cierra
+     * @return Número de citas exportadas
+     * @throws IOException si falla la escritura (p. ej. el navegador cancela la descarga)
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
+    public long exportarCsv(LocalDate desde, LocalDate hasta, Long medicoId, Writer destino) throws IOException {
+        validarRango(desde, hasta);
+        LocalDateTime inicio = desde.atStartOfDay();
+        LocalDateTime fin = hasta.plusDays(1).atStartOfDay();
+
+        destino.write(BOM);
+        destino.write(CABECERA);
+        destino.write('\n');
+
+        long total = 0;
+        try (Stream<FilaExportacionCita> filas = medicoId != null
+                ? citaRepository.streamDeMedicoParaExportar(medicoId, inicio, fin)
+                : citaRepository.streamParaExportar(inicio, fin)) {
+            Iterator<FilaExportacionCita> iterador = filas.iterator();
+            while (iterador.hasNext()) {
+                escribirFila(destino, iterador.next());
+                total++;
+            }
+        }
+        destino.flush();
+        return total;
+    }
+
+    private static void escribirFila(Writer destino, FilaExportacionCita fila) throws IOException {
+        destino.write(campo(fila.dniPaciente()));
+        destino.write(',');
+        destino.write(campo(fila.medico()));
+        destino.write(',');
+        destino.write(fila.fechaHora().format(FORMATO_FECHA));
+        destino.write(',');
+        destino.write(String.valueOf(fila.duracionMinutos()));
+        destino.write(',');
+        destino.write(campo(fila.motivo()));
+        destino.write(',');
+        destino.write(fila.estado().name());
+        destino.write(',');
+        destino.write(String.valueOf(fila.id()));
+        destino.write(',');
+        destino.write(campo(fila.nombrePaciente() + " " + fila.apellidosPaciente()));
+        destino.write(',');
+        destino.write(campo(fila.nombreMedico()));
+        destino.write('\n');
+    }
+
+    /**
+     * Escapa un campo de texto: entre comillas si contiene separador, comillas o saltos de línea
+     * (la importación admite campos de varias líneas entre comillas)
+     * Si empieza como una fórmula (=, +, -, @ o tabulador) se antepone un apóstrofo:
+     * Excel y LibreOffice lo muestran como texto en lugar de ejecutarlo (inyección de fórmulas)
+     */
+    private static String campo(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        String escrito = empiezaComoFormula(valor) ? "'" + valor : valor;
+        if (escrito.indexOf(',') >= 0 || escrito.indexOf(';') >= 0 || escrito.indexOf('"') >= 0
+                || escrito.indexOf('\n') >= 0 || escrito.indexOf('\r') >= 0) {
+            return '"' + escrito.replace("\"", "\"\"") + '"';
+        }
+        return escrito;
+    }
+
+    /**
+     * Deshace el apóstrofo que añade la exportación, para que la importación lea el texto original
+     * Solo se quita si detrás viene una fórmula: un apóstrofo escrito por el usuario se conserva
+     */
+    static String quitarProteccionFormula(String valor) {
+        if (valor != null && valor.startsWith("'") && empiezaComoFormula(valor)) {
+            return valor.substring(1);
+        }
+        return valor;
+    }
+
+    /**
+     * Si el texto empieza como una fórmula, contando también las que ya llevan apóstrofos delante:
+     * así "'=1" se exporta como "''=1" y la importación lo distingue de "=1" (exportado como "'=1")
+     */
+    private static boolean empiezaComoFormula(String valor) {
+        int i = 0;
+        while (i < valor.length() && valor.charAt(i) == '\'') {
+            i++;
+        }
+        return i < valor.length() && INICIO_FORMULA.indexOf(valor.charAt(i)) >= 0;
+    }
+}
@@ -0,0 +1,767 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.ErrorImportacion;
+import com.centromedico.gestion_pacientes.dto.FilaImportacionCita;
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
+import com.centromedico.gestion_pacientes.dto.ResultadoImportacion;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaEventoRepository;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Servicio de importación masiva de citas desde ficheros CSV o JSON
+ * Pensado para cargar la agenda existente de una clínica nueva (decenas de miles de citas):
+ * - Lee el fichero en streaming y procesa las filas por lotes
+ * - Resuelve los pacientes y médicos de cada lote con una sola consulta
+ * - Comprueba los solapamientos en memoria, por médico
+ * - Inserta cada lote con un único batch JDBC
+ *
+ * Una fila con errores se rechaza y se informa, sin abortar el resto de la carga.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImportacionCitasService {
+
+    /** Filas que se procesan e insertan juntas */
+    public static final int TAMANO_LOTE = 1000;
+
+    /** Número máximo de errores que se devuelven en detalle */
+    private static final int MAX_ERRORES_DETALLE = 500;
+
+    private static final int DURACION_DEFECTO = 30;
+    private static final int MAX_LONGITUD_MOTIVO = 500;
+
+    private static final String NOTA_IMPORTADA = "Importada desde fichero";
+
+    private static final Comparator<IntervaloCita> POR_INICIO =
+            Comparator.comparing(IntervaloCita::inicio).thenComparing(IntervaloCita::citaId);
+
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final String INSERT_CITA =
+            "INSERT INTO citas (paciente_id, medico_id, fecha_hora, duracion_minutos, fecha_fin, " +
+            "motivo, estado, fecha_creacion, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final CitaRepository citaRepository;
+    private final CitaEventoRepository citaEventoRepository;
+    private final PacienteRepository pacienteRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final ContextoAcceso contextoAcceso;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final DisponibilidadMedicoIndex disponibilidadIndex;
+    private final EstadisticasCitasCache estadisticasCache;
+    private final UltimasCitasBuffer ultimasCitasBuffer;
+    private final OcupacionDiariaService ocupacionService;
+
+    // ============================================
+    // IMPORTACIÓN
+    // ============================================
+
+    /**
+     * Importa las citas de un fichero
+     * El formato se decide por la extensión: .json (array de objetos) o CSV en otro caso
+     *
+     * CSV: cabecera obligatoria con las columnas
+     * dni_paciente, medico, fecha_hora, duracion_minutos, motivo, estado (separador , o ;)
+     * JSON: [{"dniPaciente": "...", "medico": "...", "fechaHora": "...", ...}]
+     *
+     * @param entrada Contenido del fichero
+     * @param nombreFichero Nombre original del fichero
+     * @return Resumen con las filas importadas y los errores por fila
+     * @throws IOException si no se puede leer el fichero
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResultadoImportacion importar(InputStream entrada, String nombreFichero) throws IOException {
+        long inicio = System.currentTimeMillis();
+        EstadoImportacion estado = new EstadoImportacion(contextoAcceso.getUsuario().getUsername());
+
+        Consumer<FilaImportacionCita> acumular = fila -> {
+            estado.filasLeidas++;
+            estado.lote.add(fila);
+            if (estado.lote.size() >= TAMANO_LOTE) {
+                procesarLote(estado);
+            }
+        };
+
+        if (nombreFichero != null && nombreFichero.toLowerCase(Locale.ROOT).endsWith(".json")) {
+            leerJson(entrada, acumular);
+        } else {
+            leerCsv(entrada, acumular);
+        }
+        procesarLote(estado);
+
+        // El índice de disponibilidad se actualiza con cada lote al hacer commit; el resto de cachés
+        // y la ocupación diaria no ven los INSERT por JDBC: se recalculan una sola vez al final
+        if (estado.importadas > 0) {
+            estadisticasCache.reconciliar();
+            ultimasCitasBuffer.cargar();
+            estado.diasPorMedico.forEach((medicoId, dias) -> ocupacionService.recalcular(medicoId, dias[0], dias[1]));
+        }
+
+        return new ResultadoImportacion(
+                estado.filasLeidas,
+                estado.importadas,
+                estado.rechazadas,
+                estado.errores,
+                System.currentTimeMillis() - inicio
+        );
+    }
+
+    // ============================================
+    // PROCESADO POR LOTES
+    // ============================================
+
+    /**
+     * Valida, comprueba conflictos e inserta las filas acumuladas
+     */
+    private void procesarLote(EstadoImportacion estado) {
+        if (estado.lote.isEmpty()) {
+            return;
+        }
+        List<FilaImportacionCita> filas = estado.lote;
+        estado.lote = new ArrayList<>(TAMANO_LOTE);
+
+        precargarReferencias(filas, estado);
+
+        List<CitaImportada> validas = new ArrayList<>(filas.size());
+        for (FilaImportacionCita fila : filas) {
+            try {
+                validas.add(convertir(fila, estado));
+            } catch (IllegalArgumentException e) {
+                estado.rechazar(fila.linea(), e.getMessage());
+            }
+        }
+
+        insertarLote(validas, estado);
+    }
+
+    /**
+     * Carga en los mapas de la importación los pacientes y médicos del lote que aún no se conocen
+     * Una consulta por tipo y lote en lugar de dos findById por fila
+     */
+    private void precargarReferencias(List<FilaImportacionCita> filas, EstadoImportacion estado) {
+        Set<String> dnis = new HashSet<>();
+        Set<String> usernames = new HashSet<>();
+        for (FilaImportacionCita fila : filas) {
+            String dni = limpiar(fila.dniPaciente());
+            if (dni != null && !estado.pacientesPorDni.containsKey(dni)) {
+                dnis.add(dni);
+            }
+            String medico = limpiar(fila.medico());
+            if (medico != null && !estado.medicosPorUsername.containsKey(medico)) {
+                usernames.add(medico);
+            }
+        }
+
+        if (!dnis.isEmpty()) {
+            for (Paciente paciente : pacienteRepository.findByDniIn(dnis)) {
+                estado.pacientesPorDni.put(paciente.getDni(), paciente.getId());
+            }
+        }
+        if (!usernames.isEmpty()) {
+            for (Usuario medico : usuarioRepository.findByUsernameInAndRol(usernames, Rol.MEDICO)) {
+                estado.medicosPorUsername.put(medico.getUsername(), medico.getId());
+            }
+        }
+    }
+
+    /**
+     * Carga en memoria las citas activas ya existentes de los médicos del lote
+     * que se solapan con el rango de fechas del lote (una sola consulta)
+     * Con el fichero ordenado por fecha el rango de cada lote es pequeño
+     */
+    private void precargarAgendas(List<CitaImportada> citas, EstadoImportacion estado) {
+        Set<Long> medicoIds = new HashSet<>();
+        LocalDateTime desde = null;
+        LocalDateTime hasta = null;
+        for (CitaImportada cita : citas) {
+            if (!cita.ocupaAgenda()) {
+                continue;
+            }
+            medicoIds.add(cita.medicoId());
+            if (desde == null || cita.fechaHora().isBefore(desde)) {
+                desde = cita.fechaHora();
+            }
+            if (hasta == null || cita.fin().isAfter(hasta)) {
+                hasta = cita.fin();
+            }
+        }
+        if (medicoIds.isEmpty()) {
+            return;
+        }
+
+        // Las citas insertadas en lotes anteriores vuelven con su ID real además del provisional;
+        // el duplicado ocupa el mismo hueco, así que no cambia el resultado de la comprobación
+        citaRepository.findIntervalosDeMedicosEnRango(
+                medicoIds, DisponibilidadMedicoIndex.ESTADOS_ACTIVOS, desde, hasta
+        ).forEach(estado::anadirAAgenda);
+    }
+
+    /**
+     * Busca una cita del mismo médico que se solape con la cita importada
+     */
+    private Optional<IntervaloCita> buscarConflicto(EstadoImportacion estado, CitaImportada cita) {
+        NavigableSet<IntervaloCita> agenda = estado.agendas.get(cita.medicoId());
+        if (agenda == null || agenda.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Ninguna cita que empiece antes de (inicio - duración máxima) puede llegar a solaparse
+        int maxDuracion = estado.duracionMaxima.getOrDefault(cita.medicoId(), 0);
+        IntervaloCita desde = new IntervaloCita(Long.MIN_VALUE, cita.medicoId(),
+                cita.fechaHora().minusMinutes(maxDuracion), 0);
+        IntervaloCita hasta = new IntervaloCita(Long.MIN_VALUE, cita.medicoId(), cita.fin(), 0);
+
+        for (IntervaloCita intervalo : agenda.subSet(desde, true, hasta, false)) {
+            if (intervalo.seSolapaCon(cita.fechaHora(), cita.fin())) {
+                return Optional.of(intervalo);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Comprueba conflictos e inserta el lote dentro de su propia transacción
+     * Antes de leer las agendas bloquea a los médicos del lote, como al agendar una cita,
+     * para que ninguna reserva concurrente se cuele entre la comprobación y el INSERT
+     * Si el batch falla se deshace y se reintenta fila a fila, cada una en su transacción,
+     * para rechazar solo las filas que la BD no acepta (con su propio error)
+     */
+    private void insertarLote(List<CitaImportada> validas, EstadoImportacion estado) {
+        if (validas.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        List<CitaImportada> citas = new ArrayList<>(validas.size());
+
+        try {
+            transaccion.executeWithoutResult(status -> {
+                bloquearMedicos(validas);
+                precargarAgendas(validas, estado);
+                for (CitaImportada cita : validas) {
+                    if (cita.ocupaAgenda()) {
+                        Optional<IntervaloCita> conflicto = buscarConflicto(estado, cita);
+                        if (conflicto.isPresent()) {
+                            estado.rechazar(cita.linea(), mensajeConflicto(conflicto.get()));
+                            continue;
+                        }
+                        estado.reservar(cita);
+                    }
+                    citas.add(cita);
+                }
+                insertar(citas, ahora, estado);
+            });
+            estado.importadas += citas.size();
+            citas.forEach(estado::marcarDia);
+        } catch (DataAccessException e) {
+            for (CitaImportada cita : citas) {
+                insertarFila(cita, ahora, transaccion, estado);
+            }
+        }
+    }
+
+    /**
+     * Reintenta una fila en su propia transacción
+     * Vuelve a bloquear al médico y a comprobar contra la BD: los bloqueos del lote se
+     * liberaron al deshacerlo
+     */
+    private void insertarFila(CitaImportada cita, Timestamp ahora, TransactionTemplate transaccion,
+                              EstadoImportacion estado) {
+        try {
+            Optional<IntervaloCita> conflicto = transaccion.execute(status -> {
+                if (cita.ocupaAgenda()) {
+                    bloquearMedicos(List.of(cita));
+                    List<IntervaloCita> solapadas = citaRepository.findIntervalosDeMedicoParaReservar(
+                            cita.medicoId(), DisponibilidadMedicoIndex.ESTADOS_ACTIVOS, cita.fechaHora(), cita.fin());
+                    if (!solapadas.isEmpty()) {
+                        return Optional.of(solapadas.get(0));
+                    }
+                }
+                insertar(List.of(cita), ahora, estado);
+                return Optional.<IntervaloCita>empty();
+            });
+            if (conflicto.isPresent()) {
+                estado.liberar(cita);
+                estado.rechazar(cita.linea(), mensajeConflicto(conflicto.get()));
+                return;
+            }
+            estado.importadas++;
+            estado.marcarDia(cita);
+        } catch (DataAccessException e) {
+            estado.liberar(cita);
+            estado.rechazar(cita.linea(), "Error al guardar la cita: " + e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Inserta las citas con un batch JDBC y, en la misma transacción, su evento de creación
+     * en el historial (un único INSERT ... SELECT con los IDs generados)
+     * Las citas activas se añaden al índice de disponibilidad cuando la transacción hace commit
+     */
+    private void insertar(List<CitaImportada> citas, Timestamp ahora, EstadoImportacion estado) {
+        if (citas.isEmpty()) {
+            return;
+        }
+        KeyHolder claves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_CITA, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        asignarParametros(ps, citas.get(i), ahora);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return citas.size();
+                    }
+                },
+                claves);
+
+        // Una fila por cita insertada, en el mismo orden; la única columna es el ID
+        List<Long> ids = claves.getKeyList().stream()
+                .map(fila -> ((Number) fila.values().iterator().next()).longValue())
+                .toList();
+        citaEventoRepository.registrarCreacionEnBloque(ids, NOTA_IMPORTADA, estado.autor, ahora.toLocalDateTime());
+
+        List<IntervaloCita> activas = new ArrayList<>(citas.size());
+        for (int i = 0; i < citas.size(); i++) {
+            CitaImportada cita = citas.get(i);
+            if (cita.ocupaAgenda()) {
+                activas.add(new IntervaloCita(ids.get(i), cita.medicoId(), cita.fechaHora(), cita.duracionMinutos()));
+            }
+        }
+        disponibilidadIndex.indexarAlConfirmar(activas);
+    }
+
+    /**
+     * Bloquea hasta el commit las filas de los médicos cuyas citas ocupan agenda
+     * Siempre en orden de ID, para que dos importaciones simultáneas no se bloqueen mutuamente
+     */
+    private void bloquearMedicos(List<CitaImportada> citas) {
+        citas.stream()
+                .filter(CitaImportada::ocupaAgenda)
+                .map(CitaImportada::medicoId)
+                .distinct()
+                .sorted()
+                .forEach(usuarioRepository::findByIdParaReservar);
+    }
+
+    private static void asignarParametros(PreparedStatement ps, CitaImportada cita, Timestamp ahora) throws SQLException {
+        ps.setLong(1, cita.pacienteId());
+        ps.setLong(2, cita.medicoId());
+        ps.setTimestamp(3, Timestamp.valueOf(cita.fechaHora()));
+        ps.setInt(4, cita.duracionMinutos());
+        ps.setTimestamp(5, Timestamp.valueOf(cita.fin()));
+        ps.setString(6, cita.motivo());
+        ps.setString(7, cita.estado().name());
+        ps.setTimestamp(8, ahora);
+    }
+
+    // ============================================
+    // VALIDACIÓN DE FILAS
+    // ============================================
+
+    /**
+     * Convierte y valida una fila del fichero
+     * @throws IllegalArgumentException con el motivo si la fila no es válida
+     */
+    private CitaImportada convertir(FilaImportacionCita fila, EstadoImportacion estado) {
+        if (fila.error() != null) {
+            throw new IllegalArgumentException(fila.error());
+        }
+
+        String dni = limpiar(fila.dniPaciente());
+        if (dni == null) {
+            throw new IllegalArgumentException("Falta el DNI del paciente");
+        }
+        Long pacienteId = estado.pacientesPorDni.get(dni);
+        if (pacienteId == null) {
+            throw new IllegalArgumentException("Paciente no encontrado: " + dni);
+        }
+
+        String username = limpiar(fila.medico());
+        if (username == null) {
+            throw new IllegalArgumentException("Falta el médico");
+        }
+        Long medicoId = estado.medicosPorUsername.get(username);
+        if (medicoId == null) {
+            throw new IllegalArgumentException("Médico no encontrado: " + username);
+        }
+
+        String textoFecha = limpiar(fila.fechaHora());
+        if (textoFecha == null) {
+            throw new IllegalArgumentException("Falta la fecha/hora");
+        }
+        LocalDateTime fechaHora;
+        try {
+            fechaHora = LocalDateTime.parse(textoFecha);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha/hora no válida: " + textoFecha);
+        }
+
+        int duracion = DURACION_DEFECTO;
+        String textoDuracion = limpiar(fila.duracionMinutos());
+        if (textoDuracion != null) {
+            try {
+                duracion = Integer.parseInt(textoDuracion);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Duración no válida: " + textoDuracion);
+            }
+        }
+        if (duracion <= 0) {
+            throw new IllegalArgumentException("La duración debe ser mayor a 0 minutos");
+        }
+        if (duracion > CitaService.DURACION_MAXIMA_MINUTOS) {
+            throw new IllegalArgumentException("La duración no puede ser mayor a " + CitaService.DURACION_MAXIMA_MINUTOS + " minutos (4 horas)");
+        }
+
+        String motivo = limpiar(fila.motivo());
+        if (motivo == null) {
+            throw new IllegalArgumentException("Debe especificar el motivo de la cita");
+        }
+        if (motivo.length() > MAX_LONGITUD_MOTIVO) {
+            throw new IllegalArgumentException("El motivo supera los " + MAX_LONGITUD_MOTIVO + " caracteres");
+        }
+
+        EstadoCita estadoCita = EstadoCita.PENDIENTE;
+        String textoEstado = limpiar(fila.estado());
+        if (textoEstado != null) {
+            try {
+                estadoCita = EstadoCita.valueOf(textoEstado.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Estado no válido: " + textoEstado);
+            }
+        }
+
+        return new CitaImportada(fila.linea(), pacienteId, medicoId, fechaHora, duracion, motivo, estadoCita);
+    }
+
+    /**
+     * Mensaje de rechazo por solapamiento
+     * Los intervalos con ID negativo son filas de este mismo fichero
+     */
+    private String mensajeConflicto(IntervaloCita intervalo) {
+        String rango = intervalo.inicio().format(FORMATO_HORA) + " - " + intervalo.fin().format(FORMATO_HORA);
+        if (intervalo.citaId() < 0) {
+            return "Conflicto de horario con la línea " + (-intervalo.citaId()) + " del fichero (" + rango + ")";
+        }
+        return "Conflicto de horario: el médico ya tiene una cita de " + rango;
+    }
+
+    private static String limpiar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String limpio = valor.trim();
+        return limpio.isEmpty() ? null : limpio;
+    }
+
+    // ============================================
+    // LECTURA DE FICHEROS (STREAMING)
+    // ============================================
+
+    /**
+     * Lee un CSV registro a registro, sin cargarlo entero en memoria
+     * Admite separador coma o punto y coma (se detecta en la cabecera) y campos entre comillas,
+     * que pueden contener el separador, comillas dobladas y saltos de línea (RFC 4180)
+     * Cada fila se numera con la línea del fichero en la que empieza
+     */
+    private void leerCsv(InputStream entrada, Consumer<FilaImportacionCita> destino) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+
+        String cabecera = lector.readLine();
+        if (cabecera == null) {
+            throw new IllegalArgumentException("El fichero está vacío");
+        }
+        if (cabecera.startsWith("\uFEFF")) {
+            cabecera = cabecera.substring(1);
+        }
+        char separador = cabecera.indexOf(';') >= 0 ? ';' : ',';
+
+        Map<String, Integer> columnas = new HashMap<>();
+        List<String> nombres = separarCsv(cabecera, separador);
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas.put(nombres.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String obligatoria : List.of("dni_paciente", "medico", "fecha_hora", "motivo")) {
+            if (!columnas.containsKey(obligatoria)) {
+                throw new IllegalArgumentException("Falta la columna '" + obligatoria + "' en la cabecera del CSV");
+            }
+        }
+
+        String linea;
+        int numero = 1;
+        while ((linea = lector.readLine()) != null) {
+            numero++;
+            if (linea.isBlank()) {
+                continue;
+            }
+
+            // Si quedan comillas abiertas, el campo sigue en la línea siguiente
+            int primeraLinea = numero;
+            StringBuilder registro = new StringBuilder(linea);
+            boolean abierto = numeroImparDeComillas(linea);
+            while (abierto && (linea = lector.readLine()) != null) {
+                numero++;
+                registro.append('\n').append(linea);
+                abierto ^= numeroImparDeComillas(linea);
+            }
+            if (abierto) {
+                destino.accept(FilaImportacionCita.malFormada(primeraLinea,
+                        "Comillas sin cerrar: el campo continúa hasta el final del fichero"));
+                return;
+            }
+
+            List<String> campos = separarCsv(registro.toString(), separador);
+            destino.accept(new FilaImportacionCita(
+                    primeraLinea,
+                    campo(campos, columnas, "dni_paciente"),
+                    campo(campos, columnas, "medico"),
+                    campo(campos, columnas, "fecha_hora"),
+                    campo(campos, columnas, "duracion_minutos"),
+                    campo(campos, columnas, "motivo"),
+                    campo(campos, columnas, "estado"),
+                    null
+            ));
+        }
+    }
+
+    /**
+     * Una comilla doblada ("") suma dos, así que un número impar deja un campo abierto
+     */
+    private static boolean numeroImparDeComillas(String linea) {
+        int comillas = 0;
+        for (int i = 0; i < linea.length(); i++) {
+            if (linea.charAt(i) == '"') {
+                comillas++;
+            }
+        }
+        return comillas % 2 != 0;
+    }
+
+    /**
+     * Valor de una columna, sin el apóstrofo con el que la exportación protege las fórmulas
+     */
+    private static String campo(List<String> campos, Map<String, Integer> columnas, String nombre) {
+        Integer indice = columnas.get(nombre);
+        return indice != null && indice < campos.size()
+                ? ExportacionCitasService.quitarProteccionFormula(campos.get(indice))
+                : null;
+    }
+
+    /**
+     * Separa un registro CSV respetando las comillas dobles ("" dentro de comillas es una comilla)
+     */
+    private static List<String> separarCsv(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    /**
+     * Lee un array JSON objeto a objeto con el parser en streaming de Jackson
+     * Cada objeto se lee sin exigir que sea lo último del fichero (detrás vienen los demás)
+     */
+    private void leerJson(InputStream entrada, Consumer<FilaImportacionCita> destino) {
+        ObjectReader lectorObjetos = objectMapper.readerFor(JsonNode.class)
+                .without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        try (JsonParser parser = objectMapper.createParser(entrada)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("El JSON debe ser un array de citas");
+            }
+            int posicion = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                posicion++;
+                JsonNode nodo = lectorObjetos.readValue(parser);
+                destino.accept(new FilaImportacionCita(
+                        posicion,
+                        texto(nodo, "dniPaciente"),
+                        texto(nodo, "medico"),
+                        texto(nodo, "fechaHora"),
+                        texto(nodo, "duracionMinutos"),
+                        texto(nodo, "motivo"),
+                        texto(nodo, "estado"),
+                        null
+                ));
+            }
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("JSON no válido: " + e.getOriginalMessage());
+        }
+    }
+
+    private static String texto(JsonNode nodo, String nombre) {
+        JsonNode valor = nodo.path(nombre);
+        return valor.isValueNode() && !valor.isNull() ? valor.asString() : null;
+    }
+
+    // ============================================
+    // ESTADO DE UNA IMPORTACIÓN
+    // ============================================
+
+    /**
+     * Cita de una fila ya validada, con las referencias resueltas a ID
+     */
+    private record CitaImportada(
+            int linea,
+            Long pacienteId,
+            Long medicoId,
+            LocalDateTime fechaHora,
+            int duracionMinutos,
+            String motivo,
+            EstadoCita estado
+    ) {
+
+        LocalDateTime fin() {
+            return fechaHora.plusMinutes(duracionMinutos);
+        }
+
+        boolean ocupaAgenda() {
+            return DisponibilidadMedicoIndex.ESTADOS_ACTIVOS.contains(estado);
+        }
+
+        /** Intervalo provisional: se identifica con la línea en negativo hasta tener ID real */
+        IntervaloCita intervalo() {
+            return new IntervaloCita((long) -linea, medicoId, fechaHora, duracionMinutos);
+        }
+    }
+
+    /**
+     * Datos acumulados durante una importación (no se comparte entre peticiones)
+     */
+    private static class EstadoImportacion {
+
+        // Usuario que importa: autor de los eventos de creación
+        private final String autor;
+
+        private List<FilaImportacionCita> lote = new ArrayList<>(TAMANO_LOTE);
+
+        // Referencias ya resueltas: DNI -> ID de paciente, username -> ID de médico
+        private final Map<String, Long> pacientesPorDni = new HashMap<>();
+        private final Map<String, Long> medicosPorUsername = new HashMap<>();
+
+        // Agenda en memoria de cada médico: citas existentes más las importadas
+        private final Map<Long, NavigableSet<IntervaloCita>> agendas = new HashMap<>();
+        private final Map<Long, Integer> duracionMaxima = new HashMap<>();
+
+        // Primer y último día importado de cada médico, para recalcular su ocupación diaria
+        private final Map<Long, LocalDate[]> diasPorMedico = new HashMap<>();
+
+        private final List<ErrorImportacion> errores = new ArrayList<>();
+        private int filasLeidas;
+        private int importadas;
+        private int rechazadas;
+
+        EstadoImportacion(String autor) {
+            this.autor = autor;
+        }
+
+        void anadirAAgenda(IntervaloCita intervalo) {
+            agendas.computeIfAbsent(intervalo.medicoId(), id -> new TreeSet<>(POR_INICIO)).add(intervalo);
+            duracionMaxima.merge(intervalo.medicoId(), intervalo.duracionMinutos(), Math::max);
+        }
+
+        void reservar(CitaImportada cita) {
+            anadirAAgenda(cita.intervalo());
+        }
+
+        void marcarDia(CitaImportada cita) {
+            LocalDate dia = cita.fechaHora().toLocalDate();
+            LocalDate[] dias = diasPorMedico.computeIfAbsent(cita.medicoId(), id -> new LocalDate[]{dia, dia});
+            if (dia.isBefore(dias[0])) {
+                dias[0] = dia;
+            }
+            if (dia.isAfter(dias[1])) {
+                dias[1] = dia;
+            }
+        }
+
+        void liberar(CitaImportada cita) {
+            NavigableSet<IntervaloCita> agenda = agendas.get(cita.medicoId());
+            if (agenda != null) {
+                agenda.remove(cita.intervalo());
+            }
+        }
+
+        void rechazar(int linea, String mensaje) {
+            rechazadas++;
+            if (errores.size() < MAX_ERRORES_DETALLE) {
+                errores.add(new ErrorImportacion(linea, mensaje));
+            }
+        }
+    }
+}
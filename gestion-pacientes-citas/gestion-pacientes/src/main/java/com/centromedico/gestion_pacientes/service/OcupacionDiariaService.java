@@ -0,0 +1,242 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.AgrupacionOcupacion;
+import com.centromedico.gestion_pacientes.dto.OcupacionMedico;
+import com.centromedico.gestion_pacientes.entity.OcupacionDiaria;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import com.centromedico.gestion_pacientes.repository.OcupacionDiariaRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ocupación diaria de los médicos (tabla ocupacion_diaria)
+ * - Mantenimiento: en cada cambio de cita se recalcula, dentro de la misma transacción,
+ *   la fila del médico y día afectados (y la del día anterior si se reprogramó)
+ * - Reconciliación nocturna: recalcula los últimos y próximos días de cada médico; cierra
+ *   las no presentadas del día anterior y corrige cambios hechos fuera del servicio
+ * - Informe: por médico y día o semana, leyendo solo ocupacion_diaria
+ *   (coste proporcional a días x médicos, no al número de citas)
+ */
+@Service
+@RequiredArgsConstructor
+public class OcupacionDiariaService {
+
+    /** Días hacia atrás y hacia delante que recalcula la reconciliación nocturna */
+    public static final int DIAS_RECONCILIACION_PASADO = 7;
+    public static final int DIAS_RECONCILIACION_FUTURO = 90;
+
+    /** Rango máximo de un informe */
+    public static final int MAX_DIAS_INFORME = 731;
+
+    /** Minutos del horario de atención de un día */
+    public static final long MINUTOS_LABORABLES_DIA =
+            Duration.between(CitaService.HORA_APERTURA, CitaService.HORA_CIERRE).toMinutes();
+
+    // Clave con la que se guardan en la transacción los días pendientes de recalcular
+    private static final Object DIAS_PENDIENTES = new Object();
+
+    private final OcupacionDiariaRepository ocupacionRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    // ============================================
+    // MANTENIMIENTO
+    // ============================================
+
+    /**
+     * Anota el día (o días) de la cita para recalcularlos antes del commit
+     * Varios cambios del mismo médico y día en una transacción (p. ej. la caducidad
+     * en bloque) se recalculan una sola vez
+     * @param evento Cambio de la cita
+     */
+    @EventListener
+    public void alCambiarCita(CitaEstadoCambiadoEvent evento) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Sin transacción no hay commit que esperar: lo corrige la reconciliación nocturna
+            return;
+        }
+        DiasPendientes pendientes = (DiasPendientes) TransactionSynchronizationManager.getResource(DIAS_PENDIENTES);
+        if (pendientes == null) {
+            pendientes = new DiasPendientes();
+            TransactionSynchronizationManager.bindResource(DIAS_PENDIENTES, pendientes);
+            TransactionSynchronizationManager.registerSynchronization(pendientes);
+        }
+        pendientes.anadir(evento.medicoId(), evento.fechaHoraAnterior());
+        pendientes.anadir(evento.medicoId(), evento.fechaHora());
+    }
+
+    /**
+     * Recalcula las filas de un médico en un rango de días, en su propia transacción
+     * Se usa tras cargas que no pasan por CitaService (importación de citas)
+     * @param medicoId ID del médico
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     */
+    public void recalcular(Long medicoId, LocalDate desde, LocalDate hasta) {
+        LocalDateTime ahora = LocalDateTime.now();
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                estado -> recalcularDias(medicoId, desde, hasta.plusDays(1), ahora));
+    }
+
+    private void recalcularDias(Long medicoId, LocalDate desde, LocalDate hastaExcluido, LocalDateTime ahora) {
+        ocupacionRepository.borrarDeMedico(medicoId, desde, hastaExcluido);
+        ocupacionRepository.calcularDeMedico(medicoId, desde.atStartOfDay(), hastaExcluido.atStartOfDay(), ahora);
+    }
+
+    /**
+     * Días (médico, fecha) tocados en la transacción actual
+     * Se recalculan en beforeCommit, en la misma transacción que el cambio de la cita
+     */
+    private class DiasPendientes implements TransactionSynchronization {
+
+        private final Set<OcupacionDiaria.Clave> dias = new HashSet<>();
+
+        void anadir(Long medicoId, LocalDateTime fechaHora) {
+            if (medicoId != null && fechaHora != null) {
+                dias.add(new OcupacionDiaria.Clave(medicoId, fechaHora.toLocalDate()));
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (readOnly || dias.isEmpty()) {
+                return;
+            }
+            // Las consultas nativas leen citas: antes hay que volcar los cambios pendientes
+            ocupacionRepository.flush();
+            LocalDateTime ahora = LocalDateTime.now();
+            for (OcupacionDiaria.Clave dia : dias) {
+                recalcularDias(dia.getMedicoId(), dia.getFecha(), dia.getFecha().plusDays(1), ahora);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(DIAS_PENDIENTES);
+        }
+    }
+
+    // ============================================
+    // RECONCILIACIÓN
+    // ============================================
+
+    /**
+     * Reconciliación nocturna (por defecto a las 2:30, ocupacion.reconciliacion.cron)
+     * Recalcula desde DIAS_RECONCILIACION_PASADO días atrás hasta DIAS_RECONCILIACION_FUTURO días
+     */
+    @Scheduled(cron = "${ocupacion.reconciliacion.cron:0 30 2 * * *}")
+    public void reconciliarNocturno() {
+        LocalDate hoy = LocalDate.now();
+        reconciliar(hoy.minusDays(DIAS_RECONCILIACION_PASADO), hoy.plusDays(DIAS_RECONCILIACION_FUTURO));
+    }
+
+    /**
+     * Recalcula todas las filas de un rango de días, un médico por transacción
+     * Cada médico se lee por el índice (medico_id, fecha_hora) de citas
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     * @return Número de médicos recalculados
+     */
+    public int reconciliar(LocalDate desde, LocalDate hasta) {
+        List<Usuario> medicos = usuarioRepository.findByRol(Rol.MEDICO);
+        for (Usuario medico : medicos) {
+            recalcular(medico.getId(), desde, hasta);
+        }
+        return medicos.size();
+    }
+
+    // ============================================
+    // INFORME
+    // ============================================
+
+    /**
+     * Informe de ocupación por médico y periodo (solo ADMIN)
+     * Incluye los periodos sin citas (ocupación 0) de todos los médicos
+     * @param desde Primer día (incluido)
+     * @param hasta Último día (incluido)
+     * @param agrupacion Por día o por semana
+     * @return Filas ordenadas por médico y periodo
+     * @throws IllegalArgumentException si el rango no es válido
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
+    public List<OcupacionMedico> obtenerInforme(LocalDate desde, LocalDate hasta, AgrupacionOcupacion agrupacion) {
+        if (desde == null || hasta == null || agrupacion == null) {
+            throw new IllegalArgumentException("Debe indicar el rango de fechas y la agrupación");
+        }
+        if (hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("La fecha final no puede ser anterior a la inicial");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= MAX_DIAS_INFORME) {
+            throw new IllegalArgumentException("El informe no puede abarcar más de " + MAX_DIAS_INFORME + " días");
+        }
+
+        // Médico -> inicio de periodo -> {minutos, totales, atendidas, canceladas, no presentadas}
+        Map<Long, Map<LocalDate, long[]>> acumulado = new HashMap<>();
+        for (OcupacionDiaria fila : ocupacionRepository.findEnRango(desde, hasta)) {
+            long[] suma = acumulado
+                    .computeIfAbsent(fila.getMedicoId(), id -> new HashMap<>())
+                    .computeIfAbsent(agrupacion.inicioPeriodo(fila.getFecha()), periodo -> new long[5]);
+            suma[0] += fila.getMinutosReservados();
+            suma[1] += fila.getCitasTotales();
+            suma[2] += fila.getCitasAtendidas();
+            suma[3] += fila.getCitasCanceladas();
+            suma[4] += fila.getCitasNoPresentadas();
+        }
+
+        List<Usuario> medicos = new ArrayList<>(usuarioRepository.findByRol(Rol.MEDICO));
+        medicos.sort(Comparator.comparing(Usuario::getNombre, String.CASE_INSENSITIVE_ORDER));
+
+        long[] vacio = new long[5];
+        List<OcupacionMedico> informe = new ArrayList<>();
+        for (Usuario medico : medicos) {
+            Map<LocalDate, long[]> periodos = acumulado.getOrDefault(medico.getId(), Map.of());
+            for (LocalDate periodo = agrupacion.inicioPeriodo(desde); !periodo.isAfter(hasta);
+                 periodo = agrupacion.siguientePeriodo(periodo)) {
+                // El primer y el último periodo se recortan al rango pedido
+                LocalDate inicio = periodo.isBefore(desde) ? desde : periodo;
+                LocalDate finPeriodo = agrupacion.siguientePeriodo(periodo).minusDays(1);
+                LocalDate fin = finPeriodo.isAfter(hasta) ? hasta : finPeriodo;
+                long dias = ChronoUnit.DAYS.between(inicio, fin) + 1;
+
+                long[] suma = periodos.getOrDefault(periodo, vacio);
+                informe.add(new OcupacionMedico(
+                        medico.getId(),
+                        medico.getNombre(),
+                        inicio,
+                        fin,
+                        suma[0],
+                        dias * MINUTOS_LABORABLES_DIA,
+                        suma[1],
+                        suma[2],
+                        suma[3],
+                        suma[4]
+                ));
+            }
+        }
+        return informe;
+    }
+}
@@ -1,6 +1,5 @@
 package com.centromedico.gestion_pacientes.service;
 
-import com.centromedico.gestion_pacientes.config.CustomUserDetails;
 import com.centromedico.gestion_pacientes.entity.Paciente;
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
@@ -8,8 +7,6 @@ import com.centromedico.gestion_pacientes.repository.PacienteRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,43 +23,7 @@ import java.util.Optional;
 public class PacienteService {
 
     private final PacienteRepository pacienteRepository;
-
-    // ============================================
-    // MÉTODOS AUXILIARES
-    // ============================================
-
-    /**
-     * Obtiene el usuario autenticado actualmente
-     * @return Usuario autenticado
-     */
-    private Usuario getUsuarioAutenticado() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails) {
-            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
-            return userDetails.getUsuario();
-        }
-        throw new AccessDeniedException("No hay usuario autenticado");
-    }
-
-    /**
-     * Verifica si el usuario actual es ADMIN
-     * @return true si es ADMIN
-     */
-    private boolean esAdmin() {
-        Usuario usuario = getUsuarioAutenticado();
-        return usuario.getRol() == Rol.ADMIN;
-    }
-
-    /**
-     * Verifica si el paciente pertenece al médico actual
-     * @param paciente Paciente a verificar
-     * @return true si el paciente es del médico actual
-     */
-    private boolean esSuPaciente(Paciente paciente) {
-        Usuario usuario = getUsuarioAutenticado();
-        return paciente.getMedico() != null &&
-                paciente.getMedico().getId().equals(usuario.getId());
-    }
+    private final ContextoAcceso contextoAcceso;
 
     // ============================================
     // CREATE - ADMIN y MEDICO
@@ -82,7 +43,7 @@ public class PacienteService {
         }
 
         // Si es MEDICO, asignarse automáticamente como médico del paciente
-        Usuario usuario = getUsuarioAutenticado();
+        Usuario usuario = contextoAcceso.getUsuario();
         if (usuario.getRol() == Rol.MEDICO) {
             paciente.setMedico(usuario);
         }
@@ -101,7 +62,7 @@ public class PacienteService {
      * @return Lista de pacientes según el rol
      */
     public List<Paciente> obtenerTodos() {
-        Usuario usuario = getUsuarioAutenticado();
+        Usuario usuario = contextoAcceso.getUsuario();
 
         // ADMIN y RECEPCION ven todos los pacientes
         if (usuario.getRol() == Rol.ADMIN || usuario.getRol() == Rol.RECEPCION) {
@@ -121,7 +82,7 @@ public class PacienteService {
      * @return Lista de pacientes activos según el rol
      */
     public List<Paciente> obtenerActivos() {
-        Usuario usuario = getUsuarioAutenticado();
+        Usuario usuario = contextoAcceso.getUsuario();
 
         if (usuario.getRol() == Rol.ADMIN || usuario.getRol() == Rol.RECEPCION) {
             return pacienteRepository.findByActivoTrue();
@@ -143,7 +104,7 @@ public class PacienteService {
      */
     @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO')")
     public List<Paciente> obtenerPorMedico(Long medicoId) {
-        Usuario usuario = getUsuarioAutenticado();
+        Usuario usuario = contextoAcceso.getUsuario();
 
         // ADMIN puede ver pacientes de cualquier médico
         if (usuario.getRol() == Rol.ADMIN) {
@@ -175,7 +136,7 @@ public class PacienteService {
         }
 
         Paciente paciente = pacienteOpt.get();
-        Usuario usuario = getUsuarioAutenticado();
+        Usuario usuario = contextoAcceso.getUsuario();
 
         // ADMIN y RECEPCION pueden ver cualquier paciente
         if (usuario.getRol() == Rol.ADMIN || usuario.getRol() == Rol.RECEPCION) {
@@ -184,7 +145,7 @@ public class PacienteService {
 
         // MEDICO solo puede ver sus pacientes
         if (usuario.getRol() == Rol.MEDICO) {
-            if (esSuPaciente(paciente)) {
+            if (contextoAcceso.esSuPaciente(paciente)) {
                 return pacienteOpt;
             } else {
                 throw new AccessDeniedException("No tiene permiso para ver este paciente");
@@ -220,10 +181,10 @@ public class PacienteService {
         Paciente pacienteExistente = pacienteRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Paciente no encontrado con id: " + id));
 
-        Usuario usuario = getUsuarioAutenticado();
+        Usuario usuario = contextoAcceso.getUsuario();
 
         // MEDICO solo puede editar sus propios pacientes
-        if (usuario.getRol() == Rol.MEDICO && !esSuPaciente(pacienteExistente)) {
+        if (usuario.getRol() == Rol.MEDICO && !contextoAcceso.esSuPaciente(pacienteExistente)) {
             throw new AccessDeniedException("No puede editar pacientes de otros médicos");
         }
 
@@ -238,6 +199,7 @@ public class PacienteService {
         // Solo ADMIN puede cambiar el médico asignado
         if (usuario.getRol() == Rol.ADMIN && pacienteActualizado.getMedico() != null) {
             pacienteExistente.setMedico(pacienteActualizado.getMedico());
+            contextoAcceso.olvidarPaciente(id);
         }
 
         // Validar cambio de DNI
@@ -0,0 +1,177 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import com.centromedico.gestion_pacientes.event.RecordatorioCitaEvent;
+import com.centromedico.gestion_pacientes.repository.CitaEventoRepository;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Tarea programada de recordatorios y caducidad de citas
+ * - Recordatorios: publica un RecordatorioCitaEvent por cada cita activa que empieza dentro
+ *   del plazo de aviso y aún no se ha recordado. Cada cita guarda cuándo se le envió el
+ *   recordatorio (recordatorio_enviado), así que se recuerda una vez, también las que se
+ *   reservan con menos antelación que el plazo.
+ * - Caducidad: cancela en bloque las citas que siguen PENDIENTE cuando ya pasó su hora.
+ *
+ * Ambas recorren las citas por lotes sobre el índice (estado, fecha_hora).
+ *
+ * Los recordatorios solo se envían desde la tarea programada si citas.recordatorios.habilitados
+ * es true (por defecto no): enviarlos marca las citas como recordadas, así que sin un listener
+ * de RecordatorioCitaEvent que los entregue se perderían.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecordatoriosCitasService {
+
+    /** Antelación con la que se recuerda una cita */
+    public static final Duration ANTELACION = Duration.ofHours(24);
+
+    /** Tiempo tras la hora de la cita a partir del cual una cita sin confirmar caduca */
+    public static final Duration GRACIA_PENDIENTES = Duration.ofHours(2);
+
+    /** Citas que se leen y procesan juntas */
+    public static final int TAMANO_LOTE = 500;
+
+    private static final String AUTOR = "sistema";
+    private static final String NOTA_CADUCADA = "Cancelada automáticamente: no se confirmó antes de la hora de la cita";
+
+    private final CitaRepository citaRepository;
+    private final CitaEventoRepository citaEventoRepository;
+    private final DisponibilidadMedicoIndex disponibilidadIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final Executor recordatoriosExecutor;
+
+    @Value("${citas.recordatorios.habilitados:false}")
+    private boolean recordatoriosHabilitados;
+
+    /**
+     * Ejecuta los recordatorios (si están habilitados) y la caducidad de pendientes
+     * Por defecto cada 5 minutos (citas.recordatorios.intervalo-ms), empezando un minuto después de arrancar
+     */
+    @Scheduled(fixedDelayString = "${citas.recordatorios.intervalo-ms:300000}",
+            initialDelayString = "${citas.recordatorios.retraso-inicial-ms:60000}")
+    public void ejecutar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        if (recordatoriosHabilitados) {
+            enviarRecordatorios(ahora);
+        }
+        caducarPendientes(ahora);
+    }
+
+    // ============================================
+    // RECORDATORIOS
+    // ============================================
+
+    /**
+     * Publica los recordatorios de las citas sin recordar que empiezan en [ahora, ahora + ANTELACION]
+     * Los lotes se envían en recordatoriosExecutor y cada lote se marca como recordado
+     * después de enviarse: si un envío falla, sus citas se vuelven a intentar en la siguiente ejecución
+     * @param ahora Momento de la ejecución
+     * @return Número de recordatorios publicados
+     */
+    public int enviarRecordatorios(LocalDateTime ahora) {
+        LocalDateTime hasta = ahora.plus(ANTELACION);
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+
+        List<CompletableFuture<Void>> envios = new ArrayList<>();
+        int total = 0;
+
+        LocalDateTime despuesFecha = ahora;
+        Long despuesId = 0L;
+        List<RecordatorioCitaEvent> lote;
+        do {
+            lote = citaRepository.findRecordatoriosEnVentana(
+                    DisponibilidadMedicoIndex.ESTADOS_ACTIVOS, despuesFecha, despuesId, hasta,
+                    PageRequest.of(0, TAMANO_LOTE));
+            if (lote.isEmpty()) {
+                break;
+            }
+
+            List<RecordatorioCitaEvent> recordatorios = lote;
+            List<Long> citaIds = lote.stream().map(RecordatorioCitaEvent::citaId).toList();
+            envios.add(CompletableFuture.runAsync(() -> {
+                recordatorios.forEach(eventPublisher::publishEvent);
+                transaccion.executeWithoutResult(estado -> citaRepository.marcarRecordatorioEnviado(citaIds, ahora));
+            }, recordatoriosExecutor));
+
+            RecordatorioCitaEvent ultimo = lote.get(lote.size() - 1);
+            despuesFecha = ultimo.fechaHora();
+            despuesId = ultimo.citaId();
+            total += lote.size();
+        } while (lote.size() == TAMANO_LOTE);
+
+        CompletableFuture.allOf(envios.toArray(CompletableFuture[]::new)).join();
+        return total;
+    }
+
+    // ============================================
+    // CADUCIDAD DE CITAS PENDIENTES
+    // ============================================
+
+    /**
+     * Cancela las citas PENDIENTE cuya hora pasó hace más de GRACIA_PENDIENTES
+     * Cada lote es una transacción: bloquea las filas, las cancela con un único UPDATE
+     * y añade su evento al historial con un único INSERT
+     * No necesita marca de agua: tras cada ejecución no quedan pendientes vencidas,
+     * así que la consulta sobre el índice (estado, fecha_hora) apenas lee filas
+     * @param ahora Momento de la ejecución
+     * @return Número de citas canceladas
+     */
+    public int caducarPendientes(LocalDateTime ahora) {
+        LocalDateTime limite = ahora.minus(GRACIA_PENDIENTES);
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+
+        int total = 0;
+        int canceladas;
+        do {
+            canceladas = transaccion.execute(estado -> cancelarLote(limite, ahora));
+            total += canceladas;
+        } while (canceladas == TAMANO_LOTE);
+        return total;
+    }
+
+    private int cancelarLote(LocalDateTime limite, LocalDateTime ahora) {
+        List<IntervaloCita> lote = citaRepository.findVencidasParaActualizar(
+                EstadoCita.PENDIENTE, limite, PageRequest.of(0, TAMANO_LOTE));
+        if (lote.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> citaIds = lote.stream().map(IntervaloCita::citaId).toList();
+        citaRepository.cambiarEstadoEnBloque(citaIds, EstadoCita.PENDIENTE, EstadoCita.CANCELADA);
+        citaEventoRepository.registrarEnBloque(citaIds, EstadoCita.PENDIENTE.name(),
+                EstadoCita.CANCELADA.name(), NOTA_CADUCADA, AUTOR, ahora);
+
+        // Índice, estadísticas y agendas en vivo se actualizan tras el commit
+        for (IntervaloCita intervalo : lote) {
+            disponibilidadIndex.eliminarAlConfirmar(intervalo.citaId());
+            eventPublisher.publishEvent(new CitaEstadoCambiadoEvent(
+                    intervalo.citaId(),
+                    intervalo.medicoId(),
+                    EstadoCita.PENDIENTE,
+                    EstadoCita.CANCELADA,
+                    intervalo.inicio(),
+                    intervalo.inicio()
+            ));
+        }
+        return lote.size();
+    }
+}
@@ -0,0 +1,99 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.CitaReciente;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Buffer circular acotado con las últimas citas creadas
+ * Alimenta el feed del dashboard de ADMIN sin consultar la tabla de citas:
+ * se carga al arrancar con una consulta top-N y luego lo alimenta agendarCita
+ */
+@Component
+@RequiredArgsConstructor
+public class UltimasCitasBuffer {
+
+    /** Número máximo de citas que se guardan */
+    public static final int CAPACIDAD = 20;
+
+    private final CitaRepository citaRepository;
+
+    // La más reciente va primero
+    private final Deque<CitaReciente> ultimas = new ArrayDeque<>(CAPACIDAD);
+
+    /**
+     * Carga las últimas citas creadas desde la BD (como mucho CAPACIDAD filas)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void cargar() {
+        ultimas.clear();
+        ultimas.addAll(citaRepository.findUltimasCitasCreadas(PageRequest.of(0, CAPACIDAD)));
+    }
+
+    /**
+     * Obtiene las últimas citas creadas
+     * @param limite Número máximo de citas (como mucho CAPACIDAD)
+     * @return Lista con las citas más recientes primero
+     */
+    public synchronized List<CitaReciente> obtenerUltimas(int limite) {
+        return ultimas.stream().limit(limite).toList();
+    }
+
+    /**
+     * Añade una cita recién creada cuando la transacción haga commit
+     * La cita debe tener cargados el paciente y el médico
+     * @param cita Cita creada
+     */
+    public void registrarAlConfirmar(Cita cita) {
+        CitaReciente reciente = new CitaReciente(
+                cita.getId(),
+                cita.getFechaCreacion(),
+                cita.getFechaHora(),
+                cita.getNombrePaciente(),
+                cita.getNombreMedico(),
+                cita.getMotivo()
+        );
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    registrar(reciente);
+                }
+            });
+        } else {
+            registrar(reciente);
+        }
+    }
+
+    /**
+     * Quita del buffer las citas que se eliminan
+     * @param evento Cambio de la cita
+     */
+    @TransactionalEventListener
+    public synchronized void alCambiarCita(CitaEstadoCambiadoEvent evento) {
+        if (evento.estadoNuevo() == null) {
+            ultimas.removeIf(c -> c.id().equals(evento.citaId()));
+        }
+    }
+
+    private synchronized void registrar(CitaReciente reciente) {
+        if (ultimas.size() >= CAPACIDAD) {
+            ultimas.removeLast();
+        }
+        ultimas.addFirst(reciente);
+    }
+}
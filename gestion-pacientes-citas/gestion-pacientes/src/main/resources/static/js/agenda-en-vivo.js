@@ -0,0 +1,87 @@
+/**
+ * Agenda en vivo: recibe los cambios de citas del servidor (Server-Sent Events)
+ * y actualiza la página sin recargarla.
+ * - Las citas que ya están en la página cambian su estado en el sitio
+ * - Si llega una cita que no está en la página, se muestra el aviso #aviso-cambios
+ *
+ * Opciones:
+ *   url    URL del flujo de eventos (/citas/eventos, con medicoId si procede)
+ *   fecha  Día mostrado (yyyy-MM-dd); solo avisa de citas de ese día (opcional)
+ *   estado Estado mostrado (PENDIENTE, ...); solo avisa de citas en ese estado (opcional)
+ */
+function agendaEnVivo(opciones) {
+    if (!window.EventSource) {
+        return;
+    }
+
+    const CLASES_ESTADO = {
+        PENDIENTE: ['bg-warning', 'text-dark'],
+        CONFIRMADA: ['bg-success'],
+        COMPLETADA: ['bg-primary'],
+        CANCELADA: ['bg-danger']
+    };
+    const TODAS_LAS_CLASES = ['bg-warning', 'text-dark', 'bg-success', 'bg-primary', 'bg-danger'];
+
+    const aviso = document.getElementById('aviso-cambios');
+    let desconectado = false;
+
+    function mostrarAviso() {
+        if (aviso) {
+            aviso.classList.remove('d-none');
+        }
+    }
+
+    function esDelDia(fechaHora) {
+        return !opciones.fecha || (fechaHora && fechaHora.startsWith(opciones.fecha));
+    }
+
+    function actualizarFila(fila, cambio) {
+        if (cambio.tipo === 'eliminada') {
+            fila.remove();
+            return;
+        }
+
+        const badge = fila.querySelector('.estado-cita');
+        if (badge) {
+            badge.classList.remove(...TODAS_LAS_CLASES);
+            badge.classList.add(...CLASES_ESTADO[cambio.estado]);
+            badge.textContent = cambio.estadoDescripcion;
+        }
+
+        const tarjeta = fila.querySelector('.cita-card');
+        if (tarjeta) {
+            tarjeta.classList.remove('pendiente', 'confirmada', 'completada', 'cancelada');
+            tarjeta.classList.add(cambio.estado.toLowerCase());
+        }
+
+        // Si la cita cambió de hora, el orden de la página ya no es válido
+        if (cambio.tipo === 'modificada') {
+            mostrarAviso();
+        }
+    }
+
+    const fuente = new EventSource(opciones.url);
+
+    fuente.addEventListener('cita', function (e) {
+        const cambio = JSON.parse(e.data);
+        const fila = document.querySelector('[data-cita-id="' + cambio.citaId + '"]');
+
+        if (fila) {
+            actualizarFila(fila, cambio);
+        } else if (cambio.estado
+                && (!opciones.estado || opciones.estado === cambio.estado)
+                && esDelDia(cambio.fechaHora)) {
+            mostrarAviso();
+        }
+    });
+
+    // Tras un corte se pueden haber perdido cambios: se pide recargar al reconectar
+    fuente.onerror = function () {
+        desconectado = true;
+    };
+    fuente.onopen = function () {
+        if (desconectado) {
+            mostrarAviso();
+        }
+    };
+}
@@ -0,0 +1,27 @@
+package com.centromedico.gestion_pacientes;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Prueba de integración contra H2 en memoria (perfil "test", application-test.properties)
+ *
+ * Las clases que solo llevan esta anotación comparten el mismo contexto de Spring.
+ * Como la BD es común, cada prueba crea sus propios médicos y pacientes con DatosPrueba
+ * y solo comprueba sus datos.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(DatosPrueba.class)
+public @interface PruebaIntegracion {
+}
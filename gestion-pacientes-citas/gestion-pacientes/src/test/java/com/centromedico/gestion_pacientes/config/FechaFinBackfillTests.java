@@ -0,0 +1,85 @@
+package com.centromedico.gestion_pacientes.config;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pruebas de las citas antiguas sin fecha_fin (H2 en memoria)
+ */
+@PruebaIntegracion
+class FechaFinBackfillTests {
+
+	private static final List<EstadoCita> ACTIVOS = List.of(EstadoCita.PENDIENTE, EstadoCita.CONFIRMADA);
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private FechaFinBackfill backfill;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private Usuario medico;
+	private Cita antigua;
+
+	@BeforeEach
+	void preparar() {
+		medico = datos.crearUsuario(Rol.MEDICO);
+		Paciente paciente = datos.crearPaciente(medico);
+
+		// Cita de 30 minutos guardada antes de que existiera la columna
+		LocalDateTime fechaHora = LocalDate.now().plusDays(3).atTime(10, 0);
+		antigua = datos.guardarCita(paciente, medico, fechaHora, EstadoCita.PENDIENTE);
+		jdbcTemplate.update("UPDATE citas SET fecha_fin = NULL WHERE id = ?", antigua.getId());
+	}
+
+	@Test
+	void lasCitasSinFechaFinSiguenContandoEnLosSolapamientos() {
+		LocalDateTime inicio = antigua.getFechaHora().plusMinutes(15);
+
+		// La consulta de conflictos bloquea filas: necesita transacción
+		List<Cita> conflictivas = transactionTemplate.execute(status -> citaRepository.findCitasConflictivas(
+				medico.getId(), inicio, inicio.plusMinutes(30), ACTIVOS));
+
+		assertEquals(1, conflictivas.size());
+		assertEquals(1, citaRepository.findIntervalosDeMedicosEnRango(
+				List.of(medico.getId()), ACTIVOS, inicio, inicio.plusMinutes(30)).size());
+	}
+
+	@Test
+	void rellenaFechaFinYEsIdempotente() throws Exception {
+		backfill.run(new DefaultApplicationArguments());
+		backfill.run(new DefaultApplicationArguments());
+
+		assertEquals(antigua.getFechaHora().plusMinutes(antigua.getDuracionMinutos()),
+				citaRepository.findById(antigua.getId()).orElseThrow().getFechaFin());
+		assertNull(jdbcTemplate.queryForObject(
+				"SELECT MIN(id) FROM citas WHERE fecha_fin IS NULL", Long.class));
+	}
+}
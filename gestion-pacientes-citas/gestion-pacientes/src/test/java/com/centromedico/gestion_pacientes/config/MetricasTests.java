@@ -0,0 +1,83 @@
+package com.centromedico.gestion_pacientes.config;
+
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import com.centromedico.gestion_pacientes.service.EstadisticasDashboardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pruebas de las métricas exportadas en /metricas (H2 en memoria)
+ */
+@PruebaIntegracion
+@AutoConfigureMockMvc
+@TestPropertySource(properties = "metricas.token=" + MetricasTests.TOKEN)
+class MetricasTests {
+
+	static final String TOKEN = "token-de-prueba";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PacienteRepository pacienteRepository;
+
+	@Autowired
+	private EstadisticasDashboardService estadisticasService;
+
+	@Test
+	void exportaTiemposYFilasDeRepositoriosYServicios() throws Exception {
+		assertFalse(pacienteRepository.findAll().isEmpty());
+		// Sin usuario, @PreAuthorize la rechaza: cuenta como llamada con error
+		assertThrows(AuthenticationCredentialsNotFoundException.class, estadisticasService::contarPacientes);
+		mockMvc.perform(get("/login")).andExpect(status().isOk());
+
+		String metricas = mockMvc.perform(get("/metricas").header("Authorization", "Bearer " + TOKEN))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		String repositorio = "capa=\"repositorio\",clase=\"PacienteRepository\",metodo=\"findAll\"";
+		assertTrue(metricas.contains("gestion_metodo_segundos_count{" + repositorio + "}"));
+		assertTrue(metricas.contains("gestion_repositorio_filas_count{" + repositorio + "}"));
+		String servicio = "capa=\"servicio\",clase=\"EstadisticasDashboardService\",metodo=\"contarPacientes\"";
+		assertTrue(metricas.contains("gestion_metodo_segundos_count{" + servicio + "} 1"));
+		assertTrue(metricas.contains("gestion_metodo_errores_total{" + servicio + "} 1"));
+		assertTrue(metricas.contains("gestion_peticion_segundos_count{metodo=\"GET\",ruta=\"/login\",estado=\"200\"}"));
+		assertTrue(metricas.contains("gestion_peticion_sentencias_sql_count{metodo=\"GET\",ruta=\"/login\"}"));
+		assertTrue(metricas.contains("gestion_bd_espera_conexion_segundos_count{pool="));
+		assertTrue(metricas.contains("gestion_agenda_en_vivo_suscripciones 0"));
+	}
+
+	@Test
+	void soloAccesibleConElTokenDelRecolectorOParaAdmin() throws Exception {
+		// Desde la propia máquina (la dirección por defecto de MockMvc) tampoco basta: sin sesión se redirige al login
+		assertEquals(302, estadoMetricas(get("/metricas")));
+		assertEquals(302, estadoMetricas(get("/metricas").header("Authorization", "Bearer otro-token")));
+		assertEquals(302, estadoMetricas(get("/metricas").header("Authorization", TOKEN)));
+
+		assertEquals(200, estadoMetricas(get("/metricas").header("Authorization", "Bearer " + TOKEN)));
+		assertEquals(200, estadoMetricas(get("/metricas").with(user("admin").roles("ADMIN"))));
+		assertEquals(403, estadoMetricas(get("/metricas").with(user("recepcion").roles("RECEPCION"))));
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private int estadoMetricas(MockHttpServletRequestBuilder peticion) throws Exception {
+		return mockMvc.perform(peticion).andReturn().getResponse().getStatus();
+	}
+}
@@ -0,0 +1,158 @@
+package com.centromedico.gestion_pacientes.repository;
+
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comprueba que los listados de citas cargan paciente y médico en la misma consulta
+ * (una sola SELECT por página, sin cargas perezosas por fila)
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CitaRepositoryConsultasTests {
+
+	private static final int CITAS_POR_MEDICO = 50;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+	private Statistics estadisticas;
+
+	@BeforeEach
+	void prepararDatos() {
+		medico = crearMedico("dr.test");
+		Usuario otroMedico = crearMedico("dr.otro");
+
+		LocalDateTime inicio = LocalDate.now().plusDays(1).atTime(8, 0);
+		for (int i = 0; i < CITAS_POR_MEDICO; i++) {
+			// Un paciente distinto por fila, para que cada fila necesitara su propia carga
+			paciente = crearPaciente("P" + i);
+			crearCita(paciente, medico, inicio.plusMinutes(i * 10L));
+			crearCita(paciente, otroMedico, inicio.plusMinutes(i * 10L));
+		}
+
+		entityManager.flush();
+		entityManager.clear();
+
+		estadisticas = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+		estadisticas.clear();
+	}
+
+	@Test
+	void paginaPorEstadoEjecutaUnaSolaConsulta() {
+		List<Cita> citas = citaRepository.findByEstadoOrderByFechaHoraAscIdAsc(
+				EstadoCita.PENDIENTE, PageRequest.of(0, CITAS_POR_MEDICO));
+
+		recorrerComoLaVista(citas);
+
+		assertEquals(CITAS_POR_MEDICO, citas.size());
+		assertEquals(1, estadisticas.getPrepareStatementCount());
+	}
+
+	@Test
+	void paginaSiguienteEjecutaUnaSolaConsulta() {
+		List<Cita> primera = citaRepository.findAllByOrderByFechaHoraAscIdAsc(PageRequest.of(0, 10));
+		Cita ultima = primera.get(primera.size() - 1);
+		estadisticas.clear();
+
+		List<Cita> siguiente = citaRepository.findTodasDespuesDe(
+				ultima.getFechaHora(), ultima.getId(), PageRequest.of(0, 40));
+
+		recorrerComoLaVista(siguiente);
+
+		assertEquals(40, siguiente.size());
+		assertEquals(1, estadisticas.getPrepareStatementCount());
+	}
+
+	@Test
+	void agendaDiariaEjecutaUnaSolaConsulta() {
+		List<Cita> citas = citaRepository.findByMedicoIdAndFecha(medico.getId(), LocalDate.now().plusDays(1));
+
+		recorrerComoLaVista(citas);
+
+		assertEquals(CITAS_POR_MEDICO, citas.size());
+		assertEquals(1, estadisticas.getPrepareStatementCount());
+	}
+
+	@Test
+	void citasActivasDelMedicoEjecutaUnaSolaConsulta() {
+		List<Cita> citas = citaRepository.findCitasActivasByMedicoId(medico.getId(), PageRequest.of(0, 5));
+
+		recorrerComoLaVista(citas);
+
+		assertEquals(5, citas.size());
+		assertEquals(1, estadisticas.getPrepareStatementCount());
+	}
+
+	@Test
+	void historialDelPacienteEjecutaUnaSolaConsulta() {
+		List<Cita> citas = citaRepository.findByPacienteIdOrderByFechaHoraDescIdDesc(
+				paciente.getId(), PageRequest.of(0, 20));
+
+		recorrerComoLaVista(citas);
+
+		assertEquals(2, citas.size());
+		assertEquals(1, estadisticas.getPrepareStatementCount());
+	}
+
+	/**
+	 * Accede a los mismos datos que las plantillas de listados
+	 */
+	private void recorrerComoLaVista(List<Cita> citas) {
+		for (Cita cita : citas) {
+			cita.getPaciente().getNombreCompleto();
+			cita.getMedico().getNombre();
+		}
+	}
+
+	private Usuario crearMedico(String username) {
+		Usuario usuario = new Usuario();
+		usuario.setUsername(username);
+		usuario.setEmail(username + "@centromedico.com");
+		usuario.setPasswordHash("hash");
+		usuario.setNombre("Medico " + username);
+		usuario.setRol(Rol.MEDICO);
+		return entityManager.persist(usuario);
+	}
+
+	private Paciente crearPaciente(String dni) {
+		Paciente nuevo = new Paciente();
+		nuevo.setNombre("Paciente");
+		nuevo.setApellidos(dni);
+		nuevo.setDni(dni);
+		nuevo.setMedico(medico);
+		return entityManager.persist(nuevo);
+	}
+
+	private void crearCita(Paciente pacienteCita, Usuario medicoCita, LocalDateTime fechaHora) {
+		Cita cita = new Cita();
+		cita.setPaciente(pacienteCita);
+		cita.setMedico(medicoCita);
+		cita.setFechaHora(fechaHora);
+		cita.setDuracionMinutos(10);
+		cita.setMotivo("Revision");
+		entityManager.persist(cita);
+	}
+}
@@ -0,0 +1,85 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Pruebas de las colas por conexión de la agenda en vivo (sin servidor)
+ * El executor solo guarda las tareas: la prueba decide cuándo se vacían las colas
+ */
+class AgendaEnVivoServiceTests {
+
+	private static final Long MEDICO = 10L;
+
+	private final List<Runnable> tareas = new ArrayList<>();
+	private AgendaEnVivoService servicio;
+
+	@BeforeEach
+	void preparar() {
+		// Sin rol de médico: la suscripción sin médico recibe los cambios de todos
+		servicio = new AgendaEnVivoService(mock(ContextoAcceso.class), tareas::add);
+	}
+
+	@Test
+	void unaSolaTareaVaciaLosCambiosPendientesDeCadaConexion() {
+		SseEmitter primera = servicio.suscribir(null);
+		SseEmitter segunda = servicio.suscribir(null);
+
+		for (int i = 0; i < 3; i++) {
+			servicio.alCambiarCita(evento(i));
+		}
+
+		// Una tarea por conexión, no una por cambio
+		assertEquals(2, tareas.size());
+		ejecutarTareas();
+
+		// Con la cola vacía, el siguiente cambio vuelve a programar el vaciado
+		servicio.alCambiarCita(evento(3));
+		assertEquals(2, tareas.size());
+		assertDoesNotThrow(() -> primera.send("abierta"));
+		assertDoesNotThrow(() -> segunda.send("abierta"));
+	}
+
+	@Test
+	void cierraLaConexionCuyaColaSeLlenaSinAfectarALasDemas() {
+		SseEmitter lenta = servicio.suscribir(null);
+		for (int i = 0; i < 100; i++) {
+			servicio.alCambiarCita(evento(i));
+		}
+		assertDoesNotThrow(() -> lenta.send("abierta"));
+
+		SseEmitter nueva = servicio.suscribir(null);
+		servicio.alCambiarCita(evento(100));
+
+		// La lenta se cierra para que el navegador reconecte y recargue; la nueva sigue abierta
+		assertThrows(IllegalStateException.class, () -> lenta.send("cerrada"));
+		assertDoesNotThrow(() -> nueva.send("abierta"));
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private CitaEstadoCambiadoEvent evento(long citaId) {
+		LocalDateTime fechaHora = LocalDateTime.of(2035, 1, 1, 9, 0);
+		return new CitaEstadoCambiadoEvent(citaId, MEDICO, null, EstadoCita.PENDIENTE, null, fechaHora);
+	}
+
+	private void ejecutarTareas() {
+		List<Runnable> pendientes = new ArrayList<>(tareas);
+		tareas.clear();
+		pendientes.forEach(Runnable::run);
+	}
+}
@@ -0,0 +1,166 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de estrés de CitaService con peticiones concurrentes reales (H2 en memoria)
+ * Cada hilo abre su propia transacción, como haría cada mostrador de recepción
+ */
+@PruebaIntegracion
+class CitaServiceConcurrenciaTests {
+
+	private static final int HILOS = 16;
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private CitaService citaService;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	private ExecutorService hilos;
+	private Usuario recepcion;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		hilos = Executors.newFixedThreadPool(HILOS);
+		recepcion = datos.crearUsuario(Rol.RECEPCION);
+		Usuario medico = datos.crearUsuario(Rol.MEDICO);
+
+		paciente = datos.crearPaciente(medico);
+	}
+
+	@AfterEach
+	void cerrar() {
+		hilos.shutdownNow();
+	}
+
+	@Test
+	void reservasConcurrentesDelMismoHuecoSoloAceptanUna() throws Exception {
+		Usuario medico = datos.crearUsuario(Rol.MEDICO);
+		LocalDateTime base = LocalDate.now().plusDays(1).atTime(10, 0);
+
+		// Todas las citas (30 min, empezando entre 10:00 y 10:15) se solapan entre sí
+		List<Callable<Void>> reservas = new ArrayList<>();
+		for (int i = 0; i < HILOS; i++) {
+			LocalDateTime inicio = base.plusMinutes(i);
+			reservas.add(() -> {
+				citaService.agendarCita(datos.nuevaCita(paciente, medico, inicio));
+				return null;
+			});
+		}
+
+		int aceptadas = ejecutarALaVez(reservas);
+
+		assertEquals(1, aceptadas);
+		assertEquals(1, citaRepository.findCitasActivasByMedicoId(medico.getId()).size());
+	}
+
+	@Test
+	void reservasConcurrentesDeMedicosDistintosSeAceptanTodas() throws Exception {
+		LocalDateTime inicio = LocalDate.now().plusDays(1).atTime(11, 0);
+
+		List<Callable<Void>> reservas = new ArrayList<>();
+		for (int i = 0; i < HILOS; i++) {
+			Usuario medico = datos.crearUsuario(Rol.MEDICO);
+			reservas.add(() -> {
+				citaService.agendarCita(datos.nuevaCita(paciente, medico, inicio));
+				return null;
+			});
+		}
+
+		assertEquals(HILOS, ejecutarALaVez(reservas));
+	}
+
+	@Test
+	void confirmacionesConcurrentesSoloAplicanUnaTransicion() throws Exception {
+		Usuario medico = datos.crearUsuario(Rol.MEDICO);
+		Cita cita = ejecutarComoRecepcion(() ->
+				citaService.agendarCita(datos.nuevaCita(paciente, medico, LocalDate.now().plusDays(2).atTime(9, 0))));
+
+		List<Callable<Void>> confirmaciones = new ArrayList<>();
+		for (int i = 0; i < HILOS; i++) {
+			confirmaciones.add(() -> {
+				citaService.confirmarCita(cita.getId());
+				return null;
+			});
+		}
+
+		assertEquals(1, ejecutarALaVez(confirmaciones));
+
+		Cita confirmada = citaRepository.findById(cita.getId()).orElseThrow();
+		assertEquals(EstadoCita.CONFIRMADA, confirmada.getEstado());
+		assertEquals(cita.getVersion() + 1, confirmada.getVersion());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	/**
+	 * Lanza todas las tareas a la vez (barrera de salida) como RECEPCION
+	 * @return número de tareas que terminaron sin excepción
+	 */
+	private int ejecutarALaVez(List<Callable<Void>> tareas) throws Exception {
+		CountDownLatch salida = new CountDownLatch(1);
+		List<Future<Boolean>> resultados = new ArrayList<>();
+		for (Callable<Void> tarea : tareas) {
+			resultados.add(hilos.submit(() -> {
+				salida.await();
+				try {
+					ejecutarComoRecepcion(tarea);
+					return true;
+				} catch (Exception e) {
+					return false;
+				}
+			}));
+		}
+
+		salida.countDown();
+
+		int correctas = 0;
+		for (Future<Boolean> resultado : resultados) {
+			if (resultado.get(30, TimeUnit.SECONDS)) {
+				correctas++;
+			}
+		}
+		return correctas;
+	}
+
+	private <T> T ejecutarComoRecepcion(Callable<T> tarea) throws Exception {
+		datos.autenticar(recepcion);
+		try {
+			return tarea.call();
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
+}
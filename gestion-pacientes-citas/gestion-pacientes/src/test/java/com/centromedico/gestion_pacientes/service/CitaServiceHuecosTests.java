@@ -0,0 +1,93 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.HuecoLibre;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de la búsqueda de huecos libres en la agenda (H2 en memoria)
+ * Cada prueba usa un médico nuevo para no ver las citas de las demás
+ */
+@PruebaIntegracion
+class CitaServiceHuecosTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private CitaService citaService;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		Usuario admin = datos.crearUsuario(Rol.ADMIN);
+		medico = datos.crearUsuario(Rol.MEDICO);
+		paciente = datos.crearPaciente(medico);
+		datos.autenticar(admin);
+	}
+
+	@AfterEach
+	void cerrar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void tieneEnCuentaLaCitaQueEmpiezaAntesDeLaVentanaYOfreceElHuecoDelFinalDelDia() {
+		LocalDate dia = LocalDate.now().plusDays(10);
+		// Empieza tres horas antes de la ventana y acaba una hora dentro
+		guardarCita(dia.atTime(13, 0), CitaService.DURACION_MAXIMA_MINUTOS);
+		guardarCita(dia.atTime(17, 0), 120);
+
+		List<HuecoLibre> huecos = citaService.buscarHuecosLibres(60,
+				dia.atTime(16, 0), dia.atTime(CitaService.HORA_CIERRE.getHour(), 0), List.of(medico.getId()), 10);
+
+		assertEquals(1, huecos.size());
+		assertEquals(dia.atTime(19, 0), huecos.get(0).inicio());
+		assertEquals(dia.atTime(20, 0), huecos.get(0).fin());
+	}
+
+	@Test
+	void ignoraLasCitasCanceladas() {
+		LocalDate dia = LocalDate.now().plusDays(11);
+		Cita cancelada = guardarCita(dia.atTime(9, 0), 60);
+		cancelada.setEstado(EstadoCita.CANCELADA);
+		citaRepository.save(cancelada);
+
+		List<HuecoLibre> huecos = citaService.buscarHuecosLibres(60,
+				dia.atTime(9, 0), dia.atTime(10, 0), List.of(medico.getId()), 10);
+
+		assertEquals(List.of(dia.atTime(9, 0)), huecos.stream().map(HuecoLibre::inicio).toList());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private Cita guardarCita(LocalDateTime fechaHora, int duracion) {
+		Cita cita = datos.guardarCita(paciente, medico, fechaHora, EstadoCita.CONFIRMADA);
+		cita.setDuracionMinutos(duracion);
+		return citaRepository.save(cita);
+	}
+}
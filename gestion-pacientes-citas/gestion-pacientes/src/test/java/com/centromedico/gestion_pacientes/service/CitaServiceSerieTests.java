@@ -0,0 +1,116 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.FrecuenciaRecurrencia;
+import com.centromedico.gestion_pacientes.dto.ReglaRecurrencia;
+import com.centromedico.gestion_pacientes.dto.ResultadoSerieCitas;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaEventoRepository;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pruebas de las series de citas periódicas (H2 en memoria)
+ */
+@PruebaIntegracion
+class CitaServiceSerieTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private CitaService citaService;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	@Autowired
+	private CitaEventoRepository citaEventoRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		Usuario recepcion = datos.crearUsuario(Rol.RECEPCION);
+		medico = datos.crearUsuario(Rol.MEDICO);
+
+		paciente = datos.crearPaciente(medico);
+		datos.autenticar(recepcion);
+	}
+
+	@AfterEach
+	void cerrar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void serieSemanalAgendaLasLibresYDevuelveLosConflictos() {
+		LocalDateTime inicio = LocalDate.now().plusDays(7).atTime(10, 0);
+
+		// La tercera semana el médico ya tiene una cita a las 10:15
+		citaService.agendarCita(plantilla(inicio.plusWeeks(2).plusMinutes(15)));
+
+		ResultadoSerieCitas resultado = citaService.agendarSerie(plantilla(inicio),
+				new ReglaRecurrencia(FrecuenciaRecurrencia.SEMANAL, 1, 6, null));
+
+		assertEquals(5, resultado.creadas().size());
+		assertEquals(1, resultado.conflictos().size());
+		assertEquals(inicio.plusWeeks(2), resultado.conflictos().get(0).fechaHora());
+
+		List<Cita> agenda = citaRepository.findCitasActivasByMedicoId(medico.getId());
+		assertEquals(6, agenda.size());
+		for (Cita cita : resultado.creadas()) {
+			assertEquals(1, citaEventoRepository.findByCitaIdOrderByFechaAscIdAsc(cita.getId()).size());
+		}
+	}
+
+	@Test
+	void serieSinHuecosLibresNoAgendaNada() {
+		LocalDateTime inicio = LocalDate.now().plusDays(3).atTime(16, 0);
+		citaService.agendarCita(plantilla(inicio));
+
+		assertThrows(IllegalStateException.class, () -> citaService.agendarSerie(plantilla(inicio),
+				new ReglaRecurrencia(FrecuenciaRecurrencia.MENSUAL, 1, 1, null)));
+		assertEquals(1, citaRepository.findCitasActivasByMedicoId(medico.getId()).size());
+	}
+
+	@Test
+	void serieMensualHastaFechaConservaElDiaDelMes() {
+		LocalDateTime inicio = LocalDateTime.of(2031, 1, 31, 9, 0);
+
+		List<LocalDateTime> fechas = new ReglaRecurrencia(FrecuenciaRecurrencia.MENSUAL, 1, null,
+				LocalDate.of(2031, 4, 30)).expandir(inicio);
+
+		assertEquals(List.of(
+				inicio,
+				LocalDateTime.of(2031, 2, 28, 9, 0),
+				LocalDateTime.of(2031, 3, 31, 9, 0),
+				LocalDateTime.of(2031, 4, 30, 9, 0)), fechas);
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private Cita plantilla(LocalDateTime fechaHora) {
+		Cita cita = datos.nuevaCita(paciente, medico, fechaHora);
+		cita.setMotivo("Revisión periódica");
+		return cita;
+	}
+}
@@ -0,0 +1,142 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del índice en memoria de la disponibilidad de los médicos (H2 en memoria)
+ * Cada prueba usa un médico nuevo; el índice es por médico
+ */
+@PruebaIntegracion
+class DisponibilidadMedicoIndexTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private DisponibilidadMedicoIndex indice;
+
+	@Autowired
+	private CitaService citaService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transaccion;
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		transaccion = new TransactionTemplate(transactionManager);
+		Usuario admin = datos.crearUsuario(Rol.ADMIN);
+		medico = datos.crearUsuario(Rol.MEDICO);
+		paciente = datos.crearPaciente(medico);
+		datos.autenticar(admin);
+	}
+
+	@AfterEach
+	void cerrar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void laCargaInicialSoloIndexaLasCitasActivasQueNoHanTerminado() {
+		LocalDateTime inicio = LocalDate.now().plusDays(5).atTime(10, 0);
+		// Guardadas con el repositorio: el índice no se entera hasta que se carga
+		Cita activa = datos.guardarCita(paciente, medico, inicio, EstadoCita.CONFIRMADA);
+		datos.guardarCita(paciente, medico, inicio.plusHours(1), EstadoCita.CANCELADA);
+		datos.guardarCita(paciente, medico, inicio.minusDays(10), EstadoCita.PENDIENTE);
+		assertTrue(conflicto(inicio).isEmpty());
+
+		indice.cargar();
+
+		assertEquals(activa.getId(), conflicto(inicio).orElseThrow().citaId());
+		assertTrue(conflicto(inicio.plusHours(1)).isEmpty());
+		assertTrue(conflicto(inicio.minusDays(10)).isEmpty());
+	}
+
+	@Test
+	void soloSeActualizaCuandoLaTransaccionHaceCommit() {
+		LocalDateTime inicio = LocalDate.now().plusDays(6).atTime(9, 0);
+		Cita cita = datos.guardarCita(paciente, medico, inicio, EstadoCita.PENDIENTE);
+
+		transaccion.executeWithoutResult(estado -> {
+			indice.sincronizarAlConfirmar(cita);
+			// Dentro de la transacción otra reserva aún no la ve
+			assertTrue(conflicto(inicio).isEmpty());
+		});
+
+		assertEquals(cita.getId(), conflicto(inicio).orElseThrow().citaId());
+	}
+
+	@Test
+	void noAplicaNadaSiLaTransaccionHaceRollback() {
+		LocalDateTime inicio = LocalDate.now().plusDays(7).atTime(9, 0);
+		Cita cita = datos.guardarCita(paciente, medico, inicio, EstadoCita.PENDIENTE);
+
+		transaccion.executeWithoutResult(estado -> {
+			indice.sincronizarAlConfirmar(cita);
+			estado.setRollbackOnly();
+		});
+
+		assertTrue(conflicto(inicio).isEmpty());
+	}
+
+	@Test
+	void reprogramarMueveElHuecoYCancelarLoLibera() {
+		LocalDateTime inicio = LocalDate.now().plusDays(8).atTime(11, 0);
+		Cita cita = citaService.agendarCita(datos.nuevaCita(paciente, medico, inicio));
+		assertEquals(cita.getId(), conflicto(inicio).orElseThrow().citaId());
+
+		LocalDateTime nuevoInicio = inicio.plusHours(3);
+		Cita cambio = new Cita();
+		cambio.setFechaHora(nuevoInicio);
+		citaService.actualizarCita(cita.getId(), cambio);
+
+		assertTrue(conflicto(inicio).isEmpty());
+		assertEquals(cita.getId(), conflicto(nuevoInicio).orElseThrow().citaId());
+
+		citaService.cancelarCita(cita.getId(), "El paciente no puede venir");
+
+		assertTrue(conflicto(nuevoInicio).isEmpty());
+	}
+
+	@Test
+	void eliminarLaCitaLaQuitaDelIndice() {
+		LocalDateTime inicio = LocalDate.now().plusDays(9).atTime(12, 0);
+		Cita cita = citaService.agendarCita(datos.nuevaCita(paciente, medico, inicio));
+
+		citaService.eliminarCita(cita.getId());
+
+		assertTrue(conflicto(inicio).isEmpty());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private Optional<IntervaloCita> conflicto(LocalDateTime inicio) {
+		return indice.buscarConflicto(medico.getId(), inicio, inicio.plusMinutes(30), null);
+	}
+}
@@ -0,0 +1,151 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.ConteoPorEstado;
+import com.centromedico.gestion_pacientes.dto.ConteoPorMedico;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.event.CitaEstadoCambiadoEvent;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas de la caché de contadores del dashboard (sin base de datos)
+ */
+class EstadisticasCitasCacheTests {
+
+	private static final Long MEDICO = 10L;
+
+	private CitaRepository citaRepository;
+	private EstadisticasCitasCache cache;
+
+	@BeforeEach
+	void preparar() {
+		citaRepository = mock(CitaRepository.class);
+		when(citaRepository.contarAgrupadasPorEstado()).thenReturn(List.of(
+				new ConteoPorEstado(EstadoCita.PENDIENTE, 4L),
+				new ConteoPorEstado(EstadoCita.CONFIRMADA, 2L)));
+		when(citaRepository.contarActivasAgrupadasPorMedico()).thenReturn(List.of(new ConteoPorMedico(MEDICO, 6L)));
+		when(citaRepository.countByEstadoEnRango(any(), any(), any())).thenReturn(1L);
+		cache = new EstadisticasCitasCache(citaRepository);
+		cache.reconciliar();
+	}
+
+	@Test
+	void aplicaLosCambiosDeFormaIncremental() {
+		LocalDateTime hoy = LocalDate.now().atTime(23, 59);
+
+		cache.alCambiarCita(new CitaEstadoCambiadoEvent(1L, MEDICO, EstadoCita.PENDIENTE, EstadoCita.CONFIRMADA, hoy, hoy));
+		assertEquals(3, cache.contarPorEstado(EstadoCita.PENDIENTE));
+		assertEquals(3, cache.contarPorEstado(EstadoCita.CONFIRMADA));
+		assertEquals(6, cache.contarActivasPorMedico(MEDICO));
+		assertEquals(2, cache.contarConfirmadasHoy());
+
+		cache.alCambiarCita(new CitaEstadoCambiadoEvent(1L, MEDICO, EstadoCita.CONFIRMADA, EstadoCita.CANCELADA, hoy, hoy));
+		assertEquals(2, cache.contarPorEstado(EstadoCita.CONFIRMADA));
+		assertEquals(1, cache.contarPorEstado(EstadoCita.CANCELADA));
+		assertEquals(5, cache.contarActivasPorMedico(MEDICO));
+		assertEquals(1, cache.contarConfirmadasHoy());
+		assertEquals(2, cache.obtenerMetricas().eventosAplicados());
+	}
+
+	@Test
+	void laReconciliacionCorrigeLaDesviacion() {
+		// Cambio hecho fuera del servicio: no llega ningún evento
+		when(citaRepository.contarAgrupadasPorEstado()).thenReturn(List.of(
+				new ConteoPorEstado(EstadoCita.PENDIENTE, 7L),
+				new ConteoPorEstado(EstadoCita.CONFIRMADA, 2L)));
+		when(citaRepository.contarActivasAgrupadasPorMedico()).thenReturn(List.of(new ConteoPorMedico(MEDICO, 9L)));
+		assertEquals(4, cache.contarPorEstado(EstadoCita.PENDIENTE));
+
+		cache.reconciliar();
+
+		assertEquals(7, cache.contarPorEstado(EstadoCita.PENDIENTE));
+		assertEquals(9, cache.contarActivasPorMedico(MEDICO));
+		assertEquals(2, cache.obtenerMetricas().correcciones());
+	}
+
+	@Test
+	void unEventoDuranteLaReconciliacionNoEsperaNiSeCuentaDosVeces() throws Exception {
+		CountDownLatch leyendo = new CountDownLatch(1);
+		CountDownLatch seguir = new CountDownLatch(1);
+		// La primera lectura se queda a medias; la cita nueva ya está en la BD (4 + 1 pendientes)
+		when(citaRepository.contarAgrupadasPorEstado()).thenAnswer(invocacion -> {
+			leyendo.countDown();
+			seguir.await();
+			return List.of(new ConteoPorEstado(EstadoCita.PENDIENTE, 5L), new ConteoPorEstado(EstadoCita.CONFIRMADA, 2L));
+		});
+		when(citaRepository.contarActivasAgrupadasPorMedico()).thenReturn(List.of(new ConteoPorMedico(MEDICO, 7L)));
+
+		Thread reconciliacion = new Thread(cache::reconciliar);
+		reconciliacion.start();
+		assertTrue(leyendo.await(5, TimeUnit.SECONDS));
+
+		// La consulta va fuera del monitor: el evento se aplica sin esperar a que termine
+		Thread evento = new Thread(() -> cache.alCambiarCita(nuevaCita()));
+		evento.start();
+		evento.join(5000);
+		assertFalse(evento.isAlive());
+		assertEquals(5, cache.contarPorEstado(EstadoCita.PENDIENTE));
+
+		seguir.countDown();
+		reconciliacion.join(5000);
+
+		// La lectura cruzada con el evento se descarta y se repite: no se suma dos veces
+		assertEquals(5, cache.contarPorEstado(EstadoCita.PENDIENTE));
+		assertEquals(7, cache.contarActivasPorMedico(MEDICO));
+	}
+
+	@Test
+	void noAplicaUnaLecturaHechaConUnCambioConfirmadoAunSinAplicar() {
+		CitaEstadoCambiadoEvent evento = nuevaCita();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			// Se publica en la transacción y se confirma, pero el evento aún no se ha aplicado
+			cache.alPublicarCambio(evento);
+			when(citaRepository.contarAgrupadasPorEstado()).thenReturn(List.of(
+					new ConteoPorEstado(EstadoCita.PENDIENTE, 5L), new ConteoPorEstado(EstadoCita.CONFIRMADA, 2L)));
+			when(citaRepository.contarActivasAgrupadasPorMedico()).thenReturn(List.of(new ConteoPorMedico(MEDICO, 7L)));
+
+			cache.reconciliar();
+			assertEquals(4, cache.contarPorEstado(EstadoCita.PENDIENTE));
+
+			cache.alCambiarCita(evento);
+			TransactionSynchronizationUtils.invokeAfterCompletion(
+					TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(5, cache.contarPorEstado(EstadoCita.PENDIENTE));
+		assertEquals(7, cache.contarActivasPorMedico(MEDICO));
+
+		// Sin cambios en vuelo la reconciliación vuelve a aplicarse
+		cache.reconciliar();
+		assertEquals(0, cache.obtenerMetricas().correcciones());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private CitaEstadoCambiadoEvent nuevaCita() {
+		LocalDateTime manana = LocalDate.now().plusDays(1).atTime(10, 0);
+		return new CitaEstadoCambiadoEvent(2L, MEDICO, null, EstadoCita.PENDIENTE, null, manana);
+	}
+}
@@ -0,0 +1,177 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.ResultadoImportacion;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pruebas de la exportación de citas a CSV (H2 en memoria)
+ * Cada prueba usa su propio rango de fechas para no ver las citas de las demás
+ */
+@PruebaIntegracion
+class ExportacionCitasServiceTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private ExportacionCitasService exportacionService;
+
+	@Autowired
+	private ImportacionCitasService importacionService;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	private Usuario medico;
+	private Usuario otroMedico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		Usuario admin = datos.crearUsuario(Rol.ADMIN);
+		medico = datos.crearUsuario(Rol.MEDICO);
+		otroMedico = datos.crearUsuario(Rol.MEDICO);
+
+		paciente = datos.crearPaciente(medico, "Ana", "Exportación");
+		datos.autenticar(admin);
+	}
+
+	@AfterEach
+	void cerrar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void exportaElRangoOrdenadoYEscapaLosCampos() throws Exception {
+		LocalDate dia = LocalDate.of(2033, 6, 1);
+		Cita segunda = guardarCita(medico, dia.plusDays(1).atTime(9, 0), "Dolor \"agudo\", espalda");
+		Cita primera = guardarCita(otroMedico, dia.atTime(17, 30), "Revisión\nanual");
+		guardarCita(medico, dia.plusDays(2).atTime(8, 0), "Fuera del rango");
+
+		StringWriter destino = new StringWriter();
+		long total = exportacionService.exportarCsv(dia, dia.plusDays(1), null, destino);
+
+		// El salto de línea se conserva dentro de las comillas: la cita ocupa dos líneas
+		String[] lineas = destino.toString().split("\n");
+		assertEquals(2, total);
+		assertEquals(4, lineas.length);
+		assertEquals("\uFEFF" + ExportacionCitasService.CABECERA, lineas[0]);
+		assertEquals(paciente.getDni() + "," + otroMedico.getUsername() + ",2033-06-01T17:30,30,\"Revisión", lineas[1]);
+		assertEquals("anual\",PENDIENTE," + primera.getId() + ",Ana Exportación," + otroMedico.getNombre(), lineas[2]);
+		assertEquals(paciente.getDni() + "," + medico.getUsername() + ",2033-06-02T09:00,30,\"Dolor \"\"agudo\"\", espalda\",PENDIENTE,"
+				+ segunda.getId() + ",Ana Exportación," + medico.getNombre(), lineas[3]);
+	}
+
+	@Test
+	void neutralizaLosCamposQueEmpiezanComoFormula() throws Exception {
+		LocalDate dia = LocalDate.of(2033, 9, 1);
+		guardarCita(medico, dia.atTime(9, 0), "=HYPERLINK(\"http://x\",\"ver\")");
+		guardarCita(medico, dia.atTime(10, 0), "+34 600 000 000");
+		guardarCita(medico, dia.atTime(11, 0), "-2+3");
+		guardarCita(medico, dia.atTime(12, 0), "@SUM(1)");
+		guardarCita(medico, dia.atTime(13, 0), "\tcmd");
+		guardarCita(medico, dia.atTime(14, 0), "Control 2+2=4");
+
+		StringWriter destino = new StringWriter();
+		exportacionService.exportarCsv(dia, dia, medico.getId(), destino);
+
+		String[] lineas = destino.toString().split("\n");
+		assertEquals(7, lineas.length);
+		assertEquals("\"'=HYPERLINK(\"\"http://x\"\",\"\"ver\"\")\"", motivo(lineas[1]));
+		assertEquals("'+34 600 000 000", motivo(lineas[2]));
+		assertEquals("'-2+3", motivo(lineas[3]));
+		assertEquals("'@SUM(1)", motivo(lineas[4]));
+		assertEquals("'\tcmd", motivo(lineas[5]));
+		// Solo importa el primer carácter
+		assertEquals("Control 2+2=4", motivo(lineas[6]));
+	}
+
+	@Test
+	void laImportacionLeeLosMismosMotivosQueSeExportaron() throws Exception {
+		LocalDate dia = LocalDate.of(2033, 11, 1);
+		List<String> motivos = List.of("=SUMA(1)", "'=Ya protegido", "'Entre apóstrofos'", "Revisión\nanual; \"urgente\"");
+		List<Cita> originales = new ArrayList<>();
+		for (int i = 0; i < motivos.size(); i++) {
+			originales.add(guardarCita(medico, dia.atTime(9 + i, 0), motivos.get(i)));
+		}
+
+		StringWriter destino = new StringWriter();
+		exportacionService.exportarCsv(dia, dia, medico.getId(), destino);
+
+		// Se cancelan las originales para que las importadas no choquen con ellas
+		for (Cita original : originales) {
+			original.setEstado(EstadoCita.CANCELADA);
+			citaRepository.save(original);
+		}
+		ResultadoImportacion resultado = importacionService.importar(
+				new ByteArrayInputStream(destino.toString().getBytes(StandardCharsets.UTF_8)), "citas.csv");
+
+		assertEquals(motivos.size(), resultado.importadas());
+		List<String> importados = citaRepository.findByMedicoIdAndFechaHoraBetweenOrderByFechaHoraAsc(
+						medico.getId(), dia.atStartOfDay(), dia.plusDays(1).atStartOfDay()).stream()
+				.filter(cita -> cita.getEstado() == EstadoCita.PENDIENTE)
+				.map(Cita::getMotivo)
+				.toList();
+		assertEquals(motivos, importados);
+	}
+
+	@Test
+	void filtraPorMedico() throws Exception {
+		LocalDate dia = LocalDate.of(2034, 2, 10);
+		guardarCita(medico, dia.atTime(10, 0), "Consulta");
+		guardarCita(medico, dia.atTime(11, 0), "Consulta");
+		guardarCita(otroMedico, dia.atTime(10, 0), "Consulta");
+
+		assertEquals(2, exportacionService.exportarCsv(dia, dia, medico.getId(), new StringWriter()));
+		assertEquals(1, exportacionService.exportarCsv(dia, dia, otroMedico.getId(), new StringWriter()));
+		assertEquals(3, exportacionService.exportarCsv(dia, dia, null, new StringWriter()));
+	}
+
+	@Test
+	void rechazaUnRangoInvertido() {
+		LocalDate dia = LocalDate.of(2034, 2, 10);
+		assertThrows(IllegalArgumentException.class,
+				() -> exportacionService.exportarCsv(dia, dia.minusDays(1), null, new StringWriter()));
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	/**
+	 * Motivo de una línea exportada: va entre la duración y el estado
+	 */
+	private String motivo(String linea) {
+		String resto = linea.substring(linea.indexOf(",30,") + 4);
+		return resto.substring(0, resto.lastIndexOf(",PENDIENTE,"));
+	}
+
+	private Cita guardarCita(Usuario medicoCita, LocalDateTime fechaHora, String motivo) {
+		Cita cita = datos.guardarCita(paciente, medicoCita, fechaHora, EstadoCita.PENDIENTE);
+		cita.setMotivo(motivo);
+		return citaRepository.save(cita);
+	}
+}
@@ -0,0 +1,270 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.ErrorImportacion;
+import com.centromedico.gestion_pacientes.dto.IntervaloCita;
+import com.centromedico.gestion_pacientes.dto.ResultadoImportacion;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.CitaEvento;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaEventoRepository;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la importación masiva de citas desde CSV y JSON (H2 en memoria)
+ * Cada prueba usa un médico nuevo para no ver las citas de las demás
+ */
+@PruebaIntegracion
+class ImportacionCitasServiceTests {
+
+	private static final String CABECERA = "dni_paciente;medico;fecha_hora;duracion_minutos;motivo;estado\n";
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private ImportacionCitasService importacionService;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	@Autowired
+	private CitaEventoRepository citaEventoRepository;
+
+	@Autowired
+	private DisponibilidadMedicoIndex disponibilidadIndex;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private Usuario admin;
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		admin = datos.crearUsuario(Rol.ADMIN);
+		medico = datos.crearUsuario(Rol.MEDICO);
+		paciente = datos.crearPaciente(medico);
+		datos.autenticar(admin);
+	}
+
+	@AfterEach
+	void cerrar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void importaLasFilasValidasConCamposEntreComillasYSaltosDeLinea() throws Exception {
+		LocalDate dia = LocalDate.of(2035, 3, 1);
+
+		ResultadoImportacion resultado = importar("﻿" + CABECERA
+				+ fila("2035-03-01T09:00", "45", "\"Dolor; \"\"agudo\"\"\"", "confirmada")
+				+ "\n"
+				+ fila("2035-03-01T10:00", "", "\"Revisión\nanual\"", "")
+				+ fila("fecha", "", "Tras el salto", ""));
+
+		assertEquals(3, resultado.filasLeidas());
+		assertEquals(2, resultado.importadas());
+		// La fila mala se numera con su línea real, contando las dos del campo con salto de línea
+		assertEquals(List.of(new ErrorImportacion(6, "Fecha/hora no válida: fecha")), resultado.errores());
+
+		List<Cita> citas = citasDelDia(dia);
+		assertEquals(2, citas.size());
+		assertEquals("Dolor; \"agudo\"", citas.get(0).getMotivo());
+		assertEquals(45, citas.get(0).getDuracionMinutos());
+		assertEquals(EstadoCita.CONFIRMADA, citas.get(0).getEstado());
+		assertEquals("Revisión\nanual", citas.get(1).getMotivo());
+		assertEquals(30, citas.get(1).getDuracionMinutos());
+		assertEquals(EstadoCita.PENDIENTE, citas.get(1).getEstado());
+
+		// Cada cita importada tiene su evento de creación, con el estado con el que se importó
+		for (Cita cita : citas) {
+			List<CitaEvento> eventos = citaEventoRepository.findByCitaIdOrderByFechaAscIdAsc(cita.getId());
+			assertEquals(1, eventos.size());
+			assertEquals("Creada", eventos.get(0).getDescripcion());
+			assertEquals(cita.getEstado(), eventos.get(0).getEstadoNuevo());
+			assertEquals(admin.getUsername(), eventos.get(0).getAutor());
+		}
+	}
+
+	@Test
+	void rechazaLosConflictosConLaBDYDentroDelFichero() throws Exception {
+		datos.guardarCita(paciente, medico, LocalDateTime.of(2035, 4, 1, 9, 0), EstadoCita.CONFIRMADA);
+
+		ResultadoImportacion resultado = importar(CABECERA
+				+ fila("2035-04-01T09:15", "", "Solapa con la BD", "")
+				+ fila("2035-04-01T10:00", "60", "Primera del fichero", "")
+				+ fila("2035-04-01T10:30", "", "Solapa con la línea 3", "")
+				+ fila("2035-04-01T10:30", "", "Cancelada, no ocupa hueco", "CANCELADA"));
+
+		assertEquals(2, resultado.importadas());
+		assertEquals(2, resultado.rechazadas());
+		assertEquals(List.of(
+				new ErrorImportacion(2, "Conflicto de horario: el médico ya tiene una cita de 09:00 - 09:30"),
+				new ErrorImportacion(4, "Conflicto de horario con la línea 3 del fichero (10:00 - 11:00)")
+		), resultado.errores());
+		assertEquals(3, citasDelDia(LocalDate.of(2035, 4, 1)).size());
+	}
+
+	@Test
+	void rechazaLasFilasMalFormadasSinAbortarLaCarga() throws Exception {
+		ResultadoImportacion resultado = importar(CABECERA
+				+ ";" + medico.getUsername() + ";2035-05-01T09:00;;Sin DNI;\n"
+				+ paciente.getDni() + ";nadie;2035-05-01T09:00;;Médico desconocido;\n"
+				+ fila("2035-05-01T09:00", "abc", "Duración mala", "")
+				+ fila("2035-05-01T09:00", "", "Estado malo", "ANULADA")
+				+ fila("2035-05-01T09:00", "", "Correcta", "")
+				+ fila("2035-05-01T10:00", "", "\"Sin cerrar", "")
+				+ fila("2035-05-01T11:00", "", "Queda dentro del campo abierto", ""));
+
+		assertEquals(6, resultado.filasLeidas());
+		assertEquals(1, resultado.importadas());
+		assertEquals(List.of(
+				new ErrorImportacion(2, "Falta el DNI del paciente"),
+				new ErrorImportacion(3, "Médico no encontrado: nadie"),
+				new ErrorImportacion(4, "Duración no válida: abc"),
+				new ErrorImportacion(5, "Estado no válido: ANULADA"),
+				new ErrorImportacion(7, "Comillas sin cerrar: el campo continúa hasta el final del fichero")
+		), resultado.errores());
+	}
+
+	@Test
+	void siFallaElLoteReintentaFilaAFilaYSoloRechazaLaQueFalla() throws Exception {
+		// Una restricción que la validación de la importación no conoce: solo la BD rechaza esa fila
+		jdbcTemplate.execute("ALTER TABLE citas ADD CONSTRAINT chk_prueba_importacion CHECK (motivo <> 'Rechazada por la BD')");
+		try {
+			ResultadoImportacion resultado = importar(CABECERA
+					+ fila("2035-06-01T09:00", "", "Primera", "")
+					+ fila("2035-06-01T10:00", "", "Rechazada por la BD", "")
+					+ fila("2035-06-01T11:00", "", "Tercera", ""));
+
+			assertEquals(2, resultado.importadas());
+			assertEquals(1, resultado.errores().size());
+			assertEquals(3, resultado.errores().get(0).linea());
+			assertTrue(resultado.errores().get(0).mensaje().startsWith("Error al guardar la cita: "));
+			List<Cita> citas = citasDelDia(LocalDate.of(2035, 6, 1));
+			assertEquals(List.of("Primera", "Tercera"), citas.stream().map(Cita::getMotivo).toList());
+			// Los eventos del lote deshecho no quedan: solo los de las filas reintentadas
+			for (Cita cita : citas) {
+				assertEquals(1, citaEventoRepository.findByCitaIdOrderByFechaAscIdAsc(cita.getId()).size());
+			}
+
+			// Al índice solo llegan las citas de las transacciones confirmadas
+			assertEquals(citas.get(0).getId(), conflictoEnIndice(LocalDateTime.of(2035, 6, 1, 9, 0)));
+			assertNull(conflictoEnIndice(LocalDateTime.of(2035, 6, 1, 10, 0)));
+			assertEquals(citas.get(1).getId(), conflictoEnIndice(LocalDateTime.of(2035, 6, 1, 11, 0)));
+		} finally {
+			jdbcTemplate.execute("ALTER TABLE citas DROP CONSTRAINT chk_prueba_importacion");
+		}
+	}
+
+	@Test
+	void esperaALaReservaEnCursoDelMedicoAntesDeComprobarConflictos() throws Exception {
+		LocalDateTime nueve = LocalDateTime.of(2035, 8, 1, 9, 0);
+		CountDownLatch reservada = new CountDownLatch(1);
+		CountDownLatch importando = new CountDownLatch(1);
+		ExecutorService hilo = Executors.newSingleThreadExecutor();
+		try {
+			// Otra petición bloquea al médico y reserva las 9:00, pero aún no ha hecho commit
+			Future<?> reserva = hilo.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+				usuarioRepository.findByIdParaReservar(medico.getId());
+				citaRepository.save(datos.nuevaCita(paciente, medico, nueve));
+				reservada.countDown();
+				try {
+					importando.await();
+					Thread.sleep(300);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			reservada.await(10, TimeUnit.SECONDS);
+			importando.countDown();
+
+			ResultadoImportacion resultado = importar(CABECERA + fila("2035-08-01T09:10", "", "Mismo hueco", ""));
+			reserva.get(10, TimeUnit.SECONDS);
+
+			assertEquals(0, resultado.importadas());
+			assertEquals(1, resultado.rechazadas());
+			assertEquals(1, citasDelDia(nueve.toLocalDate()).size());
+		} finally {
+			hilo.shutdownNow();
+		}
+	}
+
+	@Test
+	void importaJsonYRechazaUnCsvSinLasColumnasObligatorias() throws Exception {
+		String json = "[" + objetoJson("2035-07-01T09:00", 20) + ", " + objetoJson("2035-07-01T10:00", 40) + "]";
+		ResultadoImportacion resultado = importacionService.importar(
+				new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "citas.json");
+
+		assertEquals(2, resultado.importadas());
+		assertEquals(List.of(20, 40),
+				citasDelDia(LocalDate.of(2035, 7, 1)).stream().map(Cita::getDuracionMinutos).toList());
+
+		assertThrows(IllegalArgumentException.class, () -> importar("dni_paciente;medico;motivo\n"));
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private ResultadoImportacion importar(String csv) throws Exception {
+		return importacionService.importar(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "citas.csv");
+	}
+
+	private String fila(String fechaHora, String duracion, String motivo, String estado) {
+		return String.join(";", paciente.getDni(), medico.getUsername(), fechaHora, duracion, motivo, estado) + "\n";
+	}
+
+	private String objetoJson(String fechaHora, int duracion) {
+		return "{\"dniPaciente\": \"" + paciente.getDni() + "\", \"medico\": \"" + medico.getUsername()
+				+ "\", \"fechaHora\": \"" + fechaHora + "\", \"duracionMinutos\": " + duracion
+				+ ", \"motivo\": \"Desde JSON\"}";
+	}
+
+	private Long conflictoEnIndice(LocalDateTime inicio) {
+		return disponibilidadIndex.buscarConflicto(medico.getId(), inicio, inicio.plusMinutes(30), null)
+				.map(IntervaloCita::citaId)
+				.orElse(null);
+	}
+
+	private List<Cita> citasDelDia(LocalDate dia) {
+		return citaRepository.findByMedicoIdAndFechaHoraBetweenOrderByFechaHoraAsc(
+				medico.getId(), dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+	}
+}
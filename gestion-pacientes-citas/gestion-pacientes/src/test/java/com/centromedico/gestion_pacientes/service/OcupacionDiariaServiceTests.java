@@ -0,0 +1,146 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.AgrupacionOcupacion;
+import com.centromedico.gestion_pacientes.dto.OcupacionMedico;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.OcupacionDiaria;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.OcupacionDiariaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la ocupación diaria de los médicos (H2 en memoria)
+ */
+@PruebaIntegracion
+class OcupacionDiariaServiceTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private OcupacionDiariaService ocupacionService;
+
+	@Autowired
+	private CitaService citaService;
+
+	@Autowired
+	private OcupacionDiariaRepository ocupacionRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		Usuario admin = datos.crearUsuario(Rol.ADMIN);
+		medico = datos.crearUsuario(Rol.MEDICO);
+
+		paciente = datos.crearPaciente(medico);
+		datos.autenticar(admin);
+	}
+
+	@AfterEach
+	void cerrar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void cadaCambioDeCitaActualizaSuDia() {
+		LocalDate dia = LocalDate.now().plusDays(10);
+		Cita primera = citaService.agendarCita(nuevaCita(dia.atTime(9, 0), 30));
+		Cita segunda = citaService.agendarCita(nuevaCita(dia.atTime(10, 0), 45));
+
+		OcupacionDiaria fila = fila(dia).orElseThrow();
+		assertEquals(2, fila.getCitasTotales());
+		assertEquals(75, fila.getMinutosReservados());
+
+		citaService.cancelarCita(segunda.getId(), "El paciente no puede venir");
+		fila = fila(dia).orElseThrow();
+		assertEquals(1, fila.getCitasCanceladas());
+		assertEquals(30, fila.getMinutosReservados());
+
+		// Reprogramada a otro día: se recalculan los dos
+		Cita cambio = new Cita();
+		cambio.setFechaHora(dia.plusDays(1).atTime(12, 0));
+		citaService.actualizarCita(primera.getId(), cambio);
+
+		assertEquals(0, fila(dia).orElseThrow().getMinutosReservados());
+		assertEquals(30, fila(dia.plusDays(1)).orElseThrow().getMinutosReservados());
+
+		// Eliminada: el día queda sin citas y sin fila
+		citaService.eliminarCita(primera.getId());
+		assertTrue(fila(dia.plusDays(1)).isEmpty());
+	}
+
+	@Test
+	void reconciliacionCuentaLasNoPresentadas() {
+		LocalDate ayer = LocalDate.now().minusDays(1);
+
+		// Guardadas directamente en el repositorio: no pasan por CitaService
+		datos.guardarCita(paciente, medico, ayer.atTime(9, 0), EstadoCita.CONFIRMADA);
+		datos.guardarCita(paciente, medico, ayer.atTime(10, 0), EstadoCita.COMPLETADA);
+		assertTrue(fila(ayer).isEmpty());
+
+		ocupacionService.reconciliar(ayer, ayer);
+
+		OcupacionDiaria fila = fila(ayer).orElseThrow();
+		assertEquals(2, fila.getCitasTotales());
+		assertEquals(1, fila.getCitasAtendidas());
+		assertEquals(1, fila.getCitasNoPresentadas());
+		assertEquals(60, fila.getMinutosReservados());
+	}
+
+	@Test
+	void informeSemanalSumaLosDiasDeCadaSemana() {
+		LocalDate lunes = LocalDate.now().plusWeeks(2).with(DayOfWeek.MONDAY);
+		citaService.agendarCita(nuevaCita(lunes.atTime(9, 0), 60));
+		citaService.agendarCita(nuevaCita(lunes.plusDays(2).atTime(9, 0), 120));
+		citaService.agendarCita(nuevaCita(lunes.plusDays(7).atTime(9, 0), 30));
+
+		List<OcupacionMedico> informe = ocupacionService.obtenerInforme(
+				lunes, lunes.plusDays(9), AgrupacionOcupacion.SEMANA).stream()
+				.filter(fila -> fila.medicoId().equals(medico.getId()))
+				.toList();
+
+		assertEquals(2, informe.size());
+		assertEquals(180, informe.get(0).minutosReservados());
+		assertEquals(7 * OcupacionDiariaService.MINUTOS_LABORABLES_DIA, informe.get(0).minutosLaborables());
+		assertEquals(2, informe.get(0).citasTotales());
+
+		// La segunda semana se recorta al rango pedido (lunes a miércoles)
+		assertEquals(lunes.plusDays(9), informe.get(1).fin());
+		assertEquals(30, informe.get(1).minutosReservados());
+		assertEquals(3 * OcupacionDiariaService.MINUTOS_LABORABLES_DIA, informe.get(1).minutosLaborables());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private Optional<OcupacionDiaria> fila(LocalDate dia) {
+		return ocupacionRepository.findById(new OcupacionDiaria.Clave(medico.getId(), dia));
+	}
+
+	private Cita nuevaCita(LocalDateTime fechaHora, int duracion) {
+		Cita cita = datos.nuevaCita(paciente, medico, fechaHora);
+		cita.setDuracionMinutos(duracion);
+		return cita;
+	}
+}
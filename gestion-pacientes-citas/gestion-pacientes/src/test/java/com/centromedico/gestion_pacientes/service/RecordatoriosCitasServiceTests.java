@@ -0,0 +1,203 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.CitaEvento;
+import com.centromedico.gestion_pacientes.entity.EstadoCita;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.event.RecordatorioCitaEvent;
+import com.centromedico.gestion_pacientes.repository.CitaEventoRepository;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la tarea de recordatorios y caducidad de citas (H2 en memoria)
+ * Cada prueba usa su propio rango de fechas para no ver las citas de las demás
+ */
+@PruebaIntegracion
+@Import(RecordatoriosCitasServiceTests.RecordatoriosRecibidos.class)
+class RecordatoriosCitasServiceTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private RecordatoriosCitasService recordatoriosService;
+
+	@Autowired
+	private RecordatoriosRecibidos recibidos;
+
+	@Autowired
+	private CitaService citaService;
+
+	@Autowired
+	private CitaRepository citaRepository;
+
+	@Autowired
+	private CitaEventoRepository citaEventoRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		recibidos.eventos.clear();
+
+		medico = datos.crearUsuario(Rol.MEDICO);
+		paciente = datos.crearPaciente(medico);
+	}
+
+	@Test
+	void cadaCitaSeRecuerdaUnaSolaVez() {
+		LocalDateTime ahora = LocalDateTime.of(2031, 3, 10, 9, 0);
+		Cita manana = guardarCita(ahora.plusHours(20), EstadoCita.CONFIRMADA);
+		Cita pendiente = guardarCita(ahora.plusHours(23), EstadoCita.PENDIENTE);
+		guardarCita(ahora.plusHours(22), EstadoCita.CANCELADA);
+		Cita pasadoManana = guardarCita(ahora.plusHours(30), EstadoCita.CONFIRMADA);
+
+		assertEquals(2, recordatoriosService.enviarRecordatorios(ahora));
+		assertEquals(List.of(manana.getId(), pendiente.getId()), idsRecibidos());
+
+		// Misma ventana: nada nuevo
+		assertEquals(0, recordatoriosService.enviarRecordatorios(ahora.plusMinutes(5)));
+
+		// La ventana avanza y entra la cita de pasado mañana
+		assertEquals(1, recordatoriosService.enviarRecordatorios(ahora.plusHours(7)));
+		assertEquals(List.of(manana.getId(), pendiente.getId(), pasadoManana.getId()), idsRecibidos());
+		assertEquals(ahora.plusHours(7), citaRepository.findById(pasadoManana.getId()).orElseThrow().getRecordatorioEnviado());
+	}
+
+	@Test
+	void seRecuerdanLasCitasReservadasConMenosAntelacionQueElPlazo() {
+		LocalDateTime ahora = LocalDateTime.of(2033, 6, 1, 9, 0);
+		assertEquals(0, recordatoriosService.enviarRecordatorios(ahora));
+
+		// Reservada después de la ejecución para dentro de 3 horas: ya está dentro del plazo
+		Cita deUltimaHora = guardarCita(ahora.plusMinutes(10).plusHours(3), EstadoCita.CONFIRMADA);
+
+		assertEquals(1, recordatoriosService.enviarRecordatorios(ahora.plusMinutes(10)));
+		assertEquals(List.of(deUltimaHora.getId()), idsRecibidos());
+		assertEquals(0, recordatoriosService.enviarRecordatorios(ahora.plusMinutes(15)));
+	}
+
+	@Test
+	void reprogramarUnaCitaRecordadaVuelveARecordarla() {
+		LocalDateTime inicio = LocalDateTime.now().plusHours(5).withNano(0);
+		Cita cita = guardarCita(inicio, EstadoCita.PENDIENTE);
+		Usuario admin = datos.crearUsuario(Rol.ADMIN);
+		datos.autenticar(admin);
+		try {
+			assertEquals(List.of(cita.getId()), idsTrasEnviar(inicio.minusHours(2)));
+
+			Cita cambio = new Cita();
+			cambio.setFechaHora(inicio.plusHours(1));
+			citaService.actualizarCita(cita.getId(), cambio);
+
+			assertEquals(List.of(cita.getId(), cita.getId()), idsTrasEnviar(inicio.minusHours(2)));
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+	}
+
+	@Test
+	void recordatoriosSeRecorrenPorLotes() {
+		LocalDateTime ahora = LocalDateTime.of(2032, 5, 4, 8, 0);
+		int total = RecordatoriosCitasService.TAMANO_LOTE + 3;
+		for (int i = 0; i < total; i++) {
+			guardarCita(ahora.plusHours(1).plusSeconds(i / 2), EstadoCita.CONFIRMADA);
+		}
+
+		assertEquals(total, recordatoriosService.enviarRecordatorios(ahora));
+		assertEquals(total, idsRecibidos().stream().distinct().count());
+	}
+
+	@Test
+	void laTareaProgramadaNoEnviaRecordatoriosSiNoEstanHabilitados() {
+		Cita proxima = guardarCita(LocalDateTime.now().plusHours(2), EstadoCita.CONFIRMADA);
+
+		recordatoriosService.ejecutar();
+
+		// Sin listener que los entregue, marcarlas como recordadas las dejaría sin aviso
+		assertTrue(idsRecibidos().isEmpty());
+		assertNull(citaRepository.findById(proxima.getId()).orElseThrow().getRecordatorioEnviado());
+	}
+
+	@Test
+	void caducaEnBloqueLasPendientesVencidas() {
+		LocalDateTime ahora = LocalDateTime.of(2030, 1, 10, 12, 0);
+		Cita vencida = guardarCita(ahora.minusHours(5), EstadoCita.PENDIENTE);
+		Cita enGracia = guardarCita(ahora.minusHours(1), EstadoCita.PENDIENTE);
+		Cita confirmada = guardarCita(ahora.minusHours(5), EstadoCita.CONFIRMADA);
+
+		// También caducan las pendientes antiguas de los datos de prueba (DataInitializer)
+		assertTrue(recordatoriosService.caducarPendientes(ahora) >= 1);
+
+		Cita cancelada = citaRepository.findById(vencida.getId()).orElseThrow();
+		assertEquals(EstadoCita.CANCELADA, cancelada.getEstado());
+		assertEquals(vencida.getVersion() + 1, cancelada.getVersion());
+		assertEquals(EstadoCita.PENDIENTE, citaRepository.findById(enGracia.getId()).orElseThrow().getEstado());
+		assertEquals(EstadoCita.CONFIRMADA, citaRepository.findById(confirmada.getId()).orElseThrow().getEstado());
+
+		List<CitaEvento> historial = citaEventoRepository.findByCitaIdOrderByFechaAscIdAsc(vencida.getId());
+		assertEquals(1, historial.size());
+		assertEquals(EstadoCita.PENDIENTE, historial.get(0).getEstadoAnterior());
+		assertEquals(EstadoCita.CANCELADA, historial.get(0).getEstadoNuevo());
+		assertEquals("sistema", historial.get(0).getAutor());
+
+		// Una segunda ejecución no encuentra nada que cancelar
+		assertEquals(0, recordatoriosService.caducarPendientes(ahora));
+		assertTrue(citaEventoRepository.findByCitaIdOrderByFechaAscIdAsc(enGracia.getId()).isEmpty());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private List<Long> idsTrasEnviar(LocalDateTime ahora) {
+		recordatoriosService.enviarRecordatorios(ahora);
+		return idsRecibidos();
+	}
+
+	private List<Long> idsRecibidos() {
+		return recibidos.eventos.stream()
+				.filter(evento -> evento.medicoId().equals(medico.getId()))
+				.map(RecordatorioCitaEvent::citaId)
+				.toList();
+	}
+
+	private Cita guardarCita(LocalDateTime fechaHora, EstadoCita estado) {
+		return datos.guardarCita(paciente, medico, fechaHora, estado);
+	}
+
+	/**
+	 * Recoge los recordatorios publicados (llegan desde los hilos de recordatoriosExecutor)
+	 */
+	@TestConfiguration
+	static class RecordatoriosRecibidos {
+
+		private final Queue<RecordatorioCitaEvent> eventos = new ConcurrentLinkedQueue<>();
+
+		@EventListener
+		void alRecordar(RecordatorioCitaEvent evento) {
+			eventos.add(evento);
+		}
+	}
+}
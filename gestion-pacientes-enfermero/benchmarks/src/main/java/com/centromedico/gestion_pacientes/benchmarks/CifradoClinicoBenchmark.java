@@ -0,0 +1,82 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import com.centromedico.gestion_pacientes.config.CifradoClinico;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de cifrar y descifrar un texto clínico (sin Spring ni BD)
+ * - cifrar: lo que se paga al guardar una consulta, por campo cifrado
+ * - descifrarSinCache: una lectura que no está en caché (o una lectura masiva)
+ * - descifrarConCache: una lectura repetida (pantallas de historial y detalle)
+ *
+ * longitud: caracteres del texto (un diagnóstico corto y un tratamiento largo)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(4)
+public class CifradoClinicoBenchmark {
+
+    private static final int VALORES = 1024;
+
+    @Param({"100", "2000"})
+    public int longitud;
+
+    private CifradoClinico sinCache;
+    private CifradoClinico conCache;
+    private String texto;
+    private String[] valores;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        byte[] clave = new byte[32];
+        new SecureRandom().nextBytes(clave);
+        String claves = "bench:" + Base64.getEncoder().encodeToString(clave);
+
+        sinCache = new CifradoClinico(claves, "bench", 0, Duration.ofMinutes(10));
+        conCache = new CifradoClinico(claves, "bench", VALORES * 2, Duration.ofMinutes(10));
+        texto = "x".repeat(longitud);
+
+        valores = new String[VALORES];
+        for (int i = 0; i < VALORES; i++) {
+            valores[i] = sinCache.cifrar(texto);
+            conCache.descifrar(valores[i]);
+        }
+    }
+
+    @Benchmark
+    public String cifrar() {
+        return sinCache.cifrar(texto);
+    }
+
+    @Benchmark
+    public String descifrarSinCache() {
+        return sinCache.descifrar(valores[ThreadLocalRandom.current().nextInt(VALORES)]);
+    }
+
+    @Benchmark
+    public String descifrarConCache() {
+        return conCache.descifrar(valores[ThreadLocalRandom.current().nextInt(VALORES)]);
+    }
+}
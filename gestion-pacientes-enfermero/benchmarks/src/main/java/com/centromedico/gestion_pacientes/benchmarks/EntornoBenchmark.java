@@ -0,0 +1,134 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import com.centromedico.gestion_pacientes.GestionPacientesApplication;
+import com.centromedico.gestion_pacientes.config.CifradoClinico;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entorno compartido por los benchmarks: arranca la aplicación con H2 en memoria
+ * (modo MySQL) y la llena con el volumen de consultas indicado
+ *
+ * Las consultas se reparten entre los pacientes (consulta i -> paciente i % pacientes),
+ * con diagnóstico y tratamiento cifrados como los guarda la aplicación.
+ *
+ * Volumen: -p consultas=10000 (por defecto) hasta -p consultas=1000000 (necesita -Xmx8g o más)
+ */
+@State(Scope.Benchmark)
+public class EntornoBenchmark {
+
+    private static final int TAMANO_LOTE = 10_000;
+
+    private static final String INSERT_CONSULTA =
+            "INSERT INTO consultas (paciente_id, medico_id, fecha_consulta, motivo_consulta, sintomas, " +
+            "diagnostico, tratamiento, fecha_creacion) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DIAGNOSTICO = "Hipertensión arterial esencial en seguimiento, " +
+            "sin lesión de órgano diana. Buen control con el tratamiento actual.";
+
+    private static final String TRATAMIENTO = "Enalapril 10 mg cada 12 horas. Dieta baja en sal, " +
+            "ejercicio aeróbico 30 minutos al día. Control de tensión en domicilio y revisión en 3 meses.";
+
+    @Param({"10000"})
+    public int consultas;
+
+    @Param({"500"})
+    public int pacientes;
+
+    ConfigurableApplicationContext contexto;
+    List<Long> pacienteIds;
+
+    /** ID de la primera consulta sembrada (los IDs son consecutivos) */
+    long primeraConsulta;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = new SpringApplicationBuilder(GestionPacientesApplication.class)
+                .profiles("benchmark")
+                .run();
+
+        Usuario medico = crearMedicoYPacientes();
+        sembrarConsultas(medico);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    private Usuario crearMedicoYPacientes() {
+        UsuarioRepository usuarioRepository = contexto.getBean(UsuarioRepository.class);
+        PacienteRepository pacienteRepository = contexto.getBean(PacienteRepository.class);
+
+        Usuario medico = new Usuario();
+        medico.setUsername("bench-medico");
+        medico.setEmail("bench-medico@centromedico.com");
+        medico.setPasswordHash("benchmark");
+        medico.setNombre("bench-medico");
+        medico.setRol(Rol.MEDICO);
+        medico.setActivo(true);
+        medico = usuarioRepository.save(medico);
+
+        List<Paciente> nuevosPacientes = new ArrayList<>();
+        for (int i = 0; i < pacientes; i++) {
+            Paciente paciente = new Paciente();
+            paciente.setNombre("Paciente");
+            paciente.setApellidos("Benchmark " + i);
+            paciente.setDni(String.format("B%08d", i));
+            paciente.setHistorial("Antecedentes del paciente " + i);
+            paciente.setMedico(medico);
+            nuevosPacientes.add(paciente);
+        }
+        pacienteIds = pacienteRepository.saveAll(nuevosPacientes).stream().map(Paciente::getId).toList();
+        return medico;
+    }
+
+    private void sembrarConsultas(Usuario medico) {
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        CifradoClinico cifrado = contexto.getBean(CifradoClinico.class);
+        LocalDateTime inicio = LocalDateTime.now().minusYears(1);
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+
+        // Cada valor con su propio IV, como al guardar desde la aplicación
+        List<Object[]> lote = new ArrayList<>(TAMANO_LOTE);
+        for (int i = 0; i < consultas; i++) {
+            lote.add(new Object[]{
+                    pacienteIds.get(i % pacientes),
+                    medico.getId(),
+                    Timestamp.valueOf(inicio.plusMinutes(i)),
+                    "Consulta de benchmark",
+                    "Cefalea y mareos ocasionales",
+                    CifradoClinico.sinCache(() -> cifrado.cifrar(DIAGNOSTICO)),
+                    CifradoClinico.sinCache(() -> cifrado.cifrar(TRATAMIENTO)),
+                    ahora
+            });
+            if (lote.size() == TAMANO_LOTE) {
+                jdbcTemplate.batchUpdate(INSERT_CONSULTA, lote);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CONSULTA, lote);
+        }
+
+        primeraConsulta = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM consultas WHERE motivo_consulta = 'Consulta de benchmark'", Long.class);
+    }
+}
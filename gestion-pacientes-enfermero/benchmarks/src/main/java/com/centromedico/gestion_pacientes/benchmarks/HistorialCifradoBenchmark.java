@@ -0,0 +1,90 @@
+package com.centromedico.gestion_pacientes.benchmarks;
+
+import com.centromedico.gestion_pacientes.config.CifradoClinico;
+import com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Coste del cifrado en las lecturas de la aplicación (con BD)
+ * - cargarConsultas*: página de PAGINA consultas completas (como los resultados de la búsqueda clínica)
+ * - detalleConsulta*: textos de una consulta al desplegarla en el historial
+ *
+ * Las variantes SinCache descifran todo en cada lectura; las ConCache leen consultas
+ * de un grupo pequeño (las que se están consultando), que acaban en la caché.
+ * La diferencia con SinCache es el coste de descifrar; lo que queda es BD y Hibernate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@Threads(4)
+public class HistorialCifradoBenchmark {
+
+    /** Consultas por página */
+    private static final int PAGINA = 20;
+
+    /** Consultas del grupo que se lee en las variantes con caché */
+    private static final int CONSULTAS_FRECUENTES = 1000;
+
+    private ConsultaRepository consultaRepository;
+
+    @Setup(Level.Trial)
+    public void preparar(EntornoBenchmark entorno) {
+        consultaRepository = entorno.contexto.getBean(ConsultaRepository.class);
+    }
+
+    @Benchmark
+    public List<Consulta> cargarConsultasSinCache(EntornoBenchmark entorno) {
+        List<Long> ids = pagina(entorno, entorno.consultas);
+        return CifradoClinico.sinCache(() -> consultaRepository.findConPacienteYMedicoByIdIn(ids));
+    }
+
+    @Benchmark
+    public List<Consulta> cargarConsultasConCache(EntornoBenchmark entorno) {
+        return consultaRepository.findConPacienteYMedicoByIdIn(
+                pagina(entorno, Math.min(entorno.consultas, CONSULTAS_FRECUENTES)));
+    }
+
+    @Benchmark
+    public DetalleConsultaHistorial detalleConsultaSinCache(EntornoBenchmark entorno) {
+        long indice = ThreadLocalRandom.current().nextLong(entorno.consultas);
+        return CifradoClinico.sinCache(() -> detalle(entorno, indice));
+    }
+
+    @Benchmark
+    public DetalleConsultaHistorial detalleConsultaConCache(EntornoBenchmark entorno) {
+        return detalle(entorno, ThreadLocalRandom.current().nextLong(Math.min(entorno.consultas, CONSULTAS_FRECUENTES)));
+    }
+
+    private List<Long> pagina(EntornoBenchmark entorno, int consultas) {
+        long inicio = ThreadLocalRandom.current().nextLong(Math.max(1, consultas - PAGINA));
+        return LongStream.range(inicio, Math.min(inicio + PAGINA, consultas))
+                .mapToObj(indice -> entorno.primeraConsulta + indice)
+                .toList();
+    }
+
+    private DetalleConsultaHistorial detalle(EntornoBenchmark entorno, long indice) {
+        Long pacienteId = entorno.pacienteIds.get((int) (indice % entorno.pacientes));
+        return consultaRepository.findDetalleHistorial(entorno.primeraConsulta + indice, pacienteId).orElseThrow();
+    }
+}
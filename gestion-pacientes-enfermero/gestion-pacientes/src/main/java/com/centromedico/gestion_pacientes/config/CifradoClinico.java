@@ -0,0 +1,236 @@
+package com.centromedico.gestion_pacientes.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cifrado AES-GCM de los textos clínicos guardados en la BD (diagnóstico y tratamiento de las consultas)
+ *
+ * Formato en la columna: "gcm:" + ID de la clave + ":" + Base64(IV de 12 bytes + texto cifrado + etiqueta).
+ * Cada valor lleva su propio IV aleatorio, así que dos textos iguales se guardan distintos.
+ * Los valores sin el prefijo son texto plano anterior al cifrado y se devuelven tal cual
+ * hasta que RecifradoClinicoService los cifra.
+ *
+ * Claves (clinico.cifrado.claves): lista "id:claveBase64" separada por comas, de 16, 24 o 32 bytes.
+ * Se cifra siempre con clinico.cifrado.clave-activa; las demás solo sirven para descifrar
+ * valores antiguos mientras dura una rotación.
+ *
+ * Los textos descifrados se guardan en una caché LRU acotada (clinico.cifrado.cache.maximo)
+ * cuyas entradas caducan si no se leen en clinico.cifrado.cache.inactividad.
+ * La clave de la caché es el propio valor cifrado: al cambiar el texto o la clave cambia el valor,
+ * así que nunca hay que invalidar. Las lecturas masivas (reconstrucción del índice, estadísticas)
+ * se hacen dentro de sinCache para no desplazar lo que usan las pantallas.
+ */
+@Component
+public class CifradoClinico {
+
+    /** Prefijo de los valores cifrados */
+    public static final String PREFIJO = "gcm:";
+
+    private static final String ALGORITMO = "AES/GCM/NoPadding";
+    private static final int LONGITUD_IV = 12;
+    private static final int LONGITUD_ETIQUETA_BITS = 128;
+
+    // Lecturas masivas en este hilo: no usan la caché
+    private static final ThreadLocal<Boolean> SIN_CACHE = ThreadLocal.withInitial(() -> false);
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITMO);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM no disponible en esta JVM", e);
+        }
+    });
+
+    private final Map<String, SecretKeySpec> claves = new LinkedHashMap<>();
+    private final String claveActiva;
+    private final String prefijoActivo;
+    private final SecureRandom random = new SecureRandom();
+
+    private final int maximoCache;
+    private final long inactividadNanos;
+    private final LinkedHashMap<String, Descifrado> cache;
+
+    private record Descifrado(String texto, long ultimoAcceso) {
+    }
+
+    public CifradoClinico(
+            @Value("${clinico.cifrado.claves}") String claves,
+            @Value("${clinico.cifrado.clave-activa}") String claveActiva,
+            @Value("${clinico.cifrado.cache.maximo:10000}") int maximoCache,
+            @Value("${clinico.cifrado.cache.inactividad:10m}") Duration inactividad
+    ) {
+        for (String definicion : claves.split(",")) {
+            String[] partes = definicion.trim().split(":", 2);
+            if (partes.length != 2 || partes[0].isBlank()) {
+                throw new IllegalStateException("Clave de cifrado mal definida, se espera id:claveBase64");
+            }
+            byte[] bytes = Base64.getDecoder().decode(partes[1].trim());
+            if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+                throw new IllegalStateException("La clave de cifrado " + partes[0] + " debe tener 16, 24 o 32 bytes");
+            }
+            this.claves.put(partes[0].trim(), new SecretKeySpec(bytes, "AES"));
+        }
+        if (!this.claves.containsKey(claveActiva)) {
+            throw new IllegalStateException("La clave de cifrado activa no está definida: " + claveActiva);
+        }
+        this.claveActiva = claveActiva;
+        this.prefijoActivo = PREFIJO + claveActiva + ":";
+        this.maximoCache = maximoCache;
+        this.inactividadNanos = inactividad.toNanos();
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Descifrado> eldest) {
+                return size() > CifradoClinico.this.maximoCache;
+            }
+        };
+    }
+
+    // ============================================
+    // CIFRAR Y DESCIFRAR
+    // ============================================
+
+    /**
+     * Cifra un texto con la clave activa
+     * @param texto Texto plano (null se guarda como null)
+     * @return Valor para la columna
+     */
+    public String cifrar(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        byte[] iv = new byte[LONGITUD_IV];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, claves.get(claveActiva), new GCMParameterSpec(LONGITUD_ETIQUETA_BITS, iv));
+            byte[] cifrado = cipher.doFinal(texto.getBytes(StandardCharsets.UTF_8));
+            byte[] datos = ByteBuffer.allocate(iv.length + cifrado.length).put(iv).put(cifrado).array();
+
+            String valor = prefijoActivo + Base64.getEncoder().encodeToString(datos);
+            // Lo recién escrito suele leerse enseguida (redirección al detalle)
+            guardarEnCache(valor, texto);
+            return valor;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo cifrar el texto clínico", e);
+        }
+    }
+
+    /**
+     * Descifra un valor de la columna, usando la caché si está disponible
+     * @param valor Valor guardado (cifrado o texto plano antiguo)
+     * @return Texto plano
+     */
+    public String descifrar(String valor) {
+        if (valor == null || !valor.startsWith(PREFIJO)) {
+            return valor;
+        }
+        if (maximoCache <= 0 || SIN_CACHE.get()) {
+            return descifrarSinCache(valor);
+        }
+
+        long ahora = System.nanoTime();
+        synchronized (cache) {
+            Descifrado entrada = cache.get(valor);
+            if (entrada != null && ahora - entrada.ultimoAcceso() < inactividadNanos) {
+                cache.put(valor, new Descifrado(entrada.texto(), ahora));
+                return entrada.texto();
+            }
+        }
+        String texto = descifrarSinCache(valor);
+        guardarEnCache(valor, texto);
+        return texto;
+    }
+
+    /**
+     * Indica si un valor ya está cifrado con la clave activa (no hace falta recifrarlo)
+     */
+    public boolean cifradoConClaveActiva(String valor) {
+        return valor == null || valor.startsWith(prefijoActivo);
+    }
+
+    /**
+     * Ejecuta una lectura masiva sin usar la caché de textos descifrados en este hilo
+     * @param lectura Lectura a ejecutar
+     * @return Resultado de la lectura
+     */
+    public static <T> T sinCache(Supplier<T> lectura) {
+        boolean anterior = SIN_CACHE.get();
+        SIN_CACHE.set(true);
+        try {
+            return lectura.get();
+        } finally {
+            SIN_CACHE.set(anterior);
+        }
+    }
+
+    /**
+     * Vacía la caché de textos descifrados
+     */
+    public void limpiarCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Número de textos descifrados en caché
+     */
+    public int getTamanoCache() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public String getClaveActiva() {
+        return claveActiva;
+    }
+
+    // ============================================
+    // AUXILIARES
+    // ============================================
+
+    private String descifrarSinCache(String valor) {
+        int separador = valor.indexOf(':', PREFIJO.length());
+        if (separador < 0) {
+            throw new IllegalStateException("Valor cifrado mal formado");
+        }
+        String idClave = valor.substring(PREFIJO.length(), separador);
+        SecretKeySpec clave = claves.get(idClave);
+        if (clave == null) {
+            throw new IllegalStateException("Clave de cifrado desconocida: " + idClave);
+        }
+
+        try {
+            byte[] datos = Base64.getDecoder().decode(valor.substring(separador + 1));
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, clave, new GCMParameterSpec(LONGITUD_ETIQUETA_BITS, datos, 0, LONGITUD_IV));
+            byte[] texto = cipher.doFinal(datos, LONGITUD_IV, datos.length - LONGITUD_IV);
+            return new String(texto, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("No se pudo descifrar el texto clínico (clave " + idClave + ")", e);
+        }
+    }
+
+    private void guardarEnCache(String valor, String texto) {
+        if (maximoCache <= 0 || SIN_CACHE.get()) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(valor, new Descifrado(texto, System.nanoTime()));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.centromedico.gestion_pacientes.config;
+
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * Índice ciego del diagnóstico (columna consultas.diagnostico_indice)
+ *
+ * El diagnóstico está cifrado con un IV aleatorio, así que la BD no puede agruparlo.
+ * El índice es el HMAC-SHA256 del diagnóstico normalizado (primeros LONGITUD caracteres,
+ * sin espacios en los extremos y en minúsculas): dos diagnósticos iguales tienen el mismo
+ * índice y las estadísticas agrupan con GROUP BY sin descifrar nada. Sin la clave
+ * (clinico.cifrado.clave-indice) no se puede comprobar qué texto hay detrás de un índice.
+ *
+ * Es el entity listener de Consulta: recalcula el índice en cada INSERT y UPDATE.
+ * Las filas sin índice (anteriores a la columna o tras cambiar la clave) las rellena
+ * RecifradoClinicoService al arrancar.
+ */
+@Component
+public class IndiceDiagnostico {
+
+    /** Caracteres del diagnóstico que se comparan al agruparlos */
+    public static final int LONGITUD = 100;
+
+    /** Índice de un diagnóstico vacío: no cuenta en las estadísticas */
+    public static final String VACIO = "";
+
+    private static final String ALGORITMO = "HmacSHA256";
+
+    private final ThreadLocal<Mac> mac;
+
+    public IndiceDiagnostico(@Value("${clinico.cifrado.clave-indice}") String clave) {
+        byte[] bytes = Base64.getDecoder().decode(clave.trim());
+        if (bytes.length < 32) {
+            throw new IllegalStateException("La clave del índice de diagnósticos debe tener al menos 32 bytes");
+        }
+        SecretKeySpec especificacion = new SecretKeySpec(bytes, ALGORITMO);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instancia = Mac.getInstance(ALGORITMO);
+                instancia.init(especificacion);
+                return instancia;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 no disponible en esta JVM", e);
+            }
+        });
+    }
+
+    /**
+     * Normaliza un diagnóstico para agruparlo: primeros LONGITUD caracteres, sin espacios
+     * en los extremos y en minúsculas
+     * @param diagnostico Diagnóstico en claro
+     * @return Diagnóstico normalizado (null si es null)
+     */
+    public static String normalizar(String diagnostico) {
+        if (diagnostico == null) {
+            return null;
+        }
+        return diagnostico.substring(0, Math.min(diagnostico.length(), LONGITUD)).strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Calcula el índice de un diagnóstico
+     * @param diagnostico Diagnóstico en claro
+     * @return HMAC en hexadecimal, VACIO si el diagnóstico está en blanco o null si es null
+     */
+    public String calcular(String diagnostico) {
+        String normalizado = normalizar(diagnostico);
+        if (normalizado == null) {
+            return null;
+        }
+        if (normalizado.isEmpty()) {
+            return VACIO;
+        }
+        return HexFormat.of().formatHex(mac.get().doFinal(normalizado.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Recalcula el índice antes de guardar la consulta
+     */
+    @PrePersist
+    @PreUpdate
+    public void actualizar(Consulta consulta) {
+        consulta.setDiagnosticoIndice(calcular(consulta.getDiagnostico()));
+    }
+}
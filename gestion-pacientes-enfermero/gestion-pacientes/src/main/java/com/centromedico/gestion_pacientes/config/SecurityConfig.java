@@ -112,12 +112,16 @@ public class SecurityConfig {
                         // Ver historial de un paciente: ADMIN, MEDICO, ENFERMERO (lectura básica)
                         .requestMatchers(HttpMethod.GET, "/consultas/historial/**").hasAnyRole("ADMIN", "MEDICO", "ENFERMERO")
 
+                        // Búsqueda clínica: ADMIN, MEDICO, ENFERMERO (los campos se filtran por rol en el servicio)
+                        .requestMatchers(HttpMethod.GET, "/consultas/buscar").hasAnyRole("ADMIN", "MEDICO", "ENFERMERO")
+
                         // Ver detalle de consulta: ADMIN, MEDICO, ENFERMERO
                         .requestMatchers(HttpMethod.GET, "/consultas/ver/**").hasAnyRole("ADMIN", "MEDICO", "ENFERMERO")
 
                         // Crear consulta: Solo ADMIN y MEDICO
                         .requestMatchers(HttpMethod.GET, "/consultas/nueva", "/consultas/nuevo").hasAnyRole("ADMIN", "MEDICO")
                         .requestMatchers(HttpMethod.POST, "/consultas/crear").hasAnyRole("ADMIN", "MEDICO")
+                        .requestMatchers(HttpMethod.GET, "/consultas/citas-disponibles").hasAnyRole("ADMIN", "MEDICO")
 
                         // Editar consulta: Solo ADMIN y MEDICO
                         .requestMatchers(HttpMethod.GET, "/consultas/editar/**").hasAnyRole("ADMIN", "MEDICO")
@@ -0,0 +1,34 @@
+package com.centromedico.gestion_pacientes.config;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Convierte los textos clínicos sensibles: se cifran al escribir y se descifran al leer
+ * Se aplica con @Convert en Consulta (diagnóstico, tratamiento).
+ * El historial del paciente no se cifra: la aplicación de citas comparte la tabla pacientes
+ * y no tiene las claves.
+ * También actúa en las proyecciones JPQL que seleccionan esos campos.
+ *
+ * Ojo: en JPQL no se puede filtrar, agrupar ni ordenar por estos campos (LIKE, GROUP BY...),
+ * porque en la BD solo hay texto cifrado.
+ */
+@Converter
+@Component
+@RequiredArgsConstructor
+public class TextoClinicoConverter implements AttributeConverter<String, String> {
+
+    private final CifradoClinico cifrado;
+
+    @Override
+    public String convertToDatabaseColumn(String texto) {
+        return cifrado.cifrar(texto);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String valor) {
+        return cifrado.descifrar(valor);
+    }
+}
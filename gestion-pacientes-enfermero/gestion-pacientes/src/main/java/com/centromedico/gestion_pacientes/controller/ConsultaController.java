@@ -2,16 +2,26 @@ package com.centromedico.gestion_pacientes.controller;
 
 
 import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.dto.CampoClinico;
+import com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial;
+import com.centromedico.gestion_pacientes.dto.PaginaCitasDisponibles;
+import com.centromedico.gestion_pacientes.dto.PaginaHistorial;
+import com.centromedico.gestion_pacientes.dto.TipoEventoHistorial;
 import com.centromedico.gestion_pacientes.entity.Cita;
 import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.entity.Estado;
 import com.centromedico.gestion_pacientes.entity.Paciente;
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
 import com.centromedico.gestion_pacientes.service.CitaService;
 import com.centromedico.gestion_pacientes.service.ConsultaService;
+import com.centromedico.gestion_pacientes.service.HistorialPacienteService;
 import com.centromedico.gestion_pacientes.service.PacienteService;
 import com.centromedico.gestion_pacientes.service.UsuarioService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -34,6 +44,7 @@ public class ConsultaController {
     private final CitaService citaService;
     private final PacienteService pacienteService;
     private final UsuarioService usuarioService;
+    private final HistorialPacienteService historialService;
 
     // ============================================
     // LISTAR CONSULTAS
@@ -69,7 +80,8 @@ public class ConsultaController {
     }
 
     /**
-     * Muestra el historial médico de un paciente
+     * Muestra el historial médico de un paciente: citas y consultas por fecha
+     * Se muestra la primera página; el resto se pide a /historial/{pacienteId}/eventos
      * Acceso: ADMIN, MEDICO, ENFERMERO
      */
     @GetMapping("/historial/{pacienteId}")
@@ -91,15 +103,82 @@ public class ConsultaController {
             return "redirect:/consultas";
         }
 
-        List<Consulta> consultas = consultaService.obtenerHistorialPaciente(pacienteId);
-
         model.addAttribute("paciente", paciente);
-        model.addAttribute("consultas", consultas);
+        model.addAttribute("pagina", historialService.obtenerPagina(
+                pacienteId, null, null, null, HistorialPacienteService.TAMANO_PAGINA));
+        model.addAttribute("resumen", historialService.obtenerResumen(pacienteId));
         model.addAttribute("usuario", usuario);
 
         return "consultas/historial";
     }
 
+    /**
+     * Devuelve en JSON la siguiente página del historial de un paciente
+     * Se pasan la fecha, el tipo y el ID de la última entrada recibida
+     * Ejemplo: /consultas/historial/5/eventos?fecha=2026-03-02T09:30:00&tipo=CITA&id=120
+     */
+    @GetMapping(value = "/historial/{pacienteId}/eventos", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'ENFERMERO')")
+    @ResponseBody
+    public PaginaHistorial obtenerEventosHistorial(
+            @PathVariable Long pacienteId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha,
+            @RequestParam(required = false) TipoEventoHistorial tipo,
+            @RequestParam(required = false) Long id,
+            @RequestParam(defaultValue = "" + HistorialPacienteService.TAMANO_PAGINA) int tamano,
+            @AuthenticationPrincipal CustomUserDetails userDetails
+    ) {
+        if (!consultaService.puedeVerHistorialPaciente(pacienteId, userDetails.getUsuario())) {
+            throw new AccessDeniedException("No tienes permiso para ver este historial");
+        }
+        return historialService.obtenerPagina(pacienteId, fecha, tipo, id, tamano);
+    }
+
+    /**
+     * Devuelve en JSON los textos clínicos de una consulta del historial (al desplegarla)
+     * ENFERMERO solo recibe motivo y síntomas
+     */
+    @GetMapping(value = "/historial/{pacienteId}/consultas/{consultaId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'ENFERMERO')")
+    @ResponseBody
+    public DetalleConsultaHistorial obtenerDetalleHistorial(
+            @PathVariable Long pacienteId,
+            @PathVariable Long consultaId,
+            @AuthenticationPrincipal CustomUserDetails userDetails
+    ) {
+        Usuario usuario = userDetails.getUsuario();
+        if (!consultaService.puedeVerHistorialPaciente(pacienteId, usuario)) {
+            throw new AccessDeniedException("No tienes permiso para ver este historial");
+        }
+        return historialService.obtenerDetalleConsulta(pacienteId, consultaId, usuario);
+    }
+
+    /**
+     * Busca consultas por síntomas, diagnóstico, tratamiento o motivo
+     * Acceso: ADMIN, MEDICO (solo sus consultas), ENFERMERO (sin diagnóstico ni tratamiento)
+     * Ejemplo: /consultas/buscar?q=cefalea migra
+     */
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO', 'ENFERMERO')")
+    public String buscarConsultas(
+            @RequestParam(name = "q", required = false) String texto,
+            @AuthenticationPrincipal CustomUserDetails userDetails,
+            Model model
+    ) {
+        Usuario usuario = userDetails.getUsuario();
+
+        model.addAttribute("q", texto);
+        model.addAttribute("campos", CampoClinico.visiblesPara(usuario.getRol()));
+        model.addAttribute("indiceListo", consultaService.isBusquedaDisponible());
+        model.addAttribute("usuario", usuario);
+
+        if (texto != null && !texto.isBlank()) {
+            model.addAttribute("resultados", consultaService.buscarConsultas(texto, usuario));
+        }
+
+        return "consultas/busqueda";
+    }
+
     /**
      * Muestra el detalle de una consulta específica
      */
@@ -152,8 +231,16 @@ public class ConsultaController {
             Cita cita = citaService.obtenerPorId(citaId)
                     .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
 
+            // MEDICO solo puede registrar consultas de sus propias citas
+            if (usuario.getRol() == Rol.MEDICO
+                    && (cita.getMedico() == null || !cita.getMedico().getId().equals(usuario.getId()))) {
+                redirectAttributes.addFlashAttribute("error",
+                        "Solo puedes crear consultas de tus propias citas");
+                return "redirect:/consultas/nueva";
+            }
+
             // Verificar que la cita esté realizada
-            if (cita.getEstado().name() != "REALIZADA") {
+            if (cita.getEstado() != Estado.REALIZADA) {
                 redirectAttributes.addFlashAttribute("error",
                         "Solo se pueden crear consultas para citas realizadas");
                 return "redirect:/citas/ver/" + citaId;
@@ -180,36 +267,43 @@ public class ConsultaController {
         }
 
         // Obtener listas para los selectores
+        // Las citas disponibles no se cargan aquí: las pide el buscador a /consultas/citas-disponibles
         List<Paciente> pacientes;
         List<Usuario> medicos;
-        List<Cita> citasDisponibles;
 
         if (usuario.getRol() == Rol.MEDICO) {
             pacientes = pacienteService.obtenerPorMedico(usuario.getId());
             medicos = List.of(usuario);
-            citasDisponibles = citaService.obtenerPorMedico(usuario.getId()).stream()
-                    .filter(c -> c.getEstado().name().equals("REALIZADA"))
-                    .filter(c -> !consultaService.citaTieneConsulta(c.getId()))
-                    .toList();
         } else {
             pacientes = pacienteService.obtenerTodos();
             medicos = usuarioService.obtenerPorRol(Rol.MEDICO);
-            citasDisponibles = citaService.obtenerTodas().stream()
-                    .filter(c -> c.getEstado().name().equals("REALIZADA"))
-                    .filter(c -> !consultaService.citaTieneConsulta(c.getId()))
-                    .toList();
         }
 
         model.addAttribute("consulta", consulta);
         model.addAttribute("pacientes", pacientes);
         model.addAttribute("medicos", medicos);
-        model.addAttribute("citasDisponibles", citasDisponibles);
         model.addAttribute("usuario", usuario);
         model.addAttribute("desdeCita", citaId != null);
 
         return "consultas/formulario";
     }
 
+    /**
+     * Devuelve en JSON las citas realizadas sin consulta (buscador del formulario de nueva consulta)
+     * MEDICO solo recibe sus propias citas
+     * Ejemplo: /consultas/citas-disponibles?q=garcia&pagina=0
+     */
+    @GetMapping(value = "/citas-disponibles", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'MEDICO')")
+    @ResponseBody
+    public PaginaCitasDisponibles obtenerCitasDisponibles(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "0") int pagina,
+            @AuthenticationPrincipal CustomUserDetails userDetails
+    ) {
+        return consultaService.buscarCitasSinConsulta(q, pagina, userDetails.getUsuario());
+    }
+
     /**
      * Procesa la creación de una nueva consulta
      */
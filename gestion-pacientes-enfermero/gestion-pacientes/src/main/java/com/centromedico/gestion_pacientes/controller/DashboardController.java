@@ -1,11 +1,12 @@
 package com.centromedico.gestion_pacientes.controller;
 
 import com.centromedico.gestion_pacientes.config.CustomUserDetails;
+import com.centromedico.gestion_pacientes.entity.Cita;
 import com.centromedico.gestion_pacientes.entity.Estado;
 import com.centromedico.gestion_pacientes.entity.Rol;
 import com.centromedico.gestion_pacientes.entity.Usuario;
 import com.centromedico.gestion_pacientes.service.CitaService;
-import com.centromedico.gestion_pacientes.service.ConsultaService;
+import com.centromedico.gestion_pacientes.service.EstadisticasConsultasService;
 import com.centromedico.gestion_pacientes.service.PacienteService;
 import com.centromedico.gestion_pacientes.service.UsuarioService;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Controlador para el dashboard principal
@@ -26,7 +28,7 @@ public class DashboardController {
     private final UsuarioService usuarioService;
     private final PacienteService pacienteService;
     private final CitaService citaService;
-    private final ConsultaService consultaService;
+    private final EstadisticasConsultasService estadisticasConsultasService;
 
     @GetMapping({"/", "/dashboard", "/home"})
     public String dashboard(
@@ -49,7 +51,10 @@ public class DashboardController {
             model.addAttribute("totalPacientes", pacienteService.obtenerTodos().size());
             model.addAttribute("totalMedicos", usuarioService.obtenerPorRol(Rol.MEDICO).size());
             model.addAttribute("totalCitas", citaService.obtenerTodas().size());
-            model.addAttribute("totalConsultas", consultaService.obtenerTodas().size());
+            model.addAttribute("totalConsultas", estadisticasConsultasService.contarTodas());
+
+            // Consultas por médico y mes, y diagnósticos más frecuentes
+            model.addAttribute("estadisticasConsultas", estadisticasConsultasService.obtenerGlobales());
 
             // Estadísticas de citas por estado
             model.addAttribute("citasPendientes",
@@ -67,11 +72,12 @@ public class DashboardController {
             // MEDICO ve sus propias estadísticas
             long totalPacientes = pacienteService.obtenerPorMedico(usuario.getId()).size();
             long totalCitas = citaService.obtenerPorMedico(usuario.getId()).size();
-            long totalConsultas = consultaService.obtenerPorMedico(usuario.getId()).size();
+            long totalConsultas = estadisticasConsultasService.contarPorMedico(usuario.getId());
 
             model.addAttribute("totalPacientes", totalPacientes);
             model.addAttribute("totalCitas", totalCitas);
             model.addAttribute("totalConsultas", totalConsultas);
+            model.addAttribute("estadisticasConsultas", estadisticasConsultasService.obtenerDeMedico(usuario.getId()));
 
             // Citas de hoy del médico
             long citasHoy = citaService.obtenerCitasDelDia(usuario.getId(), LocalDate.now()).size();
@@ -98,16 +104,13 @@ public class DashboardController {
                     citaService.obtenerPorEstado(Estado.PENDIENTE).size());
 
         } else if (usuario.getRol() == Rol.ENFERMERO) {
-            // ENFERMERO ve citas del día
-            long citasHoy = citaService.obtenerTodasCitasDelDia(LocalDate.now()).size();
-            model.addAttribute("citasHoy", citasHoy);
-
-            // Lista de citas de hoy
-            model.addAttribute("citasDelDia",
-                    citaService.obtenerTodasCitasDelDia(LocalDate.now()));
+            // ENFERMERO ve citas del día (una sola lectura para la lista y el contador)
+            List<Cita> citasDelDia = citaService.obtenerTodasCitasDelDia(LocalDate.now());
+            model.addAttribute("citasHoy", citasDelDia.size());
+            model.addAttribute("citasDelDia", citasDelDia);
 
             // Total de consultas (solo lectura básica)
-            model.addAttribute("totalConsultas", consultaService.obtenerTodas().size());
+            model.addAttribute("totalConsultas", estadisticasConsultasService.contarTodas());
         }
 
         return "dashboard";
@@ -0,0 +1,57 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.Rol;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Campos de texto de una consulta que entran en la búsqueda clínica
+ * Los campos sensibles (diagnóstico y tratamiento) solo los ven ADMIN y MEDICO
+ */
+public enum CampoClinico {
+
+    MOTIVO("Motivo", 1, false),
+    SINTOMAS("Síntomas", 2, false),
+    DIAGNOSTICO("Diagnóstico", 3, true),
+    TRATAMIENTO("Tratamiento", 2, true);
+
+    private final String descripcion;
+    private final int peso;
+    private final boolean sensible;
+
+    CampoClinico(String descripcion, int peso, boolean sensible) {
+        this.descripcion = descripcion;
+        this.peso = peso;
+        this.sensible = sensible;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    /**
+     * Peso del campo en la puntuación de un resultado
+     */
+    public int getPeso() {
+        return peso;
+    }
+
+    public boolean isSensible() {
+        return sensible;
+    }
+
+    /**
+     * Campos en los que puede buscar un rol
+     * ENFERMERO no busca (ni ve) en los campos sensibles
+     * @param rol Rol del usuario
+     * @return Campos permitidos (vacío si el rol no puede ver consultas)
+     */
+    public static Set<CampoClinico> visiblesPara(Rol rol) {
+        return switch (rol) {
+            case ADMIN, MEDICO -> EnumSet.allOf(CampoClinico.class);
+            case ENFERMERO -> EnumSet.of(MOTIVO, SINTOMAS);
+            default -> EnumSet.noneOf(CampoClinico.class);
+        };
+    }
+}
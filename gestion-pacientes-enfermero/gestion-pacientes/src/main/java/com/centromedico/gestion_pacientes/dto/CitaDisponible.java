@@ -0,0 +1,30 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cita realizada que todavía no tiene consulta (selector del formulario de nueva consulta)
+ * @param id ID de la cita
+ * @param fechaHora Fecha/hora de la cita
+ * @param motivo Motivo de la cita
+ * @param paciente Nombre completo del paciente
+ * @param dni DNI del paciente
+ * @param medico Nombre del médico
+ */
+public record CitaDisponible(
+        Long id,
+        LocalDateTime fechaHora,
+        String motivo,
+        String paciente,
+        String dni,
+        String medico
+) {
+
+    /**
+     * Constructor usado en la consulta JPQL
+     */
+    public CitaDisponible(Long id, LocalDateTime fechaHora, String motivo, String nombre, String apellidos,
+                          String dni, String medico) {
+        this(id, fechaHora, motivo, nombre + " " + apellidos, dni, medico);
+    }
+}
@@ -0,0 +1,56 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.Consulta;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos de una consulta que necesita el índice de búsqueda clínica
+ * @param id ID de la consulta
+ * @param medicoId ID del médico (puede ser null)
+ * @param pacienteId ID del paciente (puede ser null)
+ * @param fechaConsulta Fecha de la consulta
+ * @param motivo Motivo de la consulta
+ * @param sintomas Síntomas
+ * @param diagnostico Diagnóstico
+ * @param tratamiento Tratamiento
+ */
+public record ConsultaIndexable(
+        Long id,
+        Long medicoId,
+        Long pacienteId,
+        LocalDateTime fechaConsulta,
+        String motivo,
+        String sintomas,
+        String diagnostico,
+        String tratamiento
+) {
+
+    /**
+     * Copia los datos de una consulta (se leen en el momento, no al hacer commit)
+     */
+    public static ConsultaIndexable de(Consulta consulta) {
+        return new ConsultaIndexable(
+                consulta.getId(),
+                consulta.getMedico() != null ? consulta.getMedico().getId() : null,
+                consulta.getPaciente() != null ? consulta.getPaciente().getId() : null,
+                consulta.getFechaConsulta(),
+                consulta.getMotivoConsulta(),
+                consulta.getSintomas(),
+                consulta.getDiagnostico(),
+                consulta.getTratamiento()
+        );
+    }
+
+    /**
+     * Texto de un campo clínico
+     */
+    public String texto(CampoClinico campo) {
+        return switch (campo) {
+            case MOTIVO -> motivo;
+            case SINTOMAS -> sintomas;
+            case DIAGNOSTICO -> diagnostico;
+            case TRATAMIENTO -> tratamiento;
+        };
+    }
+}
@@ -0,0 +1,14 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Número de consultas de un diagnóstico, agrupadas por su índice ciego
+ * @param indice Índice ciego del diagnóstico
+ * @param total Número de consultas
+ * @param consultaId Una de las consultas del grupo, para leer (y descifrar) el texto
+ */
+public record ConteoDiagnostico(
+        String indice,
+        Long total,
+        Long consultaId
+) {
+}
@@ -0,0 +1,28 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Textos clínicos de una consulta, cargados al desplegarla en el historial
+ * Los campos que el usuario no puede ver van a null
+ * @param id ID de la consulta
+ * @param motivoConsulta Motivo completo
+ * @param sintomas Síntomas
+ * @param diagnostico Diagnóstico
+ * @param tratamiento Tratamiento
+ * @param observaciones Observaciones
+ */
+public record DetalleConsultaHistorial(
+        Long id,
+        String motivoConsulta,
+        String sintomas,
+        String diagnostico,
+        String tratamiento,
+        String observaciones
+) {
+
+    /**
+     * Copia sin los campos sensibles (diagnóstico, tratamiento y observaciones)
+     */
+    public DetalleConsultaHistorial sinCamposSensibles() {
+        return new DetalleConsultaHistorial(id, motivoConsulta, sintomas, null, null, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Diagnóstico y número de consultas en las que aparece
+ * Los diagnósticos se agrupan en minúsculas y por sus primeros caracteres
+ * @param diagnostico Diagnóstico (normalizado)
+ * @param total Número de consultas
+ */
+public record DiagnosticoFrecuente(
+        String diagnostico,
+        Long total
+) {
+}
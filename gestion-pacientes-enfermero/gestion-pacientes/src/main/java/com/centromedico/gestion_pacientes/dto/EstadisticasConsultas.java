@@ -0,0 +1,22 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Estadísticas de consultas del dashboard (globales o de un médico)
+ * @param totalConsultas Número total de consultas
+ * @param meses Meses del periodo, del más antiguo al actual
+ * @param volumenPorMedico Consultas por médico y mes
+ * @param diagnosticosFrecuentes Diagnósticos más frecuentes del periodo
+ * @param calculadas Momento en que se calcularon (pueden tener unos segundos de antigüedad)
+ */
+public record EstadisticasConsultas(
+        long totalConsultas,
+        List<YearMonth> meses,
+        List<VolumenConsultasMedico> volumenPorMedico,
+        List<DiagnosticoFrecuente> diagnosticosFrecuentes,
+        LocalDateTime calculadas
+) {
+}
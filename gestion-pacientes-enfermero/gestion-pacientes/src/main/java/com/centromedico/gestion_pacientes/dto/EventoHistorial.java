@@ -0,0 +1,48 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.Estado;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Entrada resumida del historial de un paciente (una cita o una consulta)
+ * No lleva los textos clínicos: se cargan aparte al desplegar la entrada
+ * @param tipo CITA o CONSULTA
+ * @param id ID de la cita o de la consulta
+ * @param fecha Fecha/hora de la cita o de la consulta
+ * @param motivo Motivo (recortado a LONGITUD_MOTIVO caracteres)
+ * @param medico Nombre del médico
+ * @param estadoCita Estado de la cita (solo citas)
+ * @param citaId Cita asociada (solo consultas)
+ * @param proximaRevision Fecha de la próxima revisión (solo consultas)
+ */
+public record EventoHistorial(
+        TipoEventoHistorial tipo,
+        Long id,
+        LocalDateTime fecha,
+        String motivo,
+        String medico,
+        Estado estadoCita,
+        Long citaId,
+        LocalDate proximaRevision
+) {
+
+    /** Caracteres del motivo que se leen para el resumen */
+    public static final int LONGITUD_MOTIVO = 150;
+
+    /**
+     * Entrada de una cita (usado en las consultas JPQL)
+     */
+    public EventoHistorial(Long id, LocalDateTime fecha, String motivo, String medico, Estado estadoCita) {
+        this(TipoEventoHistorial.CITA, id, fecha, motivo, medico, estadoCita, null, null);
+    }
+
+    /**
+     * Entrada de una consulta (usado en las consultas JPQL)
+     */
+    public EventoHistorial(Long id, LocalDateTime fecha, String motivo, String medico, Long citaId,
+                           LocalDate proximaRevision) {
+        this(TipoEventoHistorial.CONSULTA, id, fecha, motivo, medico, null, citaId, proximaRevision);
+    }
+}
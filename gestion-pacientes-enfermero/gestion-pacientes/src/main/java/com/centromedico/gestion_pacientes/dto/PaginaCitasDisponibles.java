@@ -0,0 +1,14 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.util.List;
+
+/**
+ * Página de citas disponibles para crear una consulta, de la más reciente a la más antigua
+ * @param citas Citas de la página
+ * @param hayMas true si hay más citas en la página siguiente
+ */
+public record PaginaCitasDisponibles(
+        List<CitaDisponible> citas,
+        boolean hayMas
+) {
+}
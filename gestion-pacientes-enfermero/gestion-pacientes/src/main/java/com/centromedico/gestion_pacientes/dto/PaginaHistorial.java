@@ -0,0 +1,15 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.util.List;
+
+/**
+ * Página del historial de un paciente, de la entrada más reciente a la más antigua
+ * La siguiente página se pide a partir de la última entrada (fecha, tipo e ID)
+ * @param eventos Entradas de la página
+ * @param hayMas true si hay entradas más antiguas
+ */
+public record PaginaHistorial(
+        List<EventoHistorial> eventos,
+        boolean hayMas
+) {
+}
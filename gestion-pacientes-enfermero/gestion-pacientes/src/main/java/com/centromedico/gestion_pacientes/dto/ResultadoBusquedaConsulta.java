@@ -0,0 +1,18 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import com.centromedico.gestion_pacientes.entity.Consulta;
+
+import java.util.Set;
+
+/**
+ * Consulta encontrada por la búsqueda clínica
+ * @param consulta Consulta (con paciente y médico cargados)
+ * @param campos Campos en los que aparecen los términos buscados
+ * @param puntuacion Relevancia (mayor es mejor)
+ */
+public record ResultadoBusquedaConsulta(
+        Consulta consulta,
+        Set<CampoClinico> campos,
+        int puntuacion
+) {
+}
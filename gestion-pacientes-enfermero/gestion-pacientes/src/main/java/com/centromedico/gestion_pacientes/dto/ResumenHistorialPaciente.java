@@ -0,0 +1,16 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estadísticas del historial de un paciente, calculadas con una sola consulta agregada
+ * @param totalConsultas Número de consultas
+ * @param ultimaConsulta Fecha de la consulta más reciente (null si no hay)
+ * @param conSeguimiento Consultas con próxima revisión
+ */
+public record ResumenHistorialPaciente(
+        long totalConsultas,
+        LocalDateTime ultimaConsulta,
+        long conSeguimiento
+) {
+}
@@ -0,0 +1,10 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Tipo de entrada del historial de un paciente
+ * A la misma hora, las consultas van antes que las citas
+ */
+public enum TipoEventoHistorial {
+    CONSULTA,
+    CITA
+}
@@ -0,0 +1,18 @@
+package com.centromedico.gestion_pacientes.dto;
+
+import java.util.List;
+
+/**
+ * Consultas de un médico en cada mes del periodo de las estadísticas
+ * @param medicoId ID del médico
+ * @param medico Nombre del médico
+ * @param porMes Consultas de cada mes, en el orden de EstadisticasConsultas.meses()
+ * @param total Consultas del periodo
+ */
+public record VolumenConsultasMedico(
+        Long medicoId,
+        String medico,
+        List<Long> porMes,
+        long total
+) {
+}
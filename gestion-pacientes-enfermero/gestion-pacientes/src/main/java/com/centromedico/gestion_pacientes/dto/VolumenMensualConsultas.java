@@ -0,0 +1,18 @@
+package com.centromedico.gestion_pacientes.dto;
+
+/**
+ * Número de consultas de un médico en un mes (fila de la consulta agrupada)
+ * @param medicoId ID del médico
+ * @param medico Nombre del médico
+ * @param anio Año
+ * @param mes Mes (1-12)
+ * @param total Número de consultas
+ */
+public record VolumenMensualConsultas(
+        Long medicoId,
+        String medico,
+        Integer anio,
+        Integer mes,
+        Long total
+) {
+}
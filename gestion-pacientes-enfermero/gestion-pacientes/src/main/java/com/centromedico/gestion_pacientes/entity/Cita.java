@@ -9,7 +9,13 @@ import java.time.LocalDateTime;
 
 
 @Entity
-@Table(name = "citas")
+@Table(name = "citas", indexes = {
+        // Historial del paciente por fecha (paginación por clave)
+        @Index(name = "idx_citas_paciente_fecha", columnList = "paciente_id, fecha_hora, id"),
+        // Citas realizadas sin consulta, de la más reciente a la más antigua (todas o por médico)
+        @Index(name = "idx_citas_estado_fecha", columnList = "estado, fecha_hora, id"),
+        @Index(name = "idx_citas_medico_estado_fecha", columnList = "medico_id, estado, fecha_hora, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
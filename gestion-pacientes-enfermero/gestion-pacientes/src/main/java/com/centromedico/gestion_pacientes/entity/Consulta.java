@@ -1,5 +1,7 @@
 package com.centromedico.gestion_pacientes.entity;
 
+import com.centromedico.gestion_pacientes.config.IndiceDiagnostico;
+import com.centromedico.gestion_pacientes.config.TextoClinicoConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,7 +12,13 @@ import java.time.LocalDateTime;
 
 
 @Entity
-@Table(name = "consultas")
+@Table(name = "consultas", indexes = {
+        // Historial del paciente por fecha (paginación por clave)
+        @Index(name = "idx_consultas_paciente_fecha", columnList = "paciente_id, fecha_consulta, id"),
+        // Diagnósticos frecuentes de un periodo (agrupados por el índice ciego)
+        @Index(name = "idx_consultas_fecha_diagnostico", columnList = "fecha_consulta, diagnostico_indice")
+})
+@EntityListeners(IndiceDiagnostico.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,9 +38,16 @@ public class Consulta {
     private String sintomas;
 
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = TextoClinicoConverter.class)
     private String diagnostico;
 
+    // Índice ciego del diagnóstico (HMAC): permite agruparlo en la BD sin descifrarlo
+    // Lo calcula IndiceDiagnostico al guardar
+    @Column(name = "diagnostico_indice", length = 64)
+    private String diagnosticoIndice;
+
     @Column(columnDefinition = "TEXT")
+    @Convert(converter = TextoClinicoConverter.class)
     private String tratamiento;
 
     @Column(columnDefinition = "TEXT")
@@ -41,6 +41,8 @@ public class Paciente {
     @Column(name = "fecha_nacimiento")
     private LocalDate fechaNacimiento;
 
+    // En claro, no cifrado: la aplicación de citas comparte la tabla y lee y escribe el historial
+    // como texto plano (ficha y formulario del paciente)
     @Column(columnDefinition = "TEXT")
     private String historial;
 
@@ -1,9 +1,15 @@
 package com.centromedico.gestion_pacientes.repository;
 
 
+import com.centromedico.gestion_pacientes.dto.CitaDisponible;
+import com.centromedico.gestion_pacientes.dto.EventoHistorial;
 import com.centromedico.gestion_pacientes.entity.Cita;
 import com.centromedico.gestion_pacientes.entity.Estado;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -69,4 +75,51 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
      * @return Lista de citas ordenadas por fecha descendente (más reciente primero)
      */
     List<Cita> findByPacienteIdOrderByFechaHoraDesc(Long pacienteId);
-}
\ No newline at end of file
+
+    /**
+     * Lee un lote de entradas resumidas del historial de un paciente
+     * Paginación por clave: citas anteriores a (fecha, idLimite), de la más reciente a la más antigua
+     * @param pacienteId ID del paciente
+     * @param fecha Fecha de la última entrada de la página anterior
+     * @param idLimite A igual fecha, solo citas con ID menor que este
+     * @param pageable Tamaño del lote (página 0)
+     * @return Entradas de tipo CITA
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.EventoHistorial(" +
+            "c.id, c.fechaHora, c.motivo, m.nombre, c.estado) " +
+            "FROM Cita c LEFT JOIN c.medico m " +
+            "WHERE c.paciente.id = :pacienteId " +
+            "AND (c.fechaHora < :fecha OR (c.fechaHora = :fecha AND c.id < :idLimite)) " +
+            "ORDER BY c.fechaHora DESC, c.id DESC")
+    List<EventoHistorial> findEventosHistorial(
+            @Param("pacienteId") Long pacienteId,
+            @Param("fecha") LocalDateTime fecha,
+            @Param("idLimite") Long idLimite,
+            Pageable pageable
+    );
+
+    /**
+     * Busca las citas en un estado que todavía no tienen consulta (anti-join sobre consultas.cita_id)
+     * Se leen de la más reciente a la más antigua y solo hasta llenar la página
+     * @param estado Estado de la cita (REALIZADA)
+     * @param medicoId ID del médico, o null para todas
+     * @param texto Patrón LIKE en minúsculas sobre paciente, DNI y motivo, o null para no filtrar
+     * @param pageable Página a leer
+     * @return Página de citas sin consulta
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.CitaDisponible(" +
+            "c.id, c.fechaHora, c.motivo, p.nombre, p.apellidos, p.dni, m.nombre) " +
+            "FROM Cita c JOIN c.paciente p LEFT JOIN c.medico m " +
+            "WHERE c.estado = :estado " +
+            "AND (:medicoId IS NULL OR m.id = :medicoId) " +
+            "AND (:texto IS NULL OR LOWER(p.nombre) LIKE :texto OR LOWER(p.apellidos) LIKE :texto " +
+            "OR LOWER(p.dni) LIKE :texto OR LOWER(c.motivo) LIKE :texto) " +
+            "AND NOT EXISTS (SELECT 1 FROM Consulta co WHERE co.cita.id = c.id) " +
+            "ORDER BY c.fechaHora DESC, c.id DESC")
+    Slice<CitaDisponible> findSinConsulta(
+            @Param("estado") Estado estado,
+            @Param("medicoId") Long medicoId,
+            @Param("texto") String texto,
+            Pageable pageable
+    );
+}
@@ -1,10 +1,20 @@
 package com.centromedico.gestion_pacientes.repository;
 
 
+import com.centromedico.gestion_pacientes.dto.ConsultaIndexable;
+import com.centromedico.gestion_pacientes.dto.ConteoDiagnostico;
+import com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial;
+import com.centromedico.gestion_pacientes.dto.EventoHistorial;
+import com.centromedico.gestion_pacientes.dto.ResumenHistorialPaciente;
+import com.centromedico.gestion_pacientes.dto.VolumenMensualConsultas;
 import com.centromedico.gestion_pacientes.entity.Consulta;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -51,4 +61,128 @@ public interface ConsultaRepository extends JpaRepository<Consulta, Long> {
      * @return true si existe una consulta, false si no
      */
     boolean existsByCitaId(Long citaId);
-}
\ No newline at end of file
+
+    // ========================================
+    // ESTADÍSTICAS (consultas agregadas, sin cargar entidades)
+    // ========================================
+
+    /**
+     * Cuenta las consultas de un médico
+     * @param medicoId ID del médico
+     * @return Número de consultas
+     */
+    long countByMedicoId(Long medicoId);
+
+    /**
+     * Cuenta las consultas de un paciente
+     * @param pacienteId ID del paciente
+     * @return Número de consultas
+     */
+    long countByPacienteId(Long pacienteId);
+
+    /**
+     * Cuenta las consultas de cada médico por mes desde una fecha
+     * @param desde Inicio del periodo (incluido)
+     * @param medicoId Si no es null, solo las de este médico
+     * @return Filas (médico, año, mes, total) ordenadas por médico y mes
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.VolumenMensualConsultas(" +
+            "m.id, m.nombre, YEAR(c.fechaConsulta), MONTH(c.fechaConsulta), COUNT(c)) " +
+            "FROM Consulta c JOIN c.medico m " +
+            "WHERE c.fechaConsulta >= :desde AND (:medicoId IS NULL OR m.id = :medicoId) " +
+            "GROUP BY m.id, m.nombre, YEAR(c.fechaConsulta), MONTH(c.fechaConsulta) " +
+            "ORDER BY m.nombre, m.id, YEAR(c.fechaConsulta), MONTH(c.fechaConsulta)")
+    List<VolumenMensualConsultas> contarPorMedicoYMes(
+            @Param("desde") LocalDateTime desde,
+            @Param("medicoId") Long medicoId
+    );
+
+    /**
+     * Cuenta las consultas de cada diagnóstico desde una fecha, de más a menos frecuente
+     * Agrupa por el índice ciego (diagnostico_indice): la BD no ve ni descifra el texto
+     * @param desde Inicio del periodo (incluido)
+     * @param medicoId Si no es null, solo las consultas de este médico
+     * @param pageable Número de diagnósticos
+     * @return Filas (índice, total, una consulta del grupo)
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.ConteoDiagnostico(" +
+            "c.diagnosticoIndice, COUNT(c), MIN(c.id)) " +
+            "FROM Consulta c " +
+            "WHERE c.fechaConsulta >= :desde AND c.diagnosticoIndice IS NOT NULL AND c.diagnosticoIndice <> '' " +
+            "AND (:medicoId IS NULL OR c.medico.id = :medicoId) " +
+            "GROUP BY c.diagnosticoIndice " +
+            "ORDER BY COUNT(c) DESC, MIN(c.id)")
+    List<ConteoDiagnostico> contarPorDiagnostico(
+            @Param("desde") LocalDateTime desde,
+            @Param("medicoId") Long medicoId,
+            Pageable pageable
+    );
+
+    /**
+     * Lee un lote de consultas para el índice de búsqueda clínica, en orden de ID
+     * @param despuesId Último ID del lote anterior (0 para empezar)
+     * @param pageable Tamaño del lote (página 0)
+     * @return Datos de las consultas del lote
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.ConsultaIndexable(" +
+            "c.id, m.id, p.id, c.fechaConsulta, c.motivoConsulta, c.sintomas, c.diagnostico, c.tratamiento) " +
+            "FROM Consulta c LEFT JOIN c.medico m LEFT JOIN c.paciente p " +
+            "WHERE c.id > :despuesId ORDER BY c.id")
+    List<ConsultaIndexable> findParaIndexar(@Param("despuesId") Long despuesId, Pageable pageable);
+
+    /**
+     * Carga las consultas indicadas con su paciente y médico (resultados de una búsqueda)
+     * @param ids IDs de las consultas
+     * @return Consultas encontradas, en cualquier orden
+     */
+    @Query("SELECT c FROM Consulta c LEFT JOIN FETCH c.paciente LEFT JOIN FETCH c.medico WHERE c.id IN :ids")
+    List<Consulta> findConPacienteYMedicoByIdIn(@Param("ids") List<Long> ids);
+
+    // ========================================
+    // HISTORIAL DEL PACIENTE
+    // ========================================
+
+    /**
+     * Lee un lote de entradas resumidas del historial (sin los campos TEXT completos)
+     * Paginación por clave: consultas anteriores a (fecha, idLimite), de la más reciente a la más antigua
+     * @param pacienteId ID del paciente
+     * @param fecha Fecha de la última entrada de la página anterior
+     * @param idLimite A igual fecha, solo consultas con ID menor que este
+     * @param pageable Tamaño del lote (página 0)
+     * @return Entradas de tipo CONSULTA
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.EventoHistorial(" +
+            "c.id, c.fechaConsulta, SUBSTRING(c.motivoConsulta, 1, " + EventoHistorial.LONGITUD_MOTIVO + "), " +
+            "m.nombre, ci.id, c.proximaRevision) " +
+            "FROM Consulta c LEFT JOIN c.medico m LEFT JOIN c.cita ci " +
+            "WHERE c.paciente.id = :pacienteId " +
+            "AND (c.fechaConsulta < :fecha OR (c.fechaConsulta = :fecha AND c.id < :idLimite)) " +
+            "ORDER BY c.fechaConsulta DESC, c.id DESC")
+    List<EventoHistorial> findEventosHistorial(
+            @Param("pacienteId") Long pacienteId,
+            @Param("fecha") LocalDateTime fecha,
+            @Param("idLimite") Long idLimite,
+            Pageable pageable
+    );
+
+    /**
+     * Carga los textos clínicos de una consulta de un paciente
+     * @param id ID de la consulta
+     * @param pacienteId ID del paciente (la consulta debe ser suya)
+     * @return Optional con los textos
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial(" +
+            "c.id, c.motivoConsulta, c.sintomas, c.diagnostico, c.tratamiento, c.observaciones) " +
+            "FROM Consulta c WHERE c.id = :id AND c.paciente.id = :pacienteId")
+    Optional<DetalleConsultaHistorial> findDetalleHistorial(@Param("id") Long id, @Param("pacienteId") Long pacienteId);
+
+    /**
+     * Calcula las estadísticas del historial de un paciente
+     * @param pacienteId ID del paciente
+     * @return Total de consultas, la más reciente y las que tienen seguimiento
+     */
+    @Query("SELECT new com.centromedico.gestion_pacientes.dto.ResumenHistorialPaciente(" +
+            "COUNT(c), MAX(c.fechaConsulta), COUNT(c.proximaRevision)) " +
+            "FROM Consulta c WHERE c.paciente.id = :pacienteId")
+    ResumenHistorialPaciente obtenerResumenHistorial(@Param("pacienteId") Long pacienteId);
+}
@@ -1,5 +1,9 @@
 package com.centromedico.gestion_pacientes.service;
 
+import com.centromedico.gestion_pacientes.dto.CampoClinico;
+import com.centromedico.gestion_pacientes.dto.CitaDisponible;
+import com.centromedico.gestion_pacientes.dto.PaginaCitasDisponibles;
+import com.centromedico.gestion_pacientes.dto.ResultadoBusquedaConsulta;
 import com.centromedico.gestion_pacientes.entity.Cita;
 import com.centromedico.gestion_pacientes.entity.Consulta;
 import com.centromedico.gestion_pacientes.entity.Estado;
@@ -8,11 +12,17 @@ import com.centromedico.gestion_pacientes.entity.Usuario;
 import com.centromedico.gestion_pacientes.repository.CitaRepository;
 import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Servicio para la gestión de consultas médicas
@@ -23,8 +33,16 @@ import java.util.Optional;
 @Transactional
 public class ConsultaService {
 
+    /** Resultados máximos de una búsqueda clínica */
+    public static final int LIMITE_BUSQUEDA = 50;
+
+    /** Citas por página en el selector de citas del formulario de nueva consulta */
+    public static final int TAMANO_PAGINA_CITAS = 10;
+
     private final ConsultaRepository consultaRepository;
     private final CitaRepository citaRepository;
+    private final IndiceClinicoConsultas indiceClinico;
+    private final EstadisticasConsultasService estadisticasService;
 
     // ============================================
     // CREAR CONSULTA
@@ -74,7 +92,10 @@ public class ConsultaService {
             }
         }
 
-        return consultaRepository.save(consulta);
+        Consulta guardada = consultaRepository.save(consulta);
+        indiceClinico.indexarAlConfirmar(guardada);
+        estadisticasService.invalidarAlConfirmar();
+        return guardada;
     }
 
     // ============================================
@@ -142,6 +163,26 @@ public class ConsultaService {
         return consultaRepository.existsByCitaId(citaId);
     }
 
+    /**
+     * Busca las citas realizadas que todavía no tienen consulta
+     * MEDICO solo ve sus propias citas; ADMIN ve todas
+     * @param texto Texto a buscar en el nombre, apellidos o DNI del paciente y en el motivo (opcional)
+     * @param pagina Número de página (desde 0)
+     * @param usuario Usuario que busca
+     * @return Página de citas, de la más reciente a la más antigua
+     */
+    @Transactional(readOnly = true)
+    public PaginaCitasDisponibles buscarCitasSinConsulta(String texto, int pagina, Usuario usuario) {
+        Long medicoId = usuario.getRol() == Rol.MEDICO ? usuario.getId() : null;
+        String patron = texto == null || texto.isBlank()
+                ? null
+                : "%" + texto.trim().toLowerCase() + "%";
+
+        Slice<CitaDisponible> citas = citaRepository.findSinConsulta(Estado.REALIZADA, medicoId, patron,
+                PageRequest.of(Math.max(pagina, 0), TAMANO_PAGINA_CITAS));
+        return new PaginaCitasDisponibles(citas.getContent(), citas.hasNext());
+    }
+
     // ============================================
     // ACTUALIZAR CONSULTA
     // ============================================
@@ -168,7 +209,9 @@ public class ConsultaService {
         consultaExistente.setObservaciones(consultaActualizada.getObservaciones());
         consultaExistente.setProximaRevision(consultaActualizada.getProximaRevision());
 
-        return consultaRepository.save(consultaExistente);
+        Consulta guardada = consultaRepository.save(consultaExistente);
+        indiceClinico.indexarAlConfirmar(guardada);
+        return guardada;
     }
 
     // ============================================
@@ -194,6 +237,56 @@ public class ConsultaService {
         }
 
         consultaRepository.deleteById(id);
+        indiceClinico.eliminarAlConfirmar(id);
+        estadisticasService.invalidarAlConfirmar();
+    }
+
+    // ============================================
+    // BÚSQUEDA CLÍNICA
+    // ============================================
+
+    /**
+     * Busca consultas por el texto de sus síntomas, diagnóstico, tratamiento o motivo
+     * Los permisos se aplican al buscar:
+     * - ENFERMERO solo busca en motivo y síntomas (no en los campos sensibles)
+     * - MEDICO solo encuentra sus propias consultas
+     * - ADMIN busca en todo
+     *
+     * @param texto Términos a buscar (el último puede estar incompleto)
+     * @param usuario Usuario que busca
+     * @return Hasta LIMITE_BUSQUEDA resultados, los más relevantes primero
+     */
+    @Transactional(readOnly = true)
+    public List<ResultadoBusquedaConsulta> buscarConsultas(String texto, Usuario usuario) {
+        Set<CampoClinico> campos = CampoClinico.visiblesPara(usuario.getRol());
+        Long medicoId = usuario.getRol() == Rol.MEDICO ? usuario.getId() : null;
+
+        List<IndiceClinicoConsultas.Coincidencia> coincidencias =
+                indiceClinico.buscar(texto, campos, medicoId, LIMITE_BUSQUEDA);
+        if (coincidencias.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Consulta> consultas = consultaRepository.findConPacienteYMedicoByIdIn(
+                        coincidencias.stream().map(IndiceClinicoConsultas.Coincidencia::consultaId).toList())
+                .stream()
+                .collect(Collectors.toMap(Consulta::getId, Function.identity()));
+
+        // Las consultas borradas entre la búsqueda y la carga se omiten
+        return coincidencias.stream()
+                .filter(coincidencia -> consultas.containsKey(coincidencia.consultaId()))
+                .map(coincidencia -> new ResultadoBusquedaConsulta(
+                        consultas.get(coincidencia.consultaId()),
+                        coincidencia.campos(),
+                        coincidencia.puntuacion()))
+                .toList();
+    }
+
+    /**
+     * Indica si el índice de búsqueda clínica ya está completo
+     */
+    public boolean isBusquedaDisponible() {
+        return indiceClinico.isListo();
     }
 
     // ============================================
@@ -206,7 +299,7 @@ public class ConsultaService {
      * @return Número de consultas
      */
     public long contarConsultasPorMedico(Long medicoId) {
-        return consultaRepository.findByMedicoId(medicoId).size();
+        return consultaRepository.countByMedicoId(medicoId);
     }
 
     /**
@@ -215,7 +308,7 @@ public class ConsultaService {
      * @return Número de consultas
      */
     public long contarConsultasPorPaciente(Long pacienteId) {
-        return consultaRepository.findByPacienteId(pacienteId).size();
+        return consultaRepository.countByPacienteId(pacienteId);
     }
 
     // ============================================
@@ -0,0 +1,208 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.config.IndiceDiagnostico;
+import com.centromedico.gestion_pacientes.dto.ConteoDiagnostico;
+import com.centromedico.gestion_pacientes.dto.DiagnosticoFrecuente;
+import com.centromedico.gestion_pacientes.dto.EstadisticasConsultas;
+import com.centromedico.gestion_pacientes.dto.VolumenConsultasMedico;
+import com.centromedico.gestion_pacientes.dto.VolumenMensualConsultas;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Estadísticas de consultas para el dashboard
+ * - Total de consultas (globales o de un médico)
+ * - Consultas por médico y mes de los últimos MESES_VOLUMEN meses
+ * - Diagnósticos más frecuentes de los últimos MESES_DIAGNOSTICOS meses
+ *
+ * Todo se calcula con consultas agrupadas en la BD (no se cargan consultas). Los diagnósticos
+ * están cifrados, así que se agrupan por su índice ciego (IndiceDiagnostico) y solo se descifra
+ * el texto de los TOP_DIAGNOSTICOS más frecuentes.
+ * Todo se guarda en caché durante un tiempo corto (consultas.estadisticas.ttl, 60 s por defecto).
+ * Al crear o eliminar una consulta la caché se vacía cuando la transacción hace commit.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class EstadisticasConsultasService {
+
+    /** Meses de la tabla de consultas por médico (incluido el actual) */
+    public static final int MESES_VOLUMEN = 6;
+
+    /** Meses que se tienen en cuenta para los diagnósticos frecuentes */
+    public static final int MESES_DIAGNOSTICOS = 12;
+
+    /** Número de diagnósticos frecuentes */
+    public static final int TOP_DIAGNOSTICOS = 10;
+
+    // Clave de la caché para las estadísticas globales (las de un médico usan su ID)
+    private static final Long GLOBALES = 0L;
+
+    private final ConsultaRepository consultaRepository;
+
+    @Value("${consultas.estadisticas.ttl:60s}")
+    private Duration ttl = Duration.ofSeconds(60);
+
+    private final Map<Object, Entrada<?>> cache = new ConcurrentHashMap<>();
+
+    private record Entrada<T>(T valor, long expiraNanos) {
+    }
+
+    private record ClaveTotal(Long medicoId) {
+    }
+
+    // ============================================
+    // LECTURA
+    // ============================================
+
+    /**
+     * Cuenta todas las consultas
+     * @return Número de consultas
+     */
+    public long contarTodas() {
+        return enCache(new ClaveTotal(null), consultaRepository::count);
+    }
+
+    /**
+     * Cuenta las consultas de un médico
+     * @param medicoId ID del médico
+     * @return Número de consultas
+     */
+    public long contarPorMedico(Long medicoId) {
+        return enCache(new ClaveTotal(medicoId), () -> consultaRepository.countByMedicoId(medicoId));
+    }
+
+    /**
+     * Obtiene las estadísticas de todos los médicos
+     * Incluye diagnósticos: solo para ADMIN
+     */
+    public EstadisticasConsultas obtenerGlobales() {
+        return enCache(GLOBALES, () -> calcular(null));
+    }
+
+    /**
+     * Obtiene las estadísticas de un médico
+     * @param medicoId ID del médico
+     */
+    public EstadisticasConsultas obtenerDeMedico(Long medicoId) {
+        Objects.requireNonNull(medicoId, "medicoId");
+        return enCache(medicoId, () -> calcular(medicoId));
+    }
+
+    // ============================================
+    // INVALIDACIÓN
+    // ============================================
+
+    /**
+     * Vacía la caché cuando la transacción actual haga commit (o ya, si no hay transacción)
+     * Lo llama ConsultaService al crear y eliminar consultas
+     */
+    public void invalidarAlConfirmar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.clear();
+                }
+            });
+        } else {
+            cache.clear();
+        }
+    }
+
+    // ============================================
+    // CÁLCULO
+    // ============================================
+
+    private EstadisticasConsultas calcular(Long medicoId) {
+        YearMonth actual = YearMonth.now();
+        List<YearMonth> meses = new ArrayList<>(MESES_VOLUMEN);
+        for (int i = MESES_VOLUMEN - 1; i >= 0; i--) {
+            meses.add(actual.minusMonths(i));
+        }
+
+        // Filas (médico, año, mes, total) -> una fila por médico con un valor por mes
+        Map<Long, String> nombres = new LinkedHashMap<>();
+        Map<Long, Long[]> porMedico = new LinkedHashMap<>();
+        for (VolumenMensualConsultas fila : consultaRepository.contarPorMedicoYMes(
+                meses.get(0).atDay(1).atStartOfDay(), medicoId)) {
+            nombres.putIfAbsent(fila.medicoId(), fila.medico());
+            Long[] totales = porMedico.computeIfAbsent(fila.medicoId(), id -> {
+                Long[] ceros = new Long[MESES_VOLUMEN];
+                Arrays.fill(ceros, 0L);
+                return ceros;
+            });
+            int indice = meses.indexOf(YearMonth.of(fila.anio(), fila.mes()));
+            if (indice >= 0) {
+                totales[indice] = fila.total();
+            }
+        }
+        List<VolumenConsultasMedico> volumen = porMedico.entrySet().stream()
+                .map(e -> new VolumenConsultasMedico(e.getKey(), nombres.get(e.getKey()), List.of(e.getValue()),
+                        Arrays.stream(e.getValue()).mapToLong(Long::longValue).sum()))
+                .toList();
+
+        List<DiagnosticoFrecuente> diagnosticos = contarDiagnosticos(
+                actual.minusMonths(MESES_DIAGNOSTICOS - 1).atDay(1).atStartOfDay(), medicoId);
+
+        long total = medicoId == null ? contarTodas() : contarPorMedico(medicoId);
+        return new EstadisticasConsultas(total, List.copyOf(meses), volumen, diagnosticos, LocalDateTime.now());
+    }
+
+    /**
+     * Cuenta los diagnósticos agrupando en la BD por su índice ciego
+     * (en minúsculas y por sus primeros IndiceDiagnostico.LONGITUD caracteres)
+     * Solo se descifra una consulta de cada uno de los TOP_DIAGNOSTICOS grupos, para mostrar el texto.
+     * A igual total se ordenan por texto; en el corte del último puesto gana el grupo con la consulta más antigua.
+     */
+    private List<DiagnosticoFrecuente> contarDiagnosticos(LocalDateTime desde, Long medicoId) {
+        List<ConteoDiagnostico> grupos = consultaRepository.contarPorDiagnostico(
+                desde, medicoId, PageRequest.of(0, TOP_DIAGNOSTICOS));
+        if (grupos.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, String> textos = consultaRepository.findAllById(
+                        grupos.stream().map(ConteoDiagnostico::consultaId).toList()).stream()
+                .collect(Collectors.toMap(Consulta::getId, consulta -> IndiceDiagnostico.normalizar(consulta.getDiagnostico())));
+        return grupos.stream()
+                .map(grupo -> new DiagnosticoFrecuente(textos.get(grupo.consultaId()), grupo.total()))
+                .sorted(Comparator.comparing(DiagnosticoFrecuente::total).reversed()
+                        .thenComparing(DiagnosticoFrecuente::diagnostico))
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T enCache(Object clave, Supplier<T> calculo) {
+        long ahora = System.nanoTime();
+        Entrada<?> entrada = cache.get(clave);
+        if (entrada != null && ahora - entrada.expiraNanos() < 0) {
+            return (T) entrada.valor();
+        }
+        // Si dos peticiones calculan a la vez la misma clave, gana la última: el resultado es el mismo
+        T valor = calculo.get();
+        cache.put(clave, new Entrada<>(valor, ahora + ttl.toNanos()));
+        return valor;
+    }
+}
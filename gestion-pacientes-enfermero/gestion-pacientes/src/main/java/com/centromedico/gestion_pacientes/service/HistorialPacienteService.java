@@ -0,0 +1,115 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.CampoClinico;
+import com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial;
+import com.centromedico.gestion_pacientes.dto.EventoHistorial;
+import com.centromedico.gestion_pacientes.dto.PaginaHistorial;
+import com.centromedico.gestion_pacientes.dto.ResumenHistorialPaciente;
+import com.centromedico.gestion_pacientes.dto.TipoEventoHistorial;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Historial de un paciente: sus citas y consultas mezcladas por fecha
+ *
+ * Se pagina por clave (fecha, tipo, ID) en vez de por número de página: cada página
+ * lee como mucho tamaño + 1 filas de cada tabla, sin importar lo largo que sea el historial.
+ * Las entradas son resúmenes; los textos clínicos de una consulta se cargan al desplegarla.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class HistorialPacienteService {
+
+    /** Entradas por página por defecto */
+    public static final int TAMANO_PAGINA = 20;
+
+    /** Entradas por página como máximo */
+    public static final int TAMANO_MAXIMO = 100;
+
+    // Fecha de la "entrada anterior" de la primera página (cabe en un DATETIME de MySQL)
+    private static final LocalDateTime SIN_CURSOR = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private static final Comparator<EventoHistorial> MAS_RECIENTE_PRIMERO =
+            Comparator.comparing(EventoHistorial::fecha, Comparator.reverseOrder())
+                    .thenComparing(EventoHistorial::tipo)
+                    .thenComparing(EventoHistorial::id, Comparator.reverseOrder());
+
+    private final ConsultaRepository consultaRepository;
+    private final CitaRepository citaRepository;
+
+    /**
+     * Obtiene una página del historial
+     * Para la primera página, fecha, tipo e id van a null; para las siguientes,
+     * son los de la última entrada de la página anterior
+     * @param pacienteId ID del paciente
+     * @param fecha Fecha de la última entrada vista
+     * @param tipo Tipo de la última entrada vista
+     * @param id ID de la última entrada vista
+     * @param tamano Entradas por página (se limita a TAMANO_MAXIMO)
+     * @return Página con las entradas anteriores a la última vista
+     */
+    public PaginaHistorial obtenerPagina(Long pacienteId, LocalDateTime fecha, TipoEventoHistorial tipo,
+                                         Long id, int tamano) {
+        int limite = Math.max(1, Math.min(tamano, TAMANO_MAXIMO));
+        boolean primera = fecha == null || tipo == null || id == null;
+        LocalDateTime desde = primera ? SIN_CURSOR : fecha;
+
+        // A igual fecha van primero las consultas y luego las citas (ambas por ID descendente):
+        // tras una consulta quedan las consultas de ID menor y todas las citas;
+        // tras una cita solo quedan las citas de ID menor
+        long limiteConsultas = primera ? Long.MAX_VALUE : (tipo == TipoEventoHistorial.CONSULTA ? id : Long.MIN_VALUE);
+        long limiteCitas = primera || tipo == TipoEventoHistorial.CONSULTA ? Long.MAX_VALUE : id;
+
+        PageRequest lote = PageRequest.of(0, limite + 1);
+        List<EventoHistorial> eventos = new ArrayList<>(2 * (limite + 1));
+        eventos.addAll(consultaRepository.findEventosHistorial(pacienteId, desde, limiteConsultas, lote));
+        eventos.addAll(citaRepository.findEventosHistorial(pacienteId, desde, limiteCitas, lote));
+        eventos.sort(MAS_RECIENTE_PRIMERO);
+
+        boolean hayMas = eventos.size() > limite;
+        return new PaginaHistorial(hayMas ? List.copyOf(eventos.subList(0, limite)) : eventos, hayMas);
+    }
+
+    /**
+     * Carga los textos clínicos de una consulta del historial
+     * ENFERMERO solo recibe motivo y síntomas
+     * @param pacienteId ID del paciente
+     * @param consultaId ID de la consulta
+     * @param usuario Usuario que despliega la entrada
+     * @return Textos de la consulta
+     * @throws IllegalArgumentException si la consulta no es de ese paciente
+     * @throws AccessDeniedException si el rol no puede ver consultas
+     */
+    public DetalleConsultaHistorial obtenerDetalleConsulta(Long pacienteId, Long consultaId, Usuario usuario) {
+        Set<CampoClinico> campos = CampoClinico.visiblesPara(usuario.getRol());
+        if (campos.isEmpty()) {
+            throw new AccessDeniedException("No tienes permiso para ver consultas");
+        }
+
+        DetalleConsultaHistorial detalle = consultaRepository.findDetalleHistorial(consultaId, pacienteId)
+                .orElseThrow(() -> new IllegalArgumentException("Consulta no encontrada"));
+        return campos.contains(CampoClinico.DIAGNOSTICO) ? detalle : detalle.sinCamposSensibles();
+    }
+
+    /**
+     * Calcula las estadísticas del historial (total, última consulta y seguimientos)
+     * @param pacienteId ID del paciente
+     * @return Resumen del historial
+     */
+    public ResumenHistorialPaciente obtenerResumen(Long pacienteId) {
+        return consultaRepository.obtenerResumenHistorial(pacienteId);
+    }
+}
@@ -0,0 +1,401 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.config.CifradoClinico;
+import com.centromedico.gestion_pacientes.dto.CampoClinico;
+import com.centromedico.gestion_pacientes.dto.ConsultaIndexable;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria sobre los textos clínicos de las consultas
+ * (motivo, síntomas, diagnóstico y tratamiento)
+ *
+ * Por cada campo guarda un diccionario ordenado término -> IDs de consulta, así que
+ * una búsqueda no recorre la tabla consultas: solo lee las listas de los términos buscados.
+ * Los términos se normalizan (minúsculas, sin tildes) y el último término de la
+ * búsqueda se trata como prefijo ("cefal" encuentra "cefalea").
+ *
+ * El índice se reconstruye en segundo plano al arrancar y se actualiza cuando
+ * la transacción que crea, modifica o elimina la consulta hace commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class IndiceClinicoConsultas {
+
+    /** Consultas leídas por lote al reconstruir */
+    public static final int TAMANO_LOTE = 500;
+
+    /** Longitud mínima de un término para buscarlo como prefijo */
+    private static final int MINIMO_PREFIJO = 3;
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    // "no" y "sin" no se descartan: cambian el sentido clínico
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "de", "la", "el", "en", "y", "con", "por", "para", "los", "las", "del", "un", "una",
+            "al", "se", "que", "su", "sus", "lo", "le", "es", "a", "o", "e", "u", "muy", "mas"
+    );
+
+    private final ConsultaRepository consultaRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Diccionario de cada campo: término -> consultas que lo contienen
+    private final Map<CampoClinico, TreeMap<String, Set<Long>>> terminos = new EnumMap<>(CampoClinico.class);
+
+    // Documento indexado de cada consulta, para poder quitarlo y filtrar por médico
+    private final Map<Long, Documento> documentos = new HashMap<>();
+
+    // Consultas modificadas mientras se reconstruye: su versión en el índice es más nueva
+    private Set<Long> tocadasDuranteReconstruccion;
+
+    private volatile boolean listo;
+
+    {
+        for (CampoClinico campo : CampoClinico.values()) {
+            terminos.put(campo, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Coincidencia de una búsqueda
+     * @param consultaId ID de la consulta
+     * @param campos Campos en los que aparecen los términos
+     * @param puntuacion Suma de los pesos de los campos coincidentes por término
+     * @param fechaConsulta Fecha de la consulta (desempate: más reciente primero)
+     */
+    public record Coincidencia(Long consultaId, Set<CampoClinico> campos, int puntuacion, LocalDateTime fechaConsulta) {
+    }
+
+    private record Documento(Long medicoId, LocalDateTime fechaConsulta, Map<CampoClinico, Set<String>> terminos) {
+    }
+
+    // ============================================
+    // RECONSTRUCCIÓN
+    // ============================================
+
+    /**
+     * Reconstruye el índice en un hilo aparte una vez que la aplicación está lista
+     * Mientras tanto las búsquedas devuelven lo indexado hasta el momento
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirEnSegundoPlano() {
+        Thread hilo = new Thread(this::reconstruir, "indice-consultas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Vacía el índice y lo vuelve a llenar desde la base de datos, por lotes de TAMANO_LOTE
+     * Las altas, cambios y bajas que llegan mientras tanto se aplican directamente
+     * y no se sobrescriben con los datos leídos antes
+     */
+    public void reconstruir() {
+        lock.writeLock().lock();
+        try {
+            listo = false;
+            terminos.values().forEach(Map::clear);
+            documentos.clear();
+            tocadasDuranteReconstruccion = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean completa = false;
+        try {
+            Long despuesId = 0L;
+            List<ConsultaIndexable> lote;
+            do {
+                Long desde = despuesId;
+                // Lectura masiva: sin la caché de textos descifrados
+                lote = CifradoClinico.sinCache(
+                        () -> consultaRepository.findParaIndexar(desde, PageRequest.of(0, TAMANO_LOTE)));
+                lock.writeLock().lock();
+                try {
+                    for (ConsultaIndexable consulta : lote) {
+                        if (!tocadasDuranteReconstruccion.contains(consulta.id())) {
+                            indexar(consulta);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!lote.isEmpty()) {
+                    despuesId = lote.get(lote.size() - 1).id();
+                }
+            } while (lote.size() == TAMANO_LOTE);
+            completa = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                tocadasDuranteReconstruccion = null;
+                listo = completa;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Indica si la reconstrucción inicial ha terminado
+     */
+    public boolean isListo() {
+        return listo;
+    }
+
+    /**
+     * Número de consultas indexadas
+     */
+    public int getTotalDocumentos() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============================================
+    // BÚSQUEDA
+    // ============================================
+
+    /**
+     * Busca las consultas que contienen todos los términos del texto
+     * Cada término puede aparecer en cualquiera de los campos permitidos
+     * @param texto Texto buscado
+     * @param campos Campos en los que se puede buscar (según el rol del usuario)
+     * @param medicoId Si no es null, solo consultas de este médico
+     * @param limite Número máximo de resultados
+     * @return Coincidencias ordenadas por puntuación y fecha (más reciente primero)
+     */
+    public List<Coincidencia> buscar(String texto, Set<CampoClinico> campos, Long medicoId, int limite) {
+        List<String> consulta = tokenizar(texto);
+        if (consulta.isEmpty() || campos.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Set<CampoClinico>> camposPorConsulta = null;
+            Map<Long, Integer> puntuaciones = new HashMap<>();
+
+            for (int i = 0; i < consulta.size(); i++) {
+                String termino = consulta.get(i);
+                boolean prefijo = i == consulta.size() - 1 && termino.length() >= MINIMO_PREFIJO;
+
+                Map<Long, Set<CampoClinico>> delTermino = new HashMap<>();
+                for (CampoClinico campo : campos) {
+                    for (Set<Long> ids : listas(terminos.get(campo), termino, prefijo)) {
+                        for (Long id : ids) {
+                            if (camposPorConsulta == null || camposPorConsulta.containsKey(id)) {
+                                delTermino.computeIfAbsent(id, k -> EnumSet.noneOf(CampoClinico.class)).add(campo);
+                            }
+                        }
+                    }
+                }
+
+                // Todas las consultas deben contener todos los términos
+                if (camposPorConsulta == null) {
+                    camposPorConsulta = delTermino;
+                } else {
+                    camposPorConsulta.keySet().retainAll(delTermino.keySet());
+                    for (Map.Entry<Long, Set<CampoClinico>> entrada : camposPorConsulta.entrySet()) {
+                        entrada.getValue().addAll(delTermino.get(entrada.getKey()));
+                    }
+                }
+                delTermino.forEach((id, camposTermino) -> puntuaciones.merge(id, peso(camposTermino), Integer::sum));
+
+                if (camposPorConsulta.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<Coincidencia> coincidencias = new ArrayList<>();
+            for (Map.Entry<Long, Set<CampoClinico>> entrada : camposPorConsulta.entrySet()) {
+                Documento documento = documentos.get(entrada.getKey());
+                if (medicoId == null || medicoId.equals(documento.medicoId())) {
+                    coincidencias.add(new Coincidencia(entrada.getKey(), entrada.getValue(),
+                            puntuaciones.get(entrada.getKey()), documento.fechaConsulta()));
+                }
+            }
+            coincidencias.sort(Comparator.comparingInt(Coincidencia::puntuacion).reversed()
+                    .thenComparing(Coincidencia::fechaConsulta, Comparator.nullsLast(Comparator.reverseOrder())));
+            return coincidencias.size() > limite ? List.copyOf(coincidencias.subList(0, limite)) : coincidencias;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Iterable<Set<Long>> listas(TreeMap<String, Set<Long>> diccionario, String termino, boolean prefijo) {
+        if (prefijo) {
+            return diccionario.subMap(termino, true, termino + Character.MAX_VALUE, false).values();
+        }
+        Set<Long> ids = diccionario.get(termino);
+        return ids != null ? List.of(ids) : List.of();
+    }
+
+    private static int peso(Set<CampoClinico> campos) {
+        int total = 0;
+        for (CampoClinico campo : campos) {
+            total += campo.getPeso();
+        }
+        return total;
+    }
+
+    // ============================================
+    // MANTENIMIENTO DEL ÍNDICE
+    // ============================================
+
+    /**
+     * (Re)indexa una consulta cuando la transacción haga commit
+     * @param consulta Consulta creada o modificada
+     */
+    public void indexarAlConfirmar(Consulta consulta) {
+        ConsultaIndexable datos = ConsultaIndexable.de(consulta);
+        alConfirmar(() -> actualizar(datos));
+    }
+
+    /**
+     * Quita una consulta del índice cuando la transacción haga commit
+     * @param consultaId ID de la consulta eliminada
+     */
+    public void eliminarAlConfirmar(Long consultaId) {
+        alConfirmar(() -> eliminar(consultaId));
+    }
+
+    /**
+     * (Re)indexa una consulta inmediatamente
+     */
+    public void actualizar(ConsultaIndexable consulta) {
+        lock.writeLock().lock();
+        try {
+            marcarTocada(consulta.id());
+            desindexar(consulta.id());
+            indexar(consulta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita una consulta del índice inmediatamente
+     */
+    public void eliminar(Long consultaId) {
+        lock.writeLock().lock();
+        try {
+            marcarTocada(consultaId);
+            desindexar(consultaId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private void marcarTocada(Long consultaId) {
+        if (tocadasDuranteReconstruccion != null) {
+            tocadasDuranteReconstruccion.add(consultaId);
+        }
+    }
+
+    // Se llama con el cerrojo de escritura
+    private void indexar(ConsultaIndexable consulta) {
+        Map<CampoClinico, Set<String>> delDocumento = new EnumMap<>(CampoClinico.class);
+        for (CampoClinico campo : CampoClinico.values()) {
+            Set<String> delCampo = new LinkedHashSet<>(tokenizar(consulta.texto(campo)));
+            if (delCampo.isEmpty()) {
+                continue;
+            }
+            TreeMap<String, Set<Long>> diccionario = terminos.get(campo);
+            for (String termino : delCampo) {
+                diccionario.computeIfAbsent(termino, t -> new HashSet<>()).add(consulta.id());
+            }
+            delDocumento.put(campo, delCampo);
+        }
+        documentos.put(consulta.id(), new Documento(consulta.medicoId(), consulta.fechaConsulta(), delDocumento));
+    }
+
+    // Se llama con el cerrojo de escritura
+    private void desindexar(Long consultaId) {
+        Documento anterior = documentos.remove(consultaId);
+        if (anterior == null) {
+            return;
+        }
+        anterior.terminos().forEach((campo, delCampo) -> {
+            TreeMap<String, Set<Long>> diccionario = terminos.get(campo);
+            for (String termino : delCampo) {
+                Set<Long> ids = diccionario.get(termino);
+                if (ids != null) {
+                    ids.remove(consultaId);
+                    if (ids.isEmpty()) {
+                        diccionario.remove(termino);
+                    }
+                }
+            }
+        });
+    }
+
+    // ============================================
+    // ANÁLISIS DEL TEXTO
+    // ============================================
+
+    /**
+     * Separa un texto en términos normalizados: minúsculas, sin tildes,
+     * sin signos de puntuación ni palabras vacías
+     * @param texto Texto (puede ser null)
+     * @return Términos en el orden en que aparecen, sin repetir
+     */
+    public static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String normalizado = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+
+        Set<String> resultado = new LinkedHashSet<>();
+        for (String termino : SEPARADORES.split(normalizado)) {
+            if (!termino.isEmpty() && !PALABRAS_VACIAS.contains(termino)) {
+                resultado.add(termino);
+            }
+        }
+        return List.copyOf(resultado);
+    }
+}
@@ -0,0 +1,310 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.config.CifradoClinico;
+import com.centromedico.gestion_pacientes.config.IndiceDiagnostico;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Recifrado masivo de los textos clínicos con la clave activa
+ * - Cifra los valores en texto plano anteriores al cifrado
+ * - Rotación de claves: recifra los valores cifrados con claves antiguas
+ * - Rellena el índice ciego de los diagnósticos que no lo tienen (IndiceDiagnostico)
+ * - Devuelve a texto plano el historial de los pacientes que cifraron versiones anteriores:
+ *   la aplicación de citas comparte la tabla pacientes y lo lee y escribe en claro
+ *
+ * Se ejecuta en segundo plano al arrancar (clinico.cifrado.recifrado.al-arrancar).
+ * Antes de recorrer una tabla se buscan en la BD los IDs de las filas pendientes
+ * (algún valor que no empieza por "gcm:" + clave activa + ":", o un diagnóstico sin índice): si no hay ninguna, la tabla
+ * no se lee, así que un arranque normal cuesta una consulta por tabla y no descifra nada.
+ * El rango de IDs pendientes se reparte en tramos que recorren varios hilos a la vez
+ * (clinico.cifrado.recifrado.hilos); cada tramo lee solo las filas pendientes, por lotes
+ * de TAMANO_LOTE filas, y cada lote es una transacción.
+ *
+ * Va por JDBC y no por JPA: así no pasa por el conversor y ve el valor guardado.
+ * Cada UPDATE comprueba que la columna no ha cambiado desde que se leyó; si la aplicación
+ * la modificó mientras tanto, ya está cifrada con la clave activa y se deja como está.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecifradoClinicoService {
+
+    /** Filas leídas y actualizadas por lote */
+    public static final int TAMANO_LOTE = 500;
+
+    // Columnas cifradas con TextoClinicoConverter (nombres fijos, no vienen del usuario)
+    // El diagnóstico (primera columna de consultas) lleva además su índice ciego
+    private static final List<ColumnasCifradas> COLUMNAS = List.of(
+            new ColumnasCifradas("consultas", List.of("diagnostico", "tratamiento"), "diagnostico_indice")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final CifradoClinico cifrado;
+    private final IndiceDiagnostico indiceDiagnostico;
+
+    @Value("${clinico.cifrado.recifrado.hilos:4}")
+    private int hilos = 4;
+
+    @Value("${clinico.cifrado.recifrado.al-arrancar:true}")
+    private boolean alArrancar = true;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    /**
+     * @param indice Columna con el índice ciego de la primera columna (null si no tiene)
+     */
+    private record ColumnasCifradas(String tabla, List<String> columnas, String indice) {
+    }
+
+    private record Lote(int filas, long ultimoId, long recifrados) {
+    }
+
+    // ============================================
+    // EJECUCIÓN
+    // ============================================
+
+    /**
+     * Lanza el recifrado en un hilo aparte una vez que la aplicación está lista
+     * Mientras tanto se siguen leyendo los valores antiguos: el conversor descifra con cualquier clave conocida
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recifrarEnSegundoPlano() {
+        if (!alArrancar) {
+            return;
+        }
+        Thread hilo = new Thread(this::recifrarYRegistrar, "recifrado-clinico");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Recifrado de arranque: nadie espera su resultado, así que lo que pase queda en el log
+     */
+    private void recifrarYRegistrar() {
+        try {
+            long recifrados = recifrar();
+            if (recifrados > 0) {
+                log.info("Recifrado de datos clínicos terminado: {} valores cifrados con la clave {}",
+                        recifrados, cifrado.getClaveActiva());
+            }
+        } catch (RuntimeException e) {
+            log.error("Error en el recifrado de datos clínicos; lo que falta se recifrará en el próximo arranque", e);
+        }
+    }
+
+    /**
+     * Recifra con la clave activa todos los valores que no lo están
+     * y descifra el historial de los pacientes que aún esté cifrado
+     * @return Número de valores (celdas) recifrados o descifrados
+     * @throws IllegalStateException si ya hay un recifrado en curso
+     */
+    public long recifrar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay un recifrado de datos clínicos en curso");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "recifrado-clinico-tramo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        try {
+            long descifrados = CifradoClinico.sinCache(this::descifrarHistorial);
+
+            List<CompletableFuture<Long>> tramos = new ArrayList<>();
+            for (ColumnasCifradas columnas : COLUMNAS) {
+                // Solo el rango de las filas pendientes; sin pendientes no se lee la tabla
+                Object[] patrones = patrones(columnas);
+                Long[] rango = jdbcTemplate.queryForObject(
+                        "SELECT MIN(id), MAX(id) FROM " + columnas.tabla() + " WHERE " + pendientes(columnas),
+                        (rs, numero) -> new Long[]{rs.getObject(1, Long.class), rs.getObject(2, Long.class)},
+                        patrones);
+                Long minimo = rango[0];
+                Long maximo = rango[1];
+                if (minimo == null) {
+                    continue;
+                }
+
+                // Tramos (desde, hasta]: uno por hilo
+                long ancho = (maximo - minimo) / hilos + 1;
+                for (long desde = minimo - 1; desde < maximo; desde += ancho) {
+                    long inicio = desde;
+                    long fin = Math.min(desde + ancho, maximo);
+                    tramos.add(CompletableFuture.supplyAsync(
+                            () -> CifradoClinico.sinCache(() -> recifrarTramo(columnas, inicio, fin)), executor));
+                }
+            }
+            return descifrados + tramos.stream().mapToLong(CompletableFuture::join).sum();
+        } finally {
+            executor.shutdown();
+            enCurso.set(false);
+        }
+    }
+
+    /**
+     * Indica si hay un recifrado en curso
+     */
+    public boolean isEnCurso() {
+        return enCurso.get();
+    }
+
+    // ============================================
+    // TRAMOS Y LOTES
+    // ============================================
+
+    private long recifrarTramo(ColumnasCifradas columnas, long desde, long hasta) {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        long total = 0;
+        long despuesId = desde;
+        Lote lote;
+        do {
+            long inicio = despuesId;
+            lote = transaccion.execute(estado -> recifrarLote(columnas, inicio, hasta));
+            total += lote.recifrados();
+            despuesId = lote.ultimoId();
+        } while (lote.filas() == TAMANO_LOTE);
+        return total;
+    }
+
+    private Lote recifrarLote(ColumnasCifradas columnas, long despuesId, long hasta) {
+        List<String> nombres = columnas.columnas();
+        List<Object> parametros = new ArrayList<>(List.of(despuesId, hasta));
+        parametros.addAll(List.of(patrones(columnas)));
+        List<String> leidas = new ArrayList<>(nombres);
+        if (columnas.indice() != null) {
+            leidas.add(columnas.indice());
+        }
+        List<String[]> filas = jdbcTemplate.query(
+                "SELECT id, " + String.join(", ", leidas) + " FROM " + columnas.tabla() +
+                        " WHERE id > ? AND id <= ? AND (" + pendientes(columnas) + ") ORDER BY id LIMIT " + TAMANO_LOTE,
+                (rs, numero) -> {
+                    String[] fila = new String[leidas.size() + 1];
+                    fila[0] = rs.getString(1);
+                    for (int i = 0; i < leidas.size(); i++) {
+                        fila[i + 1] = rs.getString(i + 2);
+                    }
+                    return fila;
+                },
+                parametros.toArray());
+        if (filas.isEmpty()) {
+            return new Lote(0, despuesId, 0);
+        }
+
+        // Primero el índice: su UPDATE compara con el valor leído, que el recifrado cambia después
+        if (columnas.indice() != null) {
+            rellenarIndice(columnas, filas, leidas.size());
+        }
+
+        long recifrados = 0;
+        for (int i = 0; i < nombres.size(); i++) {
+            List<Object[]> cambios = new ArrayList<>();
+            for (String[] fila : filas) {
+                String valor = fila[i + 1];
+                if (!cifrado.cifradoConClaveActiva(valor)) {
+                    cambios.add(new Object[]{cifrado.cifrar(cifrado.descifrar(valor)), Long.valueOf(fila[0]), valor});
+                }
+            }
+            if (!cambios.isEmpty()) {
+                String columna = nombres.get(i);
+                jdbcTemplate.batchUpdate("UPDATE " + columnas.tabla() + " SET " + columna + " = ? " +
+                        "WHERE id = ? AND " + columna + " = ?", cambios);
+                recifrados += cambios.size();
+            }
+        }
+        return new Lote(filas.size(), Long.parseLong(filas.get(filas.size() - 1)[0]), recifrados);
+    }
+
+    /**
+     * Calcula el índice ciego de las filas que tienen valor en la primera columna y no tienen índice
+     * @param posicionIndice Posición del índice en la fila leída
+     */
+    private void rellenarIndice(ColumnasCifradas columnas, List<String[]> filas, int posicionIndice) {
+        String columna = columnas.columnas().get(0);
+        List<Object[]> cambios = new ArrayList<>();
+        for (String[] fila : filas) {
+            String valor = fila[1];
+            if (valor != null && fila[posicionIndice] == null) {
+                cambios.add(new Object[]{indiceDiagnostico.calcular(cifrado.descifrar(valor)), Long.valueOf(fila[0]), valor});
+            }
+        }
+        if (!cambios.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE " + columnas.tabla() + " SET " + columnas.indice() + " = ? " +
+                    "WHERE id = ? AND " + columna + " = ?", cambios);
+        }
+    }
+
+    /**
+     * Devuelve a texto plano, por lotes, el historial de los pacientes guardado cifrado
+     * Pocas filas (una por paciente): se recorre en un solo hilo
+     */
+    private long descifrarHistorial() {
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        long total = 0;
+        long despuesId = 0;
+        List<Object[]> cambios;
+        do {
+            long inicio = despuesId;
+            cambios = transaccion.execute(estado -> {
+                List<Object[]> lote = jdbcTemplate.query(
+                        "SELECT id, historial FROM pacientes WHERE id > ? AND historial LIKE ? ORDER BY id LIMIT " + TAMANO_LOTE,
+                        (rs, numero) -> new Object[]{cifrado.descifrar(rs.getString(2)), rs.getLong(1), rs.getString(2)},
+                        inicio, CifradoClinico.PREFIJO + "%");
+                if (!lote.isEmpty()) {
+                    jdbcTemplate.batchUpdate("UPDATE pacientes SET historial = ? WHERE id = ? AND historial = ?", lote);
+                }
+                return lote;
+            });
+            total += cambios.size();
+            if (!cambios.isEmpty()) {
+                despuesId = (Long) cambios.get(cambios.size() - 1)[1];
+            }
+        } while (cambios.size() == TAMANO_LOTE);
+        return total;
+    }
+
+    // ============================================
+    // FILAS PENDIENTES
+    // ============================================
+
+    /**
+     * Condición SQL de las filas con algún valor no cifrado con la clave activa
+     * o con valor en la primera columna pero sin índice
+     * Lleva un parámetro (patrones) por columna
+     */
+    private static String pendientes(ColumnasCifradas columnas) {
+        String condicion = columnas.columnas().stream()
+                .map(columna -> "(" + columna + " IS NOT NULL AND " + columna + " NOT LIKE ? ESCAPE '!')")
+                .collect(Collectors.joining(" OR "));
+        if (columnas.indice() != null) {
+            condicion += " OR (" + columnas.columnas().get(0) + " IS NOT NULL AND " + columnas.indice() + " IS NULL)";
+        }
+        return condicion;
+    }
+
+    /**
+     * Parámetros de pendientes(): el prefijo de la clave activa seguido de %
+     * El ID de la clave se escapa por si contiene comodines de LIKE
+     */
+    private Object[] patrones(ColumnasCifradas columnas) {
+        String prefijo = (CifradoClinico.PREFIJO + cifrado.getClaveActiva() + ":")
+                .replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return Collections.nCopies(columnas.columnas().size(), prefijo + "%").toArray();
+    }
+}
@@ -0,0 +1,67 @@
+package com.centromedico.gestion_pacientes;
+
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.Estado;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.CitaRepository;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import com.centromedico.gestion_pacientes.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Datos de prueba compartidos por las pruebas de integración
+ * Los nombres de usuario y los DNI son aleatorios para que las clases no choquen en la BD común
+ */
+@TestComponent
+@RequiredArgsConstructor
+public class DatosPrueba {
+
+	private final UsuarioRepository usuarioRepository;
+	private final PacienteRepository pacienteRepository;
+	private final CitaRepository citaRepository;
+
+	public Usuario crearUsuario(Rol rol) {
+		String username = rol.name().toLowerCase() + "-" + UUID.randomUUID();
+		Usuario usuario = new Usuario();
+		usuario.setUsername(username);
+		usuario.setEmail(username + "@centromedico.com");
+		usuario.setPasswordHash("hash");
+		usuario.setNombre(username);
+		usuario.setRol(rol);
+		usuario.setActivo(true);
+		return usuarioRepository.save(usuario);
+	}
+
+	public Paciente crearPaciente(Usuario medico) {
+		return crearPaciente(medico, "Paciente", "Prueba");
+	}
+
+	public Paciente crearPaciente(Usuario medico, String nombre, String apellidos) {
+		Paciente paciente = new Paciente();
+		paciente.setNombre(nombre);
+		paciente.setApellidos(apellidos);
+		paciente.setDni(UUID.randomUUID().toString().substring(0, 12));
+		paciente.setMedico(medico);
+		return pacienteRepository.save(paciente);
+	}
+
+	/**
+	 * Guarda una cita de 30 minutos directamente en el repositorio
+	 */
+	public Cita guardarCita(Paciente paciente, Usuario medico, LocalDateTime fechaHora, Estado estado, String motivo) {
+		Cita cita = new Cita();
+		cita.setPaciente(paciente);
+		cita.setMedico(medico);
+		cita.setFechaHora(fechaHora);
+		cita.setDuracionMinutos(30);
+		cita.setMotivo(motivo);
+		cita.setEstado(estado);
+		return citaRepository.save(cita);
+	}
+}
@@ -0,0 +1,92 @@
+package com.centromedico.gestion_pacientes.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del cifrado AES-GCM de los textos clínicos (sin Spring)
+ */
+class CifradoClinicoTests {
+
+	private static final String CLAVE_1 = "k1:X1Ez48obGLk0zhYRmyBpkS0jFumBnqfgX5Gm7qWhPCs=";
+	private static final String CLAVE_2 = "k2:3E5nPDkXdsVwJlsd5CttsU8XqmD5zaVIVehGmmSDUXw=";
+
+	@Test
+	void cifraConIvAleatorioYDescifra() {
+		CifradoClinico cifrado = new CifradoClinico(CLAVE_1, "k1", 0, Duration.ofMinutes(10));
+
+		String primero = cifrado.cifrar("Hipertensión arterial");
+		String segundo = cifrado.cifrar("Hipertensión arterial");
+
+		assertTrue(primero.startsWith("gcm:k1:"));
+		assertNotEquals(primero, segundo);
+		assertFalse(primero.contains("Hipertensión"));
+		assertEquals("Hipertensión arterial", cifrado.descifrar(primero));
+		assertEquals("Hipertensión arterial", cifrado.descifrar(segundo));
+		assertNull(cifrado.cifrar(null));
+		assertNull(cifrado.descifrar(null));
+	}
+
+	@Test
+	void textoPlanoAntiguoSeDevuelveTalCual() {
+		CifradoClinico cifrado = new CifradoClinico(CLAVE_1, "k1", 0, Duration.ofMinutes(10));
+
+		assertEquals("Gripe", cifrado.descifrar("Gripe"));
+		assertFalse(cifrado.cifradoConClaveActiva("Gripe"));
+	}
+
+	@Test
+	void trasRotarSeSiguenLeyendoLosValoresAntiguos() {
+		CifradoClinico antes = new CifradoClinico(CLAVE_1, "k1", 0, Duration.ofMinutes(10));
+		CifradoClinico despues = new CifradoClinico(CLAVE_1 + "," + CLAVE_2, "k2", 0, Duration.ofMinutes(10));
+		String antiguo = antes.cifrar("Lumbalgia");
+
+		assertEquals("Lumbalgia", despues.descifrar(antiguo));
+		assertFalse(despues.cifradoConClaveActiva(antiguo));
+		assertTrue(despues.cifradoConClaveActiva(despues.cifrar("Lumbalgia")));
+
+		// Sin la clave antigua ya no se puede leer
+		CifradoClinico soloNueva = new CifradoClinico(CLAVE_2, "k2", 0, Duration.ofMinutes(10));
+		assertThrows(IllegalStateException.class, () -> soloNueva.descifrar(antiguo));
+	}
+
+	@Test
+	void detectaValoresManipulados() {
+		CifradoClinico cifrado = new CifradoClinico(CLAVE_1, "k1", 0, Duration.ofMinutes(10));
+		String valor = cifrado.cifrar("Amoxicilina 500 mg");
+
+		// Se cambia un bit del texto cifrado: la etiqueta GCM ya no coincide
+		byte[] datos = Base64.getDecoder().decode(valor.substring("gcm:k1:".length()));
+		datos[datos.length / 2] ^= 1;
+		String manipulado = "gcm:k1:" + Base64.getEncoder().encodeToString(datos);
+
+		assertThrows(IllegalStateException.class, () -> cifrado.descifrar(manipulado));
+	}
+
+	@Test
+	void cacheAcotadaPorTamano() {
+		CifradoClinico cifrado = new CifradoClinico(CLAVE_1, "k1", 2, Duration.ofMinutes(10));
+		String a = cifrado.cifrar("a");
+		String b = cifrado.cifrar("b");
+		cifrado.limpiarCache();
+
+		assertEquals("a", cifrado.descifrar(a));
+		assertEquals("b", cifrado.descifrar(b));
+		assertEquals("c", cifrado.descifrar(cifrado.cifrar("c")));
+		assertEquals(2, cifrado.getTamanoCache());
+
+		// Las lecturas masivas no pasan por la caché
+		cifrado.limpiarCache();
+		assertEquals("a", CifradoClinico.sinCache(() -> cifrado.descifrar(a)));
+		assertEquals(0, cifrado.getTamanoCache());
+	}
+}
@@ -0,0 +1,107 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.CitaDisponible;
+import com.centromedico.gestion_pacientes.dto.PaginaCitasDisponibles;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.entity.Estado;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del buscador de citas realizadas sin consulta (H2 en memoria)
+ * Cada prueba usa un médico nuevo para no ver las citas de las demás
+ */
+@PruebaIntegracion
+class ConsultaServiceCitasSinConsultaTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private ConsultaService consultaService;
+
+	@Autowired
+	private ConsultaRepository consultaRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		medico = datos.crearUsuario(Rol.MEDICO);
+		paciente = datos.crearPaciente(medico, "Lucía", "Fernández");
+	}
+
+	@Test
+	void soloDevuelveRealizadasSinConsultaDelMedico() {
+		LocalDateTime inicio = LocalDateTime.of(2030, 6, 3, 9, 0);
+		Cita antigua = datos.guardarCita(paciente, medico, inicio, Estado.REALIZADA, "Dolor lumbar");
+		Cita reciente = datos.guardarCita(paciente, medico, inicio.plusDays(1), Estado.REALIZADA, "Revisión");
+		datos.guardarCita(paciente, medico, inicio.plusDays(2), Estado.CONFIRMADA, "Pendiente de ver");
+
+		Cita conConsulta = datos.guardarCita(paciente, medico, inicio.plusDays(3), Estado.REALIZADA, "Ya atendida");
+		Consulta consulta = new Consulta();
+		consulta.setCita(conConsulta);
+		consulta.setPaciente(paciente);
+		consulta.setMedico(medico);
+		consulta.setFechaConsulta(conConsulta.getFechaHora());
+		consultaRepository.save(consulta);
+
+		// Cita de otro médico: no la ve este médico
+		Usuario otroMedico = datos.crearUsuario(Rol.MEDICO);
+		datos.guardarCita(datos.crearPaciente(otroMedico, "Otro", "Paciente"), otroMedico, inicio, Estado.REALIZADA, "Ajena");
+
+		PaginaCitasDisponibles pagina = consultaService.buscarCitasSinConsulta(null, 0, medico);
+
+		assertEquals(List.of(reciente.getId(), antigua.getId()), ids(pagina));
+		assertFalse(pagina.hayMas());
+		assertEquals("Lucía Fernández", pagina.citas().get(0).paciente());
+
+		// Búsqueda por apellido (sin distinguir mayúsculas) y por motivo
+		assertEquals(2, consultaService.buscarCitasSinConsulta("FERNÁN", 0, medico).citas().size());
+		assertEquals(List.of(antigua.getId()), ids(consultaService.buscarCitasSinConsulta("lumbar", 0, medico)));
+	}
+
+	@Test
+	void paginaDeLaMasRecienteALaMasAntigua() {
+		LocalDateTime inicio = LocalDateTime.of(2031, 2, 10, 9, 0);
+		List<Long> esperadas = new ArrayList<>();
+		int total = ConsultaService.TAMANO_PAGINA_CITAS + 2;
+		for (int i = 0; i < total; i++) {
+			esperadas.add(0, datos.guardarCita(paciente, medico, inicio.plusMinutes(30L * i), Estado.REALIZADA, "Cita " + i).getId());
+		}
+
+		PaginaCitasDisponibles primera = consultaService.buscarCitasSinConsulta("", 0, medico);
+		PaginaCitasDisponibles segunda = consultaService.buscarCitasSinConsulta("", 1, medico);
+
+		assertTrue(primera.hayMas());
+		assertFalse(segunda.hayMas());
+		List<Long> leidas = new ArrayList<>(ids(primera));
+		leidas.addAll(ids(segunda));
+		assertEquals(esperadas, leidas);
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private static List<Long> ids(PaginaCitasDisponibles pagina) {
+		return pagina.citas().stream().map(CitaDisponible::id).toList();
+	}
+}
@@ -0,0 +1,135 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.DiagnosticoFrecuente;
+import com.centromedico.gestion_pacientes.dto.EstadisticasConsultas;
+import com.centromedico.gestion_pacientes.dto.VolumenConsultasMedico;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Pruebas de las estadísticas de consultas (H2 en memoria)
+ * Cada prueba usa un médico nuevo para no ver las consultas de las demás
+ */
+@PruebaIntegracion
+class EstadisticasConsultasServiceTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private EstadisticasConsultasService estadisticasService;
+
+	@Autowired
+	private ConsultaService consultaService;
+
+	@Autowired
+	private ConsultaRepository consultaRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		medico = datos.crearUsuario(Rol.MEDICO);
+		paciente = datos.crearPaciente(medico);
+	}
+
+	@Test
+	void agrupaPorMesYDiagnostico() {
+		LocalDateTime esteMes = YearMonth.now().atDay(1).atTime(10, 0);
+		guardarConsulta(esteMes, "Gripe");
+		guardarConsulta(esteMes.plusHours(1), "  gripe ");
+		guardarConsulta(esteMes.minusMonths(2), "GRIPE");
+		guardarConsulta(esteMes.minusMonths(2), "Lumbalgia");
+		guardarConsulta(esteMes.minusMonths(2), "   ");
+		// Fuera del periodo de la tabla mensual, pero dentro del año de diagnósticos
+		guardarConsulta(esteMes.minusMonths(EstadisticasConsultasService.MESES_VOLUMEN), "Lumbalgia");
+
+		EstadisticasConsultas estadisticas = estadisticasService.obtenerDeMedico(medico.getId());
+
+		assertEquals(6, estadisticas.totalConsultas());
+		assertEquals(YearMonth.now(), estadisticas.meses().get(estadisticas.meses().size() - 1));
+
+		VolumenConsultasMedico volumen = estadisticas.volumenPorMedico().get(0);
+		assertEquals(1, estadisticas.volumenPorMedico().size());
+		assertEquals(List.of(0L, 0L, 0L, 3L, 0L, 2L), volumen.porMes());
+		assertEquals(5, volumen.total());
+
+		assertEquals(List.of(new DiagnosticoFrecuente("gripe", 3L), new DiagnosticoFrecuente("lumbalgia", 2L)),
+				estadisticas.diagnosticosFrecuentes());
+		assertEquals(6, consultaService.contarConsultasPorPaciente(paciente.getId()));
+
+		// En la BD solo hay un índice por diagnóstico normalizado (y vacío para el diagnóstico en blanco)
+		List<String> indices = jdbcTemplate.queryForList(
+				"SELECT DISTINCT diagnostico_indice FROM consultas WHERE medico_id = ? ORDER BY diagnostico_indice",
+				String.class, medico.getId());
+		assertEquals(3, indices.size());
+		assertEquals("", indices.get(0));
+		assertEquals(64, indices.get(1).length());
+	}
+
+	@Test
+	void elIndiceSeRecalculaAlCambiarElDiagnostico() {
+		Consulta consulta = guardarConsulta(LocalDateTime.now(), "Gripe");
+		consulta.setDiagnostico("Migraña");
+		consultaRepository.save(consulta);
+		guardarConsulta(LocalDateTime.now(), "migraña");
+
+		assertEquals(List.of(new DiagnosticoFrecuente("migraña", 2L)),
+				estadisticasService.obtenerDeMedico(medico.getId()).diagnosticosFrecuentes());
+	}
+
+	@Test
+	void guardaEnCacheHastaQueCambianLasConsultas() {
+		EstadisticasConsultas primera = estadisticasService.obtenerDeMedico(medico.getId());
+		assertEquals(0, primera.totalConsultas());
+
+		// Un cambio que no pasa por ConsultaService no se ve hasta que caduca la entrada
+		guardarConsulta(LocalDateTime.now(), "Gripe");
+		assertSame(primera, estadisticasService.obtenerDeMedico(medico.getId()));
+		assertEquals(0, estadisticasService.contarPorMedico(medico.getId()));
+
+		// Crear una consulta desde el servicio vacía la caché
+		Consulta nueva = new Consulta();
+		nueva.setPaciente(paciente);
+		nueva.setMedico(medico);
+		nueva.setFechaConsulta(LocalDateTime.now());
+		nueva.setDiagnostico("Gripe");
+		consultaService.crearConsulta(nueva);
+
+		assertEquals(2, estadisticasService.obtenerDeMedico(medico.getId()).totalConsultas());
+		assertEquals(2, estadisticasService.contarPorMedico(medico.getId()));
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private Consulta guardarConsulta(LocalDateTime fecha, String diagnostico) {
+		Consulta consulta = new Consulta();
+		consulta.setPaciente(paciente);
+		consulta.setMedico(medico);
+		consulta.setFechaConsulta(fecha);
+		consulta.setDiagnostico(diagnostico);
+		return consultaRepository.save(consulta);
+	}
+}
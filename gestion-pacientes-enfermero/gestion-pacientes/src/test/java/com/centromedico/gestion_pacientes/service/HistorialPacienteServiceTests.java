@@ -0,0 +1,128 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial;
+import com.centromedico.gestion_pacientes.dto.EventoHistorial;
+import com.centromedico.gestion_pacientes.dto.PaginaHistorial;
+import com.centromedico.gestion_pacientes.dto.TipoEventoHistorial;
+import com.centromedico.gestion_pacientes.entity.Cita;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.entity.Estado;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pruebas del historial paginado del paciente (H2 en memoria)
+ */
+@PruebaIntegracion
+class HistorialPacienteServiceTests {
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private HistorialPacienteService historialService;
+
+	@Autowired
+	private ConsultaRepository consultaRepository;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		medico = datos.crearUsuario(Rol.MEDICO);
+
+		paciente = datos.crearPaciente(medico);
+	}
+
+	@Test
+	void recorreCitasYConsultasMezcladasSinRepetirNiSaltar() {
+		LocalDateTime base = LocalDateTime.of(2026, 1, 10, 9, 0);
+		List<Long> esperadas = new ArrayList<>();
+		// Cada día: una cita y su consulta a la misma hora (mismo instante en las dos tablas)
+		for (int dia = 0; dia < 7; dia++) {
+			Cita cita = guardarCita(base.plusDays(dia));
+			Consulta consulta = guardarConsulta(base.plusDays(dia), cita, "Revisión " + dia);
+			esperadas.add(0, cita.getId());
+			esperadas.add(0, consulta.getId());
+		}
+
+		List<EventoHistorial> vistos = new ArrayList<>();
+		PaginaHistorial pagina = historialService.obtenerPagina(paciente.getId(), null, null, null, 3);
+		vistos.addAll(pagina.eventos());
+		while (pagina.hayMas()) {
+			EventoHistorial ultimo = pagina.eventos().get(pagina.eventos().size() - 1);
+			pagina = historialService.obtenerPagina(paciente.getId(), ultimo.fecha(), ultimo.tipo(), ultimo.id(), 3);
+			vistos.addAll(pagina.eventos());
+		}
+
+		assertEquals(14, vistos.size());
+		assertEquals(esperadas, vistos.stream().map(EventoHistorial::id).toList());
+		// Más reciente primero y, a la misma hora, la consulta antes que la cita
+		assertEquals(TipoEventoHistorial.CONSULTA, vistos.get(0).tipo());
+		assertEquals(TipoEventoHistorial.CITA, vistos.get(1).tipo());
+		assertEquals(base.plusDays(6), vistos.get(0).fecha());
+		assertEquals(vistos.get(1).id(), vistos.get(0).citaId());
+		assertEquals(Estado.REALIZADA, vistos.get(1).estadoCita());
+	}
+
+	@Test
+	void resumenRecortaElMotivoYElDetalleRespetaElRol() {
+		String motivoLargo = "x".repeat(EventoHistorial.LONGITUD_MOTIVO + 50);
+		Consulta consulta = guardarConsulta(LocalDateTime.of(2026, 2, 1, 10, 0), null, motivoLargo);
+
+		PaginaHistorial pagina = historialService.obtenerPagina(paciente.getId(), null, null, null, 10);
+		assertFalse(pagina.hayMas());
+		assertEquals(EventoHistorial.LONGITUD_MOTIVO, pagina.eventos().get(0).motivo().length());
+
+		DetalleConsultaHistorial completo = historialService.obtenerDetalleConsulta(
+				paciente.getId(), consulta.getId(), medico);
+		assertEquals(motivoLargo, completo.motivoConsulta());
+		assertEquals("Diagnóstico", completo.diagnostico());
+
+		DetalleConsultaHistorial enfermero = historialService.obtenerDetalleConsulta(
+				paciente.getId(), consulta.getId(), datos.crearUsuario(Rol.ENFERMERO));
+		assertEquals("Síntomas", enfermero.sintomas());
+		assertNull(enfermero.diagnostico());
+		assertNull(enfermero.tratamiento());
+
+		assertEquals(1, historialService.obtenerResumen(paciente.getId()).totalConsultas());
+		assertEquals(0, historialService.obtenerResumen(paciente.getId()).conSeguimiento());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private Cita guardarCita(LocalDateTime fechaHora) {
+		return datos.guardarCita(paciente, medico, fechaHora, Estado.REALIZADA, "Revisión");
+	}
+
+	private Consulta guardarConsulta(LocalDateTime fecha, Cita cita, String motivo) {
+		Consulta consulta = new Consulta();
+		consulta.setPaciente(paciente);
+		consulta.setMedico(medico);
+		consulta.setCita(cita);
+		consulta.setFechaConsulta(fecha);
+		consulta.setMotivoConsulta(motivo);
+		consulta.setSintomas("Síntomas");
+		consulta.setDiagnostico("Diagnóstico");
+		consulta.setTratamiento("Tratamiento");
+		return consultaRepository.save(consulta);
+	}
+}
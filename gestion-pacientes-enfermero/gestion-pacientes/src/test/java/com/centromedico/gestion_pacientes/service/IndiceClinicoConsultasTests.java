@@ -0,0 +1,94 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.dto.CampoClinico;
+import com.centromedico.gestion_pacientes.dto.ConsultaIndexable;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del índice de búsqueda clínica (sin base de datos)
+ */
+class IndiceClinicoConsultasTests {
+
+	private static final Set<CampoClinico> TODOS = EnumSet.allOf(CampoClinico.class);
+
+	private IndiceClinicoConsultas indice;
+
+	@BeforeEach
+	void preparar() {
+		indice = new IndiceClinicoConsultas(null);
+		indice.actualizar(consulta(1L, 10L, 1, "Revisión", "Cefalea intensa y náuseas", "Migraña", "Ibuprofeno 600"));
+		indice.actualizar(consulta(2L, 10L, 2, "Dolor de cabeza", "Cefalea leve", "Cefalea tensional", "Reposo"));
+		indice.actualizar(consulta(3L, 20L, 3, "Control", "Tos seca", "Bronquitis", "Ibuprofeno y jarabe"));
+	}
+
+	@Test
+	void ignoraMayusculasYTildesYBuscaElUltimoTerminoComoPrefijo() {
+		assertEquals(List.of(1L), ids(indice.buscar("NAUSEAS", TODOS, null, 10)));
+		assertEquals(List.of(1L), ids(indice.buscar("migrana", TODOS, null, 10)));
+		assertEquals(List.of(2L, 1L), ids(indice.buscar("cefal", TODOS, null, 10)));
+		assertTrue(indice.buscar("cefalea bronq", TODOS, null, 10).isEmpty());
+	}
+
+	@Test
+	void ordenaPorRelevanciaYDevuelveLosCamposCoincidentes() {
+		// La consulta 2 tiene "cefalea" en síntomas y diagnóstico; la 1 solo en síntomas
+		List<IndiceClinicoConsultas.Coincidencia> resultado = indice.buscar("cefalea", TODOS, null, 10);
+
+		assertEquals(List.of(2L, 1L), ids(resultado));
+		assertEquals(EnumSet.of(CampoClinico.SINTOMAS, CampoClinico.DIAGNOSTICO), resultado.get(0).campos());
+		assertEquals(EnumSet.of(CampoClinico.SINTOMAS), resultado.get(1).campos());
+	}
+
+	@Test
+	void filtraCamposPorRolYConsultasPorMedico() {
+		Set<CampoClinico> enfermero = CampoClinico.visiblesPara(Rol.ENFERMERO);
+
+		assertTrue(indice.buscar("ibuprofeno", enfermero, null, 10).isEmpty());
+		assertTrue(indice.buscar("migraña", enfermero, null, 10).isEmpty());
+		assertEquals(List.of(1L), ids(indice.buscar("nauseas", enfermero, null, 10)));
+
+		assertEquals(List.of(3L), ids(indice.buscar("ibuprofeno", TODOS, 20L, 10)));
+		assertTrue(CampoClinico.visiblesPara(Rol.RECEPCION).isEmpty());
+	}
+
+	@Test
+	void actualizarReemplazaLosTerminosYEliminarLosQuita() {
+		indice.actualizar(consulta(1L, 10L, 1, "Revisión", "Mareo", "Vértigo", "Betahistina"));
+		assertTrue(indice.buscar("cefalea nauseas", TODOS, null, 10).isEmpty());
+		assertEquals(List.of(1L), ids(indice.buscar("vertigo", TODOS, null, 10)));
+
+		indice.eliminar(1L);
+		assertTrue(indice.buscar("vertigo", TODOS, null, 10).isEmpty());
+		assertEquals(2, indice.getTotalDocumentos());
+	}
+
+	@Test
+	void tokenizarDescartaPalabrasVaciasPeroNoLasNegaciones() {
+		assertEquals(List.of("dolor", "cabeza", "sin", "fiebre"),
+				IndiceClinicoConsultas.tokenizar("Dolor de cabeza, sin fiebre."));
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private static List<Long> ids(List<IndiceClinicoConsultas.Coincidencia> coincidencias) {
+		return coincidencias.stream().map(IndiceClinicoConsultas.Coincidencia::consultaId).toList();
+	}
+
+	private static ConsultaIndexable consulta(Long id, Long medicoId, int dia, String motivo,
+											  String sintomas, String diagnostico, String tratamiento) {
+		return new ConsultaIndexable(id, medicoId, 100L + id, LocalDateTime.of(2026, 3, dia, 10, 0),
+				motivo, sintomas, diagnostico, tratamiento);
+	}
+}
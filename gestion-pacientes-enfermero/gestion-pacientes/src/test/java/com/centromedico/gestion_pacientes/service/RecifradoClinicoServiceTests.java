@@ -0,0 +1,163 @@
+package com.centromedico.gestion_pacientes.service;
+
+import com.centromedico.gestion_pacientes.DatosPrueba;
+import com.centromedico.gestion_pacientes.PruebaIntegracion;
+import com.centromedico.gestion_pacientes.config.CifradoClinico;
+import com.centromedico.gestion_pacientes.config.IndiceDiagnostico;
+import com.centromedico.gestion_pacientes.dto.DetalleConsultaHistorial;
+import com.centromedico.gestion_pacientes.entity.Consulta;
+import com.centromedico.gestion_pacientes.entity.Paciente;
+import com.centromedico.gestion_pacientes.entity.Rol;
+import com.centromedico.gestion_pacientes.entity.Usuario;
+import com.centromedico.gestion_pacientes.repository.ConsultaRepository;
+import com.centromedico.gestion_pacientes.repository.PacienteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del cifrado de los textos clínicos en la BD y de su recifrado (H2 en memoria)
+ * La clave activa es k2; k1 es la clave anterior a la rotación
+ */
+@PruebaIntegracion
+@TestPropertySource(properties = {
+		"clinico.cifrado.claves=" + RecifradoClinicoServiceTests.CLAVE_1 + "," + RecifradoClinicoServiceTests.CLAVE_2,
+		"clinico.cifrado.clave-activa=k2"
+})
+class RecifradoClinicoServiceTests {
+
+	static final String CLAVE_1 = "k1:X1Ez48obGLk0zhYRmyBpkS0jFumBnqfgX5Gm7qWhPCs=";
+	static final String CLAVE_2 = "k2:3E5nPDkXdsVwJlsd5CttsU8XqmD5zaVIVehGmmSDUXw=";
+
+	@Autowired
+	private DatosPrueba datos;
+
+	@Autowired
+	private RecifradoClinicoService recifradoService;
+
+	@Autowired
+	private CifradoClinico cifrado;
+
+	@Autowired
+	private IndiceDiagnostico indiceDiagnostico;
+
+	@Autowired
+	private ConsultaRepository consultaRepository;
+
+	@Autowired
+	private PacienteRepository pacienteRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Usuario medico;
+	private Paciente paciente;
+
+	@BeforeEach
+	void preparar() {
+		medico = datos.crearUsuario(Rol.MEDICO);
+
+		paciente = datos.crearPaciente(medico);
+		paciente.setHistorial("Alergia a la penicilina");
+		paciente = pacienteRepository.save(paciente);
+	}
+
+	@Test
+	void losTextosSensiblesSeGuardanCifrados() {
+		Consulta consulta = guardarConsulta("Faringitis", "Ibuprofeno");
+
+		assertTrue(columna("consultas", "diagnostico", consulta.getId()).startsWith("gcm:k2:"));
+		assertTrue(columna("consultas", "tratamiento", consulta.getId()).startsWith("gcm:k2:"));
+		// El historial del paciente sigue en claro: lo comparte la aplicación de citas, que no tiene las claves
+		assertEquals("Alergia a la penicilina", columna("pacientes", "historial", paciente.getId()));
+		// El motivo no es sensible: sigue en claro (lo usan las búsquedas y el historial)
+		assertEquals("Dolor de garganta", columna("consultas", "motivo_consulta", consulta.getId()));
+
+		cifrado.limpiarCache();
+		assertEquals("Faringitis", consultaRepository.findById(consulta.getId()).orElseThrow().getDiagnostico());
+		assertEquals("Alergia a la penicilina", pacienteRepository.findById(paciente.getId()).orElseThrow().getHistorial());
+
+		// Las proyecciones JPQL también pasan por el conversor
+		DetalleConsultaHistorial detalle = consultaRepository.findDetalleHistorial(consulta.getId(), paciente.getId())
+				.orElseThrow();
+		assertEquals("Faringitis", detalle.diagnostico());
+		assertEquals("Ibuprofeno", detalle.tratamiento());
+	}
+
+	@Test
+	void recifraTextoPlanoYValoresDeLaClaveAnterior() {
+		CifradoClinico anterior = new CifradoClinico(CLAVE_1, "k1", 0, Duration.ofMinutes(1));
+		int total = RecifradoClinicoService.TAMANO_LOTE + 5;
+		Long[] ids = new Long[total];
+		for (int i = 0; i < total; i++) {
+			ids[i] = guardarConsulta("Diagnóstico " + i, "Tratamiento " + i).getId();
+			// Mitad en texto plano (anteriores al cifrado), mitad con la clave anterior
+			String diagnostico = i % 2 == 0 ? "Diagnóstico " + i : anterior.cifrar("Diagnóstico " + i);
+			jdbcTemplate.update("UPDATE consultas SET diagnostico = ?, tratamiento = ? WHERE id = ?",
+					diagnostico, i % 2 == 0 ? null : anterior.cifrar("Tratamiento " + i), ids[i]);
+		}
+		// Historial cifrado por una versión anterior: se devuelve a texto plano
+		jdbcTemplate.update("UPDATE pacientes SET historial = ? WHERE id = ?", anterior.cifrar("Asma"), paciente.getId());
+
+		assertTrue(recifradoService.recifrar() >= total + total / 2 + 1);
+
+		cifrado.limpiarCache();
+		for (int i = 0; i < total; i++) {
+			assertTrue(columna("consultas", "diagnostico", ids[i]).startsWith("gcm:k2:"));
+			Consulta consulta = consultaRepository.findById(ids[i]).orElseThrow();
+			assertEquals("Diagnóstico " + i, consulta.getDiagnostico());
+			assertEquals(i % 2 == 0 ? null : "Tratamiento " + i, consulta.getTratamiento());
+		}
+		assertEquals("Asma", columna("pacientes", "historial", paciente.getId()));
+
+		// Ya no queda nada que recifrar
+		assertEquals(0, recifradoService.recifrar());
+
+		// Solo se recifran las filas pendientes: una que vuelve a estar en claro
+		jdbcTemplate.update("UPDATE consultas SET tratamiento = ? WHERE id = ?", "Reposo", ids[7]);
+		assertEquals(1, recifradoService.recifrar());
+		assertTrue(columna("consultas", "tratamiento", ids[7]).startsWith("gcm:k2:"));
+	}
+
+	@Test
+	void rellenaElIndiceDeLosDiagnosticosQueNoLoTienen() {
+		Consulta conIndice = guardarConsulta("Otitis", null);
+		Consulta sinIndice = guardarConsulta("Otitis media", null);
+		// Consultas guardadas antes de existir la columna: índice vacío, diagnóstico cifrado o en claro
+		jdbcTemplate.update("UPDATE consultas SET diagnostico_indice = NULL, diagnostico = ? WHERE id = ?",
+				"  OTITIS MEDIA", sinIndice.getId());
+
+		assertEquals(1, recifradoService.recifrar());
+
+		assertEquals(indiceDiagnostico.calcular("otitis media"), columna("consultas", "diagnostico_indice", sinIndice.getId()));
+		assertEquals(indiceDiagnostico.calcular("Otitis"), columna("consultas", "diagnostico_indice", conIndice.getId()));
+		assertEquals(0, recifradoService.recifrar());
+	}
+
+	// ============================================
+	// AUXILIARES
+	// ============================================
+
+	private String columna(String tabla, String columna, Long id) {
+		return jdbcTemplate.queryForObject("SELECT " + columna + " FROM " + tabla + " WHERE id = ?", String.class, id);
+	}
+
+	private Consulta guardarConsulta(String diagnostico, String tratamiento) {
+		Consulta consulta = new Consulta();
+		consulta.setPaciente(paciente);
+		consulta.setMedico(medico);
+		consulta.setFechaConsulta(LocalDateTime.now());
+		consulta.setMotivoConsulta("Dolor de garganta");
+		consulta.setDiagnostico(diagnostico);
+		consulta.setTratamiento(tratamiento);
+		return consultaRepository.save(consulta);
+	}
+}